@@ -0,0 +1,160 @@
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Random;
+
+/**
+ * The {@code TableGenerator} class fills benchmark tables with reproducible rows through the
+ * normal insert path, so that the log, the table files and the indexes are what a real workload
+ * leaves behind. A table has the columns {@code id int, name varchar, category int, score double};
+ * ids run from 0, categories from 0 to 99 and the other values are random with a fixed seed.
+ *
+ * <p>Run on its own it creates the tables {@code bench_<rows>} for the given sizes, from 1k up to
+ * 10M rows, in the {@code files/} directory of the working directory.
+ *
+ * <p>Usage: {@code java TableGenerator [text|paged] [rows...]}
+ */
+public class TableGenerator {
+  /* Rows per insert statement */
+  private static final int BATCH_SIZE = 1_000;
+
+  public static void main(String[] args) throws Exception {
+    StorageFormat storageFormat =
+        args.length > 0 ? StorageFormat.fromName(args[0]) : StorageFormat.TEXT;
+    if (storageFormat == null) {
+      System.out.println("Unknown storage format " + args[0]);
+      return;
+    }
+    long[] sizes = {1_000, 10_000, 100_000, 1_000_000, 10_000_000};
+    if (args.length > 1) {
+      sizes = new long[args.length - 1];
+      for (int i = 1; i < args.length; i++) {
+        sizes[i - 1] = Long.parseLong(args[i]);
+      }
+    }
+
+    Database database = openDatabase();
+    Session session = new Session("admin");
+    for (long rows : sizes) {
+      long start = System.nanoTime();
+      String tableName = generate(database, session, storageFormat, rows);
+      System.out.println(
+          "Generated " + tableName + " in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+    System.exit(0);
+  }
+
+  /**
+   * @return the database of the working directory
+   */
+  public static Database openDatabase() {
+    UserAuthenticationManager authenticationManager =
+        new UserAuthenticationManager(
+            new UserServiceImplementation(), new CaptchaServiceImplementation());
+    return Database.getInstance(authenticationManager);
+  }
+
+  /**
+   * Creates the table {@code bench_<rows>}, replacing an existing one.
+   *
+   * @param database the database
+   * @param session session executing the statements
+   * @param storageFormat format of the table file
+   * @param rows number of rows
+   * @return name of the table
+   * @throws IncorrectQueryException if a statement fails
+   */
+  public static String generate(
+      Database database, Session session, StorageFormat storageFormat, long rows)
+      throws IncorrectQueryException {
+    String tableName = "bench_" + rows;
+    generate(database, session, storageFormat, tableName, rows);
+    return tableName;
+  }
+
+  /**
+   * Creates a table with generated rows, replacing an existing one.
+   *
+   * @param database the database
+   * @param session session executing the statements
+   * @param storageFormat format of the table file
+   * @param tableName name of the table
+   * @param rows number of rows
+   * @throws IncorrectQueryException if a statement fails
+   */
+  public static void generate(
+      Database database,
+      Session session,
+      StorageFormat storageFormat,
+      String tableName,
+      long rows)
+      throws IncorrectQueryException {
+    /* The messages of thousands of inserts are not shown */
+    PrintStream console = System.out;
+    System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    try {
+      database.execute(session, "drop table " + tableName + ";");
+      database.setStorageFormat(tableName, storageFormat);
+      database.execute(
+          session,
+          "create table " + tableName + " (id int, name varchar, category int, score double);");
+
+      Random random = new Random(rows);
+      for (long first = 0; first < rows; first += BATCH_SIZE) {
+        database.execute(
+            session,
+            insertStatement(tableName, first, Math.min(BATCH_SIZE, rows - first), random));
+      }
+    } finally {
+      System.setOut(console);
+    }
+  }
+
+  /**
+   * Drops a table without showing the message.
+   *
+   * @param database the database
+   * @param session session executing the statement
+   * @param tableName name of the table
+   * @throws IncorrectQueryException if the statement fails
+   */
+  public static void drop(Database database, Session session, String tableName)
+      throws IncorrectQueryException {
+    PrintStream console = System.out;
+    System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    try {
+      database.execute(session, "drop table " + tableName + ";");
+    } finally {
+      System.setOut(console);
+    }
+  }
+
+  /**
+   * Builds an insert statement of generated rows.
+   *
+   * @param tableName name of the table
+   * @param firstId id of the first row
+   * @param rows number of rows
+   * @param random source of the values
+   * @return the statement
+   */
+  public static String insertStatement(String tableName, long firstId, long rows, Random random) {
+    StringBuilder statement = new StringBuilder(64 + (int) rows * 40);
+    statement.append("insert into ").append(tableName).append(" values ");
+    for (long id = firstId; id < firstId + rows; id++) {
+      if (id > firstId) {
+        statement.append(", ");
+      }
+      statement
+          .append('(')
+          .append(id)
+          .append(", 'name")
+          .append(random.nextInt(1_000_000))
+          .append("', ")
+          .append(id % 100)
+          .append(", ")
+          .append(random.nextInt(100_000) / 100.0)
+          .append(')');
+    }
+    return statement.append(';').toString();
+  }
+}
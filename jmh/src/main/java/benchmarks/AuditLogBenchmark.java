@@ -0,0 +1,103 @@
+package benchmarks;
+
+import java.io.File;
+import java.lang.invoke.MethodHandle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.FileHandler;
+import java.util.logging.Logger;
+import java.util.logging.SimpleFormatter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The {@code AuditLogBenchmark} class measures what auditing an insert of 1000 rows costs the
+ * statement: a record put into {@code AuditLog} with either overflow policy, and, for comparison,
+ * the message built and written at once through a {@code java.util.logging} file handler, as the
+ * audit log was written before. The logs are written to temporary files that are deleted after the
+ * last iteration.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AuditLogBenchmark {
+  /** {@code new AuditLog(String filePath, int capacity, OverflowPolicy)} */
+  private static final MethodHandle NEW_AUDIT_LOG = Engine.constructor("AuditLog", 3);
+
+  /** {@code auditLog.log(Event, String user, Object... arguments)} */
+  private static final MethodHandle LOG = Engine.method("AuditLog", "log", 3);
+
+  /** {@code auditLog.close()} */
+  private static final MethodHandle CLOSE = Engine.method("AuditLog", "close", 0);
+
+  private static final Object VALUES_INSERTED =
+      Engine.constant("AuditLog$Event", "VALUES_INSERTED");
+
+  /** {@code jul} for {@code java.util.logging}, otherwise the overflow policy of the audit log */
+  @Param({"jul", "BLOCK", "DROP"})
+  public String log;
+
+  private final List<List<String>> values = new ArrayList<>();
+  private File file;
+  private Logger logger;
+  private FileHandler fileHandler;
+  private Object auditLog;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Throwable {
+    for (int id = 0; id < 1_000; id++) {
+      values.add(List.of(String.valueOf(id), "name" + id, String.valueOf(id % 100), "1.5"));
+    }
+    file = File.createTempFile("jmh_audit", ".log");
+    if (log.equals("jul")) {
+      logger = Logger.getLogger("AuditLogBenchmark");
+      logger.setUseParentHandlers(false);
+      fileHandler = new FileHandler(file.getPath());
+      fileHandler.setFormatter(new SimpleFormatter());
+      logger.addHandler(fileHandler);
+    } else {
+      auditLog =
+          (Object)
+              NEW_AUDIT_LOG.invokeExact(
+                  (Object) file.getPath(),
+                  (int) Engine.constant("Constants", "AUDIT_BUFFER_RECORDS"),
+                  Engine.constant("AuditLog$OverflowPolicy", log));
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws Throwable {
+    if (fileHandler != null) {
+      fileHandler.close();
+      logger.removeHandler(fileHandler);
+    } else {
+      CLOSE.invokeExact(auditLog);
+    }
+    file.delete();
+  }
+
+  @Benchmark
+  public void audit() throws Throwable {
+    if (auditLog == null) {
+      logger.info(() -> "Values inserted into bench with values: " + values + " by admin");
+    } else {
+      Object arguments = new Object[] {"bench", values};
+      LOG.invokeExact(auditLog, VALUES_INSERTED, (Object) "admin", arguments);
+    }
+  }
+}
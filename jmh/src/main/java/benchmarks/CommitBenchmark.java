@@ -0,0 +1,76 @@
+package benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The {@code CommitBenchmark} class measures committing transactions of 1, 100 and 10k queued
+ * insert statements of one row each. Queueing the statements before every call is not measured,
+ * only the {@code commit}, which validates them, writes them to the log with one fsync and applies
+ * them. The table is created in the {@code files/} directory of the working directory and dropped
+ * after the last iteration.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 20)
+@Measurement(iterations = 50)
+@Fork(2)
+public class CommitBenchmark {
+  @Param({"1", "100", "10000"})
+  public int statements;
+
+  @Param({"text", "paged"})
+  public String format;
+
+  private Object database;
+  private Object session;
+  private final Random random = new Random(42);
+  private long nextId;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Throwable {
+    Object[] opened = Engine.openSession();
+    database = opened[0];
+    session = opened[1];
+    Object storageFormat = (Object) Engine.STORAGE_FORMAT.invokeExact((Object) format);
+    Engine.GENERATE.invokeExact(database, session, storageFormat, (Object) "jmh_commit", 0L);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws Throwable {
+    Engine.DROP.invokeExact(database, session, (Object) "jmh_commit");
+  }
+
+  /* Every measured commit gets a transaction of its own */
+  @Setup(Level.Iteration)
+  public void queueStatements() throws Throwable {
+    Engine.executeQuietly(database, session, "begin transaction;");
+    for (int i = 0; i < statements; i++) {
+      String insert =
+          (String)
+              (Object)
+                  Engine.INSERT_STATEMENT.invokeExact(
+                      (Object) "jmh_commit", nextId++, 1L, (Object) random);
+      Engine.executeQuietly(database, session, insert);
+    }
+  }
+
+  @Benchmark
+  public void commit() throws Throwable {
+    Engine.executeQuietly(database, session, "commit;");
+  }
+}
@@ -0,0 +1,152 @@
+package benchmarks;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+
+/**
+ * The {@code Engine} class holds method handles on the classes of the database. JMH does not
+ * accept benchmarks in the default package, and classes of a named package cannot name classes of
+ * the default package, where the database lives, so the benchmarks call it through these handles.
+ * Every handle takes and returns {@code Object} in place of the classes of the database.
+ */
+final class Engine {
+  /** {@code SqlParser.parse(String)}, returns the {@code Statement} */
+  static final MethodHandle PARSE = method("SqlParser", "parse", 1);
+
+  /** {@code new CustomDelimiterDataSerializerImplementation()} */
+  static final MethodHandle NEW_SERIALIZER =
+      constructor("CustomDelimiterDataSerializerImplementation", 0);
+
+  /** {@code serializer.serializeRow(List<String>)}, returns the line */
+  static final MethodHandle SERIALIZE_ROW =
+      method("CustomDelimiterDataSerializerImplementation", "serializeRow", 1);
+
+  /** {@code serializer.deserializeRow(String)}, returns the values */
+  static final MethodHandle DESERIALIZE_ROW =
+      method("CustomDelimiterDataSerializerImplementation", "deserializeRow", 1);
+
+  /** {@code TableGenerator.openDatabase()}, the database of the working directory */
+  static final MethodHandle OPEN_DATABASE = method("TableGenerator", "openDatabase", 0);
+
+  /** {@code new Session(String user)} */
+  static final MethodHandle NEW_SESSION = constructor("Session", 1);
+
+  /** {@code StorageFormat.fromName(String)} */
+  static final MethodHandle STORAGE_FORMAT = method("StorageFormat", "fromName", 1);
+
+  /** {@code database.execute(Session, String)} */
+  static final MethodHandle EXECUTE = method("Database", "execute", 2);
+
+  /** {@code TableGenerator.generate(Database, Session, StorageFormat, String, long rows)} */
+  static final MethodHandle GENERATE = method("TableGenerator", "generate", 5);
+
+  /** {@code TableGenerator.drop(Database, Session, String)} */
+  static final MethodHandle DROP = method("TableGenerator", "drop", 3);
+
+  /** {@code TableGenerator.insertStatement(String, long firstId, long rows, Random)} */
+  static final MethodHandle INSERT_STATEMENT = method("TableGenerator", "insertStatement", 4);
+
+  private Engine() {
+    throw new AssertionError("Engine class should not be instantiated.");
+  }
+
+  /**
+   * Opens the database and a session of the admin user.
+   *
+   * @return the database and the session
+   * @throws Throwable if the database cannot be opened
+   */
+  static Object[] openSession() throws Throwable {
+    Object database = (Object) OPEN_DATABASE.invokeExact();
+    Object session = (Object) NEW_SESSION.invokeExact((Object) "admin");
+    return new Object[] {database, session};
+  }
+
+  /**
+   * Executes a statement, discarding what it prints.
+   *
+   * @param database the database
+   * @param session the session
+   * @param query the statement
+   * @throws Throwable if the statement fails
+   */
+  static void executeQuietly(Object database, Object session, String query) throws Throwable {
+    PrintStream console = System.out;
+    System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    try {
+      EXECUTE.invokeExact(database, session, (Object) query);
+    } finally {
+      System.setOut(console);
+    }
+  }
+
+  /**
+   * @param className name of a class of the database, {@code Outer$Inner} for a nested class
+   * @param methodName name of a public method of the class
+   * @param parameterCount number of parameters, which tells overloads apart
+   * @return the method, taking the object first unless it is static
+   */
+  static MethodHandle method(String className, String methodName, int parameterCount) {
+    try {
+      for (Method method : Class.forName(className).getMethods()) {
+        if (method.getName().equals(methodName) && method.getParameterCount() == parameterCount) {
+          return erase(MethodHandles.publicLookup().unreflect(method));
+        }
+      }
+    } catch (ReflectiveOperationException e) {
+      throw new ExceptionInInitializerError(e);
+    }
+    throw new NoSuchMethodError(className + "." + methodName);
+  }
+
+  /**
+   * @param className name of a class of the database
+   * @param parameterCount number of parameters, which tells overloads apart
+   * @return the public constructor
+   */
+  static MethodHandle constructor(String className, int parameterCount) {
+    try {
+      for (Constructor<?> constructor : Class.forName(className).getConstructors()) {
+        if (constructor.getParameterCount() == parameterCount) {
+          return erase(MethodHandles.publicLookup().unreflectConstructor(constructor));
+        }
+      }
+    } catch (ReflectiveOperationException e) {
+      throw new ExceptionInInitializerError(e);
+    }
+    throw new NoSuchMethodError(className + ".<init>");
+  }
+
+  /**
+   * @param className name of a class of the database, {@code Outer$Inner} for a nested class
+   * @param fieldName name of a public static field or of an enum constant
+   * @return its value
+   */
+  static Object constant(String className, String fieldName) {
+    try {
+      return Class.forName(className).getField(fieldName).get(null);
+    } catch (ReflectiveOperationException e) {
+      throw new ExceptionInInitializerError(e);
+    }
+  }
+
+  /* Replaces every class by Object, primitive types are kept; varargs are passed as an array */
+  private static MethodHandle erase(MethodHandle handle) {
+    handle = handle.asFixedArity();
+    MethodType type = handle.type();
+    for (int i = 0; i < type.parameterCount(); i++) {
+      if (!type.parameterType(i).isPrimitive()) {
+        type = type.changeParameterType(i, Object.class);
+      }
+    }
+    if (!type.returnType().isPrimitive()) {
+      type = type.changeReturnType(Object.class);
+    }
+    return handle.asType(type);
+  }
+}
@@ -0,0 +1,137 @@
+package benchmarks;
+
+import java.io.File;
+import java.lang.invoke.MethodHandle;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The {@code IndexBenchmark} class measures point lookups on a {@code BPlusTreeIndex} over an INT
+ * column, of keys it holds and of keys it does not. The index is bulk loaded from the first half
+ * of the rows and the second half is inserted one by one, so both the bulk loaded and the split
+ * pages are looked up. The index file is temporary and deleted after the last iteration.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IndexBenchmark {
+  /** {@code new TableSchema(List<String> columnNames, List<ColumnType> columnTypes)} */
+  private static final MethodHandle NEW_SCHEMA = Engine.constructor("TableSchema", 2);
+
+  /** {@code new ColumnarTable(TableSchema)} */
+  private static final MethodHandle NEW_TABLE = Engine.constructor("ColumnarTable", 1);
+
+  /** {@code table.putInt(int column, int value)} */
+  private static final MethodHandle PUT_INT = Engine.method("ColumnarTable", "putInt", 2);
+
+  /** {@code table.finishRow()} */
+  private static final MethodHandle FINISH_ROW = Engine.method("ColumnarTable", "finishRow", 0);
+
+  /** {@code BPlusTreeIndex.create(filePath, indexName, tableName, columnName, table, rowIds)} */
+  private static final MethodHandle CREATE = Engine.method("BPlusTreeIndex", "create", 6);
+
+  /** {@code index.insert(ColumnarTable, int column, int row, long rowId)} */
+  private static final MethodHandle INSERT = Engine.method("BPlusTreeIndex", "insert", 4);
+
+  /** {@code index.search(long[] low, boolean, long[] high, boolean)}, returns the row ids */
+  private static final MethodHandle SEARCH = Engine.method("BPlusTreeIndex", "search", 4);
+
+  /** {@code index.close()} */
+  private static final MethodHandle CLOSE = Engine.method("BPlusTreeIndex", "close", 0);
+
+  /** {@code BPlusTreeIndex.encodeKey(ColumnType, String value, long[] key)} */
+  private static final MethodHandle ENCODE_KEY = Engine.method("BPlusTreeIndex", "encodeKey", 3);
+
+  private static final Object INT = Engine.constant("ColumnType", "INT");
+
+  @Param({"1000000"})
+  public int rows;
+
+  /* Distinct even keys in random order, row id i holds key keys[i] */
+  private int[] keys;
+  private File indexFile;
+  private Object index;
+  private final Random random = new Random(42);
+  private final long[] key = new long[2];
+
+  @Setup(Level.Trial)
+  public void setUp() throws Throwable {
+    keys = new int[rows];
+    for (int i = 0; i < rows; i++) {
+      keys[i] = i * 2;
+    }
+    for (int i = rows - 1; i > 0; i--) {
+      int j = random.nextInt(i + 1);
+      int swap = keys[i];
+      keys[i] = keys[j];
+      keys[j] = swap;
+    }
+
+    Object schema = (Object) NEW_SCHEMA.invokeExact((Object) List.of("id"), (Object) List.of(INT));
+    Object loaded = (Object) NEW_TABLE.invokeExact(schema);
+    long[] rowIds = new long[rows / 2];
+    for (int i = 0; i < rows / 2; i++) {
+      PUT_INT.invokeExact(loaded, 0, keys[i]);
+      FINISH_ROW.invokeExact(loaded);
+      rowIds[i] = i;
+    }
+    indexFile = File.createTempFile("jmh_index", ".idx");
+    index =
+        (Object)
+            CREATE.invokeExact(
+                (Object) indexFile.getPath(),
+                (Object) "idx",
+                (Object) "benchmark",
+                (Object) "id",
+                loaded,
+                (Object) rowIds);
+
+    Object inserted = (Object) NEW_TABLE.invokeExact(schema);
+    for (int i = rows / 2; i < rows; i++) {
+      PUT_INT.invokeExact(inserted, 0, keys[i]);
+      FINISH_ROW.invokeExact(inserted);
+      INSERT.invokeExact(index, inserted, 0, i - rows / 2, (long) i);
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws Throwable {
+    CLOSE.invokeExact(index);
+    indexFile.delete();
+  }
+
+  @Benchmark
+  public int lookup() throws Throwable {
+    return search(keys[random.nextInt(rows)]);
+  }
+
+  @Benchmark
+  public int lookupMissing() throws Throwable {
+    return search(keys[random.nextInt(rows)] + 1);
+  }
+
+  /* Number of rows holding the key */
+  private int search(int value) throws Throwable {
+    boolean encoded =
+        (boolean) ENCODE_KEY.invokeExact(INT, (Object) String.valueOf(value), (Object) key);
+    Object found = (Object) SEARCH.invokeExact(index, (Object) key, true, (Object) key, true);
+    return encoded ? ((long[]) found).length : 0;
+  }
+}
@@ -0,0 +1,75 @@
+package benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The {@code InsertBenchmark} class measures bulk insert statements of 1, 100 and 1000 rows
+ * executed through the database, each committed on its own with a log write and an fsync. The
+ * statements are built before they are measured. The table is created in the {@code files/}
+ * directory of the working directory and dropped after the last iteration.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+public class InsertBenchmark {
+  /* Statements built up front and executed in turn */
+  private static final int STATEMENTS = 64;
+
+  @Param({"1", "100", "1000"})
+  public int rowsPerStatement;
+
+  @Param({"text", "paged"})
+  public String format;
+
+  private Object database;
+  private Object session;
+  private final String[] inserts = new String[STATEMENTS];
+  private int next;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Throwable {
+    Object[] opened = Engine.openSession();
+    database = opened[0];
+    session = opened[1];
+    Object storageFormat = (Object) Engine.STORAGE_FORMAT.invokeExact((Object) format);
+    Engine.GENERATE.invokeExact(database, session, storageFormat, (Object) "jmh_insert", 0L);
+    Random random = new Random(42);
+    for (int i = 0; i < STATEMENTS; i++) {
+      inserts[i] =
+          (String)
+              (Object)
+                  Engine.INSERT_STATEMENT.invokeExact(
+                      (Object) "jmh_insert",
+                      (long) i * rowsPerStatement,
+                      (long) rowsPerStatement,
+                      (Object) random);
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws Throwable {
+    Engine.DROP.invokeExact(database, session, (Object) "jmh_insert");
+  }
+
+  @Benchmark
+  public void insert() throws Throwable {
+    Engine.executeQuietly(database, session, inserts[next++ % STATEMENTS]);
+  }
+}
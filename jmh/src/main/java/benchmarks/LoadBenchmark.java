@@ -0,0 +1,105 @@
+package benchmarks;
+
+import java.io.BufferedWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The {@code LoadBenchmark} class measures {@code LOAD DATA} of a generated CSV file into an empty
+ * table, without an index and with an index on the id column that is rebuilt after the load. The
+ * table is created again before every load, outside of the measurement. It works on a table in the
+ * {@code files/} directory of the working directory, which is dropped after the last iteration,
+ * and loads a file written to the import directory.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LoadBenchmark {
+  private static final String IMPORT_DIRECTORY =
+      (String) Engine.constant("Constants", "IMPORT_DIRECTORY");
+
+  @Param({"100000"})
+  public long rows;
+
+  @Param({"text", "paged"})
+  public String format;
+
+  @Param({"false", "true"})
+  public boolean indexed;
+
+  private Object database;
+  private Object session;
+  private Object storageFormat;
+  private Path file;
+  private String load;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Throwable {
+    Object[] opened = Engine.openSession();
+    database = opened[0];
+    session = opened[1];
+    storageFormat = (Object) Engine.STORAGE_FORMAT.invokeExact((Object) format);
+    Path directory = Files.createDirectories(Path.of(IMPORT_DIRECTORY));
+    file = Files.createTempFile(directory, "jmh_load", ".csv");
+    writeFile(file, rows);
+    load = "load data infile '" + file.getFileName() + "' into table jmh_load with header;";
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws Throwable {
+    Engine.DROP.invokeExact(database, session, (Object) "jmh_load");
+    Files.deleteIfExists(file);
+  }
+
+  /* Every load gets an empty table of its own */
+  @Setup(Level.Iteration)
+  public void createTable() throws Throwable {
+    Engine.GENERATE.invokeExact(database, session, storageFormat, (Object) "jmh_load", 0L);
+    if (indexed) {
+      Engine.executeQuietly(database, session, "create index jmh_load_id on jmh_load(id);");
+    }
+  }
+
+  @Benchmark
+  public void load() throws Throwable {
+    Engine.executeQuietly(database, session, load);
+  }
+
+  /* Writes rows with the columns of the generated tables */
+  private static void writeFile(Path file, long rows) throws Exception {
+    Random random = new Random(rows);
+    try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+      writer.write("id,name,category,score\n");
+      for (long id = 0; id < rows; id++) {
+        writer.write(
+            id
+                + ",name"
+                + random.nextInt(1_000_000)
+                + ","
+                + id % 100
+                + ","
+                + Math.round(random.nextDouble() * 100_000) / 100.0
+                + "\n");
+      }
+    }
+  }
+}
@@ -0,0 +1,113 @@
+package benchmarks;
+
+import java.lang.invoke.MethodHandle;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The {@code LoginBenchmark} class measures the password check of a login through {@code
+ * UserServiceImplementation.authenticateUser}: the old MD5 hashes, PBKDF2 at several iteration
+ * counts, and a login answered by the credential cache. It adds a user to the user store in the
+ * {@code files/} directory of the working directory and drops it after the last iteration.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoginBenchmark {
+  private static final String PASSWORD = "bench-password";
+
+  /** {@code new Md5PasswordHasherImplementation()} */
+  private static final MethodHandle NEW_MD5_HASHER =
+      Engine.constructor("Md5PasswordHasherImplementation", 0);
+
+  /** {@code new Pbkdf2PasswordHasherImplementation(int iterations)} */
+  private static final MethodHandle NEW_PBKDF2_HASHER =
+      Engine.constructor("Pbkdf2PasswordHasherImplementation", 1);
+
+  /** {@code new UserServiceImplementation(PasswordHasher, long credentialCacheMillis)} */
+  private static final MethodHandle NEW_USER_SERVICE =
+      Engine.constructor("UserServiceImplementation", 2);
+
+  /** {@code new User(String username, String password, String email)} */
+  private static final MethodHandle NEW_USER = Engine.constructor("User", 3);
+
+  /** {@code userService.addUser(User)} */
+  private static final MethodHandle ADD_USER =
+      Engine.method("UserServiceImplementation", "addUser", 1);
+
+  /** {@code userService.removeUser(String username)} */
+  private static final MethodHandle REMOVE_USER =
+      Engine.method("UserServiceImplementation", "removeUser", 1);
+
+  /** {@code userService.getUserById(String userId)}, returns the username */
+  private static final MethodHandle GET_USER_BY_ID =
+      Engine.method("UserServiceImplementation", "getUserById", 1);
+
+  /** {@code userService.authenticateUser(String userId, String password)} */
+  private static final MethodHandle AUTHENTICATE_USER =
+      Engine.method("UserServiceImplementation", "authenticateUser", 2);
+
+  /**
+   * {@code md5}, a number of PBKDF2 iterations, {@code default} for the iterations of new
+   * passwords, or {@code cached} for those with the credential cache
+   */
+  @Param({"md5", "1000", "10000", "100000", "default", "cached"})
+  public String hasher;
+
+  private Object userService;
+  private String username;
+  private String userId;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Throwable {
+    int defaultIterations = (int) Engine.constant("Constants", "PASSWORD_HASH_ITERATIONS");
+    Object passwordHasher =
+        switch (hasher) {
+          case "md5" -> (Object) NEW_MD5_HASHER.invokeExact();
+          case "default", "cached" -> (Object) NEW_PBKDF2_HASHER.invokeExact(defaultIterations);
+          default -> (Object) NEW_PBKDF2_HASHER.invokeExact(Integer.parseInt(hasher));
+        };
+    long cacheMillis =
+        hasher.equals("cached")
+            ? (long) Engine.constant("Constants", "CREDENTIAL_CACHE_MILLIS")
+            : 0;
+    userService = (Object) NEW_USER_SERVICE.invokeExact(passwordHasher, cacheMillis);
+    username = "jmh_login_" + System.nanoTime();
+    Object user =
+        (Object) NEW_USER.invokeExact((Object) username, (Object) PASSWORD, (Object) null);
+    ADD_USER.invokeExact(userService, user);
+    for (int id = 1; userId == null; id++) {
+      Object found =
+          (Object) GET_USER_BY_ID.invokeExact(userService, (Object) String.valueOf(id));
+      if (username.equals(found)) {
+        userId = String.valueOf(id);
+      }
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws Throwable {
+    REMOVE_USER.invokeExact(userService, (Object) username);
+  }
+
+  @Benchmark
+  public boolean login() throws Throwable {
+    return (boolean)
+        AUTHENTICATE_USER.invokeExact(userService, (Object) userId, (Object) PASSWORD);
+  }
+}
@@ -0,0 +1,44 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The {@code ParseBenchmark} class measures turning query text into a statement, as the query
+ * processor does for every query, over a mixed statement corpus.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+public class ParseBenchmark {
+  private static final String[] CORPUS = {
+    "select * from orders;",
+    "select id, customer, total from orders where total > 100;",
+    "select name from customers where id = 42;",
+    "insert into orders values (1, 'alice', 10.5), (2, 'bob', 20), (3, 'carol', null);",
+    "create table orders (id int, customer varchar(40), total double, paid boolean);",
+    "drop table archive;",
+    "create index orders_total on orders(total);",
+    "begin transaction;",
+    "commit;"
+  };
+
+  private int next;
+
+  @Benchmark
+  public Object parse() throws Throwable {
+    String query = CORPUS[next++ % CORPUS.length];
+    return (Object) Engine.PARSE.invokeExact((Object) query);
+  }
+}
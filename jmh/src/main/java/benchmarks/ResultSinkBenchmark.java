@@ -0,0 +1,136 @@
+package benchmarks;
+
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+import java.lang.invoke.MethodHandle;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The {@code ResultSinkBenchmark} class measures writing a result of the benchmark table layout in
+ * every {@code ResultFormat}, and, for comparison, printing it one value at a time through a
+ * {@link PrintStream} as the console table was printed before. The output goes to a print stream
+ * that flushes like {@code System.out} over {@code /dev/null}, so the cost is the formatting and
+ * the calls reaching the stream, not a terminal.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResultSinkBenchmark {
+  /** {@code new TableSchema(List<String> columnNames, List<ColumnType> columnTypes)} */
+  private static final MethodHandle NEW_SCHEMA = Engine.constructor("TableSchema", 2);
+
+  /** {@code new ColumnarTable(TableSchema)} */
+  private static final MethodHandle NEW_TABLE = Engine.constructor("ColumnarTable", 1);
+
+  /** {@code table.appendRow(List<String>)} */
+  private static final MethodHandle APPEND_ROW = Engine.method("ColumnarTable", "appendRow", 1);
+
+  /** {@code table.getRowCount()} */
+  private static final MethodHandle ROW_COUNT = Engine.method("ColumnarTable", "getRowCount", 0);
+
+  /** {@code table.format(int column, int row)}, returns the value as text */
+  private static final MethodHandle FORMAT = Engine.method("ColumnarTable", "format", 2);
+
+  /** {@code new TableRowCursor(ColumnarTable)} */
+  private static final MethodHandle NEW_CURSOR = Engine.constructor("TableRowCursor", 1);
+
+  /** {@code new DataTableProcessAndPrint()} */
+  private static final MethodHandle NEW_PRINTER = Engine.constructor("DataTableProcessAndPrint", 0);
+
+  /** {@code printer.printTable(RowCursor, List<String> columns, ResultFormat, OutputStream)} */
+  private static final MethodHandle PRINT_TABLE =
+      Engine.method("DataTableProcessAndPrint", "printTable", 4);
+
+  private static final List<String> COLUMNS = List.of("id", "name", "category", "score");
+
+  /** {@code per-value} for the old console table, otherwise a {@code ResultFormat} */
+  @Param({"per-value", "TABLE", "CSV", "TSV", "JSON", "BINARY"})
+  public String format;
+
+  @Param({"100000"})
+  public int rows;
+
+  private Object table;
+  private Object printer;
+  private Object resultFormat;
+  private PrintStream console;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Throwable {
+    Object schema =
+        (Object)
+            NEW_SCHEMA.invokeExact(
+                (Object) COLUMNS,
+                (Object)
+                    List.of(
+                        Engine.constant("ColumnType", "INT"),
+                        Engine.constant("ColumnType", "VARCHAR"),
+                        Engine.constant("ColumnType", "INT"),
+                        Engine.constant("ColumnType", "DOUBLE")));
+    table = (Object) NEW_TABLE.invokeExact(schema);
+    Random random = new Random(42);
+    for (int id = 0; id < rows; id++) {
+      Object row =
+          List.of(
+              String.valueOf(id),
+              "name" + random.nextInt(1_000_000),
+              String.valueOf(id % 100),
+              String.valueOf(random.nextInt(100_000) / 100.0));
+      APPEND_ROW.invokeExact(table, row);
+    }
+    printer = (Object) NEW_PRINTER.invokeExact();
+    if (!format.equals("per-value")) {
+      resultFormat = Engine.constant("ResultFormat", format);
+    }
+    console = new PrintStream(new FileOutputStream("/dev/null"), true);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    console.close();
+  }
+
+  @Benchmark
+  public long write() throws Throwable {
+    if (resultFormat == null) {
+      return printPerValue();
+    }
+    Object cursor = (Object) NEW_CURSOR.invokeExact(table);
+    return (long)
+        PRINT_TABLE.invokeExact(printer, cursor, (Object) null, resultFormat, (Object) console);
+  }
+
+  /* The console table printed with a call per value, as before result sinks */
+  private long printPerValue() throws Throwable {
+    for (String column : COLUMNS) {
+      console.print("| " + column + "\t");
+    }
+    console.println("|");
+    int rowCount = (int) ROW_COUNT.invokeExact(table);
+    for (int row = 0; row < rowCount; row++) {
+      for (int column = 0; column < COLUMNS.size(); column++) {
+        console.print("| " + (String) (Object) FORMAT.invokeExact(table, column, row) + "\t");
+      }
+      console.println("|");
+    }
+    return rowCount;
+  }
+}
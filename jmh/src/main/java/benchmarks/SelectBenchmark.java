@@ -0,0 +1,75 @@
+package benchmarks;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The {@code SelectBenchmark} class measures {@code select} statements executed through the
+ * database, printing of the result included: a full scan, and a scan with a condition on the id.
+ * The table is generated by {@code TableGenerator} in the {@code files/} directory of the working
+ * directory before the first iteration, and dropped after the last. Larger tables, up to 10M
+ * rows, are measured with {@code -p rows=1000000,10000000}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+public class SelectBenchmark {
+  @Param({"1000", "10000", "100000"})
+  public long rows;
+
+  @Param({"text", "paged"})
+  public String format;
+
+  private Object database;
+  private Object session;
+  private String tableName;
+  private PrintStream console;
+  private long next;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Throwable {
+    Object[] opened = Engine.openSession();
+    database = opened[0];
+    session = opened[1];
+    tableName = "jmh_select_" + rows;
+    Object storageFormat = (Object) Engine.STORAGE_FORMAT.invokeExact((Object) format);
+    Engine.GENERATE.invokeExact(database, session, storageFormat, (Object) tableName, rows);
+    /* The printed results are part of the measured work, but are not shown */
+    console = System.out;
+    System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws Throwable {
+    System.setOut(console);
+    Engine.DROP.invokeExact(database, session, (Object) tableName);
+  }
+
+  @Benchmark
+  public void selectAll() throws Throwable {
+    Engine.EXECUTE.invokeExact(database, session, (Object) ("select * from " + tableName + ";"));
+  }
+
+  @Benchmark
+  public void selectWhere() throws Throwable {
+    String query = "select * from " + tableName + " where id = " + next++ % rows + ";";
+    Engine.EXECUTE.invokeExact(database, session, (Object) query);
+  }
+}
@@ -0,0 +1,64 @@
+package benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The {@code SerializerBenchmark} class measures the text table file format: serializing a row of
+ * the benchmark table layout into a line and deserializing a line into its values.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+public class SerializerBenchmark {
+  /* Distinct rows, so that the branches of a single row are not all the benchmark sees */
+  private static final int ROWS = 1_024;
+
+  private Object serializer;
+  private final List<List<String>> rows = new ArrayList<>(ROWS);
+  private final String[] lines = new String[ROWS];
+  private int next;
+
+  @Setup
+  public void setUp() throws Throwable {
+    serializer = (Object) Engine.NEW_SERIALIZER.invokeExact();
+    Random random = new Random(42);
+    for (int id = 0; id < ROWS; id++) {
+      List<String> row =
+          List.of(
+              String.valueOf(id),
+              "name" + random.nextInt(1_000_000),
+              String.valueOf(id % 100),
+              String.valueOf(random.nextInt(100_000) / 100.0));
+      rows.add(row);
+      lines[id] = (String) (Object) Engine.SERIALIZE_ROW.invokeExact(serializer, (Object) row);
+    }
+  }
+
+  @Benchmark
+  public Object serializeRow() throws Throwable {
+    Object row = rows.get(next++ & (ROWS - 1));
+    return (Object) Engine.SERIALIZE_ROW.invokeExact(serializer, row);
+  }
+
+  @Benchmark
+  public Object deserializeRow() throws Throwable {
+    Object line = lines[next++ & (ROWS - 1)];
+    return (Object) Engine.DESERIALIZE_ROW.invokeExact(serializer, line);
+  }
+}
@@ -0,0 +1,219 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The {@code ServerLoadBenchmark} class starts a {@code DatabaseServer} on a free port, keeps many
+ * logged-in connections open while they sit idle, and has 16 clients, one per benchmark thread, run
+ * inserts and selects against it at the same time. Before the first iteration it prints the heap
+ * used by every idle connection (both ends, as the clients run in the same process). It works on
+ * the tables in {@code files/} of the working directory, and logs in as a user it adds to the user
+ * store there and drops after the last iteration.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(16)
+public class ServerLoadBenchmark {
+  /** {@code new DatabaseServer(UserAuthenticationManager, int port)} */
+  private static final MethodHandle NEW_SERVER = Engine.constructor("DatabaseServer", 2);
+
+  /** {@code new UserAuthenticationManager(UserService, CaptchaService)} */
+  private static final MethodHandle NEW_AUTHENTICATION_MANAGER =
+      Engine.constructor("UserAuthenticationManager", 2);
+
+  /** {@code new UserServiceImplementation()} */
+  private static final MethodHandle NEW_USER_SERVICE =
+      Engine.constructor("UserServiceImplementation", 0);
+
+  /** {@code new User(String username, String password, String email)} */
+  private static final MethodHandle NEW_USER = Engine.constructor("User", 3);
+
+  /** {@code userService.addUser(User)} */
+  private static final MethodHandle ADD_USER =
+      Engine.method("UserServiceImplementation", "addUser", 1);
+
+  /** {@code userService.removeUser(String username)} */
+  private static final MethodHandle REMOVE_USER =
+      Engine.method("UserServiceImplementation", "removeUser", 1);
+
+  /** {@code userService.getUserById(String userId)}, returns the username */
+  private static final MethodHandle GET_USER_BY_ID =
+      Engine.method("UserServiceImplementation", "getUserById", 1);
+
+  /** {@code new CaptchaServiceImplementation()} */
+  private static final MethodHandle NEW_CAPTCHA_SERVICE =
+      Engine.constructor("CaptchaServiceImplementation", 0);
+
+  /** {@code server.serve()}, until the server is closed */
+  private static final MethodHandle SERVE = Engine.method("DatabaseServer", "serve", 0);
+
+  /** {@code server.getPort()} */
+  private static final MethodHandle GET_PORT = Engine.method("DatabaseServer", "getPort", 0);
+
+  /** {@code server.close()} */
+  private static final MethodHandle CLOSE_SERVER = Engine.method("DatabaseServer", "close", 0);
+
+  /** {@code new DatabaseClient(String host, int port)} */
+  private static final MethodHandle NEW_CLIENT = Engine.constructor("DatabaseClient", 2);
+
+  /** {@code client.getCaptcha()} */
+  private static final MethodHandle GET_CAPTCHA = Engine.method("DatabaseClient", "getCaptcha", 0);
+
+  /** {@code client.login(String userId, String password, String captchaAnswer)} */
+  private static final MethodHandle LOGIN = Engine.method("DatabaseClient", "login", 3);
+
+  /** {@code client.execute(String query)}, returns what the query printed */
+  private static final MethodHandle EXECUTE = Engine.method("DatabaseClient", "execute", 1);
+
+  /** {@code client.close()} */
+  private static final MethodHandle CLOSE_CLIENT = Engine.method("DatabaseClient", "close", 0);
+
+  /** The server and its idle connections, shared by the benchmark threads. */
+  @State(Scope.Benchmark)
+  public static class Server {
+    @Param({"2000"})
+    public int idleConnections;
+
+    private static final String PASSWORD = "bench-password";
+
+    private Object userService;
+    private String username;
+    private String userId;
+    private Object server;
+    private int port;
+    private final List<Object> idle = new ArrayList<>();
+    private final AtomicInteger nextClient = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+      userService = (Object) NEW_USER_SERVICE.invokeExact();
+      username = "jmh_server_" + System.nanoTime();
+      Object user =
+          (Object) NEW_USER.invokeExact((Object) username, (Object) PASSWORD, (Object) null);
+      ADD_USER.invokeExact(userService, user);
+      for (int id = 1; userId == null; id++) {
+        Object found =
+            (Object) GET_USER_BY_ID.invokeExact(userService, (Object) String.valueOf(id));
+        if (username.equals(found)) {
+          userId = String.valueOf(id);
+        }
+      }
+      Object authenticationManager =
+          (Object)
+              NEW_AUTHENTICATION_MANAGER.invokeExact(
+                  userService, (Object) NEW_CAPTCHA_SERVICE.invokeExact());
+      server = (Object) NEW_SERVER.invokeExact(authenticationManager, 0);
+      Thread.ofPlatform()
+          .daemon()
+          .start(
+              () -> {
+                try {
+                  SERVE.invokeExact(server);
+                } catch (Throwable e) {
+                  e.printStackTrace();
+                }
+              });
+      port = (int) GET_PORT.invokeExact(server);
+
+      Object setup = connect();
+      execute(setup, "drop table server_load;");
+      execute(setup, "create table server_load (id int, client int, name string);");
+      CLOSE_CLIENT.invokeExact(setup);
+
+      long heapBefore = usedHeap();
+      for (int i = 0; i < idleConnections; i++) {
+        idle.add(connect());
+      }
+      System.out.println(
+          "Heap per idle connection: " + (usedHeap() - heapBefore) / idleConnections + " bytes");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Throwable {
+      for (Object client : idle) {
+        CLOSE_CLIENT.invokeExact(client);
+      }
+      Object cleanup = connect();
+      execute(cleanup, "drop table server_load;");
+      CLOSE_CLIENT.invokeExact(cleanup);
+      CLOSE_SERVER.invokeExact(server);
+      REMOVE_USER.invokeExact(userService, (Object) username);
+    }
+
+    private Object connect() throws Throwable {
+      Object client = (Object) NEW_CLIENT.invokeExact((Object) "localhost", port);
+      Object captcha = (Object) GET_CAPTCHA.invokeExact(client);
+      if (!(boolean) LOGIN.invokeExact(client, (Object) userId, (Object) PASSWORD, captcha)) {
+        CLOSE_CLIENT.invokeExact(client);
+        throw new IOException("Login failed for user " + userId);
+      }
+      return client;
+    }
+
+    private static long usedHeap() throws InterruptedException {
+      Runtime runtime = Runtime.getRuntime();
+      for (int i = 0; i < 3; i++) {
+        System.gc();
+        Thread.sleep(100);
+      }
+      return runtime.totalMemory() - runtime.freeMemory();
+    }
+  }
+
+  /** The connection of a benchmark thread, which inserts rows and selects them again. */
+  @State(Scope.Thread)
+  public static class Client {
+    private Object client;
+    private int clientId;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp(Server server) throws Throwable {
+      client = server.connect();
+      clientId = server.nextClient.getAndIncrement();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Throwable {
+      CLOSE_CLIENT.invokeExact(client);
+    }
+  }
+
+  @Benchmark
+  public Object insertOrSelect(Client client) throws Throwable {
+    int q = client.next++;
+    int id = client.clientId;
+    String query =
+        q % 2 == 0
+            ? "insert into server_load values (" + q + ", " + id + ", 'name" + q + "');"
+            : "select * from server_load where client = " + id + " and id = " + (q - 1) + ";";
+    return execute(client.client, query);
+  }
+
+  /* What the query printed */
+  private static Object execute(Object client, String query) throws Throwable {
+    return (Object) EXECUTE.invokeExact(client, (Object) query);
+  }
+}
@@ -0,0 +1,88 @@
+package benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The {@code UpdateBenchmark} class measures updates and deletes of single rows found through an
+ * index: updates whose row fits into its old space, updates that move their row to the end of the
+ * table, and deletes. A row is moved or deleted only once, so every call is a single shot taking
+ * the next id. The bytes every statement type wrote are shown by {@code SHOW STATS}. The table is
+ * generated in the {@code files/} directory of the working directory and dropped after the last
+ * iteration; larger tables are measured with {@code -p rows=1000000}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 100)
+@Measurement(iterations = 1_000)
+@Fork(1)
+public class UpdateBenchmark {
+  private static final String LONG_NAME =
+      "a name longer than any generated one, so the row has to move";
+
+  @Param({"100000"})
+  public int rows;
+
+  @Param({"text", "paged"})
+  public String format;
+
+  private Object database;
+  private Object session;
+  private final Random random = new Random(42);
+  private long nextId;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Throwable {
+    Object[] opened = Engine.openSession();
+    database = opened[0];
+    session = opened[1];
+    Object storageFormat = (Object) Engine.STORAGE_FORMAT.invokeExact((Object) format);
+    Engine.GENERATE.invokeExact(
+        database, session, storageFormat, (Object) "jmh_update", (long) rows);
+    Engine.executeQuietly(database, session, "create index jmh_update_id on jmh_update(id);");
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws Throwable {
+    Engine.DROP.invokeExact(database, session, (Object) "jmh_update");
+  }
+
+  @Benchmark
+  public void updateInPlace() throws Throwable {
+    Engine.executeQuietly(
+        database,
+        session,
+        "update jmh_update set category = "
+            + random.nextInt(100)
+            + " where id = "
+            + random.nextInt(rows)
+            + ";");
+  }
+
+  @Benchmark
+  public void updateMoved() throws Throwable {
+    Engine.executeQuietly(
+        database,
+        session,
+        "update jmh_update set name = '" + LONG_NAME + "' where id = " + nextId++ + ";");
+  }
+
+  @Benchmark
+  public void delete() throws Throwable {
+    Engine.executeQuietly(database, session, "delete from jmh_update where id = " + nextId++ + ";");
+  }
+}
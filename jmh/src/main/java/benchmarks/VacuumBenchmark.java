@@ -0,0 +1,73 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The {@code VacuumBenchmark} class measures {@code VACUUM} of a table with an index on the id
+ * column: the live rows are copied into a new file and the index is rebuilt. Before every vacuum,
+ * outside of the measurement, the next twentieth of the rows is deleted. The table is generated in
+ * the {@code files/} directory of the working directory and dropped after the last iteration.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 10)
+@Fork(1)
+public class VacuumBenchmark {
+  /* Parts of the table deleted in turn, more than there are iterations */
+  private static final int PARTS = 20;
+
+  @Param({"100000"})
+  public long rows;
+
+  @Param({"text", "paged"})
+  public String format;
+
+  private Object database;
+  private Object session;
+  private long nextId;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Throwable {
+    Object[] opened = Engine.openSession();
+    database = opened[0];
+    session = opened[1];
+    Object storageFormat = (Object) Engine.STORAGE_FORMAT.invokeExact((Object) format);
+    Engine.GENERATE.invokeExact(database, session, storageFormat, (Object) "jmh_vacuum", rows);
+    Engine.executeQuietly(database, session, "create index jmh_vacuum_id on jmh_vacuum(id);");
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws Throwable {
+    Engine.DROP.invokeExact(database, session, (Object) "jmh_vacuum");
+  }
+
+  @Setup(Level.Iteration)
+  public void deleteRows() throws Throwable {
+    long firstId = nextId;
+    nextId += rows / PARTS;
+    Engine.executeQuietly(
+        database,
+        session,
+        "delete from jmh_vacuum where id >= " + firstId + " and id < " + nextId + ";");
+  }
+
+  @Benchmark
+  public void vacuum() throws Throwable {
+    Engine.executeQuietly(database, session, "vacuum jmh_vacuum;");
+  }
+}
@@ -0,0 +1,54 @@
+/**
+ * The {@code AggregateCursor} class groups the rows of another cursor and returns one row per
+ * group with its aggregates. The input is read completely when the first group is pulled.
+ */
+public class AggregateCursor implements RowCursor {
+  private final RowCursor input;
+  private final HashAggregator aggregator;
+  private ColumnarTable result;
+  private int row = -1;
+
+  /**
+   * @param input the rows to be aggregated
+   * @param aggregator an empty aggregator for the schema of the input
+   */
+  public AggregateCursor(RowCursor input, HashAggregator aggregator) {
+    this.input = input;
+    this.aggregator = aggregator;
+  }
+
+  @Override
+  public TableSchema getSchema() {
+    return aggregator.getOutputSchema();
+  }
+
+  @Override
+  public boolean next() {
+    if (result == null) {
+      while (input.next()) {
+        aggregator.add(input.getTable(), input.getRow());
+      }
+      result = aggregator.result();
+    }
+    if (row + 1 >= result.getRowCount()) {
+      return false;
+    }
+    row++;
+    return true;
+  }
+
+  @Override
+  public ColumnarTable getTable() {
+    return result;
+  }
+
+  @Override
+  public int getRow() {
+    return row;
+  }
+
+  @Override
+  public void close() {
+    input.close();
+  }
+}
@@ -0,0 +1,41 @@
+/**
+ * The {@code AggregateFunction} enum lists the functions a select can compute over the rows of a
+ * group. Null values are left out; an aggregate of a group without values is null, except for a
+ * count, which is 0.
+ */
+public enum AggregateFunction {
+  COUNT,
+  SUM,
+  AVG,
+  MIN,
+  MAX;
+
+  /**
+   * @param name the name of the function in a query
+   * @return the function, or {@code null} if there is none of that name
+   */
+  public static AggregateFunction fromName(String name) {
+    for (AggregateFunction function : values()) {
+      if (function.name().equalsIgnoreCase(name)) {
+        return function;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @param input type of the aggregated column, {@code null} for {@code COUNT(*)}
+   * @return type of the result, or {@code null} if the function does not apply to the type
+   */
+  public ColumnType resultType(ColumnType input) {
+    return switch (this) {
+      case COUNT -> ColumnType.BIGINT;
+      case SUM ->
+          !input.isNumeric()
+              ? null
+              : input == ColumnType.DOUBLE ? ColumnType.DOUBLE : ColumnType.BIGINT;
+      case AVG -> input.isNumeric() ? ColumnType.DOUBLE : null;
+      case MIN, MAX -> input;
+    };
+  }
+}
@@ -0,0 +1,64 @@
+/**
+ * The {@code AnalyzeRowCursor} class counts the rows another cursor passes on and the time spent
+ * pulling them, for {@code EXPLAIN ANALYZE}. The time includes the cursors it pulls from and the
+ * time it took to open the scan at the bottom of the plan.
+ */
+public class AnalyzeRowCursor implements RowCursor {
+  private final RowCursor source;
+  private long rows;
+  private long nanos;
+
+  /**
+   * @param source the cursor
+   * @param openNanos time spent opening the scan the cursor pulls from
+   */
+  public AnalyzeRowCursor(RowCursor source, long openNanos) {
+    this.source = source;
+    this.nanos = openNanos;
+  }
+
+  @Override
+  public TableSchema getSchema() {
+    return source.getSchema();
+  }
+
+  @Override
+  public boolean next() {
+    long start = System.nanoTime();
+    boolean found = source.next();
+    nanos += System.nanoTime() - start;
+    if (found) {
+      rows++;
+    }
+    return found;
+  }
+
+  @Override
+  public ColumnarTable getTable() {
+    return source.getTable();
+  }
+
+  @Override
+  public int getRow() {
+    return source.getRow();
+  }
+
+  @Override
+  public void close() {
+    source.close();
+  }
+
+  /**
+   * @return rows passed on so far
+   */
+  public long getRows() {
+    return rows;
+  }
+
+  /**
+   * @return nanoseconds spent opening the scan and in {@link #next()} so far
+   */
+  public long getNanos() {
+    return nanos;
+  }
+}
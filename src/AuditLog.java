@@ -0,0 +1,256 @@
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The {@code AuditLog} class writes a line to the audit log for every statement that changes or
+ * reads the database, without making the statement wait for the disk. A statement only puts a
+ * small record, the event, the time, the user and the arguments as they are, into a bounded
+ * lock-free ring buffer. A writer thread takes the records out in batches, formats them and writes
+ * each batch with one write, so the text of a record, such as the values of a large insert, is
+ * built on the writer thread and not on the thread of the statement.
+ *
+ * <p>When the buffer is full, statements either wait for the writer to make room, which keeps
+ * every record, or drop their record, which never delays them; the writer logs how many records
+ * were dropped. Collections in the arguments are cut off after {@value #MAX_ARGUMENT_CHARS}
+ * characters.
+ */
+public class AuditLog implements AutoCloseable {
+  /* Time the writer sleeps when the buffer is empty, records reach the file at most this late */
+  private static final long WRITER_SLEEP_NANOS = 10_000_000;
+  /* Time a statement waits for room before looking again when the buffer is full */
+  private static final long FULL_WAIT_NANOS = 50_000;
+  private static final int MAX_BATCH_RECORDS = 1024;
+  private static final int MAX_ARGUMENT_CHARS = 1000;
+
+  /** What happens to a record when the buffer is full. */
+  public enum OverflowPolicy {
+    /* The statement waits until the writer makes room */
+    BLOCK,
+    /* The record is dropped and counted */
+    DROP
+  }
+
+  /** The events that are audited, with the text their arguments are put into at the {}. */
+  public enum Event {
+    TABLE_CREATED("Table created: {} with columns: {}"),
+    TABLE_DROPPED("Table dropped: {}"),
+    TABLE_QUERIED("Table queries: {} with columns: {} and condition {}"),
+    TABLES_JOINED("Tables joined: {} and {} with columns: {}"),
+    TABLE_ANALYZED("Table analyzed: {}"),
+    VALUES_INSERTED("Values inserted into {} with values: {}"),
+    ROWS_LOADED("Rows loaded into {} from {}: {}"),
+    ROWS_UPDATED("Rows updated in {} with values: {} and condition {}: {}"),
+    ROWS_DELETED("Rows deleted from {} with condition {}: {}"),
+    TABLE_VACUUMED("Table vacuumed: {}, {} bytes reclaimed"),
+    INDEX_CREATED("Index created: {} on {}({})"),
+    INDEX_DROPPED("Index dropped: {}");
+
+    private final String template;
+
+    Event(String template) {
+      this.template = template;
+    }
+  }
+
+  /* A record as the statement leaves it, formatted by the writer */
+  private record Entry(long time, Event event, String user, Object[] arguments) {}
+
+  private final String filePath;
+  private final OverflowPolicy overflowPolicy;
+
+  /* Ring buffer: a slot may be written at position p when its sequence is p, read when p + 1 */
+  private final Object[] slots;
+  private final AtomicLongArray sequences;
+  private final int mask;
+  private final AtomicLong tail = new AtomicLong();
+  /* Only the writer thread reads */
+  private long head;
+
+  private final LongAdder dropped = new LongAdder();
+  private long reportedDropped;
+  private final Thread writer;
+  private volatile boolean closed;
+
+  /**
+   * Starts the writer thread.
+   *
+   * @param filePath file the records are appended to
+   * @param capacity records the buffer holds, rounded up to a power of two
+   * @param overflowPolicy what happens to a record when the buffer is full
+   */
+  public AuditLog(String filePath, int capacity, OverflowPolicy overflowPolicy) {
+    this.filePath = filePath;
+    this.overflowPolicy = overflowPolicy;
+    int size = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+    this.slots = new Object[size];
+    this.sequences = new AtomicLongArray(size);
+    for (int i = 0; i < size; i++) {
+      sequences.set(i, i);
+    }
+    this.mask = size - 1;
+    this.writer = Thread.ofPlatform().name("audit-log").daemon().start(this::write);
+  }
+
+  /**
+   * Audits an event. The arguments are formatted later on the writer thread, so they must not be
+   * changed afterwards.
+   *
+   * @param event the event
+   * @param user user who caused the event
+   * @param arguments values put into the text of the event, in order
+   */
+  public void log(Event event, String user, Object... arguments) {
+    if (closed) {
+      return;
+    }
+    Entry entry = new Entry(System.currentTimeMillis(), event, user, arguments);
+    while (!offer(entry)) {
+      if (overflowPolicy == OverflowPolicy.DROP || closed) {
+        dropped.increment();
+        return;
+      }
+      LockSupport.unpark(writer);
+      LockSupport.parkNanos(FULL_WAIT_NANOS);
+    }
+  }
+
+  /** Writes the records in the buffer and stops the writer thread. */
+  @Override
+  public void close() {
+    closed = true;
+    LockSupport.unpark(writer);
+    boolean interrupted = false;
+    while (writer.isAlive()) {
+      try {
+        writer.join();
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private boolean offer(Entry entry) {
+    long position = tail.get();
+    while (true) {
+      int index = (int) (position & mask);
+      long difference = sequences.get(index) - position;
+      if (difference == 0) {
+        if (tail.compareAndSet(position, position + 1)) {
+          slots[index] = entry;
+          /* Publishes the entry to the writer */
+          sequences.set(index, position + 1);
+          return true;
+        }
+        position = tail.get();
+      } else if (difference < 0) {
+        /* The slot still holds the entry of the previous round, the buffer is full */
+        return false;
+      } else {
+        /* Another statement took the position */
+        position = tail.get();
+      }
+    }
+  }
+
+  private Entry poll() {
+    int index = (int) (head & mask);
+    if (sequences.get(index) != head + 1) {
+      return null;
+    }
+    Entry entry = (Entry) slots[index];
+    slots[index] = null;
+    /* Frees the slot for the position one round later */
+    sequences.set(index, head + slots.length);
+    head++;
+    return entry;
+  }
+
+  /* The writer thread: takes batches of records out of the buffer and appends them to the file */
+  private void write() {
+    StringBuilder batch = new StringBuilder(64 * 1024);
+    try (FileOutputStream fileOutputStream = new FileOutputStream(filePath, true)) {
+      while (true) {
+        boolean closing = closed;
+        int count = 0;
+        Entry entry;
+        while (count < MAX_BATCH_RECORDS && (entry = poll()) != null) {
+          format(entry, batch);
+          count++;
+        }
+        long droppedNow = dropped.sum();
+        if (droppedNow != reportedDropped) {
+          batch
+              .append(Instant.now())
+              .append(" WARNING ")
+              .append(droppedNow - reportedDropped)
+              .append(" audit records dropped, the buffer was full\n");
+          reportedDropped = droppedNow;
+        }
+        if (!batch.isEmpty()) {
+          fileOutputStream.write(batch.toString().getBytes(StandardCharsets.UTF_8));
+          batch.setLength(0);
+        }
+        if (count == MAX_BATCH_RECORDS) {
+          continue;
+        }
+        if (closing) {
+          return;
+        }
+        LockSupport.parkNanos(WRITER_SLEEP_NANOS);
+      }
+    } catch (IOException e) {
+      System.out.println("Failed to write the audit log " + filePath);
+      e.printStackTrace();
+      /* Nothing takes records out any more, statements must not wait for room */
+      closed = true;
+    }
+  }
+
+  private static void format(Entry entry, StringBuilder batch) {
+    batch.append(Instant.ofEpochMilli(entry.time())).append(" INFO ");
+    String template = entry.event().template;
+    int argument = 0;
+    int start = 0;
+    int placeholder;
+    while ((placeholder = template.indexOf("{}", start)) != -1) {
+      batch.append(template, start, placeholder);
+      Object value = argument < entry.arguments().length ? entry.arguments()[argument++] : null;
+      appendValue(batch, value, batch.length() + MAX_ARGUMENT_CHARS);
+      start = placeholder + 2;
+    }
+    batch.append(template, start, template.length());
+    batch.append(" by ").append(entry.user()).append('\n');
+  }
+
+  /* Appends a value like String.valueOf, collections only up to the limit of the builder length */
+  private static void appendValue(StringBuilder batch, Object value, int limit) {
+    if (!(value instanceof Collection<?> collection)) {
+      batch.append(value);
+      return;
+    }
+    batch.append('[');
+    int written = 0;
+    for (Object element : collection) {
+      if (batch.length() >= limit) {
+        batch.append("... ").append(collection.size() - written).append(" more");
+        break;
+      }
+      if (written > 0) {
+        batch.append(", ");
+      }
+      appendValue(batch, element, limit);
+      written++;
+    }
+    batch.append(']');
+  }
+}
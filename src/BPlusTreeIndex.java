@@ -0,0 +1,675 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * The {@code BPlusTreeIndex} class is a secondary index on one column of a table, stored as a
+ * B+-tree of fixed-size pages in its own file next to the table file. Every entry maps a key to the
+ * id of a row (see {@link TableStorage#loadRowIds()}); equal keys are ordered by row id so every
+ * entry is unique.
+ *
+ * <p>Keys are 16 bytes compared as unsigned numbers. Numbers are mapped to an order preserving
+ * unsigned form; strings keep their first 16 UTF-8 bytes, so a string key can match more rows than
+ * the value looked up and the rows found have to be checked again against the condition.
+ *
+ * <p>Page 0 is the file header. Every node page starts with a leaf flag, the entry count and, for
+ * leaves, the page of the next leaf. Leaves hold (key, row id) entries, inner nodes hold the first
+ * child page followed by (separator entry, child page) pairs.
+ */
+public class BPlusTreeIndex implements Closeable {
+  private static final int PAGE_SIZE = 4096;
+  private static final int MAGIC = 0x4C444249;
+  private static final int VERSION = 1;
+  private static final int NODE_HEADER_SIZE = 16;
+  private static final int ENTRY_SIZE = 24;
+  private static final int LEAF_CAPACITY = (PAGE_SIZE - NODE_HEADER_SIZE) / ENTRY_SIZE;
+  private static final int INNER_CAPACITY = (PAGE_SIZE - NODE_HEADER_SIZE - 8) / (ENTRY_SIZE + 8);
+  private static final long NO_PAGE = -1;
+
+  private final String filePath;
+  private final FileChannel channel;
+  private final String indexName;
+  private final String tableName;
+  private final String columnName;
+  private final ColumnType keyType;
+  private long rootPage;
+  private long pageCount;
+
+  private BPlusTreeIndex(
+      String filePath,
+      FileChannel channel,
+      String indexName,
+      String tableName,
+      String columnName,
+      ColumnType keyType) {
+    this.filePath = filePath;
+    this.channel = channel;
+    this.indexName = indexName;
+    this.tableName = tableName;
+    this.columnName = columnName;
+    this.keyType = keyType;
+  }
+
+  /**
+   * Builds a new index file bottom-up from the keys of all rows of the table.
+   *
+   * @param filePath path of the index file
+   * @param indexName name of the index
+   * @param tableName name of the indexed table
+   * @param columnName name of the indexed column
+   * @param table the table, holding at least the indexed column
+   * @param rowIds the id of every row of the table
+   * @return the open index
+   * @throws IOException if the index file could not be written
+   */
+  public static BPlusTreeIndex create(
+      String filePath,
+      String indexName,
+      String tableName,
+      String columnName,
+      ColumnarTable table,
+      long[] rowIds)
+      throws IOException {
+    int column = table.getSchema().indexOf(columnName);
+    ColumnType keyType = table.getSchema().getColumnType(column);
+
+    /* Null values are not indexed */
+    int entryCount = 0;
+    long[] his = new long[table.getRowCount()];
+    long[] los = new long[table.getRowCount()];
+    long[] ids = new long[table.getRowCount()];
+    long[] key = new long[2];
+    for (int row = 0; row < table.getRowCount(); row++) {
+      if (table.isNull(column, row)) {
+        continue;
+      }
+      encodeKey(table, column, row, key);
+      his[entryCount] = key[0];
+      los[entryCount] = key[1];
+      ids[entryCount] = rowIds[row];
+      entryCount++;
+    }
+    sortEntries(his, los, ids, entryCount);
+
+    FileChannel channel =
+        FileChannel.open(
+            Path.of(filePath),
+            StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+    BPlusTreeIndex index =
+        new BPlusTreeIndex(filePath, channel, indexName, tableName, columnName, keyType);
+    index.pageCount = 1;
+    index.bulkLoad(his, los, ids, entryCount);
+    index.writeHeader();
+    return index;
+  }
+
+  /**
+   * Opens an existing index file.
+   *
+   * @param filePath path of the index file
+   * @return the open index
+   * @throws IOException if the file could not be read or is not an index file
+   */
+  public static BPlusTreeIndex open(String filePath) throws IOException {
+    FileChannel channel =
+        FileChannel.open(Path.of(filePath), StandardOpenOption.READ, StandardOpenOption.WRITE);
+    ByteBuffer header = ByteBuffer.allocate(PAGE_SIZE);
+    channel.read(header, 0);
+    header.flip();
+    if (header.remaining() < PAGE_SIZE || header.getInt() != MAGIC || header.getInt() != VERSION) {
+      channel.close();
+      throw new IOException("Not an index file: " + filePath);
+    }
+    ColumnType keyType = ColumnType.values()[header.get()];
+    long rootPage = header.getLong();
+    long pageCount = header.getLong();
+    String indexName = readString(header);
+    String tableName = readString(header);
+    String columnName = readString(header);
+
+    BPlusTreeIndex index =
+        new BPlusTreeIndex(filePath, channel, indexName, tableName, columnName, keyType);
+    index.rootPage = rootPage;
+    index.pageCount = pageCount;
+    return index;
+  }
+
+  public String getFilePath() {
+    return filePath;
+  }
+
+  public String getIndexName() {
+    return indexName;
+  }
+
+  public String getTableName() {
+    return tableName;
+  }
+
+  public String getColumnName() {
+    return columnName;
+  }
+
+  public ColumnType getKeyType() {
+    return keyType;
+  }
+
+  /**
+   * Adds the entry of a new row. The key is taken from the typed value, as when the index was
+   * created, so that {@link #delete(ColumnarTable, int, int, long)} finds it again.
+   *
+   * @param table table holding the row
+   * @param column the indexed column of the table
+   * @param row the row in the table
+   * @param rowId id of the row
+   * @throws IOException if the index file could not be written
+   */
+  public synchronized void insert(ColumnarTable table, int column, int row, long rowId)
+      throws IOException {
+    if (table.isNull(column, row)) {
+      return;
+    }
+    long[] key = new long[2];
+    encodeKey(table, column, row, key);
+    Split split = insert(rootPage, key[0], key[1], rowId);
+    if (split != null) {
+      Node root = new Node(false);
+      root.page = pageCount++;
+      root.count = 1;
+      root.children[0] = rootPage;
+      root.his[0] = split.hi;
+      root.los[0] = split.lo;
+      root.ids[0] = split.id;
+      root.children[1] = split.rightPage;
+      writeNode(root);
+      rootPage = root.page;
+    }
+    writeHeader();
+  }
+
+  /**
+   * Removes the entry of a row that was deleted or changed. The leaf keeps its place in the tree
+   * even when it becomes empty; leaves are not merged, an index that shrank a lot is made compact
+   * again by creating it anew.
+   *
+   * @param table table holding the row as it was indexed
+   * @param column the indexed column of the table
+   * @param row the row in the table
+   * @param rowId id of the row
+   * @return whether the entry was found, or the value is null and has no entry
+   * @throws IOException if the index file could not be written
+   */
+  public synchronized boolean delete(ColumnarTable table, int column, int row, long rowId)
+      throws IOException {
+    if (table.isNull(column, row)) {
+      return true;
+    }
+    long[] key = new long[2];
+    encodeKey(table, column, row, key);
+    /* Descend as the entry was inserted */
+    long hi = key[0];
+    long lo = key[1];
+    Node node = readNode(rootPage);
+    while (!node.leaf) {
+      int child = 0;
+      while (child < node.count
+          && compareEntries(node.his[child], node.los[child], node.ids[child], hi, lo, rowId) <= 0) {
+        child++;
+      }
+      node = readNode(node.children[child]);
+    }
+    for (int i = 0; i < node.count; i++) {
+      if (compareEntries(node.his[i], node.los[i], node.ids[i], hi, lo, rowId) == 0) {
+        node.removeEntry(i);
+        writeNode(node);
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Forces the index file to disk.
+   *
+   * @throws IOException if the file cannot be forced
+   */
+  public synchronized void sync() throws IOException {
+    channel.force(false);
+  }
+
+  /**
+   * Finds the rows whose key lies in the range. A {@code null} bound leaves that side open.
+   *
+   * @param low lower bound as returned by {@link #encodeKey(ColumnType, String, long[])}
+   * @param lowInclusive whether rows equal to the lower bound are included
+   * @param high upper bound
+   * @param highInclusive whether rows equal to the upper bound are included
+   * @return the ids of the matching rows in key order
+   * @throws IOException if the index file could not be read
+   */
+  public synchronized long[] search(long[] low, boolean lowInclusive, long[] high, boolean highInclusive)
+      throws IOException {
+    /* Descend to the leftmost leaf that can hold the lower bound */
+    Node node = readNode(rootPage);
+    while (!node.leaf) {
+      int child = 0;
+      while (low != null
+          && child < node.count
+          && compareKeys(node.his[child], node.los[child], low[0], low[1]) < 0) {
+        child++;
+      }
+      node = readNode(node.children[child]);
+    }
+
+    long[] rowIds = new long[16];
+    int found = 0;
+    while (true) {
+      for (int i = 0; i < node.count; i++) {
+        if (low != null) {
+          int comparison = compareKeys(node.his[i], node.los[i], low[0], low[1]);
+          if (comparison < 0 || (comparison == 0 && !lowInclusive)) {
+            continue;
+          }
+        }
+        if (high != null) {
+          int comparison = compareKeys(node.his[i], node.los[i], high[0], high[1]);
+          if (comparison > 0 || (comparison == 0 && !highInclusive)) {
+            return Arrays.copyOf(rowIds, found);
+          }
+        }
+        if (found == rowIds.length) {
+          rowIds = Arrays.copyOf(rowIds, rowIds.length * 2);
+        }
+        rowIds[found++] = node.ids[i];
+      }
+      if (node.next == NO_PAGE) {
+        return Arrays.copyOf(rowIds, found);
+      }
+      node = readNode(node.next);
+    }
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    channel.close();
+  }
+
+  /**
+   * Maps a value to its index key.
+   *
+   * @param type type of the column
+   * @param value the value as written in a statement
+   * @param key receives the two halves of the key
+   * @return {@code false} if the value is null and has no key
+   * @throws NumberFormatException if the value does not match the type
+   */
+  public static boolean encodeKey(ColumnType type, String value, long[] key) {
+    if (value == null) {
+      return false;
+    }
+    String trimmed = value.trim();
+    if (type != ColumnType.VARCHAR && (trimmed.isEmpty() || trimmed.equalsIgnoreCase("null"))) {
+      return false;
+    }
+    switch (type) {
+      case INT, BIGINT -> encodeLong(Long.parseLong(trimmed), key);
+      case DOUBLE -> encodeDouble(Double.parseDouble(trimmed), key);
+      case BOOLEAN -> encodeLong(ColumnarTable.parseBoolean(trimmed) ? 1 : 0, key);
+      case VARCHAR -> encodeString(trimmed, key);
+    }
+    return true;
+  }
+
+  private static void encodeKey(ColumnarTable table, int column, int row, long[] key) {
+    switch (table.getSchema().getColumnType(column)) {
+      case INT -> encodeLong(table.getInt(column, row), key);
+      case BIGINT -> encodeLong(table.getLong(column, row), key);
+      case DOUBLE -> encodeDouble(table.getDouble(column, row), key);
+      case BOOLEAN -> encodeLong(table.getBoolean(column, row) ? 1 : 0, key);
+      case VARCHAR -> encodeString(table.getString(column, row).trim(), key);
+    }
+  }
+
+  private static void encodeLong(long value, long[] key) {
+    key[0] = value ^ Long.MIN_VALUE;
+    key[1] = 0;
+  }
+
+  private static void encodeDouble(double value, long[] key) {
+    long bits = Double.doubleToLongBits(value);
+    /* Negative numbers get all bits flipped, positive ones only the sign bit */
+    key[0] = bits ^ ((bits >> 63) | Long.MIN_VALUE);
+    key[1] = 0;
+  }
+
+  private static void encodeString(String value, long[] key) {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    key[0] = 0;
+    key[1] = 0;
+    for (int i = 0; i < 16 && i < bytes.length; i++) {
+      int shift = 56 - 8 * (i % 8);
+      key[i / 8] |= (bytes[i] & 0xFFL) << shift;
+    }
+  }
+
+  private static int compareKeys(long hi1, long lo1, long hi2, long lo2) {
+    int comparison = Long.compareUnsigned(hi1, hi2);
+    return comparison != 0 ? comparison : Long.compareUnsigned(lo1, lo2);
+  }
+
+  private static int compareEntries(long hi1, long lo1, long id1, long hi2, long lo2, long id2) {
+    int comparison = compareKeys(hi1, lo1, hi2, lo2);
+    return comparison != 0 ? comparison : Long.compare(id1, id2);
+  }
+
+  /* Insertion */
+
+  private Split insert(long page, long hi, long lo, long id) throws IOException {
+    Node node = readNode(page);
+    if (node.leaf) {
+      int position = 0;
+      while (position < node.count
+          && compareEntries(node.his[position], node.los[position], node.ids[position], hi, lo, id)
+              < 0) {
+        position++;
+      }
+      node.insertEntry(position, hi, lo, id);
+      if (node.count <= LEAF_CAPACITY) {
+        writeNode(node);
+        return null;
+      }
+
+      Node right = new Node(true);
+      right.page = pageCount++;
+      int middle = node.count / 2;
+      right.copyEntries(node, middle, node.count - middle);
+      node.count = middle;
+      right.next = node.next;
+      node.next = right.page;
+      writeNode(node);
+      writeNode(right);
+      return new Split(right.his[0], right.los[0], right.ids[0], right.page);
+    }
+
+    int child = 0;
+    while (child < node.count
+        && compareEntries(node.his[child], node.los[child], node.ids[child], hi, lo, id) <= 0) {
+      child++;
+    }
+    Split split = insert(node.children[child], hi, lo, id);
+    if (split == null) {
+      return null;
+    }
+
+    node.insertEntry(child, split.hi, split.lo, split.id);
+    System.arraycopy(node.children, child + 1, node.children, child + 2, node.count - child - 1);
+    node.children[child + 1] = split.rightPage;
+    if (node.count <= INNER_CAPACITY) {
+      writeNode(node);
+      return null;
+    }
+
+    /* The middle separator moves up, the entries after it go to the new right node */
+    Node right = new Node(false);
+    right.page = pageCount++;
+    int middle = node.count / 2;
+    right.copyEntries(node, middle + 1, node.count - middle - 1);
+    System.arraycopy(node.children, middle + 1, right.children, 0, node.count - middle);
+    Split promoted =
+        new Split(node.his[middle], node.los[middle], node.ids[middle], right.page);
+    node.count = middle;
+    writeNode(node);
+    writeNode(right);
+    return promoted;
+  }
+
+  /* Bulk loading */
+
+  private void bulkLoad(long[] his, long[] los, long[] ids, int entryCount) throws IOException {
+    /* Leaves are filled completely and written in key order, each pointing to the next page */
+    int leafCount = Math.max(1, (entryCount + LEAF_CAPACITY - 1) / LEAF_CAPACITY);
+    long[] levelPages = new long[leafCount];
+    long[][] levelKeys = new long[3][leafCount];
+    for (int leafIndex = 0; leafIndex < leafCount; leafIndex++) {
+      Node leaf = new Node(true);
+      leaf.page = pageCount++;
+      int start = leafIndex * LEAF_CAPACITY;
+      leaf.count = Math.min(LEAF_CAPACITY, entryCount - start);
+      System.arraycopy(his, start, leaf.his, 0, leaf.count);
+      System.arraycopy(los, start, leaf.los, 0, leaf.count);
+      System.arraycopy(ids, start, leaf.ids, 0, leaf.count);
+      leaf.next = leafIndex == leafCount - 1 ? NO_PAGE : leaf.page + 1;
+      writeNode(leaf);
+
+      levelPages[leafIndex] = leaf.page;
+      if (leaf.count > 0) {
+        levelKeys[0][leafIndex] = leaf.his[0];
+        levelKeys[1][leafIndex] = leaf.los[0];
+        levelKeys[2][leafIndex] = leaf.ids[0];
+      }
+    }
+
+    /* Every upper level groups the nodes below it evenly, so no node is left with one child */
+    while (levelPages.length > 1) {
+      int groupCount = (levelPages.length + INNER_CAPACITY) / (INNER_CAPACITY + 1);
+      long[] upperPages = new long[groupCount];
+      long[][] upperKeys = new long[3][groupCount];
+      int start = 0;
+      for (int group = 0; group < groupCount; group++) {
+        int size = (levelPages.length - start) / (groupCount - group);
+        Node node = new Node(false);
+        node.page = pageCount++;
+        node.count = size - 1;
+        for (int i = 0; i < size; i++) {
+          node.children[i] = levelPages[start + i];
+          if (i > 0) {
+            node.his[i - 1] = levelKeys[0][start + i];
+            node.los[i - 1] = levelKeys[1][start + i];
+            node.ids[i - 1] = levelKeys[2][start + i];
+          }
+        }
+        writeNode(node);
+        upperPages[group] = node.page;
+        upperKeys[0][group] = levelKeys[0][start];
+        upperKeys[1][group] = levelKeys[1][start];
+        upperKeys[2][group] = levelKeys[2][start];
+        start += size;
+      }
+      levelPages = upperPages;
+      levelKeys = upperKeys;
+    }
+    rootPage = levelPages[0];
+  }
+
+  /* Stable merge sort of the entries by key, the row ids are already ascending */
+  private static void sortEntries(long[] his, long[] los, long[] ids, int entryCount) {
+    int[] order = new int[entryCount];
+    for (int i = 0; i < entryCount; i++) {
+      order[i] = i;
+    }
+    int[] buffer = new int[entryCount];
+    for (int width = 1; width < entryCount; width *= 2) {
+      for (int start = 0; start < entryCount; start += 2 * width) {
+        int middle = Math.min(start + width, entryCount);
+        int end = Math.min(start + 2 * width, entryCount);
+        int left = start;
+        int right = middle;
+        int target = start;
+        while (left < middle && right < end) {
+          buffer[target++] =
+              compareKeys(his[order[right]], los[order[right]], his[order[left]], los[order[left]])
+                      < 0
+                  ? order[right++]
+                  : order[left++];
+        }
+        while (left < middle) {
+          buffer[target++] = order[left++];
+        }
+        while (right < end) {
+          buffer[target++] = order[right++];
+        }
+      }
+      int[] swap = order;
+      order = buffer;
+      buffer = swap;
+    }
+
+    long[] sorted = new long[entryCount];
+    for (long[] values : new long[][] {his, los, ids}) {
+      for (int i = 0; i < entryCount; i++) {
+        sorted[i] = values[order[i]];
+      }
+      System.arraycopy(sorted, 0, values, 0, entryCount);
+    }
+  }
+
+  /* Page access */
+
+  private Node readNode(long page) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(PAGE_SIZE);
+    long position = page * PAGE_SIZE;
+    while (buffer.hasRemaining() && channel.read(buffer, position + buffer.position()) > 0) {
+      /* Read the whole page */
+    }
+
+    Node node = new Node(buffer.get(0) == 1);
+    node.page = page;
+    node.count = buffer.getInt(4);
+    node.next = buffer.getLong(8);
+    int offset = NODE_HEADER_SIZE;
+    if (!node.leaf) {
+      node.children[0] = buffer.getLong(offset);
+      offset += 8;
+    }
+    for (int i = 0; i < node.count; i++) {
+      node.his[i] = buffer.getLong(offset);
+      node.los[i] = buffer.getLong(offset + 8);
+      node.ids[i] = buffer.getLong(offset + 16);
+      offset += ENTRY_SIZE;
+      if (!node.leaf) {
+        node.children[i + 1] = buffer.getLong(offset);
+        offset += 8;
+      }
+    }
+    return node;
+  }
+
+  private void writeNode(Node node) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(PAGE_SIZE);
+    buffer.put(0, (byte) (node.leaf ? 1 : 0));
+    buffer.putInt(4, node.count);
+    buffer.putLong(8, node.next);
+    int offset = NODE_HEADER_SIZE;
+    if (!node.leaf) {
+      buffer.putLong(offset, node.children[0]);
+      offset += 8;
+    }
+    for (int i = 0; i < node.count; i++) {
+      buffer.putLong(offset, node.his[i]);
+      buffer.putLong(offset + 8, node.los[i]);
+      buffer.putLong(offset + 16, node.ids[i]);
+      offset += ENTRY_SIZE;
+      if (!node.leaf) {
+        buffer.putLong(offset, node.children[i + 1]);
+        offset += 8;
+      }
+    }
+    writePage(buffer, node.page);
+  }
+
+  private void writeHeader() throws IOException {
+    ByteBuffer header = ByteBuffer.allocate(PAGE_SIZE);
+    header.putInt(MAGIC).putInt(VERSION).put((byte) keyType.ordinal());
+    header.putLong(rootPage).putLong(pageCount);
+    writeString(header, indexName);
+    writeString(header, tableName);
+    writeString(header, columnName);
+    writePage(header, 0);
+  }
+
+  private void writePage(ByteBuffer buffer, long page) throws IOException {
+    buffer.clear();
+    long position = page * PAGE_SIZE;
+    while (buffer.hasRemaining()) {
+      position += channel.write(buffer, position);
+    }
+  }
+
+  private static void writeString(ByteBuffer buffer, String value) {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    buffer.putShort((short) bytes.length).put(bytes);
+  }
+
+  private static String readString(ByteBuffer buffer) {
+    byte[] bytes = new byte[Short.toUnsignedInt(buffer.getShort())];
+    buffer.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static class Node {
+    private final boolean leaf;
+    private final long[] his;
+    private final long[] los;
+    private final long[] ids;
+    private final long[] children;
+    private long page;
+    private int count;
+    private long next = NO_PAGE;
+
+    private Node(boolean leaf) {
+      this.leaf = leaf;
+      /* One spare entry holds the overflow until the node is split */
+      int capacity = (leaf ? LEAF_CAPACITY : INNER_CAPACITY) + 1;
+      this.his = new long[capacity];
+      this.los = new long[capacity];
+      this.ids = new long[capacity];
+      this.children = leaf ? null : new long[capacity + 1];
+    }
+
+    private void insertEntry(int position, long hi, long lo, long id) {
+      System.arraycopy(his, position, his, position + 1, count - position);
+      System.arraycopy(los, position, los, position + 1, count - position);
+      System.arraycopy(ids, position, ids, position + 1, count - position);
+      his[position] = hi;
+      los[position] = lo;
+      ids[position] = id;
+      count++;
+    }
+
+    private void removeEntry(int position) {
+      System.arraycopy(his, position + 1, his, position, count - position - 1);
+      System.arraycopy(los, position + 1, los, position, count - position - 1);
+      System.arraycopy(ids, position + 1, ids, position, count - position - 1);
+      count--;
+    }
+
+    private void copyEntries(Node source, int from, int length) {
+      System.arraycopy(source.his, from, his, 0, length);
+      System.arraycopy(source.los, from, los, 0, length);
+      System.arraycopy(source.ids, from, ids, 0, length);
+      count = length;
+    }
+  }
+
+  private static class Split {
+    private final long hi;
+    private final long lo;
+    private final long id;
+    private final long rightPage;
+
+    private Split(long hi, long lo, long id, long rightPage) {
+      this.hi = hi;
+      this.lo = lo;
+      this.id = id;
+      this.rightPage = rightPage;
+    }
+  }
+}
@@ -0,0 +1,153 @@
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The {@code BinaryResultSinkImplementation} class writes a result as typed binary rows, so that a
+ * program reading it over the server protocol neither parses text nor loses the column types.
+ * Numbers are big-endian, as {@link java.io.DataOutputStream} writes them.
+ *
+ * <p>The result starts with the number of columns as an int, followed by the type of every column
+ * as the byte of its {@link ColumnType} ordinal and its name as an int length and UTF-8 bytes.
+ * Every row is the byte 1, a bitmap with a bit per column that is set for null values, lowest bit
+ * first, and the values that are not null: an int, a long, a double, a byte 0 or 1 for a boolean,
+ * or an int length and UTF-8 bytes for a varchar. The byte 0 and the number of rows as a long end
+ * the result. {@link #read(InputStream)} reads it back.
+ */
+public class BinaryResultSinkImplementation implements ResultSink {
+  private static final int ROW = 1;
+  private static final int END = 0;
+
+  private final ResultBuffer buffer;
+  private int[] columns;
+  private ColumnType[] types;
+  private byte[] nulls;
+  private long rows;
+
+  /**
+   * @param buffer receives the rows
+   */
+  public BinaryResultSinkImplementation(ResultBuffer buffer) {
+    this.buffer = buffer;
+  }
+
+  @Override
+  public void writeHeader(TableSchema schema, int[] columns) {
+    this.columns = columns;
+    this.types = new ColumnType[columns.length];
+    this.nulls = new byte[(columns.length + 7) / 8];
+    buffer.writeInt(columns.length);
+    for (int i = 0; i < columns.length; i++) {
+      types[i] = schema.getColumnType(columns[i]);
+      buffer.writeByte(types[i].ordinal());
+      writeString(schema.getColumnName(columns[i]));
+    }
+  }
+
+  @Override
+  public void writeRow(ColumnarTable table, int row) {
+    buffer.writeByte(ROW);
+    Arrays.fill(nulls, (byte) 0);
+    for (int i = 0; i < columns.length; i++) {
+      if (table.isNull(columns[i], row)) {
+        nulls[i >> 3] |= (byte) (1 << (i & 7));
+      }
+    }
+    buffer.writeBytes(nulls);
+    for (int i = 0; i < columns.length; i++) {
+      int column = columns[i];
+      if ((nulls[i >> 3] & (1 << (i & 7))) != 0) {
+        continue;
+      }
+      switch (types[i]) {
+        case INT -> buffer.writeInt(table.getInt(column, row));
+        case BIGINT -> buffer.writeLong(table.getLong(column, row));
+        case DOUBLE -> buffer.writeLong(Double.doubleToLongBits(table.getDouble(column, row)));
+        case BOOLEAN -> buffer.writeByte(table.getBoolean(column, row) ? 1 : 0);
+        case VARCHAR -> writeString(table.getString(column, row));
+      }
+    }
+    rows++;
+  }
+
+  @Override
+  public void flush() {
+    buffer.flush();
+  }
+
+  @Override
+  public void close() {
+    buffer.writeByte(END);
+    buffer.writeLong(rows);
+    buffer.close();
+  }
+
+  private void writeString(String value) {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    buffer.writeInt(bytes.length);
+    buffer.writeBytes(bytes);
+  }
+
+  /**
+   * Reads a result written by this sink.
+   *
+   * @param inputStream the result
+   * @return the column names followed by the rows, values as {@link ColumnarTable} formats them
+   * @throws IOException if the result cannot be read or is malformed
+   */
+  public static List<List<String>> read(InputStream inputStream) throws IOException {
+    DataInputStream input = new DataInputStream(inputStream);
+    int columnCount = input.readInt();
+    ColumnType[] types = new ColumnType[columnCount];
+    List<String> names = new ArrayList<>(columnCount);
+    for (int i = 0; i < columnCount; i++) {
+      int type = input.readUnsignedByte();
+      if (type >= ColumnType.values().length) {
+        throw new IOException("Unknown column type " + type);
+      }
+      types[i] = ColumnType.values()[type];
+      names.add(readString(input));
+    }
+    List<List<String>> result = new ArrayList<>();
+    result.add(names);
+    byte[] nulls = new byte[(columnCount + 7) / 8];
+    int marker;
+    while ((marker = input.readUnsignedByte()) == ROW) {
+      input.readFully(nulls);
+      List<String> values = new ArrayList<>(columnCount);
+      for (int i = 0; i < columnCount; i++) {
+        if ((nulls[i >> 3] & (1 << (i & 7))) != 0) {
+          values.add("null");
+          continue;
+        }
+        values.add(
+            switch (types[i]) {
+              case INT -> Integer.toString(input.readInt());
+              case BIGINT -> Long.toString(input.readLong());
+              case DOUBLE -> Double.toString(input.readDouble());
+              case BOOLEAN -> Boolean.toString(input.readUnsignedByte() != 0);
+              case VARCHAR -> readString(input);
+            });
+      }
+      result.add(values);
+    }
+    if (marker != END || input.readLong() != result.size() - 1) {
+      throw new IOException("Malformed result");
+    }
+    return result;
+  }
+
+  private static String readString(DataInputStream input) throws IOException {
+    int length = input.readInt();
+    if (length < 0) {
+      throw new IOException("Invalid string length " + length);
+    }
+    byte[] bytes = new byte[length];
+    input.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,252 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * The {@code BulkLoader} class streams the rows of a CSV file to a writer for {@code LOAD DATA}.
+ * A parser thread reads the file and splits its lines into values, a validator thread checks the
+ * values against the schema of the table, and the thread calling {@link #load(BatchWriter)}
+ * writes them. Rows move between the stages in batches, through queues of a few batches each, so
+ * the stages work at the same time while a slow writer holds back the others instead of the file
+ * piling up in memory.
+ *
+ * <p>Values are separated by commas and may be enclosed in double quotes, which allows commas and
+ * doubled quotes within them, but not line breaks. A closing quote has to be followed by a comma or
+ * the end of the line. An empty value without quotes is null. Blank lines are skipped. Values the
+ * table cannot store, such as {@code -_-} in a text table, stop the load like any invalid value.
+ */
+public class BulkLoader {
+  /* Batches waiting between two stages */
+  private static final int QUEUE_BATCHES = 4;
+  private static final int READ_BUFFER_CHARS = 1 << 20;
+
+  /* Ends the batches of a file */
+  private static final Batch END = new Batch(List.of(), new long[0], null);
+
+  private final Path path;
+  private final TableStorage tableStorage;
+  private final TableSchema schema;
+  private final boolean header;
+  private final int batchRows;
+
+  /** Writes the rows of a batch, in the order of the file. */
+  public interface BatchWriter {
+    /**
+     * @param rows the values of the rows
+     * @return whether the rows were written, false stops the load
+     */
+    boolean write(List<List<String>> rows);
+  }
+
+  /**
+   * The outcome of a load.
+   *
+   * @param rows number of rows written
+   * @param error why the load stopped before the end of the file, {@code null} if it did not
+   */
+  public record Result(long rows, String error) {}
+
+  /* Rows and the lines of the file they come from, or the error that stops the load */
+  private record Batch(List<List<String>> rows, long[] lines, String error) {}
+
+  /**
+   * @param path the CSV file
+   * @param tableStorage storage of the table the rows are loaded into, which validates them
+   * @param schema schema of the table
+   * @param header whether the first line names the columns and is skipped
+   * @param batchRows number of rows the writer gets at a time
+   */
+  public BulkLoader(
+      Path path, TableStorage tableStorage, TableSchema schema, boolean header, int batchRows) {
+    this.path = path;
+    this.tableStorage = tableStorage;
+    this.schema = schema;
+    this.header = header;
+    this.batchRows = batchRows;
+  }
+
+  /**
+   * Loads the file. Loading stops at the first invalid line, the rows before it are written.
+   *
+   * @param writer writes the batches of valid rows
+   * @return the number of rows written and why the load stopped early, if it did
+   */
+  public Result load(BatchWriter writer) {
+    BlockingQueue<Batch> parsed = new ArrayBlockingQueue<>(QUEUE_BATCHES);
+    BlockingQueue<Batch> validated = new ArrayBlockingQueue<>(QUEUE_BATCHES);
+    Thread parser = Thread.ofPlatform().name("load-parse").daemon().start(() -> parse(parsed));
+    Thread validator =
+        Thread.ofPlatform()
+            .name("load-validate")
+            .daemon()
+            .start(() -> validate(parsed, validated));
+    long rows = 0;
+    String error = null;
+    try {
+      while (true) {
+        Batch batch = validated.take();
+        if (batch == END) {
+          break;
+        }
+        if (batch.error() != null) {
+          error = batch.error();
+          break;
+        }
+        if (!writer.write(batch.rows())) {
+          error = "Failed to write the rows from line " + batch.lines()[0];
+          break;
+        }
+        rows += batch.rows().size();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      error = "Load interrupted";
+    } finally {
+      /* Stages still running wait on a full queue or read the file, both end on an interrupt */
+      parser.interrupt();
+      validator.interrupt();
+      join(parser);
+      join(validator);
+    }
+    return new Result(rows, error);
+  }
+
+  private static void join(Thread thread) {
+    boolean interrupted = false;
+    while (true) {
+      try {
+        thread.join();
+        break;
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /* Reads the lines of the file into batches of rows */
+  private void parse(BlockingQueue<Batch> parsed) {
+    try {
+      Batch last;
+      try (BufferedReader reader =
+          new BufferedReader(
+              new InputStreamReader(Files.newInputStream(path), StandardCharsets.UTF_8),
+              READ_BUFFER_CHARS)) {
+        long line = 0;
+        if (header && reader.readLine() != null) {
+          line++;
+        }
+        List<List<String>> rows = new ArrayList<>(batchRows);
+        long[] lines = new long[batchRows];
+        last = END;
+        String text;
+        while ((text = reader.readLine()) != null) {
+          line++;
+          if (text.isBlank()) {
+            continue;
+          }
+          List<String> row;
+          try {
+            row = parseLine(text);
+          } catch (IllegalArgumentException e) {
+            last = new Batch(null, null, "Line " + line + ": " + e.getMessage());
+            break;
+          }
+          lines[rows.size()] = line;
+          rows.add(row);
+          if (rows.size() == batchRows) {
+            parsed.put(new Batch(rows, lines, null));
+            rows = new ArrayList<>(batchRows);
+            lines = new long[batchRows];
+          }
+        }
+        if (!rows.isEmpty()) {
+          parsed.put(new Batch(rows, lines, null));
+        }
+      } catch (IOException e) {
+        last = new Batch(null, null, "Failed to read " + path + ": " + e.getMessage());
+      }
+      parsed.put(last);
+    } catch (InterruptedException e) {
+      /* The load stopped, nobody takes the batches any more */
+    }
+  }
+
+  /* Splits a line into its values */
+  private List<String> parseLine(String line) {
+    List<String> values = new ArrayList<>(schema.getColumnCount());
+    int length = line.length();
+    int start = 0;
+    while (true) {
+      int comma;
+      if (start < length && line.charAt(start) == '"') {
+        StringBuilder value = new StringBuilder();
+        int position = start + 1;
+        while (true) {
+          int quote = line.indexOf('"', position);
+          if (quote == -1) {
+            throw new IllegalArgumentException(
+                "a quoted value is not closed, values cannot hold line breaks");
+          }
+          value.append(line, position, quote);
+          if (quote + 1 < length && line.charAt(quote + 1) == '"') {
+            value.append('"');
+            position = quote + 2;
+          } else {
+            position = quote + 1;
+            break;
+          }
+        }
+        values.add(value.toString());
+        if (position < length && line.charAt(position) != ',') {
+          throw new IllegalArgumentException(
+              "text after the closing quote of a value at column " + (position + 1));
+        }
+        comma = position < length ? position : -1;
+      } else {
+        comma = line.indexOf(',', start);
+        int end = comma == -1 ? length : comma;
+        values.add(end == start ? null : line.substring(start, end));
+      }
+      if (comma == -1) {
+        return values;
+      }
+      start = comma + 1;
+    }
+  }
+
+  /* Passes on the rows that fit the schema, up to the first that does not */
+  private void validate(BlockingQueue<Batch> parsed, BlockingQueue<Batch> validated) {
+    try {
+      while (true) {
+        Batch batch = parsed.take();
+        if (batch == END || batch.error() != null) {
+          validated.put(batch);
+          return;
+        }
+        for (int i = 0; i < batch.rows().size(); i++) {
+          String error = tableStorage.validateRow(schema, batch.rows().get(i));
+          if (error != null) {
+            if (i > 0) {
+              validated.put(new Batch(batch.rows().subList(0, i), batch.lines(), null));
+            }
+            validated.put(new Batch(null, null, "Line " + batch.lines()[i] + ": " + error));
+            return;
+          }
+        }
+        validated.put(batch);
+      }
+    } catch (InterruptedException e) {
+      /* The load stopped */
+    }
+  }
+}
@@ -0,0 +1,40 @@
+/**
+ * The {@code ColumnType} enum lists the data types a table column can be declared with.
+ */
+public enum ColumnType {
+  INT,
+  BIGINT,
+  DOUBLE,
+  VARCHAR,
+  BOOLEAN;
+
+  /**
+   * Resolves the type named in a column declaration, accepting the common aliases and an optional
+   * length such as {@code varchar(20)}.
+   *
+   * @param declaration the declared type
+   * @return the column type, or {@code null} if the type is unknown
+   */
+  public static ColumnType fromDeclaration(String declaration) {
+    String typeName = declaration.trim().toUpperCase();
+    int lengthStart = typeName.indexOf('(');
+    if (lengthStart != -1) {
+      typeName = typeName.substring(0, lengthStart).trim();
+    }
+    return switch (typeName) {
+      case "INT", "INTEGER" -> INT;
+      case "BIGINT", "LONG" -> BIGINT;
+      case "DOUBLE", "FLOAT", "REAL", "DECIMAL" -> DOUBLE;
+      case "VARCHAR", "CHAR", "TEXT", "STRING" -> VARCHAR;
+      case "BOOLEAN", "BOOL" -> BOOLEAN;
+      default -> null;
+    };
+  }
+
+  /**
+   * @return {@code true} for the types compared by their numeric value
+   */
+  public boolean isNumeric() {
+    return this == INT || this == BIGINT || this == DOUBLE;
+  }
+}
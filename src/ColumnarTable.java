@@ -0,0 +1,538 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The {@code ColumnarTable} class holds the rows of a table column by column in primitive arrays
+ * typed after the {@link TableSchema}: {@code int[]}, {@code long[]}, {@code double[]} and {@code
+ * boolean[]} for the fixed width types and dictionary codes for {@link ColumnType#VARCHAR}, so
+ * every distinct string is kept only once.
+ */
+public class ColumnarTable {
+  private static final int INITIAL_CAPACITY = 16;
+
+  private final TableSchema schema;
+  private final ColumnVector[] columns;
+  private int rowCount;
+
+  public ColumnarTable(TableSchema schema) {
+    this.schema = schema;
+    this.columns = new ColumnVector[schema.getColumnCount()];
+    for (int i = 0; i < columns.length; i++) {
+      columns[i] = ColumnVector.of(schema.getColumnType(i));
+    }
+  }
+
+  public TableSchema getSchema() {
+    return schema;
+  }
+
+  public int getRowCount() {
+    return rowCount;
+  }
+
+  /**
+   * Checks that every value of the row can be stored in its column.
+   *
+   * @param row values of the row
+   * @return description of the problem, or {@code null} if the row is valid
+   */
+  public static String validateRow(TableSchema schema, List<String> row) {
+    if (row.size() != schema.getColumnCount()) {
+      return "Expected " + schema.getColumnCount() + " values but got " + row.size();
+    }
+    for (int i = 0; i < row.size(); i++) {
+      if (!isValid(schema.getColumnType(i), row.get(i))) {
+        return "Invalid " + schema.getColumnType(i) + " value for column "
+            + schema.getColumnName(i) + ": " + row.get(i);
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Appends a row, converting every value to the type of its column.
+   *
+   * @param row values of the row
+   * @throws IllegalArgumentException if the row does not have a value for every column, or a
+   *     value does not match the type of its column
+   */
+  public void appendRow(List<String> row) {
+    if (row.size() != columns.length) {
+      throw new IllegalArgumentException(
+          "Expected " + columns.length + " values but got " + row.size());
+    }
+    for (int i = 0; i < columns.length; i++) {
+      columns[i].append(rowCount, row.get(i));
+    }
+    rowCount++;
+  }
+
+  /**
+   * Appends a row of another table with the same column types without converting it to strings.
+   *
+   * @param source table to copy from
+   * @param row row of the source table
+   */
+  public void appendRowFrom(ColumnarTable source, int row) {
+    for (int i = 0; i < columns.length; i++) {
+      columns[i].copy(rowCount, source.columns[i], row);
+    }
+    rowCount++;
+  }
+
+  /**
+   * Appends some of the columns of a row of another table, in the order given.
+   *
+   * @param source table to copy from
+   * @param sourceColumns the column of the source table for each column of this table
+   * @param row row of the source table
+   */
+  public void appendColumnsFrom(ColumnarTable source, int[] sourceColumns, int row) {
+    for (int i = 0; i < columns.length; i++) {
+      columns[i].copy(rowCount, source.columns[sourceColumns[i]], row);
+    }
+    rowCount++;
+  }
+
+  /**
+   * Appends a row of a join, the columns of the left row followed by those of the right row.
+   *
+   * @param left table of the left row
+   * @param leftRow row of the left table
+   * @param right table of the right row
+   * @param rightRow row of the right table
+   */
+  public void appendJoinedRow(ColumnarTable left, int leftRow, ColumnarTable right, int rightRow) {
+    int leftColumns = left.columns.length;
+    for (int i = 0; i < leftColumns; i++) {
+      columns[i].copy(rowCount, left.columns[i], leftRow);
+    }
+    for (int i = leftColumns; i < columns.length; i++) {
+      columns[i].copy(rowCount, right.columns[i - leftColumns], rightRow);
+    }
+    rowCount++;
+  }
+
+  /*
+   * Typed row building for binary readers, which skips the conversion from strings. Every column
+   * of the row at position getRowCount() is put once, then finishRow() adds the row.
+   */
+
+  public void putInt(int column, int value) {
+    IntVector vector = (IntVector) prepare(column);
+    vector.values[rowCount] = value;
+  }
+
+  public void putLong(int column, long value) {
+    LongVector vector = (LongVector) prepare(column);
+    vector.values[rowCount] = value;
+  }
+
+  public void putDouble(int column, double value) {
+    DoubleVector vector = (DoubleVector) prepare(column);
+    vector.values[rowCount] = value;
+  }
+
+  public void putBoolean(int column, boolean value) {
+    BooleanVector vector = (BooleanVector) prepare(column);
+    vector.values[rowCount] = value;
+  }
+
+  public void putString(int column, String value) {
+    StringVector vector = (StringVector) prepare(column);
+    vector.codes[rowCount] = vector.encode(value);
+  }
+
+  public void putNull(int column) {
+    columns[column].append(rowCount, null);
+  }
+
+  public void finishRow() {
+    rowCount++;
+  }
+
+  private ColumnVector prepare(int column) {
+    ColumnVector vector = columns[column];
+    vector.ensureCapacity(rowCount + 1);
+    vector.clearNull(rowCount);
+    return vector;
+  }
+
+  /**
+   * Removes every row but keeps the allocated vectors, so that a table can be refilled batch after
+   * batch without allocating again.
+   */
+  public void clear() {
+    for (ColumnVector column : columns) {
+      column.clear();
+    }
+    rowCount = 0;
+  }
+
+  public boolean isNull(int column, int row) {
+    return columns[column].isNull(row);
+  }
+
+  public int getInt(int column, int row) {
+    return ((IntVector) columns[column]).values[row];
+  }
+
+  public long getLong(int column, int row) {
+    return ((LongVector) columns[column]).values[row];
+  }
+
+  public double getDouble(int column, int row) {
+    return ((DoubleVector) columns[column]).values[row];
+  }
+
+  public boolean getBoolean(int column, int row) {
+    return ((BooleanVector) columns[column]).values[row];
+  }
+
+  public String getString(int column, int row) {
+    StringVector vector = (StringVector) columns[column];
+    return vector.dictionary.get(vector.codes[row]);
+  }
+
+  /**
+   * Reads a numeric column widened to a double, whatever its declared width.
+   *
+   * @param column numeric column
+   * @param row row
+   * @return the value as a double
+   */
+  public double getNumber(int column, int row) {
+    ColumnVector vector = columns[column];
+    if (vector instanceof IntVector intVector) {
+      return intVector.values[row];
+    }
+    if (vector instanceof LongVector longVector) {
+      return longVector.values[row];
+    }
+    return ((DoubleVector) vector).values[row];
+  }
+
+  /**
+   * @param column column
+   * @param row row
+   * @return the value as it is shown to the user, {@code null} for a null value
+   */
+  public String format(int column, int row) {
+    return columns[column].isNull(row) ? "null" : columns[column].format(row);
+  }
+
+  /**
+   * @return the values of the row as strings, in the format of the table file, {@code null} for a
+   *     null value so that it is not taken for the string null
+   */
+  public List<String> formatRow(int row) {
+    List<String> values = new ArrayList<>(columns.length);
+    for (int i = 0; i < columns.length; i++) {
+      values.add(columns[i].isNull(row) ? null : columns[i].format(row));
+    }
+    return values;
+  }
+
+  /**
+   * @return approximate heap size of the stored rows in bytes
+   */
+  public long estimateMemory() {
+    long memory = 64;
+    for (ColumnVector column : columns) {
+      memory += column.estimateMemory();
+    }
+    return memory;
+  }
+
+  private static boolean isValid(ColumnType type, String value) {
+    if (type == ColumnType.VARCHAR || isNullValue(value)) {
+      return true;
+    }
+    try {
+      switch (type) {
+        case INT -> Integer.parseInt(value.trim());
+        case BIGINT -> Long.parseLong(value.trim());
+        case DOUBLE -> Double.parseDouble(value.trim());
+        case BOOLEAN -> parseBoolean(value);
+        default -> {}
+      }
+      return true;
+    } catch (NumberFormatException e) {
+      return false;
+    }
+  }
+
+  private static boolean isNullValue(String value) {
+    return value == null || value.isBlank() || value.trim().equalsIgnoreCase("null");
+  }
+
+  static boolean parseBoolean(String value) {
+    String trimmed = value.trim();
+    if (trimmed.equalsIgnoreCase("true") || trimmed.equals("1")) {
+      return true;
+    }
+    if (trimmed.equalsIgnoreCase("false") || trimmed.equals("0")) {
+      return false;
+    }
+    throw new NumberFormatException("Not a boolean: " + value);
+  }
+
+  /* Column vectors */
+
+  private abstract static class ColumnVector {
+    /* Bitmap of null values, allocated on the first null */
+    private long[] nulls;
+
+    static ColumnVector of(ColumnType type) {
+      return switch (type) {
+        case INT -> new IntVector();
+        case BIGINT -> new LongVector();
+        case DOUBLE -> new DoubleVector();
+        case BOOLEAN -> new BooleanVector();
+        case VARCHAR -> new StringVector();
+      };
+    }
+
+    void append(int row, String value) {
+      ensureCapacity(row + 1);
+      /* Strings are kept as written, the other types treat empty and "null" as null */
+      if (value == null || (!(this instanceof StringVector) && isNullValue(value))) {
+        setNull(row);
+        return;
+      }
+      clearNull(row);
+      set(row, value);
+    }
+
+    void copy(int row, ColumnVector source, int sourceRow) {
+      ensureCapacity(row + 1);
+      if (source.isNull(sourceRow)) {
+        setNull(row);
+        return;
+      }
+      clearNull(row);
+      copyValue(row, source, sourceRow);
+    }
+
+    void clear() {
+      if (nulls != null) {
+        Arrays.fill(nulls, 0);
+      }
+    }
+
+    boolean isNull(int row) {
+      return nulls != null && (row >> 6) < nulls.length && (nulls[row >> 6] & (1L << row)) != 0;
+    }
+
+    private void setNull(int row) {
+      if (nulls == null) {
+        nulls = new long[(capacity() >> 6) + 1];
+      } else if ((row >> 6) >= nulls.length) {
+        nulls = Arrays.copyOf(nulls, Math.max(nulls.length * 2, (row >> 6) + 1));
+      }
+      nulls[row >> 6] |= 1L << row;
+    }
+
+    /* A row position can be written again after a failed append, so stale bits are cleared */
+    private void clearNull(int row) {
+      if (nulls != null && (row >> 6) < nulls.length) {
+        nulls[row >> 6] &= ~(1L << row);
+      }
+    }
+
+    long estimateMemory() {
+      return 16 + (nulls == null ? 0 : 8L * nulls.length);
+    }
+
+    static int grow(int capacity, int required) {
+      return Math.max(required, Math.max(INITIAL_CAPACITY, capacity + (capacity >> 1)));
+    }
+
+    abstract int capacity();
+
+    abstract void ensureCapacity(int required);
+
+    abstract void set(int row, String value);
+
+    abstract void copyValue(int row, ColumnVector source, int sourceRow);
+
+    abstract String format(int row);
+  }
+
+  private static class IntVector extends ColumnVector {
+    private int[] values = new int[0];
+
+    int capacity() {
+      return values.length;
+    }
+
+    void ensureCapacity(int required) {
+      if (required > values.length) {
+        values = Arrays.copyOf(values, grow(values.length, required));
+      }
+    }
+
+    void set(int row, String value) {
+      values[row] = Integer.parseInt(value.trim());
+    }
+
+    void copyValue(int row, ColumnVector source, int sourceRow) {
+      values[row] = ((IntVector) source).values[sourceRow];
+    }
+
+    String format(int row) {
+      return Integer.toString(values[row]);
+    }
+
+    long estimateMemory() {
+      return super.estimateMemory() + 4L * values.length;
+    }
+  }
+
+  private static class LongVector extends ColumnVector {
+    private long[] values = new long[0];
+
+    int capacity() {
+      return values.length;
+    }
+
+    void ensureCapacity(int required) {
+      if (required > values.length) {
+        values = Arrays.copyOf(values, grow(values.length, required));
+      }
+    }
+
+    void set(int row, String value) {
+      values[row] = Long.parseLong(value.trim());
+    }
+
+    void copyValue(int row, ColumnVector source, int sourceRow) {
+      values[row] = ((LongVector) source).values[sourceRow];
+    }
+
+    String format(int row) {
+      return Long.toString(values[row]);
+    }
+
+    long estimateMemory() {
+      return super.estimateMemory() + 8L * values.length;
+    }
+  }
+
+  private static class DoubleVector extends ColumnVector {
+    private double[] values = new double[0];
+
+    int capacity() {
+      return values.length;
+    }
+
+    void ensureCapacity(int required) {
+      if (required > values.length) {
+        values = Arrays.copyOf(values, grow(values.length, required));
+      }
+    }
+
+    void set(int row, String value) {
+      values[row] = Double.parseDouble(value.trim());
+    }
+
+    void copyValue(int row, ColumnVector source, int sourceRow) {
+      values[row] = ((DoubleVector) source).values[sourceRow];
+    }
+
+    String format(int row) {
+      return Double.toString(values[row]);
+    }
+
+    long estimateMemory() {
+      return super.estimateMemory() + 8L * values.length;
+    }
+  }
+
+  private static class BooleanVector extends ColumnVector {
+    private boolean[] values = new boolean[0];
+
+    int capacity() {
+      return values.length;
+    }
+
+    void ensureCapacity(int required) {
+      if (required > values.length) {
+        values = Arrays.copyOf(values, grow(values.length, required));
+      }
+    }
+
+    void set(int row, String value) {
+      values[row] = parseBoolean(value);
+    }
+
+    void copyValue(int row, ColumnVector source, int sourceRow) {
+      values[row] = ((BooleanVector) source).values[sourceRow];
+    }
+
+    String format(int row) {
+      return Boolean.toString(values[row]);
+    }
+
+    long estimateMemory() {
+      return super.estimateMemory() + values.length;
+    }
+  }
+
+  private static class StringVector extends ColumnVector {
+    private int[] codes = new int[0];
+    private final List<String> dictionary = new ArrayList<>();
+    private final Map<String, Integer> dictionaryCodes = new HashMap<>();
+    private long dictionaryMemory;
+
+    int capacity() {
+      return codes.length;
+    }
+
+    void ensureCapacity(int required) {
+      if (required > codes.length) {
+        codes = Arrays.copyOf(codes, grow(codes.length, required));
+      }
+    }
+
+    void set(int row, String value) {
+      codes[row] = encode(value);
+    }
+
+    void copyValue(int row, ColumnVector source, int sourceRow) {
+      StringVector sourceVector = (StringVector) source;
+      codes[row] = encode(sourceVector.dictionary.get(sourceVector.codes[sourceRow]));
+    }
+
+    private int encode(String value) {
+      Integer code = dictionaryCodes.get(value);
+      if (code == null) {
+        code = dictionary.size();
+        dictionary.add(value);
+        dictionaryCodes.put(value, code);
+        /* String with its byte array, plus the list slot and the map node pointing to it */
+        dictionaryMemory += 40 + value.length() + 4 + 48;
+      }
+      return code;
+    }
+
+    /* A new batch starts with an empty dictionary, so it does not grow with the table */
+    void clear() {
+      super.clear();
+      dictionary.clear();
+      dictionaryCodes.clear();
+      dictionaryMemory = 0;
+    }
+
+    String format(int row) {
+      return dictionary.get(codes[row]);
+    }
+
+    long estimateMemory() {
+      return super.estimateMemory() + 4L * codes.length + dictionaryMemory;
+    }
+  }
+}
@@ -0,0 +1,171 @@
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The {@code ConflictChecker} class decides whether a transaction may commit on top of the
+ * transactions committed after its snapshot was taken: the first committer wins.
+ *
+ * <p>Tables are stamped, in the order transactions are logged, with the last transaction that
+ * created, dropped, inserted into, rewrote rows of or vacuumed them, and rows with the last
+ * transaction that updated or deleted them. A transaction conflicts if a transaction its snapshot
+ * does not see created or dropped a table it changes, changed any part of a table it drops,
+ * vacuumed a table it rewrites, or updated or deleted a row it updates or deletes. Inserts do not
+ * conflict with updates and deletes, which only touch rows they saw, and updates and deletes of
+ * different rows of a table do not conflict with each other.
+ *
+ * <p>The stamps of rows are only kept while a snapshot older than them is in use; a transaction
+ * whose snapshot is older than forgotten stamps of a table conflicts with any update or delete of
+ * the table after its snapshot. The checker is not thread-safe, the {@link VersionManager} owning
+ * it guards it with its lock.
+ */
+public class ConflictChecker {
+  /* Index of the stamps of a table */
+  private static final int CREATED_OR_DROPPED = 0;
+  private static final int INSERTED = 1;
+  private static final int VACUUMED = 2;
+  private static final int ROWS_CHANGED = 3;
+
+  /* Last logged transaction that created or dropped a table, that inserted into it, that
+   * vacuumed it, and that updated or deleted rows of it */
+  private final Map<String, long[]> writeStamps = new HashMap<>();
+
+  /* Last logged transaction that updated or deleted a row, per table and row id, kept while a
+   * snapshot in use may be older */
+  private final Map<String, Map<Long, Long>> rowStamps = new HashMap<>();
+
+  /* Updates and deletes whose row stamps are kept, in log order */
+  private final ArrayDeque<RowWrite> rowWrites = new ArrayDeque<>();
+
+  /* Last transaction whose row stamps of a table were forgotten; older snapshots fall back to the
+   * stamp of the table */
+  private final Map<String, Long> rowStampsPruned = new HashMap<>();
+
+  /* Rows of a table updated or deleted by a transaction */
+  private record RowWrite(long lsn, String tableName, long[] rowIds) {}
+
+  /**
+   * Checks whether a transaction changes a table that a transaction it does not see has changed.
+   * Has to be called together with {@link #recordWrites(List, long)}, with the transaction logged
+   * in between and no other transaction checked or recorded meanwhile.
+   *
+   * @param records changes of the transaction
+   * @param snapshotLsn sequence number of the snapshot the transaction read
+   * @param quietLsn sequence number every snapshot in use, and every later one, sees; a table
+   *     changed after it cannot be vacuumed
+   * @return why the transaction cannot commit, or {@code null} if it can
+   */
+  public String findConflict(List<RedoRecord> records, long snapshotLsn, long quietLsn) {
+    for (RedoRecord record : records) {
+      if (record instanceof RedoRecord.Vacuum && lastWrite(record.tableName()) > quietLsn) {
+        return "Table " + record.tableName() + " is read by older transactions";
+      }
+      String name = record.tableName().toLowerCase();
+      long[] stamps = writeStamps.get(name);
+      if (stamps == null) {
+        continue;
+      }
+      /* Every change conflicts with the table being created or dropped, dropping it also with any
+       * other change, and updates and deletes with the table being vacuumed */
+      long[] rowIds = rowIdsOf(record);
+      boolean conflict =
+          stamps[CREATED_OR_DROPPED] > snapshotLsn
+              || (record instanceof RedoRecord.DropTable
+                  && Arrays.stream(stamps).max().orElse(0) > snapshotLsn)
+              || (rowIds != null && stamps[VACUUMED] > snapshotLsn);
+      if (conflict) {
+        return "Table " + record.tableName() + " was changed by a concurrent transaction";
+      }
+      if (rowIds == null || stamps[ROWS_CHANGED] <= snapshotLsn) {
+        continue;
+      }
+      /* Updates and deletes conflict with changes of the same rows, or of any row of the table
+       * once the stamps of the rows are forgotten */
+      if (rowStampsPruned.getOrDefault(name, 0L) > snapshotLsn) {
+        return "Table " + record.tableName() + " was changed by a concurrent transaction";
+      }
+      Map<Long, Long> tableRowStamps = rowStamps.getOrDefault(name, Map.of());
+      for (long rowId : rowIds) {
+        if (tableRowStamps.getOrDefault(rowId, 0L) > snapshotLsn) {
+          return "Rows of table "
+              + record.tableName()
+              + " were changed by a concurrent transaction";
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @param records changes of a transaction that was just logged
+   * @param lsn sequence number of the transaction
+   */
+  public void recordWrites(List<RedoRecord> records, long lsn) {
+    for (RedoRecord record : records) {
+      String name = record.tableName().toLowerCase();
+      long[] stamps = writeStamps.computeIfAbsent(name, table -> new long[4]);
+      int stamp =
+          switch (record) {
+            case RedoRecord.CreateTable createTable -> CREATED_OR_DROPPED;
+            case RedoRecord.DropTable dropTable -> CREATED_OR_DROPPED;
+            case RedoRecord.Insert insert -> INSERTED;
+            case RedoRecord.Vacuum vacuum -> VACUUMED;
+            case RedoRecord.Delete delete -> ROWS_CHANGED;
+            case RedoRecord.Update update -> ROWS_CHANGED;
+          };
+      stamps[stamp] = lsn;
+      long[] rowIds = rowIdsOf(record);
+      if (rowIds != null) {
+        Map<Long, Long> tableRowStamps =
+            rowStamps.computeIfAbsent(name, table -> new HashMap<>());
+        for (long rowId : rowIds) {
+          tableRowStamps.put(rowId, lsn);
+        }
+        rowWrites.add(new RowWrite(lsn, name, rowIds));
+      }
+    }
+  }
+
+  /**
+   * @param tableName name of a table
+   * @return sequence number of the last logged transaction that changed the table in any way, 0
+   *     if none did while the database runs
+   */
+  public long lastWrite(String tableName) {
+    long[] stamps = writeStamps.get(tableName.toLowerCase());
+    return stamps == null ? 0 : Arrays.stream(stamps).max().orElse(0);
+  }
+
+  /**
+   * Forgets the stamps of rows that no snapshot in use is older than. A committing transaction
+   * whose snapshot was released already falls back to the stamp of the table.
+   *
+   * @param oldestLsn sequence number of the oldest snapshot in use, or of the last applied
+   *     transaction if none is
+   */
+  public void prune(long oldestLsn) {
+    while (!rowWrites.isEmpty() && rowWrites.peekFirst().lsn() <= oldestLsn) {
+      RowWrite write = rowWrites.pollFirst();
+      Map<Long, Long> tableRowStamps = rowStamps.get(write.tableName());
+      if (tableRowStamps != null) {
+        for (long rowId : write.rowIds()) {
+          tableRowStamps.remove(rowId, write.lsn());
+        }
+        if (tableRowStamps.isEmpty()) {
+          rowStamps.remove(write.tableName());
+        }
+      }
+      rowStampsPruned.merge(write.tableName(), write.lsn(), Math::max);
+    }
+  }
+
+  private static long[] rowIdsOf(RedoRecord record) {
+    return switch (record) {
+      case RedoRecord.Update update -> update.rowIds();
+      case RedoRecord.Delete delete -> delete.rowIds();
+      default -> null;
+    };
+  }
+}
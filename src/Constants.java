@@ -1,6 +1,90 @@
 /** The {@code Constants} class provides constant values */
 public class Constants {
   public static final String DEFAULT_CAPTCHA = "cJa3Ar4ERa";
+  public static final String USERS_FILE_PATH = "files/users.csv";
+
+  /* PBKDF2 iterations of new password hashes, -Ddbms.passwordIterations; hashes made with other
+   * counts are rehashed on the next login */
+  public static final int PASSWORD_HASH_ITERATIONS =
+      Integer.getInteger("dbms.passwordIterations", 210_000);
+
+  /* A verified login is remembered this long, 0 disables it, -Ddbms.credentialCacheMillis */
+  public static final long CREDENTIAL_CACHE_MILLIS =
+      Long.getLong("dbms.credentialCacheMillis", 60_000);
+
+  /* Memory budget of the table cache in bytes, can be changed with -Ddbms.tableCacheBytes */
+  public static final long TABLE_CACHE_MEMORY_BUDGET =
+      Long.getLong("dbms.tableCacheBytes", 64L * 1024 * 1024);
+
+  /* Number of parsed statements kept by the statement cache */
+  public static final int STATEMENT_CACHE_SIZE = Integer.getInteger("dbms.statementCacheSize", 1024);
+
+  /* Format new table files are created in, can be changed with -Ddbms.storageFormat=paged */
+  public static final StorageFormat DEFAULT_STORAGE_FORMAT =
+      StorageFormat.valueOf(System.getProperty("dbms.storageFormat", "text").toUpperCase());
+
+  /* Threads used by a table scan unless a session sets its own, -Ddbms.parallelism */
+  public static final int DEFAULT_PARALLELISM =
+      Integer.getInteger("dbms.parallelism", Runtime.getRuntime().availableProcessors());
+
+  /* Log of committed transactions and the checkpoint telling which of them the table files hold */
+  public static final String WAL_FILE_PATH = "files/wal.log";
+  public static final String CHECKPOINT_FILE_PATH = "files/wal.checkpoint";
+
+  /* Table files are forced and the log is trimmed this often, -Ddbms.checkpointIntervalMillis */
+  public static final long CHECKPOINT_INTERVAL_MILLIS =
+      Long.getLong("dbms.checkpointIntervalMillis", 30_000);
+
+  /* A checkpoint is also started once the log grows past this size, -Ddbms.walCheckpointBytes */
+  public static final long WAL_CHECKPOINT_BYTES =
+      Long.getLong("dbms.walCheckpointBytes", 16L * 1024 * 1024);
+
+  /* Port the server listens on with java Main --server, -Ddbms.port */
+  public static final int SERVER_PORT = Integer.getInteger("dbms.port", 5050);
+
+  /* Statements give up waiting for a lock after this long, -Ddbms.lockTimeoutMillis */
+  public static final long LOCK_TIMEOUT_MILLIS = Long.getLong("dbms.lockTimeoutMillis", 10_000);
+
+  /* Lock queues are spread over this many independently locked stripes */
+  public static final int LOCK_STRIPES = 64;
+
+  /* Queries taking at least this long are logged, -Ddbms.slowQueryMillis or SET SLOW_QUERY_THRESHOLD */
+  public static final long SLOW_QUERY_THRESHOLD_MILLIS = Long.getLong("dbms.slowQueryMillis", 1_000);
+  public static final String SLOW_QUERY_LOG_PATH = "files/slow_query.log";
+
+  /* Memory the hash table of a join may take before it spills to disk, -Ddbms.joinMemoryBytes */
+  public static final long JOIN_MEMORY_BUDGET =
+      Long.getLong("dbms.joinMemoryBytes", 64L * 1024 * 1024);
+
+  /* Memory the rows of a sort may take before they are spilled to disk, -Ddbms.sortMemoryBytes */
+  public static final long SORT_MEMORY_BUDGET =
+      Long.getLong("dbms.sortMemoryBytes", 64L * 1024 * 1024);
+
+  /* Directory of the files joins and sorts spill to, emptied on startup */
+  public static final String SPILL_DIRECTORY = "files/tmp";
+
+  /* Rows LOAD DATA commits at a time, -Ddbms.loadBatchRows */
+  public static final int LOAD_BATCH_ROWS = Integer.getInteger("dbms.loadBatchRows", 10_000);
+
+  /* The only directory LOAD DATA reads files from, by paths relative to it, -Ddbms.importDirectory */
+  public static final String IMPORT_DIRECTORY =
+      System.getProperty("dbms.importDirectory", "files/import");
+
+  /* A table is vacuumed in the background once the space of its deleted and moved rows is this
+   * share of its file, -Ddbms.vacuumGarbageRatio, and at least -Ddbms.vacuumMinGarbageBytes */
+  public static final double VACUUM_GARBAGE_RATIO =
+      Double.parseDouble(System.getProperty("dbms.vacuumGarbageRatio", "0.3"));
+  public static final long VACUUM_MIN_GARBAGE_BYTES =
+      Long.getLong("dbms.vacuumMinGarbageBytes", 1024L * 1024);
+
+  /* Audit log of the statements, written by a background thread from a buffer of this many
+   * records, -Ddbms.auditBufferRecords; when it is full statements wait (block) or their records
+   * are dropped (drop), -Ddbms.auditOverflow */
+  public static final String AUDIT_LOG_PATH = "files/database.log";
+  public static final int AUDIT_BUFFER_RECORDS = Integer.getInteger("dbms.auditBufferRecords", 8192);
+  public static final AuditLog.OverflowPolicy AUDIT_OVERFLOW_POLICY =
+      AuditLog.OverflowPolicy.valueOf(
+          System.getProperty("dbms.auditOverflow", "block").toUpperCase());
 
   /* Private ensures that nobody can access the constructor of the method and if somehow they do, we will throw an exception as a double safety check */
   private Constants() {
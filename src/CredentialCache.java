@@ -0,0 +1,96 @@
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The {@code CredentialCache} class remembers successful logins for a short time, so that a user
+ * reconnecting with the same password, as many sessions of a client do at once, is not checked
+ * by a slow password hash again. Sessions share the cache, keyed by user ID.
+ *
+ * <p>The password itself is not kept: an entry holds a SHA-256 of the password and a key that is
+ * random for every process, together with the stored hash the password was checked against, so
+ * that a changed or dropped user does not match any more.
+ */
+public class CredentialCache {
+  private static final int KEY_BYTES = 32;
+  private static final MessageDigest PROTOTYPE;
+
+  static {
+    try {
+      PROTOTYPE = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is not available", e);
+    }
+  }
+
+  private final long ttlNanos;
+  private final byte[] key = new byte[KEY_BYTES];
+  private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+  private record Entry(String storedHash, byte[] fingerprint, long expiresAt) {}
+
+  /**
+   * @param ttlMillis how long a login is remembered, 0 or less disables the cache
+   */
+  public CredentialCache(long ttlMillis) {
+    this.ttlNanos = ttlMillis * 1_000_000;
+    new SecureRandom().nextBytes(key);
+  }
+
+  /**
+   * @param userId id of the user
+   * @param password the password given at login
+   * @param storedHash the hash the user has now
+   * @return whether the same password was verified against the same hash within the time to live
+   */
+  public boolean contains(String userId, String password, String storedHash) {
+    if (ttlNanos <= 0) {
+      return false;
+    }
+    Entry entry = entries.get(userId);
+    if (entry == null) {
+      return false;
+    }
+    if (System.nanoTime() - entry.expiresAt() >= 0) {
+      entries.remove(userId, entry);
+      return false;
+    }
+    return entry.storedHash().equals(storedHash)
+        && MessageDigest.isEqual(entry.fingerprint(), fingerprint(password));
+  }
+
+  /**
+   * Remembers a login that was verified.
+   *
+   * @param userId id of the user
+   * @param password the password given at login
+   * @param storedHash the hash it was verified against
+   */
+  public void put(String userId, String password, String storedHash) {
+    if (ttlNanos <= 0) {
+      return;
+    }
+    entries.put(userId, new Entry(storedHash, fingerprint(password), System.nanoTime() + ttlNanos));
+  }
+
+  /**
+   * @param userId id of the user whose login is forgotten
+   */
+  public void remove(String userId) {
+    entries.remove(userId);
+  }
+
+  private byte[] fingerprint(String password) {
+    MessageDigest messageDigest;
+    try {
+      messageDigest = (MessageDigest) PROTOTYPE.clone();
+    } catch (CloneNotSupportedException e) {
+      throw new IllegalStateException("SHA-256 digest cannot be cloned", e);
+    }
+    messageDigest.update(key);
+    return messageDigest.digest(password.getBytes(StandardCharsets.UTF_8));
+  }
+}
@@ -8,6 +8,12 @@ import java.util.List;
  * providing methods for serializing and deserializing data in CSV format.
  */
 public class CustomDelimiterDataSerializerImplementation implements DataSerializer {
+  /* -_- is my CUSTOM DELIMITER */
+  private static final String DELIMITER = "-_-";
+  /* Stands for a null value, so that it is told apart from the string null; a value made of
+   * backslashes followed by an N is written with one more backslash */
+  private static final String NULL_VALUE = "\\N";
+
   /**
    * @param data the data
    * @return serialized string
@@ -16,12 +22,35 @@ public class CustomDelimiterDataSerializerImplementation implements DataSerializ
   public String serializeData(Data data) {
     StringBuilder csvBuilder = new StringBuilder();
     for (List<String> row : data.getData()) {
-      /* -_- is my CUSTOM DELIMITER */
-      csvBuilder.append(String.join("-_-", row)).append("\n");
+      csvBuilder.append(serializeRow(row));
     }
     return csvBuilder.toString();
   }
 
+  /**
+   * @param row the row, null values are written as {@code \N}
+   * @return serialized row terminated by a new line
+   */
+  @Override
+  public String serializeRow(List<String> row) {
+    StringBuilder line = new StringBuilder();
+    for (int i = 0; i < row.size(); i++) {
+      if (i > 0) {
+        line.append(DELIMITER);
+      }
+      String value = row.get(i);
+      if (value == null) {
+        line.append(NULL_VALUE);
+      } else {
+        if (isEscaped(value)) {
+          line.append('\\');
+        }
+        line.append(value);
+      }
+    }
+    return line.append('\n').toString();
+  }
+
   /**
    * @param reader input reader
    * @param data the data
@@ -32,11 +61,67 @@ public class CustomDelimiterDataSerializerImplementation implements DataSerializ
       List<List<String>> rows = new ArrayList<>();
       String line;
       while ((line = reader.readLine()) != null) {
-        rows.add(List.of(line.split("-_-")));
+        rows.add(deserializeRow(line));
       }
       data.setData(rows);
     } catch (IOException e) {
       e.printStackTrace();
     }
   }
+
+  /**
+   * @param line serialized row
+   * @return values of the row, {@code null} for a null value
+   */
+  @Override
+  public List<String> deserializeRow(String line) {
+    /* Split by hand, String.split compiles a pattern for every line when the delimiter is longer
+     * than one character */
+    List<String> values = new ArrayList<>();
+    int start = 0;
+    int end;
+    while ((end = line.indexOf(DELIMITER, start)) != -1) {
+      values.add(unescape(line.substring(start, end)));
+      start = end + 3;
+    }
+    values.add(unescape(line.substring(start)));
+    return values;
+  }
+
+  private static String unescape(String value) {
+    if (!isEscaped(value)) {
+      return value;
+    }
+    return value.length() == NULL_VALUE.length() ? null : value.substring(1);
+  }
+
+  /* Whether the value is \N or \N behind more backslashes */
+  private static boolean isEscaped(String value) {
+    int last = value.length() - 1;
+    if (last < 1 || value.charAt(last) != 'N' || value.charAt(0) != '\\') {
+      return false;
+    }
+    for (int i = 1; i < last; i++) {
+      if (value.charAt(i) != '\\') {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Line breaks end the row, and the delimiter would split the value. A value ending in {@code -_}
+   * is split too, as its end and the delimiter after it read {@code -_-_-}.
+   *
+   * @param value a value of a row
+   * @return whether the value can be serialized
+   */
+  @Override
+  public boolean canSerialize(String value) {
+    return value == null
+        || value.indexOf('\n') == -1
+        && value.indexOf('\r') == -1
+        && !value.contains(DELIMITER)
+        && !value.endsWith("-_");
+  }
 }
@@ -1,5 +1,3 @@
-import java.util.List;
-
 /**
  * The {@code DataDefinition} interface defines methods for creating and dropping tables in a dbms.
  */
@@ -8,9 +6,9 @@ public interface DataDefinition {
    * Creates a new table with the specified name and columns.
    *
    * @param tableName The name of the table to be created.
-   * @param columns   The list of column names for the new table.
+   * @param schema    The column names and types of the new table.
    */
-  void createTable(String tableName, List<String> columns);
+  void createTable(String tableName, TableSchema schema);
 
   /**
    * Drops an existing table with the specified name.
@@ -18,4 +16,20 @@ public interface DataDefinition {
    * @param tableName The name of the table to be dropped.
    */
   void dropTable(String tableName);
+
+  /**
+   * Creates a secondary index on a column of an existing table.
+   *
+   * @param indexName  The name of the index to be created.
+   * @param tableName  The name of the indexed table.
+   * @param columnName The name of the indexed column.
+   */
+  void createIndex(String indexName, String tableName, String columnName);
+
+  /**
+   * Drops an existing index with the specified name.
+   *
+   * @param indexName The name of the index to be dropped.
+   */
+  void dropIndex(String indexName);
 }
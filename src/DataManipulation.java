@@ -9,9 +9,60 @@ public interface DataManipulation {
    *
    * @param tableName The name of the table from which to select data.
    * @param columns   The list of column names to be selected. If null or empty, all columns are selected.
-   * @param condition The condition to be applied to the selection. If null or empty, no condition is applied.
+   * @param condition The condition to be applied to the selection. If null, no condition is applied.
+   * @param limit     The maximum number of rows to be selected, or -1 for all rows.
    */
-  void select(String tableName, List<String> columns, String condition);
+  void select(String tableName, List<String> columns, Expression condition, long limit);
+
+  /**
+   * Shows how a select would be executed.
+   *
+   * @param tableName The name of the table from which to select data.
+   * @param columns   The list of column names to be selected. If null or empty, all columns are selected.
+   * @param condition The condition to be applied to the selection. If null, no condition is applied.
+   * @param limit     The maximum number of rows to be selected, or -1 for all rows.
+   * @param analyze   Whether the select is executed to show the actual rows and times as well.
+   */
+  void explain(
+      String tableName, List<String> columns, Expression condition, long limit, boolean analyze);
+
+  /**
+   * Selects the rows of a table, or with GROUP BY or aggregates such as {@code COUNT(*)} one row
+   * per group of rows.
+   *
+   * @param select The select of a single table.
+   */
+  void select(Statement.Select select);
+
+  /**
+   * Shows how a select of a single table would be executed.
+   *
+   * @param select  The select of a single table.
+   * @param analyze Whether the select is executed to show the actual rows and times as well.
+   */
+  void explain(Statement.Select select, boolean analyze);
+
+  /**
+   * Selects the rows of two tables whose join columns are equal, or the groups of those rows.
+   *
+   * @param select The select, with the joined table and the condition the tables are joined on.
+   */
+  void join(Statement.Select select);
+
+  /**
+   * Shows how a join would be executed.
+   *
+   * @param select  The select, with the joined table and the condition the tables are joined on.
+   * @param analyze Whether the join is executed to show the actual rows and times as well.
+   */
+  void explainJoin(Statement.Select select, boolean analyze);
+
+  /**
+   * Collects the statistics of a table that selects are planned with.
+   *
+   * @param tableName The name of the table to be analyzed.
+   */
+  void analyze(String tableName);
 
   /**
    * Inserts data into a table.
@@ -20,4 +71,41 @@ public interface DataManipulation {
    * @param values    The data to be inserted, represented as a List of Lists of Strings.
    */
   void insert(String tableName, List<List<String>> values);
+
+  /**
+   * Changes the values of the rows of a table that match a condition. Rows are rewritten where
+   * they are if their new values fit.
+   *
+   * @param tableName The name of the table whose rows are changed.
+   * @param columns   The changed columns.
+   * @param values    The new value of every changed column.
+   * @param condition The condition the changed rows match. If null, every row is changed.
+   */
+  void update(String tableName, List<String> columns, List<String> values, Expression condition);
+
+  /**
+   * Deletes the rows of a table that match a condition. The rows are only marked as deleted, their
+   * space is given back when the table is vacuumed.
+   *
+   * @param tableName The name of the table whose rows are deleted.
+   * @param condition The condition the deleted rows match. If null, every row is deleted.
+   */
+  void delete(String tableName, Expression condition);
+
+  /**
+   * Rewrites a table file without its deleted rows, which otherwise happens in the background once
+   * enough of the file is unused.
+   *
+   * @param tableName The name of the table to be vacuumed.
+   */
+  void vacuum(String tableName);
+
+  /**
+   * Appends the rows of a CSV file to a table, committing them in batches.
+   *
+   * @param tableName The name of the table into which the rows are loaded.
+   * @param path      The path of the CSV file.
+   * @param header    Whether the first line of the file names the columns and is skipped.
+   */
+  void load(String tableName, String path, boolean header);
 }
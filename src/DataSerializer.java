@@ -1,4 +1,5 @@
 import java.io.BufferedReader;
+import java.util.List;
 
 /**
  * The {@code DataSerializer} interface defines methods for serializing and deserializing data.
@@ -6,5 +7,31 @@ import java.io.BufferedReader;
 public interface DataSerializer {
   String serializeData(Data data);
 
+  /**
+   * Serializes a single row, including its record terminator, so that new rows can be appended to
+   * an existing file without rewriting it.
+   *
+   * @param row the row to be serialized, {@code null} values are null
+   * @return serialized row
+   */
+  String serializeRow(List<String> row);
+
   void deserializeData(BufferedReader reader, Data data);
+
+  /**
+   * Deserializes a single row read from the file, without its record terminator.
+   *
+   * @param line the serialized row
+   * @return values of the row, {@code null} for a null value
+   */
+  List<String> deserializeRow(String line);
+
+  /**
+   * Checks whether a value reads back unchanged from a serialized row, whatever values are next to
+   * it. Rows holding other values have to be rejected before they are serialized.
+   *
+   * @param value a value of a row
+   * @return whether the value can be serialized
+   */
+  boolean canSerialize(String value);
 }
@@ -1,94 +1,175 @@
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
-import java.nio.file.Paths;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
-import java.util.logging.FileHandler;
-import java.util.logging.Handler;
-import java.util.logging.Logger;
-import java.util.logging.SimpleFormatter;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.function.LongPredicate;
+import java.util.stream.LongStream;
 
 public class Database implements DataDefinition, DataManipulation, TransactionControl {
-  private static final Logger logger = setupLogger();
+  private static final String INDEX_FILE_EXTENSION = ".idx";
+  private static final String STATISTICS_FILE_EXTENSION = ".stats";
+  /* Marks a table whose indexes are rebuilt after a load, also if it is interrupted by a crash */
+  private static final String LOAD_MARKER_EXTENSION = ".loading";
+  private static final AuditLog auditLog =
+      new AuditLog(
+          Constants.AUDIT_LOG_PATH,
+          Constants.AUDIT_BUFFER_RECORDS,
+          Constants.AUDIT_OVERFLOW_POLICY);
   private static Database instance;
   private final UserAuthenticationManager userAuthenticationManager;
-  private final TransactionManager transactionManager;
+  /* Session of the statement being executed by the current thread */
+  private static final ThreadLocal<Session> currentSession = new ThreadLocal<>();
   private final DataSerializer dataSerializer = new CustomDelimiterDataSerializerImplementation();
-  private QueryTransactionProcessor queryTransactionProcessor;
+  private final TableCache tableCache = new TableCache(Constants.TABLE_CACHE_MEMORY_BUDGET);
+  private final QueryMetrics queryMetrics = new QueryMetrics();
+  private final Map<String, StorageFormat> storageFormats = new ConcurrentHashMap<>();
+  private final Map<String, List<BPlusTreeIndex>> indexes = new ConcurrentHashMap<>();
+  private final Map<String, TableStatistics> statistics = new ConcurrentHashMap<>();
 
-  private Database(
-      UserAuthenticationManager userAuthenticationManager, TransactionManager transactionManager) {
-    this.userAuthenticationManager = userAuthenticationManager;
-    this.transactionManager = transactionManager;
-  }
+  /* Changes reach the files of a table in log order, changes of different tables in parallel */
+  private final LockManager lockManager = new LockManager(Constants.LOCK_STRIPES);
+  private final WriteAheadLog writeAheadLog;
+  private final VersionManager versionManager = new VersionManager();
+  /* Applies the logged changes, replays the log and writes checkpoints */
+  private final RecoveryManager recoveryManager;
+  /* Finds the rows updates and deletes change */
+  private final RowRewriter rowRewriter;
+  /* Validates, logs and applies the changes of statements and transactions */
+  private final TransactionCommitter transactionCommitter;
+  private final Set<String> loadingTables = ConcurrentHashMap.newKeySet();
 
-  /* Logger setup */
-  private static Logger setupLogger() {
-    Logger logger = Logger.getLogger(Database.class.getName());
+  private Database(UserAuthenticationManager userAuthenticationManager) {
+    this.userAuthenticationManager = userAuthenticationManager;
     try {
-      /* Check if the log file already exists */
-      boolean append = Files.exists(Paths.get("files/database.log"));
-
-      /* Configure the FileHandler */
-      FileHandler fileHandler = new FileHandler("files/database.log", append);
-      fileHandler.setFormatter(new SimpleFormatter());
-
-      /* Add the FileHandler to the logger */
-      logger.addHandler(fileHandler);
-
-      /* Remove the default console handler */
-      Logger rootLogger = Logger.getLogger("");
-      Handler[] handlers = rootLogger.getHandlers();
-      for (Handler handler : handlers) {
-        rootLogger.removeHandler(handler);
-      }
+      this.writeAheadLog = new WriteAheadLog(Constants.WAL_FILE_PATH);
     } catch (IOException e) {
-      e.printStackTrace();
+      throw new UncheckedIOException("Failed to open the transaction log", e);
     }
-    return logger;
+    this.recoveryManager =
+        new RecoveryManager(this, writeAheadLog, versionManager, lockManager, tableCache);
+    this.rowRewriter = new RowRewriter(this, versionManager, recoveryManager);
+    this.transactionCommitter =
+        new TransactionCommitter(
+            this,
+            userAuthenticationManager,
+            writeAheadLog,
+            versionManager,
+            lockManager,
+            recoveryManager,
+            rowRewriter);
+    SpillFile.deleteAll();
+    recoveryManager.recover();
+    finishInterruptedLoads();
+    recoveryManager.scheduleCheckpoints();
+    /* Records still in the buffer of the audit log are written before the process ends */
+    Runtime.getRuntime().addShutdownHook(new Thread(auditLog::close, "audit-log-on-exit"));
   }
 
   /**
-   * Get the singleton instance of the Database.
+   * Get the singleton instance of the Database, shared by all sessions.
    *
    * @param userAuthenticationManager User authentication manager
-   * @param transactionManager Transaction manager
    * @return Singleton instance of the Database
    */
   public static synchronized Database getInstance(
-      UserAuthenticationManager userAuthenticationManager, TransactionManager transactionManager) {
+      UserAuthenticationManager userAuthenticationManager) {
     if (instance == null) {
-      instance = new Database(userAuthenticationManager, transactionManager);
+      instance = new Database(userAuthenticationManager);
     }
     return instance;
   }
 
+  /**
+   * Executes a query on behalf of a session. Sessions may execute queries concurrently, each on
+   * its own thread.
+   *
+   * @param session the session the query belongs to
+   * @param query the query
+   * @throws IncorrectQueryException if the query is incorrect or cannot be processed
+   */
+  public void execute(Session session, String query) throws IncorrectQueryException {
+    Session previous = currentSession.get();
+    currentSession.set(session);
+    QueryStats stats = new QueryStats();
+    QueryStats previousStats = QueryStats.attach(stats);
+    long start = System.nanoTime();
+    try {
+      new QueryTransactionProcessor(this, userAuthenticationManager, session.getTransactionManager())
+          .processor(query);
+    } finally {
+      long nanos = System.nanoTime() - start;
+      QueryStats.attach(previousStats);
+      currentSession.set(previous);
+      queryMetrics.record(stats, query, session.getUser(), nanos);
+    }
+  }
+
+  /**
+   * @return metrics of the queries executed since the database was opened
+   */
+  public QueryMetrics getQueryMetrics() {
+    return queryMetrics;
+  }
+
+  /**
+   * Ends a session, rolling back its transaction if one is in progress.
+   *
+   * @param session the session
+   */
+  public void closeSession(Session session) {
+    TransactionManager transactionManager = session.getTransactionManager();
+    transactionManager.setInTransaction(false);
+    transactionManager.clear();
+    releaseSnapshot(transactionManager);
+  }
+
+  /**
+   * @return settings of the session executing the current statement
+   */
+  public SessionSettings getSessionSettings() {
+    return currentSession.get().getSessionSettings();
+  }
+
+  /* Transaction state of the session executing the current statement, null outside of one */
+  TransactionManager transactionManager() {
+    Session session = currentSession.get();
+    return session == null ? null : session.getTransactionManager();
+  }
+
+  private String currentUser() {
+    return currentSession.get().getUser();
+  }
+
   /**
    * @param tableName name of the table to be created
-   * @param columns columns to be added
+   * @param schema columns to be added, with their types
    */
   @Override
-  public void createTable(String tableName, List<String> columns) {
-    String filePath = "files/" + tableName.toLowerCase() + ".csv";
-
-    File tableFile = new File(filePath);
-    if (tableFile.exists()) {
+  public void createTable(String tableName, TableSchema schema) {
+    Snapshot snapshot = versionManager.latestSnapshot();
+    if (openStorage(tableName) != null) {
       System.out.println("Table already exists!");
       return;
     }
-    PersistentDataProcessor persistentDataProcessorForUser =
-        new PersistentDataProcessor(filePath, dataSerializer);
-    Data data = new Data(List.of(columns));
-    persistentDataProcessorForUser.saveData(data);
+    RedoRecord.CreateTable record =
+        new RedoRecord.CreateTable(tableName, getStorageFormat(tableName), schema);
+    if (!commit(List.of(record), snapshot, lsn -> recoveryManager.apply(record, lsn, true))) {
+      return;
+    }
     System.out.println("Table created successfully!");
-    logger.info(
-        "Table created: "
-            + tableName
-            + " with columns: "
-            + columns
-            + " by "
-            + userAuthenticationManager.getCurrentUser());
+    auditLog.log(AuditLog.Event.TABLE_CREATED, currentUser(), tableName, schema.toHeader());
   }
 
   /**
@@ -96,55 +177,999 @@ public class Database implements DataDefinition, DataManipulation, TransactionCo
    */
   @Override
   public void dropTable(String tableName) {
-    String filePath = "files/" + tableName.toLowerCase() + ".csv";
-
-    File tableFile = new File(filePath);
-    if (tableFile.exists()) {
-      if (tableFile.delete()) {
-        System.out.println("Table " + tableName + " dropped successfully.");
-        logger.info(
-            "Table dropped: " + tableName + " by " + userAuthenticationManager.getCurrentUser());
-      } else {
-        System.out.println("Failed to delete table " + tableName);
-      }
-    } else {
+    Snapshot snapshot = versionManager.latestSnapshot();
+    if (openStorage(tableName) == null) {
       System.out.println("Table " + tableName + " does not exists!");
+      return;
     }
+    RedoRecord.DropTable record = new RedoRecord.DropTable(tableName);
+    if (commit(List.of(record), snapshot, lsn -> recoveryManager.apply(record, lsn, true))) {
+      System.out.println("Table " + tableName + " dropped successfully.");
+      auditLog.log(AuditLog.Event.TABLE_DROPPED, currentUser(), tableName);
+    } else {
+      System.out.println("Failed to delete table " + tableName);
+    }
+  }
+
+  /**
+   * @param tableName name of the table
+   * @param columns columns to be selected
+   * @param condition condition of the query
+   * @param limit maximum number of rows, -1 for all rows
+   */
+  @Override
+  public void select(String tableName, List<String> columns, Expression condition, long limit) {
+    select(new Statement.Select(tableName, columns, condition, limit));
+  }
+
+  /**
+   * Selects the rows of a table, or with GROUP BY or aggregates its groups.
+   *
+   * @param select the select
+   */
+  @Override
+  public void select(Statement.Select select) {
+    withSnapshot(
+        select.tableName(), snapshot -> select(select, snapshot, SelectMode.EXECUTE));
   }
 
   /**
    * @param tableName name of the table
    * @param columns columns to be selected
    * @param condition condition of the query
+   * @param limit maximum number of rows, -1 for all rows
+   * @param analyze whether the select is executed to show the actual rows and times of the plan
+   */
+  @Override
+  public void explain(
+      String tableName, List<String> columns, Expression condition, long limit, boolean analyze) {
+    explain(new Statement.Select(tableName, columns, condition, limit), analyze);
+  }
+
+  /**
+   * @param select the select
+   * @param analyze whether the select is executed to show the actual rows and times of the plan
+   */
+  @Override
+  public void explain(Statement.Select select, boolean analyze) {
+    SelectMode mode = analyze ? SelectMode.EXPLAIN_ANALYZE : SelectMode.EXPLAIN;
+    withSnapshot(select.tableName(), snapshot -> select(select, snapshot, mode));
+  }
+
+  /**
+   * Collects the statistics the planner estimates the rows of selects from, replacing the ones
+   * collected before.
+   *
+   * @param tableName name of the table
+   */
+  @Override
+  public void analyze(String tableName) {
+    withSnapshot(tableName, snapshot -> analyze(tableName, snapshot));
+  }
+
+  /**
+   * Selects the rows of two tables with equal join keys.
+   *
+   * @param select the select, with its join
    */
   @Override
-  public void select(String tableName, List<String> columns, String condition) {
+  public void join(Statement.Select select) {
+    withSnapshot(
+        List.of(select.tableName(), select.join().tableName()),
+        snapshot -> join(select, snapshot, SelectMode.EXECUTE));
+  }
+
+  /**
+   * @param select the select, with its join
+   * @param analyze whether the join is executed to show the actual rows and times of the plan
+   */
+  @Override
+  public void explainJoin(Statement.Select select, boolean analyze) {
+    SelectMode mode = analyze ? SelectMode.EXPLAIN_ANALYZE : SelectMode.EXPLAIN;
+    withSnapshot(
+        List.of(select.tableName(), select.join().tableName()),
+        snapshot -> join(select, snapshot, mode));
+  }
+
+  /* What a select does with its plan */
+  private enum SelectMode {
+    EXECUTE,
+    EXPLAIN,
+    EXPLAIN_ANALYZE
+  }
+
+  /* Runs a read of a table in the snapshot of the transaction, or in a snapshot of its own */
+  void withSnapshot(String tableName, Consumer<Snapshot> read) {
+    withSnapshot(List.of(tableName), read);
+  }
+
+  private void withSnapshot(List<String> tableNames, Consumer<Snapshot> read) {
+    /* The snapshot has to see the last commit of the session, which may be applied before
+     * earlier commits of other sessions are */
+    versionManager.awaitApplied(transactionManager().getLastCommitLsn());
+    /* Readers only keep the tables from being created, dropped or vacuumed, the snapshot does the
+     * rest */
+    try (LockManager.Locks locks = lock(tableNames, LockMode.IS)) {
+      locks.await(Constants.LOCK_TIMEOUT_MILLIS);
+      Snapshot snapshot = transactionManager().getSnapshot();
+      if (snapshot != null) {
+        read.accept(snapshot);
+        return;
+      }
+      snapshot = versionManager.openSnapshot();
+      try {
+        read.accept(snapshot);
+      } finally {
+        versionManager.release(snapshot);
+      }
+    } catch (LockException e) {
+      System.out.println(e.getMessage());
+    }
+  }
+
+  private void select(Statement.Select select, Snapshot snapshot, SelectMode mode) {
+    String tableName = select.tableName();
+    List<String> columns = select.columns();
+    Expression condition = select.condition();
+    long limit = select.limit();
+    long planningStart = System.nanoTime();
+    TableStorage tableStorage = openStorage(tableName);
+    if (tableStorage != null && versionManager.isVisible(tableName, snapshot)) {
+      TableSchema schema = tableStorage.readSchema();
+      if (schema == null) {
+        System.out.println("Table " + tableName + " has no valid header!");
+        return;
+      }
+
+      /* The condition is compiled once against the schema, rows only evaluate the result */
+      RowPredicate predicate;
+      HashAggregator aggregator = null;
+      RowComparator comparator = null;
+      try {
+        if (select.isAggregate()) {
+          aggregator = aggregator(select, schema);
+        } else if (columns != null) {
+          for (String column : select.inputColumns()) {
+            if (schema.indexOf(column) == -1) {
+              throw new IncorrectQueryException("Column not found: " + column);
+            }
+          }
+        }
+        if (select.orderBy() != null) {
+          comparator =
+              comparator(
+                  select.orderBy(), aggregator != null ? aggregator.getOutputSchema() : schema);
+        }
+        predicate = PredicateCompiler.compile(condition, schema);
+      } catch (IncorrectQueryException e) {
+        System.out.println(e.getMessage());
+        return;
+      }
+
+      /* Rows appended by transactions the snapshot does not see are not read */
+      TableSnapshot tableSnapshot;
+      try {
+        tableSnapshot = versionManager.tableSnapshot(tableName, tableStorage, snapshot);
+      } catch (IOException e) {
+        System.out.println("Error loading data from file: " + tableStorage.getFile());
+        e.printStackTrace();
+        return;
+      }
+
+      /* Sorted rows are limited after the sort, the rows before it are all read */
+      long inputLimit = comparator != null ? -1 : limit;
+      QueryPlan plan =
+          select.isAggregate()
+              ? planAggregate(select, tableStorage, schema, inputLimit)
+              : planScan(tableName, tableStorage, schema, condition, inputLimit);
+      if (comparator != null) {
+        plan =
+            QueryPlanner.planSort(
+                plan,
+                describeSort(select.orderBy()),
+                limit,
+                Constants.SORT_MEMORY_BUDGET,
+                select.isAggregate()
+                    ? QueryPlanner.rowBytes(null, 0)
+                    : QueryPlanner.rowBytes(
+                        statisticsOf(tableName), tableStorage.getFile().length()));
+      }
+      long planningNanos = System.nanoTime() - planningStart;
+      if (mode == SelectMode.EXPLAIN) {
+        plan.print(null);
+        System.out.printf("Planning time: %.3f ms%n", planningNanos / 1e6);
+        return;
+      }
+
+      /* Rows flow scan -> filter -> [aggregate ->] [sort ->] limit -> print one batch at a time,
+       * pulled by the printer */
+      long executionStart = System.nanoTime();
+      List<AnalyzeRowCursor> actual = mode == SelectMode.EXPLAIN_ANALYZE ? new ArrayList<>() : null;
+      boolean[] projection = projection(schema, select.inputColumns(), condition);
+      RowCursor cursor =
+          aggregator != null
+              ? openAggregate(
+                  tableName,
+                  tableStorage,
+                  schema,
+                  plan,
+                  aggregator,
+                  projection,
+                  predicate,
+                  condition != null,
+                  tableSnapshot,
+                  actual)
+              : openPlan(
+                  tableName,
+                  tableStorage,
+                  schema,
+                  plan,
+                  projection,
+                  predicate,
+                  condition != null,
+                  tableSnapshot,
+                  actual);
+      if (cursor != null && comparator != null) {
+        cursor =
+            analyzed(
+                new SortCursor(cursor, comparator, limit, Constants.SORT_MEMORY_BUDGET),
+                actual,
+                0);
+      }
+      if (cursor != null && limit >= 0) {
+        cursor =
+            analyzed(
+                new LimitRowCursor(cursor, limit), actual, System.nanoTime() - executionStart);
+      }
+      if (cursor == null && mode == SelectMode.EXPLAIN_ANALYZE) {
+        System.out.println("Error loading data from file: " + tableStorage.getFile());
+        return;
+      }
+      output(cursor, columns, plan, actual, planningNanos, executionStart);
+      if (mode == SelectMode.EXPLAIN_ANALYZE) {
+        return;
+      }
+      auditLog.log(AuditLog.Event.TABLE_QUERIED, currentUser(), tableName, columns, condition);
+
+    } else {
+      System.out.println("Table " + tableName + " does not exists!");
+    }
+  }
+
+  /* Chooses how a table is read for a condition */
+  QueryPlan planScan(
+      String tableName,
+      TableStorage tableStorage,
+      TableSchema schema,
+      Expression condition,
+      long limit) {
+    List<QueryPlanner.IndexRange> indexRanges = new ArrayList<>();
+    collectIndexRanges(tableName, schema, condition, indexRanges);
+    long fileLength = tableStorage.getFile().length();
+    /* Hot tables are served from memory, the file is parsed only when it has changed */
+    boolean cacheable =
+        tableStorage.getFormat() == StorageFormat.TEXT
+            && fileLength <= tableCache.getMemoryBudget() / 4;
+    return QueryPlanner.plan(
+        tableName,
+        schema,
+        statisticsOf(tableName),
+        fileLength,
+        condition,
+        indexRanges,
+        limit,
+        cacheable,
+        getSessionSettings().getParallelism());
+  }
+
+  /* Checks the selected columns of a select with aggregates and creates the aggregator */
+  private static HashAggregator aggregator(Statement.Select select, TableSchema schema)
+      throws IncorrectQueryException {
+    if (select.columns() == null) {
+      throw new IncorrectQueryException("Select * cannot be grouped, name the selected columns");
+    }
+    Set<String> aggregates = new HashSet<>();
+    if (select.aggregates() != null) {
+      for (Statement.Aggregate aggregate : select.aggregates()) {
+        aggregates.add(aggregate.name());
+      }
+    }
+    /* Every other selected column has to be one the rows are grouped by */
+    for (String column : select.columns()) {
+      if (aggregates.contains(column)) {
+        continue;
+      }
+      int index = schema.indexOf(column);
+      if (index == -1) {
+        throw new IncorrectQueryException("Column not found: " + column);
+      }
+      boolean grouped = false;
+      if (select.groupBy() != null) {
+        for (String groupColumn : select.groupBy()) {
+          grouped |= schema.indexOf(groupColumn) == index;
+        }
+      }
+      if (!grouped) {
+        throw new IncorrectQueryException(
+            "Column " + column + " has to be grouped by or used in an aggregate");
+      }
+    }
+    return HashAggregator.create(schema, select.groupBy(), select.aggregates());
+  }
+
+  /* Chooses how the groups of a select on one table are computed */
+  private QueryPlan planAggregate(
+      Statement.Select select, TableStorage tableStorage, TableSchema schema, long limit) {
+    /* COUNT(*) of the whole table is told by the file without reading the rows */
+    boolean countOnly = select.condition() == null && select.groupBy() == null;
+    if (countOnly) {
+      for (Statement.Aggregate aggregate : select.aggregates()) {
+        countOnly &= aggregate.function() == AggregateFunction.COUNT && aggregate.column() == null;
+      }
+    }
+    return QueryPlanner.planTableAggregate(
+        select.tableName(),
+        planScan(select.tableName(), tableStorage, schema, select.condition(), -1),
+        schema,
+        statisticsOf(select.tableName()),
+        tableStorage.getFile().length(),
+        select.condition(),
+        describeAggregates(select),
+        select.groupBy(),
+        countOnly,
+        limit,
+        getSessionSettings().getParallelism());
+  }
+
+  /* The aggregates of a select and the columns it groups by, as the plan shows them */
+  private static String describeAggregates(Statement.Select select) {
+    List<String> names = new ArrayList<>();
+    if (select.aggregates() != null) {
+      for (Statement.Aggregate aggregate : select.aggregates()) {
+        names.add(aggregate.name());
+      }
+    }
+    String description = String.join(", ", names);
+    if (select.groupBy() != null) {
+      description +=
+          (description.isEmpty() ? "" : " ") + "group by " + String.join(", ", select.groupBy());
+    }
+    return description;
+  }
+
+  /* Resolves the keys of an ORDER BY against the schema of the sorted rows */
+  private static RowComparator comparator(List<Statement.SortKey> orderBy, TableSchema schema)
+      throws IncorrectQueryException {
+    int[] columns = new int[orderBy.size()];
+    boolean[] descending = new boolean[orderBy.size()];
+    for (int i = 0; i < orderBy.size(); i++) {
+      Statement.SortKey key = orderBy.get(i);
+      columns[i] = schema.indexOf(key.column());
+      if (columns[i] == -1) {
+        throw new IncorrectQueryException("Column not found: " + key.column());
+      }
+      descending[i] = key.descending();
+    }
+    return new RowComparator(schema, columns, descending);
+  }
+
+  /* The keys of an ORDER BY, as the plan shows them */
+  private static String describeSort(List<Statement.SortKey> orderBy) {
+    List<String> keys = new ArrayList<>();
+    for (Statement.SortKey key : orderBy) {
+      keys.add(key.toString());
+    }
+    return String.join(", ", keys);
+  }
+
+  /* Opens the cursor returning the groups of a plan, null if the table cannot be read */
+  private RowCursor openAggregate(
+      String tableName,
+      TableStorage tableStorage,
+      TableSchema schema,
+      QueryPlan plan,
+      HashAggregator aggregator,
+      boolean[] projection,
+      RowPredicate predicate,
+      boolean filtered,
+      TableSnapshot tableSnapshot,
+      List<AnalyzeRowCursor> actual) {
+    long openStart = System.nanoTime();
+    switch (plan.getAccessMethod()) {
+      case ROW_COUNT -> {
+        long rows;
+        try {
+          rows = tableStorage.countRows(tableSnapshot.getEndRowId());
+        } catch (IOException e) {
+          e.printStackTrace();
+          return null;
+        }
+        /* The old values of rows are kept before they are written, so a row changed while it was
+         * counted is seen here; the snapshot then counts the rows as it reads them */
+        if (!tableSnapshot.isCurrent()) {
+          RowCursor cursor = tableStorage.openCursor(projection, tableSnapshot);
+          return cursor == null
+              ? null
+              : analyzed(
+                  new AggregateCursor(cursor, aggregator), actual, System.nanoTime() - openStart);
+        }
+        ColumnarTable count = new ColumnarTable(aggregator.getOutputSchema());
+        for (int column = 0; column < count.getSchema().getColumnCount(); column++) {
+          count.putLong(column, rows);
+        }
+        count.finishRow();
+        return analyzed(new TableRowCursor(count), actual, System.nanoTime() - openStart);
+      }
+      case PARALLEL_AGGREGATE -> {
+        /* Every segment is grouped on its own thread, the consumer merges the partial groups */
+        return analyzed(
+            new ParallelAggregateCursor(
+                tableStorage,
+                projection,
+                predicate,
+                tableSnapshot,
+                aggregator,
+                getSessionSettings().getParallelism()),
+            actual,
+            0);
+      }
+      default -> {
+        RowCursor cursor =
+            openPlan(
+                tableName,
+                tableStorage,
+                schema,
+                plan,
+                projection,
+                predicate,
+                filtered,
+                tableSnapshot,
+                actual);
+        if (cursor == null) {
+          return null;
+        }
+        return analyzed(
+            new AggregateCursor(cursor, aggregator), actual, System.nanoTime() - openStart);
+      }
+    }
+  }
+
+  /* Opens the scan of a plan and the filter on top of it, null if the table cannot be read */
+  private RowCursor openPlan(
+      String tableName,
+      TableStorage tableStorage,
+      TableSchema schema,
+      QueryPlan plan,
+      boolean[] projection,
+      RowPredicate predicate,
+      boolean filtered,
+      TableSnapshot tableSnapshot,
+      List<AnalyzeRowCursor> actual) {
+    long openStart = System.nanoTime();
+    RowCursor cursor =
+        openScan(tableName, tableStorage, schema, plan, projection, predicate, tableSnapshot);
+    if (cursor == null) {
+      return null;
+    }
+    /* An index scan reads the index when it is opened */
+    long openNanos = System.nanoTime() - openStart;
+    cursor = analyzed(cursor, actual, openNanos);
+    if (plan.getAccessMethod() != QueryPlan.AccessMethod.PARALLEL_SCAN) {
+      cursor = new FilterRowCursor(cursor, predicate);
+      /* Without a condition the filter passes every row and is not part of the plan */
+      if (filtered) {
+        cursor = analyzed(cursor, actual, openNanos);
+      }
+    }
+    return cursor;
+  }
+
+  /* Prints the rows of a select, or for EXPLAIN ANALYZE only counts them and prints the plan */
+  private void output(
+      RowCursor cursor,
+      List<String> columns,
+      QueryPlan plan,
+      List<AnalyzeRowCursor> actual,
+      long planningNanos,
+      long executionStart) {
+    if (actual != null) {
+      long rows = 0;
+      try (RowCursor rowCursor = cursor) {
+        while (rowCursor.next()) {
+          rows++;
+        }
+      }
+      long executionNanos = System.nanoTime() - executionStart;
+      QueryStats.recordReturned(rows);
+      plan.print(actual);
+      System.out.printf("Planning time: %.3f ms%n", planningNanos / 1e6);
+      System.out.printf("Execution time: %.3f ms%n", executionNanos / 1e6);
+      return;
+    }
+    DataTableProcessAndPrint dataTableProcessAndPrint = new DataTableProcessAndPrint();
+    Session session = currentSession.get();
+    ResultFormat format = session.getSessionSettings().getResultFormat();
+    /* Binary rows go where the connection keeps them apart from the printed text, if it does */
+    OutputStream outputStream =
+        format == ResultFormat.BINARY && session.getResultOutput() != null
+            ? session.getResultOutput()
+            : System.out;
+    try (RowCursor rows = cursor) {
+      QueryStats.recordReturned(
+          dataTableProcessAndPrint.printTable(rows, columns, format, outputStream));
+    }
+  }
+
+  /* Opens the access method of a plan, null if the table cannot be read */
+  private RowCursor openScan(
+      String tableName,
+      TableStorage tableStorage,
+      TableSchema schema,
+      QueryPlan plan,
+      boolean[] projection,
+      RowPredicate predicate,
+      TableSnapshot tableSnapshot) {
+    switch (plan.getAccessMethod()) {
+      case INDEX_SCAN, INDEX_ORDER_SCAN -> {
+        QueryPlanner.IndexRange range = plan.getIndexRange();
+        long[] rowIds =
+            plan.getAccessMethod() == QueryPlan.AccessMethod.INDEX_SCAN
+                ? range.search()
+                : range.searchInKeyOrder();
+        /* Indexes hold the current values of rows, which the snapshot may not see. Entries are
+         * only changed after the old values of their rows are kept, so searching first and
+         * asking then misses no change. */
+        if (rowIds != null && tableSnapshot.isCurrent()) {
+          /* Only the rows found by the index are read, the condition is checked again on them */
+          long endRowId = tableSnapshot.getEndRowId();
+          rowIds = Arrays.stream(rowIds).filter(rowId -> rowId < endRowId).toArray();
+          return new IndexOrderCursor(tableStorage, schema, rowIds, projection, tableSnapshot);
+        }
+        if (plan.getAccessMethod() == QueryPlan.AccessMethod.INDEX_ORDER_SCAN) {
+          /* A merge join needs the rows in the order of the key */
+          RowCursor cursor = tableStorage.openCursor(projection, tableSnapshot);
+          int[] key = {schema.indexOf(range.index().getColumnName())};
+          return cursor == null
+              ? null
+              : new SortCursor(
+                  cursor,
+                  new RowComparator(schema, key, new boolean[1]),
+                  -1,
+                  Constants.SORT_MEMORY_BUDGET);
+        }
+      }
+      case PARALLEL_SCAN -> {
+        /* Segments of the file are parsed and filtered on several threads, in file order */
+        return new ParallelScanCursor(
+            tableStorage,
+            schema,
+            projection,
+            predicate,
+            tableSnapshot,
+            getSessionSettings().getParallelism());
+      }
+      case HASH_JOIN, MERGE_JOIN, PARALLEL_AGGREGATE, ROW_COUNT ->
+          throw new IllegalArgumentException("Not a scan: " + plan);
+      case FULL_SCAN -> {
+        if (plan.isCached()) {
+          RowCursor cursor =
+              tableCache.openCursor(tableName.toLowerCase(), tableStorage, tableSnapshot);
+          if (cursor != null) {
+            return cursor;
+          }
+        }
+      }
+    }
+    /* Tables too large for the cache, paged tables, snapshots older than the cached table and
+     * indexes that cannot be read or are newer than the snapshot are streamed from the file */
+    return tableStorage.openCursor(projection, tableSnapshot);
+  }
+
+  /* Counts the rows and time of a step of the plan for EXPLAIN ANALYZE */
+  private static RowCursor analyzed(
+      RowCursor cursor, List<AnalyzeRowCursor> actual, long openNanos) {
+    if (actual == null) {
+      return cursor;
+    }
+    AnalyzeRowCursor analyzeRowCursor = new AnalyzeRowCursor(cursor, openNanos);
+    actual.add(analyzeRowCursor);
+    return analyzeRowCursor;
+  }
+
+  /* A table of a join, with the name its columns are qualified with */
+  private record JoinTable(
+      String tableName,
+      String name,
+      TableStorage storage,
+      TableSchema schema,
+      TableSnapshot tableSnapshot) {}
+
+  private void join(Statement.Select select, Snapshot snapshot, SelectMode mode) {
+    long planningStart = System.nanoTime();
+    Statement.Join join = select.join();
+    JoinTable left = joinTable(select.tableName(), select.alias(), snapshot);
+    JoinTable right = left == null ? null : joinTable(join.tableName(), join.alias(), snapshot);
+    if (right == null) {
+      return;
+    }
+    if (left.name().equalsIgnoreCase(right.name())) {
+      System.out.println("A table joined with itself needs an alias: " + left.name());
+      return;
+    }
+
+    /* Columns of the joined rows are named table.column, those of the left table first */
+    List<String> names = new ArrayList<>();
+    List<ColumnType> types = new ArrayList<>();
+    for (JoinTable table : List.of(left, right)) {
+      for (int column = 0; column < table.schema().getColumnCount(); column++) {
+        names.add(table.name() + "." + table.schema().getColumnName(column));
+        types.add(table.schema().getColumnType(column));
+      }
+    }
+    TableSchema schema = new TableSchema(names, types);
+    int leftColumns = left.schema().getColumnCount();
+
+    /* The conditions of ON and WHERE are the same for an inner join */
+    List<Expression> conjuncts = new ArrayList<>();
+    conjuncts(join.condition(), conjuncts);
+    conjuncts(select.condition(), conjuncts);
+    Set<String> used = new HashSet<>();
+    for (Expression conjunct : conjuncts) {
+      conjunct.collectColumns(used);
+    }
+    HashAggregator aggregator = null;
+    RowComparator comparator = null;
+    try {
+      if (select.inputColumns() != null) {
+        for (String column : select.inputColumns()) {
+          if (schema.indexOf(column) == -1 && !isAmbiguous(column, left, right)) {
+            throw new IncorrectQueryException("Column not found: " + column);
+          }
+          used.add(column.toLowerCase());
+        }
+      }
+      for (String column : used) {
+        if (isAmbiguous(column, left, right)) {
+          throw new IncorrectQueryException("Column is ambiguous: " + column);
+        }
+      }
+      if (select.isAggregate()) {
+        aggregator = aggregator(select, schema);
+      }
+      if (select.orderBy() != null) {
+        comparator =
+            comparator(
+                select.orderBy(), aggregator != null ? aggregator.getOutputSchema() : schema);
+      }
+    } catch (IncorrectQueryException e) {
+      System.out.println(e.getMessage());
+      return;
+    }
 
-    String filePath = "files/" + tableName.toLowerCase() + ".csv";
+    /* The first equality of a column of each table is the join key */
+    Expression.Comparison key = null;
+    int leftKey = -1;
+    int rightKey = -1;
+    for (Expression conjunct : conjuncts) {
+      if (conjunct instanceof Expression.Comparison comparison
+          && comparison.operator() == Expression.ComparisonOperator.EQUAL
+          && comparison.left() instanceof Expression.Column first
+          && comparison.right() instanceof Expression.Column second) {
+        int firstIndex = schema.indexOf(first.name());
+        int secondIndex = schema.indexOf(second.name());
+        if (firstIndex != -1
+            && secondIndex != -1
+            && (firstIndex < leftColumns) != (secondIndex < leftColumns)) {
+          key = comparison;
+          leftKey = Math.min(firstIndex, secondIndex);
+          rightKey = Math.max(firstIndex, secondIndex) - leftColumns;
+          break;
+        }
+      }
+    }
+    if (key == null) {
+      System.out.println("A join needs an equality of a column of each table, such as a.id = b.id");
+      return;
+    }
+    conjuncts.remove(key);
 
-    File tableFile = new File(filePath);
-    if (tableFile.exists()) {
+    /* Conditions on one table are checked while it is read, the others on the joined rows */
+    List<Expression> leftConjuncts = new ArrayList<>();
+    List<Expression> rightConjuncts = new ArrayList<>();
+    List<Expression> joinedConjuncts = new ArrayList<>();
+    for (Expression conjunct : conjuncts) {
+      Set<String> columns = new HashSet<>();
+      conjunct.collectColumns(columns);
+      boolean onLeft = false;
+      boolean onRight = false;
+      for (String column : columns) {
+        int index = schema.indexOf(column);
+        onLeft |= index != -1 && index < leftColumns;
+        onRight |= index >= leftColumns;
+      }
+      if (onLeft != onRight) {
+        (onLeft ? leftConjuncts : rightConjuncts).add(conjunct);
+      } else {
+        joinedConjuncts.add(conjunct);
+      }
+    }
+    Expression leftCondition = tableCondition(leftConjuncts, schema, 0, left.schema());
+    Expression rightCondition = tableCondition(rightConjuncts, schema, leftColumns, right.schema());
+    Expression condition = and(joinedConjuncts);
+    RowPredicate leftPredicate;
+    RowPredicate rightPredicate;
+    RowPredicate predicate;
+    try {
+      leftPredicate = PredicateCompiler.compile(leftCondition, left.schema());
+      rightPredicate = PredicateCompiler.compile(rightCondition, right.schema());
+      predicate = PredicateCompiler.compile(condition, schema);
+    } catch (IncorrectQueryException e) {
+      System.out.println(e.getMessage());
+      return;
+    }
+
+    /* Each table only reads the columns that are printed or take part in a condition */
+    boolean[] leftProjection = null;
+    boolean[] rightProjection = null;
+    if (select.inputColumns() != null) {
+      leftProjection = new boolean[leftColumns];
+      rightProjection = new boolean[right.schema().getColumnCount()];
+      for (String column : used) {
+        int index = schema.indexOf(column);
+        if (index != -1 && index < leftColumns) {
+          leftProjection[index] = true;
+        } else if (index != -1) {
+          rightProjection[index - leftColumns] = true;
+        }
+      }
+    }
 
-      PersistentDataProcessor persistentDataProcessorForSelect =
-          new PersistentDataProcessor(filePath, dataSerializer);
-      Data data = new Data(new ArrayList<>());
-      persistentDataProcessorForSelect.loadData(data);
+    QueryPlan plan =
+        QueryPlanner.planJoin(
+            joinInput(left, leftCondition, leftKey),
+            joinInput(right, rightCondition, rightKey),
+            schema,
+            condition,
+            aggregator != null || comparator != null ? -1 : select.limit(),
+            Constants.JOIN_MEMORY_BUDGET);
+    if (aggregator != null) {
+      /* The joined rows are grouped on the thread that pulls them */
+      plan =
+          QueryPlanner.planAggregate(
+              plan,
+              describeAggregates(select),
+              QueryPlanner.estimateGroups(select.groupBy(), null, plan.getEstimatedRows()),
+              comparator != null ? -1 : select.limit());
+    }
+    if (comparator != null) {
+      plan =
+          QueryPlanner.planSort(
+              plan,
+              describeSort(select.orderBy()),
+              select.limit(),
+              Constants.SORT_MEMORY_BUDGET,
+              aggregator != null
+                  ? QueryPlanner.rowBytes(null, 0)
+                  : QueryPlanner.rowBytes(
+                          statisticsOf(left.tableName()), left.storage().getFile().length())
+                      + QueryPlanner.rowBytes(
+                          statisticsOf(right.tableName()), right.storage().getFile().length()));
+    }
+    long planningNanos = System.nanoTime() - planningStart;
+    if (mode == SelectMode.EXPLAIN) {
+      plan.print(null);
+      System.out.printf("Planning time: %.3f ms%n", planningNanos / 1e6);
+      return;
+    }
 
-      DataTableProcessAndPrint dataTableProcessAndPrint = new DataTableProcessAndPrint();
-      dataTableProcessAndPrint.printTable(data.getData(), columns, condition);
-      logger.info(
-          "Table queries: "
-              + tableName
-              + " with columns: "
-              + columns
-              + " and condition "
-              + condition
-              + " by "
-              + userAuthenticationManager.getCurrentUser());
+    long executionStart = System.nanoTime();
+    List<AnalyzeRowCursor> actual = mode == SelectMode.EXPLAIN_ANALYZE ? new ArrayList<>() : null;
+    RowCursor leftCursor =
+        openPlan(
+            left.tableName(),
+            left.storage(),
+            left.schema(),
+            plan.getLeft(),
+            leftProjection,
+            leftPredicate,
+            leftCondition != null,
+            left.tableSnapshot(),
+            actual);
+    RowCursor rightCursor =
+        leftCursor == null
+            ? null
+            : openPlan(
+                right.tableName(),
+                right.storage(),
+                right.schema(),
+                plan.getRight(),
+                rightProjection,
+                rightPredicate,
+                rightCondition != null,
+                right.tableSnapshot(),
+                actual);
+    if (rightCursor == null) {
+      if (leftCursor != null) {
+        leftCursor.close();
+      }
+      System.out.println(
+          "Error loading data from the files of " + left.tableName() + " and " + right.tableName());
+      return;
+    }
 
+    RowCursor cursor;
+    if (plan.getAccessMethod() == QueryPlan.AccessMethod.MERGE_JOIN) {
+      cursor = new MergeJoinCursor(leftCursor, rightCursor, leftKey, rightKey, schema);
+    } else if (plan.isBuildLeft()) {
+      cursor =
+          new HashJoinCursor(
+              leftCursor, rightCursor, leftKey, rightKey, true, schema,
+              Constants.JOIN_MEMORY_BUDGET);
     } else {
+      cursor =
+          new HashJoinCursor(
+              rightCursor, leftCursor, rightKey, leftKey, false, schema,
+              Constants.JOIN_MEMORY_BUDGET);
+    }
+    cursor = analyzed(cursor, actual, System.nanoTime() - executionStart);
+    if (condition != null) {
+      cursor =
+          analyzed(
+              new FilterRowCursor(cursor, predicate), actual, System.nanoTime() - executionStart);
+    }
+    if (aggregator != null) {
+      cursor =
+          analyzed(
+              new AggregateCursor(cursor, aggregator), actual, System.nanoTime() - executionStart);
+    }
+    if (comparator != null) {
+      cursor =
+          analyzed(
+              new SortCursor(cursor, comparator, select.limit(), Constants.SORT_MEMORY_BUDGET),
+              actual,
+              System.nanoTime() - executionStart);
+    }
+    if (select.limit() >= 0) {
+      cursor =
+          analyzed(
+              new LimitRowCursor(cursor, select.limit()),
+              actual,
+              System.nanoTime() - executionStart);
+    }
+    output(cursor, select.columns(), plan, actual, planningNanos, executionStart);
+    if (mode == SelectMode.EXECUTE) {
+      auditLog.log(
+          AuditLog.Event.TABLES_JOINED,
+          currentUser(),
+          left.tableName(),
+          right.tableName(),
+          select.columns());
+    }
+  }
+
+  private JoinTable joinTable(String tableName, String alias, Snapshot snapshot) {
+    TableStorage tableStorage = openStorage(tableName);
+    if (tableStorage == null || !versionManager.isVisible(tableName, snapshot)) {
       System.out.println("Table " + tableName + " does not exists!");
+      return null;
     }
+    TableSchema schema = tableStorage.readSchema();
+    if (schema == null) {
+      System.out.println("Table " + tableName + " has no valid header!");
+      return null;
+    }
+    try {
+      TableSnapshot tableSnapshot = versionManager.tableSnapshot(tableName, tableStorage, snapshot);
+      return new JoinTable(
+          tableName, alias != null ? alias : tableName, tableStorage, schema, tableSnapshot);
+    } catch (IOException e) {
+      System.out.println("Error loading data from file: " + tableStorage.getFile());
+      e.printStackTrace();
+      return null;
+    }
+  }
+
+  /* A table of a join as the planner sees it, with the index on its join column if it has one */
+  private QueryPlanner.JoinInput joinInput(JoinTable table, Expression condition, int key) {
+    String keyColumn = table.schema().getColumnName(key);
+    BPlusTreeIndex keyIndex = null;
+    for (BPlusTreeIndex index : indexesOf(table.tableName())) {
+      if (index.getColumnName().equalsIgnoreCase(keyColumn) && index.getKeyType().isNumeric()) {
+        keyIndex = index;
+      }
+    }
+    return new QueryPlanner.JoinInput(
+        table.name(),
+        table.schema(),
+        planScan(table.tableName(), table.storage(), table.schema(), condition, -1),
+        statisticsOf(table.tableName()),
+        table.storage().getFile().length(),
+        keyColumn,
+        keyIndex,
+        condition);
+  }
+
+  /* A column named without its table that both tables of a join have */
+  private static boolean isAmbiguous(String column, JoinTable left, JoinTable right) {
+    return column.indexOf('.') == -1
+        && left.schema().indexOf(column) != -1
+        && right.schema().indexOf(column) != -1;
+  }
+
+  /* The conditions on one table of a join, with its columns named as in the table */
+  private static Expression tableCondition(
+      List<Expression> conjuncts, TableSchema joined, int offset, TableSchema table) {
+    Expression condition = and(conjuncts);
+    if (condition == null) {
+      return null;
+    }
+    return condition.renameColumns(
+        name -> {
+          int index = joined.indexOf(name);
+          return index == -1 ? name : table.getColumnName(index - offset);
+        });
+  }
+
+  /* Splits a condition into the parts joined by AND */
+  private static void conjuncts(Expression condition, List<Expression> conjuncts) {
+    if (condition instanceof Expression.And and) {
+      conjuncts(and.left(), conjuncts);
+      conjuncts(and.right(), conjuncts);
+    } else if (condition != null) {
+      conjuncts.add(condition);
+    }
+  }
+
+  private static Expression and(List<Expression> conjuncts) {
+    Expression condition = null;
+    for (Expression conjunct : conjuncts) {
+      condition = condition == null ? conjunct : new Expression.And(condition, conjunct);
+    }
+    return condition;
+  }
+
+  private void analyze(String tableName, Snapshot snapshot) {
+    TableStorage tableStorage = openStorage(tableName);
+    if (tableStorage == null || !versionManager.isVisible(tableName, snapshot)) {
+      System.out.println("Table " + tableName + " does not exists!");
+      return;
+    }
+    TableSnapshot tableSnapshot;
+    try {
+      tableSnapshot = versionManager.tableSnapshot(tableName, tableStorage, snapshot);
+    } catch (IOException e) {
+      System.out.println("Error loading data from file: " + tableStorage.getFile());
+      e.printStackTrace();
+      return;
+    }
+    long fileLength = tableStorage.getFile().length();
+    TableStatistics tableStatistics;
+    try (RowCursor cursor = tableStorage.openCursor(null, tableSnapshot)) {
+      if (cursor == null) {
+        return;
+      }
+      tableStatistics = TableStatistics.collect(cursor, fileLength);
+    }
+    try {
+      tableStatistics.write(statisticsPath(tableName));
+    } catch (IOException e) {
+      System.out.println("Failed to save the statistics of " + tableName);
+      e.printStackTrace();
+    }
+    statistics.put(tableName.toLowerCase(), tableStatistics);
+    System.out.println(
+        "Table " + tableName + " analyzed: " + tableStatistics.getRowCount() + " rows");
+    auditLog.log(AuditLog.Event.TABLE_ANALYZED, currentUser(), tableName);
+  }
+
+  /* Statistics of the last ANALYZE of a table, null if it was never analyzed */
+  private TableStatistics statisticsOf(String tableName) {
+    return statistics.computeIfAbsent(
+        tableName.toLowerCase(), name -> TableStatistics.read(statisticsPath(name)));
+  }
+
+  private static String statisticsPath(String tableName) {
+    return "files/" + tableName.toLowerCase() + STATISTICS_FILE_EXTENSION;
   }
 
   /**
@@ -153,69 +1178,815 @@ public class Database implements DataDefinition, DataManipulation, TransactionCo
    */
   @Override
   public void insert(String tableName, List<List<String>> values) {
-    String filePath = "files/" + tableName.toLowerCase() + ".csv";
-
-    File tableFile = new File(filePath);
-    if (tableFile.exists()) {
-      PersistentDataProcessor persistentDataProcessorForInsert =
-          new PersistentDataProcessor(filePath, dataSerializer);
-      Data data = new Data(new ArrayList<>());
-      persistentDataProcessorForInsert.loadData(data);
-      data.addData(values);
+    Snapshot snapshot = versionManager.latestSnapshot();
+    TableStorage tableStorage = openStorage(tableName);
+    if (tableStorage != null) {
+      /* Reject the whole statement if any value does not fit the declared column types */
+      TableSchema schema = tableStorage.readSchema();
+      if (schema == null) {
+        return;
+      }
+      for (List<String> row : values) {
+        String error = tableStorage.validateRow(schema, row);
+        if (error != null) {
+          System.out.println(error);
+          return;
+        }
+      }
 
-      persistentDataProcessorForInsert.saveData(data);
+      RedoRecord.Insert record = new RedoRecord.Insert(tableName, values);
+      if (!commit(List.of(record), snapshot, lsn -> recoveryManager.apply(record, lsn, true))) {
+        return;
+      }
 
       System.out.println("Values inserted successfully!");
-      logger.info(
-          "Values inserted into "
-              + tableName
-              + " with values: "
-              + values
-              + " by "
-              + userAuthenticationManager.getCurrentUser());
+      auditLog.log(AuditLog.Event.VALUES_INSERTED, currentUser(), tableName, values);
 
     } else {
       System.out.println("Table " + tableName + " does not exists!");
     }
   }
 
-  /** Start of the transaction */
+  /**
+   * Changes the rows of a table matching a condition. Only the changed rows are written: a row is
+   * rewritten in place if its new values fit into its space, otherwise it is deleted and appended.
+   *
+   * @param tableName name of the table
+   * @param columns columns to be changed
+   * @param values new value of every changed column
+   * @param condition condition of the changed rows, null for all rows
+   */
+  @Override
+  public void update(
+      String tableName, List<String> columns, List<String> values, Expression condition) {
+    RedoRecord record =
+        rowRewriter.rewrite(new Statement.Update(tableName, columns, values, condition));
+    if (record != null) {
+      auditLog.log(
+          AuditLog.Event.ROWS_UPDATED,
+          currentUser(),
+          tableName,
+          values,
+          condition,
+          RowRewriter.rowCountOf(record));
+    }
+  }
+
+  /**
+   * Deletes the rows of a table matching a condition by marking them, their space is given back
+   * when the table is vacuumed.
+   *
+   * @param tableName name of the table
+   * @param condition condition of the deleted rows, null for all rows
+   */
+  @Override
+  public void delete(String tableName, Expression condition) {
+    RedoRecord record = rowRewriter.rewrite(new Statement.Delete(tableName, condition));
+    if (record != null) {
+      auditLog.log(
+          AuditLog.Event.ROWS_DELETED,
+          currentUser(),
+          tableName,
+          condition,
+          RowRewriter.rowCountOf(record));
+    }
+  }
+
+  /**
+   * Rewrites a table file without its deleted rows and the old space of moved rows.
+   *
+   * @param tableName name of the table
+   */
+  @Override
+  public void vacuum(String tableName) {
+    if (openStorage(tableName) == null) {
+      System.out.println("Table " + tableName + " does not exists!");
+      return;
+    }
+    /* Old values of rows kept for older snapshots are found by row ids a vacuum changes */
+    if (!versionManager.isQuiet(tableName)) {
+      System.out.println(
+          "Table " + tableName + " cannot be vacuumed while older transactions read it");
+      return;
+    }
+    long reclaimed = vacuumTable(tableName);
+    if (reclaimed >= 0) {
+      System.out.println("Table " + tableName + " vacuumed, " + reclaimed + " bytes reclaimed");
+      auditLog.log(AuditLog.Event.TABLE_VACUUMED, currentUser(), tableName, reclaimed);
+    }
+  }
+
+  /*
+   * Commits the vacuum of a table like any change of it, so it waits for the statements using the
+   * table and is replayed from the log. Returns the bytes the file shrank by, -1 if it failed.
+   */
+  long vacuumTable(String tableName) {
+    /* Checkpoints write the state of the table files, which the vacuum replaces */
+    synchronized (recoveryManager.getCheckpointLock()) {
+      RedoRecord.Vacuum record = new RedoRecord.Vacuum(tableName);
+      long[] reclaimed = {-1};
+      commit(
+          List.of(record),
+          versionManager.latestSnapshot(),
+          lsn -> {
+            reclaimed[0] = recoveryManager.applyVacuum(record, lsn, true);
+            return reclaimed[0] >= 0;
+          });
+      return reclaimed[0];
+    }
+  }
+
+  @Override
+  public void load(String tableName, String path, boolean header) {
+    TableStorage tableStorage = openStorage(tableName);
+    if (tableStorage == null) {
+      System.out.println("Table " + tableName + " does not exists!");
+      return;
+    }
+    TableSchema schema = tableStorage.readSchema();
+    if (schema == null) {
+      System.out.println("Table " + tableName + " has no valid header!");
+      return;
+    }
+    Path file = importFile(path);
+    if (file == null) {
+      System.out.println(
+          "Only files in "
+              + Constants.IMPORT_DIRECTORY
+              + " can be loaded, given by a path relative to it: "
+              + path);
+      return;
+    }
+    if (!Files.isReadable(file)) {
+      System.out.println("File not found: " + path);
+      return;
+    }
+    if (!loadingTables.add(tableName.toLowerCase())) {
+      System.out.println("Table " + tableName + " is already being loaded");
+      return;
+    }
+    try {
+      List<BPlusTreeIndex> detached;
+      try {
+        detached = detachIndexes(tableName);
+      } catch (LockException e) {
+        System.out.println(e.getMessage());
+        return;
+      }
+
+      /* Every batch is a transaction of its own, committed while the next ones are parsed */
+      long start = System.nanoTime();
+      BulkLoader.Result result =
+          new BulkLoader(file, tableStorage, schema, header, Constants.LOAD_BATCH_ROWS)
+              .load(
+                  rows -> {
+                    RedoRecord.Insert record = new RedoRecord.Insert(tableName, rows);
+                    return commit(
+                        List.of(record),
+                        versionManager.latestSnapshot(),
+                        lsn -> recoveryManager.apply(record, lsn, false));
+                  });
+      long nanos = System.nanoTime() - start;
+      try {
+        QueryStats.recordRead(Files.size(file), 0);
+      } catch (IOException e) {
+        /* The size only feeds the metrics */
+      }
+      if (!detached.isEmpty()) {
+        rebuildLoadedIndexes(tableName, detached);
+      }
+
+      if (result.error() != null) {
+        System.out.println(result.error());
+      }
+      System.out.printf(
+          "%d rows loaded in %.3f s (%.0f rows/s)%n",
+          result.rows(), nanos / 1e9, result.rows() / Math.max(nanos / 1e9, 1e-9));
+      auditLog.log(AuditLog.Event.ROWS_LOADED, currentUser(), tableName, path, result.rows());
+    } finally {
+      loadingTables.remove(tableName.toLowerCase());
+    }
+  }
+
+  /*
+   * Resolves the path of LOAD DATA in the import directory, so that a statement cannot read other
+   * files of the server. Absolute paths, paths with .. and links leading out of the directory are
+   * refused with null.
+   */
+  private static Path importFile(String path) {
+    Path relative;
+    try {
+      relative = Path.of(path);
+    } catch (InvalidPathException e) {
+      return null;
+    }
+    if (relative.isAbsolute() || relative.getRoot() != null) {
+      return null;
+    }
+    for (Path name : relative) {
+      if (name.toString().equals("..")) {
+        return null;
+      }
+    }
+    Path directory = Path.of(Constants.IMPORT_DIRECTORY).toAbsolutePath().normalize();
+    Path file = directory.resolve(relative).normalize();
+    if (!file.startsWith(directory)) {
+      return null;
+    }
+    try {
+      if (Files.exists(file) && !file.toRealPath().startsWith(directory.toRealPath())) {
+        return null;
+      }
+    } catch (IOException e) {
+      return null;
+    }
+    return file;
+  }
+
+  /*
+   * Takes the indexes of a table off the statements before a load, which would otherwise add
+   * every loaded row to them one at a time. Until the load has rebuilt them, selects scan the table
+   * instead and inserts leave them alone; the marker file has them rebuilt on startup if the load
+   * does not get that far.
+   */
+  private List<BPlusTreeIndex> detachIndexes(String tableName) throws LockException {
+    /* No statement may be reading the indexes when they are closed */
+    try (LockManager.Locks locks = lock(tableName, LockMode.X)) {
+      locks.await(Constants.LOCK_TIMEOUT_MILLIS);
+      List<BPlusTreeIndex> detached = new ArrayList<>(indexesOf(tableName));
+      if (detached.isEmpty()) {
+        return detached;
+      }
+      try {
+        Files.createFile(Path.of(loadMarkerPath(tableName)));
+      } catch (IOException e) {
+        /* A marker left by an earlier load does as well */
+      }
+      indexes.put(tableName.toLowerCase(), new CopyOnWriteArrayList<>());
+      detached.forEach(this::closeIndex);
+      return detached;
+    }
+  }
+
+  /* Builds the detached indexes again from all rows of the table, loaded ones included */
+  private void rebuildLoadedIndexes(String tableName, List<BPlusTreeIndex> detached) {
+    /* Inserts wait until the rows they append are in the new indexes; no statement can give up
+     * the wait, the indexes have to be brought back */
+    try (LockManager.Locks locks =
+        lockManager
+            .newLocks()
+            .add(LockManager.Resource.DATABASE, LockMode.IS)
+            .add(LockManager.Resource.table(tableName), LockMode.S)) {
+      locks.awaitUninterruptibly();
+      rebuildIndexes(tableName, detached);
+      new File(loadMarkerPath(tableName)).delete();
+    }
+  }
+
+  /* Rebuilds the indexes of the tables whose load stopped before it had rebuilt them */
+  private void finishInterruptedLoads() {
+    File[] markers =
+        new File("files").listFiles((directory, name) -> name.endsWith(LOAD_MARKER_EXTENSION));
+    if (markers == null) {
+      return;
+    }
+    for (File marker : markers) {
+      String name = marker.getName();
+      String tableName = name.substring(0, name.length() - LOAD_MARKER_EXTENSION.length());
+      rebuildIndexes(tableName);
+      marker.delete();
+      System.out.println("Rebuilt the indexes of " + tableName + " after an interrupted load");
+    }
+  }
+
+  private static String loadMarkerPath(String tableName) {
+    return "files/" + tableName.toLowerCase() + LOAD_MARKER_EXTENSION;
+  }
+
+
+  /**
+   * @param indexName name of the index to be created
+   * @param tableName name of the indexed table
+   * @param columnName name of the indexed column
+   */
+  @Override
+  public void createIndex(String indexName, String tableName, String columnName) {
+    /* No rows are applied while the table is read into the index, readers go on */
+    try (LockManager.Locks locks = lock(tableName, LockMode.S)) {
+      locks.await(Constants.LOCK_TIMEOUT_MILLIS);
+      createIndex(indexName, tableName, columnName, openStorage(tableName));
+    } catch (LockException e) {
+      System.out.println(e.getMessage());
+    }
+  }
+
+  private void createIndex(
+      String indexName, String tableName, String columnName, TableStorage tableStorage) {
+    if (tableStorage == null) {
+      System.out.println("Table " + tableName + " does not exists!");
+      return;
+    }
+    if (findIndexFile(indexName) != null) {
+      System.out.println("Index " + indexName + " already exists!");
+      return;
+    }
+    if (loadingTables.contains(tableName.toLowerCase())) {
+      System.out.println("Table " + tableName + " is being loaded, its indexes are rebuilt after");
+      return;
+    }
+    TableSchema schema = tableStorage.readSchema();
+    int column = schema == null ? -1 : schema.indexOf(columnName);
+    if (column == -1) {
+      System.out.println("Column not found: " + columnName);
+      return;
+    }
+
+    BPlusTreeIndex index = buildIndex(indexName, tableName, tableStorage, schema, column);
+    if (index == null) {
+      return;
+    }
+    indexesOf(tableName).add(index);
+    System.out.println("Index created successfully!");
+    auditLog.log(AuditLog.Event.INDEX_CREATED, currentUser(), indexName, tableName, columnName);
+  }
+
+  /* Reads the indexed column of every row into a new index file */
+  private BPlusTreeIndex buildIndex(
+      String indexName, String tableName, TableStorage tableStorage, TableSchema schema, int column) {
+    /*
+     * Only the indexed column is needed to build the index, so the rows are read in batches and
+     * only that column is kept, instead of holding every column of a large table at once
+     */
+    boolean[] projection = new boolean[schema.getColumnCount()];
+    projection[column] = true;
+    ColumnarTable table =
+        new ColumnarTable(
+            new TableSchema(
+                List.of(schema.getColumnName(column)), List.of(schema.getColumnType(column))));
+    int[] sourceColumns = {column};
+    LongStream.Builder rowIds = LongStream.builder();
+    try (RowCursor cursor =
+        tableStorage.openCursor(projection, versionManager.currentRows(tableName))) {
+      if (cursor == null) {
+        table = null;
+      } else {
+        while (cursor.next()) {
+          table.appendColumnsFrom(cursor.getTable(), sourceColumns, cursor.getRow());
+          rowIds.add(cursor.getRowId());
+        }
+      }
+    }
+    if (table == null) {
+      System.out.println("Failed to read table " + tableName);
+      return null;
+    }
+
+    String filePath =
+        "files/" + tableName.toLowerCase() + "." + indexName.toLowerCase() + INDEX_FILE_EXTENSION;
+    try {
+      return BPlusTreeIndex.create(
+          filePath,
+          indexName.toLowerCase(),
+          tableName.toLowerCase(),
+          schema.getColumnName(column),
+          table,
+          rowIds.build().toArray());
+    } catch (IOException e) {
+      System.out.println("Failed to create index " + indexName);
+      e.printStackTrace();
+      new File(filePath).delete();
+      return null;
+    }
+  }
+
+  /**
+   * @param indexName name of the index to be dropped
+   */
+  @Override
+  public void dropIndex(String indexName) {
+    File indexFile = findIndexFile(indexName);
+    if (indexFile == null) {
+      System.out.println("Index " + indexName + " does not exists!");
+      return;
+    }
+    /* Index files are named after their table, no statement may use the index any more */
+    String tableName = indexFile.getName().substring(0, indexFile.getName().indexOf('.'));
+    if (loadingTables.contains(tableName)) {
+      System.out.println("Table " + tableName + " is being loaded, its indexes are rebuilt after");
+      return;
+    }
+    try (LockManager.Locks locks = lock(tableName, LockMode.X)) {
+      locks.await(Constants.LOCK_TIMEOUT_MILLIS);
+      dropIndex(indexName, indexFile);
+    } catch (LockException e) {
+      System.out.println(e.getMessage());
+    }
+  }
+
+  private void dropIndex(String indexName, File indexFile) {
+    for (List<BPlusTreeIndex> tableIndexes : indexes.values()) {
+      tableIndexes.removeIf(
+          index -> {
+            boolean dropped = index.getIndexName().equalsIgnoreCase(indexName);
+            if (dropped) {
+              closeIndex(index);
+            }
+            return dropped;
+          });
+    }
+    if (indexFile.delete()) {
+      System.out.println("Index " + indexName + " dropped successfully.");
+      auditLog.log(AuditLog.Event.INDEX_DROPPED, currentUser(), indexName);
+    } else {
+      System.out.println("Failed to delete index " + indexName);
+    }
+  }
+
+  /**
+   * Sets the format new files of the table are created in. Existing tables keep the format of
+   * their file.
+   *
+   * @param tableName name of the table
+   * @param storageFormat format of the table file
+   */
+  public void setStorageFormat(String tableName, StorageFormat storageFormat) {
+    storageFormats.put(tableName.toLowerCase(), storageFormat);
+  }
+
+  /**
+   * Resolves the format a table is created in: the format set for the table, then the {@code
+   * dbms.storageFormat.<table>} system property, then the default format.
+   *
+   * @param tableName name of the table
+   * @return format of the table file
+   */
+  public StorageFormat getStorageFormat(String tableName) {
+    StorageFormat storageFormat = storageFormats.get(tableName.toLowerCase());
+    if (storageFormat == null) {
+      String configured = System.getProperty("dbms.storageFormat." + tableName.toLowerCase());
+      storageFormat = configured == null ? null : StorageFormat.fromName(configured);
+    }
+    return storageFormat == null ? Constants.DEFAULT_STORAGE_FORMAT : storageFormat;
+  }
+
+  /**
+   * @return cache of the tables, exposing its hit, miss and eviction counters
+   */
+  public TableCache getTableCache() {
+    return tableCache;
+  }
+
+  /* Finds the file of an existing table in any of the formats */
+  TableStorage openStorage(String tableName) {
+    for (StorageFormat storageFormat : StorageFormat.values()) {
+      TableStorage tableStorage = newStorage(tableName, storageFormat);
+      if (tableStorage.getFile().exists()) {
+        return tableStorage;
+      }
+    }
+    return null;
+  }
+
+  TableStorage newStorage(String tableName, StorageFormat storageFormat) {
+    return storageAt(
+        "files/" + tableName.toLowerCase() + storageFormat.getFileExtension(), storageFormat);
+  }
+
+  TableStorage storageAt(String filePath, StorageFormat storageFormat) {
+    return switch (storageFormat) {
+      case TEXT -> new TextTableStorageImplementation(filePath, dataSerializer);
+      case PAGED -> new PagedTableStorageImplementation(filePath);
+    };
+  }
+
+  /* Open indexes of a table, the index files are found by their name on first use */
+  List<BPlusTreeIndex> indexesOf(String tableName) {
+    return indexes.computeIfAbsent(
+        tableName.toLowerCase(),
+        table -> {
+          List<BPlusTreeIndex> tableIndexes = new CopyOnWriteArrayList<>();
+          File[] indexFiles =
+              new File("files")
+                  .listFiles(
+                      (directory, name) ->
+                          name.startsWith(table + ".") && name.endsWith(INDEX_FILE_EXTENSION));
+          if (indexFiles != null) {
+            for (File indexFile : indexFiles) {
+              try {
+                tableIndexes.add(BPlusTreeIndex.open(indexFile.getPath()));
+              } catch (IOException e) {
+                System.out.println("Failed to open index " + indexFile.getPath());
+              }
+            }
+          }
+          return tableIndexes;
+        });
+  }
+
+  File findIndexFile(String indexName) {
+    String suffix = "." + indexName.toLowerCase() + INDEX_FILE_EXTENSION;
+    File[] indexFiles = new File("files").listFiles((directory, name) -> name.endsWith(suffix));
+    return indexFiles == null || indexFiles.length == 0 ? null : indexFiles[0];
+  }
+
+  void closeIndex(BPlusTreeIndex index) {
+    try {
+      index.close();
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+  }
+
+  void updateIndexes(
+      String tableName, TableSchema schema, List<List<String>> values, long[] rowIds) {
+    List<BPlusTreeIndex> tableIndexes = indexesOf(tableName);
+    if (tableIndexes.isEmpty()) {
+      return;
+    }
+    /* Keys are taken from typed values, as when an index is built or an entry removed */
+    ColumnarTable rows = new ColumnarTable(schema);
+    values.forEach(rows::appendRow);
+    for (BPlusTreeIndex index : tableIndexes) {
+      int column = schema.indexOf(index.getColumnName());
+      try {
+        for (int i = 0; i < rowIds.length; i++) {
+          index.insert(rows, column, i, rowIds[i]);
+        }
+      } catch (IOException e) {
+        System.out.println("Failed to update index " + index.getIndexName());
+        e.printStackTrace();
+      }
+    }
+  }
+
+  /*
+   * Collects the index ranges that can answer a part of a condition. A comparison of a column with
+   * a value or a BETWEEN, alone or as one side of an AND, can be answered by an index on the
+   * column; the other parts of the condition are checked on the fetched rows. The planner decides
+   * whether one of them is read or the table is scanned.
+   */
+  private void collectIndexRanges(
+      String tableName,
+      TableSchema schema,
+      Expression condition,
+      List<QueryPlanner.IndexRange> ranges) {
+    switch (condition) {
+      case Expression.And and -> {
+        collectIndexRanges(tableName, schema, and.left(), ranges);
+        collectIndexRanges(tableName, schema, and.right(), ranges);
+      }
+      case Expression.Comparison comparison -> {
+        Expression column = comparison.left();
+        Expression value = comparison.right();
+        Expression.ComparisonOperator operator = comparison.operator();
+        if (!isColumn(schema, column)) {
+          column = comparison.right();
+          value = comparison.left();
+          operator = operator.mirror();
+        }
+        if (!isColumn(schema, column) || isColumn(schema, value)) {
+          return;
+        }
+        String columnName = ((Expression.Column) column).name();
+        String text = indexValue(value);
+        QueryPlanner.IndexRange range =
+            switch (operator) {
+              case EQUAL -> indexRange(tableName, columnName, text, true, text, true);
+              case LESS -> indexRange(tableName, columnName, null, false, text, false);
+              case LESS_OR_EQUAL -> indexRange(tableName, columnName, null, false, text, true);
+              case GREATER -> indexRange(tableName, columnName, text, false, null, false);
+              case GREATER_OR_EQUAL -> indexRange(tableName, columnName, text, true, null, false);
+              case NOT_EQUAL -> null;
+            };
+        if (range != null) {
+          ranges.add(range);
+        }
+      }
+      case Expression.Between between -> {
+        if (between.negated()
+            || !isColumn(schema, between.operand())
+            || isColumn(schema, between.low())
+            || isColumn(schema, between.high())) {
+          return;
+        }
+        QueryPlanner.IndexRange range =
+            indexRange(
+                tableName,
+                ((Expression.Column) between.operand()).name(),
+                indexValue(between.low()),
+                true,
+                indexValue(between.high()),
+                true);
+        if (range != null) {
+          ranges.add(range);
+        }
+      }
+      case null, default -> {}
+    }
+  }
+
+  private static boolean isColumn(TableSchema schema, Expression operand) {
+    return operand instanceof Expression.Column column && schema.indexOf(column.name()) != -1;
+  }
+
+  /* Text of a value operand, bare words included */
+  private static String indexValue(Expression operand) {
+    return operand instanceof Expression.Column column
+        ? column.name()
+        : ((Expression.Literal) operand).value();
+  }
+
+  /* Range of an index on the column between two values, null for an open end */
+  private QueryPlanner.IndexRange indexRange(
+      String tableName,
+      String columnName,
+      String low,
+      boolean lowInclusive,
+      String high,
+      boolean highInclusive) {
+    for (BPlusTreeIndex index : indexesOf(tableName)) {
+      if (!index.getColumnName().equalsIgnoreCase(columnName.trim())) {
+        continue;
+      }
+      /* Text is compared as a number when both sides are integers, which the key order ignores */
+      if (index.getKeyType() == ColumnType.VARCHAR
+          && (low == null || !low.equals(high) || low.trim().matches("[+-]?\\d+"))) {
+        return null;
+      }
+      long[] lowKey = null;
+      long[] highKey = null;
+      try {
+        if (low != null) {
+          lowKey = new long[2];
+          if (!BPlusTreeIndex.encodeKey(index.getKeyType(), low, lowKey)) {
+            return null;
+          }
+        }
+        if (high != null) {
+          highKey = new long[2];
+          if (!BPlusTreeIndex.encodeKey(index.getKeyType(), high, highKey)) {
+            return null;
+          }
+        }
+      } catch (NumberFormatException e) {
+        return null;
+      }
+      return new QueryPlanner.IndexRange(
+          index, low, lowInclusive, high, highInclusive, lowKey, highKey);
+    }
+    return null;
+  }
+
+  /* Columns that are printed or appear in the condition */
+  private boolean[] projection(TableSchema schema, List<String> columns, Expression condition) {
+    if (schema == null || columns == null || columns.isEmpty()) {
+      return null;
+    }
+    boolean[] projection = new boolean[schema.getColumnCount()];
+    Set<String> used = new HashSet<>(columns);
+    if (condition != null) {
+      condition.collectColumns(used);
+    }
+    for (String column : used) {
+      int index = schema.indexOf(column);
+      if (index != -1) {
+        projection[index] = true;
+      }
+    }
+    return projection;
+  }
+
+  /** Start of the transaction, its selects read a snapshot taken now */
   @Override
   public void beginTransaction() {
+    TransactionManager transactionManager = transactionManager();
+    releaseSnapshot(transactionManager);
+    versionManager.awaitApplied(transactionManager.getLastCommitLsn());
     transactionManager.setInTransaction(true);
+    transactionManager.setSnapshot(versionManager.openSnapshot());
     System.out.println("Transaction started successfully!");
   }
 
   /** End of the transaction */
   @Override
   public void endTransaction() {
+    TransactionManager transactionManager = transactionManager();
     transactionManager.setInTransaction(false);
     transactionManager.clear();
+    releaseSnapshot(transactionManager);
     System.out.println("Transaction stopped successfully!");
   }
 
-  /** Committing the transaction */
+  /**
+   * Commits the transaction atomically: all its changes are validated, written to the log with a
+   * single fsync and then applied in order. If any statement is invalid, or a table it changes was
+   * changed by a transaction committed after it started, nothing is applied.
+   */
   @Override
   public void commit() throws IncorrectQueryException {
-    transactionManager.setInTransaction(false);
-    for (String transactionQuery : transactionManager.getTransactionQueries()) {
-      queryTransactionProcessor.processor(transactionQuery);
-    }
-    transactionManager.clear();
-    System.out.println("Transaction committed successfully!");
+    transactionCommitter.commit(transactionManager());
   }
 
+  /* Commits the changes of a statement, see TransactionCommitter.commit */
+  boolean commit(List<RedoRecord> records, Snapshot snapshot, LongPredicate apply) {
+    return transactionCommitter.commit(records, snapshot, apply);
+  }
+
+
   /** Rollback the transaction */
   @Override
   public void rollback() {
+    TransactionManager transactionManager = transactionManager();
     transactionManager.setInTransaction(false);
     transactionManager.clear();
+    releaseSnapshot(transactionManager);
     System.out.println("Transaction rollback successfully!");
   }
 
-  public void catchQuery(String query) throws IncorrectQueryException {
-    queryTransactionProcessor =
-        new QueryTransactionProcessor(instance, userAuthenticationManager, transactionManager);
-    queryTransactionProcessor.processor(query);
+  private void releaseSnapshot(TransactionManager transactionManager) {
+    Snapshot snapshot = transactionManager.getSnapshot();
+    if (snapshot != null) {
+      versionManager.release(snapshot);
+      transactionManager.setSnapshot(null);
+    }
+  }
+
+  /*
+   * Queues the locks of a table and the database above it for a statement, which awaits them in
+   * the try block that closes them, so it may give up waiting
+   */
+  LockManager.Locks lock(String tableName, LockMode mode) {
+    return lock(List.of(tableName), mode);
+  }
+
+  private LockManager.Locks lock(List<String> tableNames, LockMode mode) {
+    LockMode intention = mode == LockMode.IS || mode == LockMode.S ? LockMode.IS : LockMode.IX;
+    LockManager.Locks locks =
+        lockManager.newLocks().add(LockManager.Resource.DATABASE, intention);
+    for (String tableName : tableNames) {
+      locks.add(LockManager.Resource.table(tableName), mode);
+    }
+    return locks;
+  }
+
+  boolean deleteTableFiles(String tableName) {
+    TableStorage tableStorage = openStorage(tableName);
+    boolean deleted = tableStorage != null && tableStorage.getFile().delete();
+    tableCache.invalidate(tableName.toLowerCase());
+    statistics.remove(tableName.toLowerCase());
+    new File(statisticsPath(tableName)).delete();
+    List<BPlusTreeIndex> tableIndexes = indexes.remove(tableName.toLowerCase());
+    if (tableIndexes != null) {
+      tableIndexes.forEach(this::closeIndex);
+    }
+    File[] indexFiles =
+        new File("files")
+            .listFiles(
+                (directory, name) ->
+                    name.startsWith(tableName.toLowerCase() + ".")
+                        && name.endsWith(INDEX_FILE_EXTENSION));
+    if (indexFiles != null) {
+      for (File indexFile : indexFiles) {
+        indexFile.delete();
+      }
+    }
+    return deleted;
+  }
+
+  /* Closes the open indexes of a table and forgets them until they are rebuilt */
+  List<BPlusTreeIndex> closeIndexes(String tableName) {
+    List<BPlusTreeIndex> tableIndexes = new ArrayList<>(indexesOf(tableName));
+    tableIndexes.forEach(this::closeIndex);
+    indexes.remove(tableName.toLowerCase());
+    return tableIndexes;
+  }
+
+  /* Recreates the open indexes of a table from its rows */
+  void rebuildIndexes(String tableName) {
+    List<BPlusTreeIndex> tableIndexes = new ArrayList<>(indexesOf(tableName));
+    tableIndexes.forEach(this::closeIndex);
+    rebuildIndexes(tableName, tableIndexes);
+  }
+
+  /* Recreates the given closed indexes from the rows of the table */
+  void rebuildIndexes(String tableName, List<BPlusTreeIndex> tableIndexes) {
+    TableStorage tableStorage = openStorage(tableName);
+    if (tableStorage == null) {
+      return;
+    }
+    TableSchema schema = tableStorage.readSchema();
+    List<BPlusTreeIndex> rebuilt = new CopyOnWriteArrayList<>();
+    for (BPlusTreeIndex index : tableIndexes) {
+      new File(index.getFilePath()).delete();
+      int column = schema == null ? -1 : schema.indexOf(index.getColumnName());
+      BPlusTreeIndex rebuiltIndex =
+          column == -1
+              ? null
+              : buildIndex(index.getIndexName(), tableName, tableStorage, schema, column);
+      if (rebuiltIndex != null) {
+        rebuilt.add(rebuiltIndex);
+      }
+    }
+    indexes.put(tableName.toLowerCase(), rebuilt);
   }
 }
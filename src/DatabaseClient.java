@@ -0,0 +1,185 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Scanner;
+
+/**
+ * The {@code DatabaseClient} class connects to a {@link DatabaseServer} and executes queries on
+ * it. Run on its own it is an interactive client like the console of {@link Main}.
+ *
+ * <p>Usage: {@code java DatabaseClient [host] [port]}
+ */
+public class DatabaseClient implements Closeable {
+  private final Socket socket;
+  private final InputStream inputStream;
+  private final OutputStream outputStream;
+  private String captcha;
+
+  /**
+   * Connects to a server and waits for the captcha of the login.
+   *
+   * @param host host of the server
+   * @param port port of the server
+   * @throws IOException if the server cannot be reached
+   */
+  public DatabaseClient(String host, int port) throws IOException {
+    this.socket = new Socket(host, port);
+    socket.setTcpNoDelay(true);
+    this.inputStream = new BufferedInputStream(socket.getInputStream());
+    this.outputStream = new BufferedOutputStream(socket.getOutputStream());
+    WireProtocol.Frame frame = WireProtocol.readFrame(inputStream);
+    if (frame == null || frame.type() != WireProtocol.CAPTCHA) {
+      socket.close();
+      throw new IOException("Unexpected answer from " + host + ":" + port);
+    }
+    this.captcha = frame.text();
+  }
+
+  /**
+   * @return the captcha the next login has to answer
+   */
+  public String getCaptcha() {
+    return captcha;
+  }
+
+  /**
+   * @param userId id of the user
+   * @param password password of the user
+   * @param captchaAnswer answer to {@link #getCaptcha()}
+   * @return whether the login succeeded; if not, a new captcha has to be answered
+   * @throws IOException if the connection fails or the server gave up on the login
+   */
+  public boolean login(String userId, String password, String captchaAnswer) throws IOException {
+    WireProtocol.writeFrame(
+        outputStream, WireProtocol.LOGIN, userId + "\n" + password + "\n" + captchaAnswer);
+    WireProtocol.Frame frame = WireProtocol.readFrame(inputStream);
+    if (frame == null) {
+      throw new IOException("Connection closed by the server");
+    }
+    if (frame.type() == WireProtocol.DONE) {
+      return true;
+    }
+    WireProtocol.Frame next = WireProtocol.readFrame(inputStream);
+    if (next == null) {
+      throw new IOException("Too many failed logins");
+    }
+    captcha = next.text();
+    return false;
+  }
+
+  /**
+   * Executes a query and writes its output as it arrives.
+   *
+   * @param query the query
+   * @param output receives what the query printed
+   * @throws IOException if the connection fails
+   */
+  public void execute(String query, OutputStream output) throws IOException {
+    execute(query, output, output);
+  }
+
+  /**
+   * Executes a query, keeping the rows of a binary result apart from the text it printed.
+   *
+   * @param query the query
+   * @param output receives what the query printed
+   * @param rows receives the rows of the result if the session writes results in the binary
+   *     format, see {@link BinaryResultSinkImplementation#read(java.io.InputStream)}
+   * @throws IOException if the connection fails
+   */
+  public void execute(String query, OutputStream output, OutputStream rows) throws IOException {
+    WireProtocol.writeFrame(outputStream, WireProtocol.QUERY, query);
+    while (true) {
+      WireProtocol.Frame frame = WireProtocol.readFrame(inputStream);
+      if (frame == null) {
+        throw new IOException("Connection closed by the server");
+      }
+      switch (frame.type()) {
+        case WireProtocol.OUTPUT -> output.write(frame.payload());
+        case WireProtocol.ROWS -> rows.write(frame.payload());
+        case WireProtocol.DONE -> {
+          output.flush();
+          rows.flush();
+          return;
+        }
+        case WireProtocol.ERROR -> throw new IOException(frame.text());
+        default -> throw new IOException("Unexpected frame " + (char) frame.type());
+      }
+    }
+  }
+
+  /**
+   * Executes a query.
+   *
+   * @param query the query
+   * @return what the query printed
+   * @throws IOException if the connection fails
+   */
+  public String execute(String query) throws IOException {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    execute(query, output);
+    return output.toString(StandardCharsets.UTF_8);
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      WireProtocol.writeFrame(outputStream, WireProtocol.QUIT, "");
+    } catch (IOException e) {
+      /* The server is gone already */
+    }
+    socket.close();
+  }
+
+  public static void main(String[] args) throws IOException {
+    String host = args.length > 0 ? args[0] : "localhost";
+    int port = args.length > 1 ? Integer.parseInt(args[1]) : Constants.SERVER_PORT;
+
+    Scanner scanner = new Scanner(System.in);
+    try (DatabaseClient client = new DatabaseClient(host, port)) {
+      System.out.println("Connected to " + host + ":" + port);
+
+      /* Ask for user credentials until successfully logged in */
+      boolean isLoggedIn = false;
+      while (!isLoggedIn) {
+        System.out.print("UserId: ");
+        String userId = scanner.nextLine();
+
+        System.out.print("Password: ");
+        String password = scanner.nextLine();
+
+        System.out.print("Captcha ----> " + client.getCaptcha());
+        System.out.println();
+        System.out.print("Enter Captcha: ");
+        String captchaAnswer = scanner.nextLine();
+
+        isLoggedIn = client.login(userId, password, captchaAnswer);
+        if (!isLoggedIn) {
+          System.out.println("Invalid credentials or Captcha. Please try again.");
+        }
+      }
+
+      System.out.println("Successfully logged in!");
+      System.out.println("You can now start writing queries.");
+
+      while (true) {
+        System.out.print("Enter your query (or 'exit' to logout): ");
+        if (!scanner.hasNextLine()) {
+          break;
+        }
+        String query = scanner.nextLine();
+        if (query.equalsIgnoreCase("exit")) {
+          System.out.println("Logged out successfully.");
+          break;
+        }
+        client.execute(query, System.out);
+      }
+    }
+  }
+}
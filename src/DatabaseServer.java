@@ -0,0 +1,226 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The {@code DatabaseServer} class serves the database to clients over TCP using the {@link
+ * WireProtocol}. Every connection gets a virtual thread and its own {@link Session}, so a thread
+ * blocked on an idle connection costs a few hundred bytes of stack instead of a platform thread,
+ * and thousands of connections can stay open at once.
+ *
+ * <p>Connections hold no buffers while they are idle: a query's output is collected in a buffer
+ * that is allocated when the query starts printing, sent in frames as it fills up and released
+ * once the query is answered.
+ */
+public class DatabaseServer implements Closeable {
+  private static final int OUTPUT_BUFFER_SIZE = 16 * 1024;
+  private static final int MAX_LOGIN_ATTEMPTS = 3;
+
+  private final UserAuthenticationManager userAuthenticationManager;
+  private final Database database;
+  private final ServerSocket serverSocket;
+  private final RoutingPrintStream routingPrintStream;
+  private final AtomicInteger openSessions = new AtomicInteger();
+  private final AtomicInteger sessionCounter = new AtomicInteger();
+
+  /**
+   * Opens the server socket. What statements print is routed to their sessions from now on.
+   *
+   * @param userAuthenticationManager authenticates the users logging in
+   * @param port port to listen on, 0 for any free port
+   * @throws IOException if the port cannot be opened
+   */
+  public DatabaseServer(UserAuthenticationManager userAuthenticationManager, int port)
+      throws IOException {
+    this.userAuthenticationManager = userAuthenticationManager;
+    this.database = Database.getInstance(userAuthenticationManager);
+    this.serverSocket = new ServerSocket(port, 1024);
+    if (System.out instanceof RoutingPrintStream routing) {
+      this.routingPrintStream = routing;
+    } else {
+      this.routingPrintStream = new RoutingPrintStream(System.out);
+      System.setOut(routingPrintStream);
+    }
+  }
+
+  /**
+   * @return the port the server listens on
+   */
+  public int getPort() {
+    return serverSocket.getLocalPort();
+  }
+
+  /**
+   * @return number of connected sessions
+   */
+  public int getOpenSessions() {
+    return openSessions.get();
+  }
+
+  /** Accepts connections until the server is closed. */
+  public void serve() {
+    while (!serverSocket.isClosed()) {
+      Socket socket;
+      try {
+        socket = serverSocket.accept();
+      } catch (IOException e) {
+        if (!serverSocket.isClosed()) {
+          e.printStackTrace();
+        }
+        continue;
+      }
+      Thread.ofVirtual()
+          .name("session-" + sessionCounter.incrementAndGet())
+          .start(() -> handle(socket));
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    serverSocket.close();
+  }
+
+  private void handle(Socket socket) {
+    openSessions.incrementAndGet();
+    Session session = null;
+    try (socket) {
+      socket.setTcpNoDelay(true);
+      InputStream inputStream = socket.getInputStream();
+      OutputStream outputStream = socket.getOutputStream();
+      session = login(inputStream, outputStream);
+      if (session == null) {
+        return;
+      }
+      FrameOutputStream frameOutputStream =
+          new FrameOutputStream(outputStream, WireProtocol.OUTPUT);
+      PrintStream printStream = new PrintStream(frameOutputStream, false, StandardCharsets.UTF_8);
+      /* Binary results are sent in frames of their own, text output may come before or after */
+      FrameOutputStream rowOutputStream = new FrameOutputStream(outputStream, WireProtocol.ROWS);
+      session.setResultOutput(rowOutputStream);
+      while (true) {
+        WireProtocol.Frame frame = WireProtocol.readFrame(inputStream);
+        if (frame == null || frame.type() == WireProtocol.QUIT) {
+          return;
+        }
+        if (frame.type() != WireProtocol.QUERY) {
+          WireProtocol.writeFrame(outputStream, WireProtocol.ERROR, "Expected a query");
+          continue;
+        }
+        routingPrintStream.route(printStream);
+        try {
+          database.execute(session, frame.text());
+        } catch (IncorrectQueryException incorrectQueryException) {
+          System.out.println(incorrectQueryException.getMessage());
+        } finally {
+          routingPrintStream.route(null);
+        }
+        printStream.flush();
+        frameOutputStream.sendRest();
+        rowOutputStream.sendRest();
+        WireProtocol.writeFrame(outputStream, WireProtocol.DONE, "");
+      }
+    } catch (SocketException e) {
+      /* The client went away */
+    } catch (IOException e) {
+      e.printStackTrace();
+    } finally {
+      if (session != null) {
+        database.closeSession(session);
+      }
+      openSessions.decrementAndGet();
+    }
+  }
+
+  /* Asks for a captcha and credentials until they are valid or too many attempts failed */
+  private Session login(InputStream inputStream, OutputStream outputStream) throws IOException {
+    for (int attempt = 0; attempt < MAX_LOGIN_ATTEMPTS; attempt++) {
+      WireProtocol.writeFrame(
+          outputStream, WireProtocol.CAPTCHA, userAuthenticationManager.generateCaptcha());
+      WireProtocol.Frame frame = WireProtocol.readFrame(inputStream);
+      if (frame == null || frame.type() == WireProtocol.QUIT) {
+        return null;
+      }
+      String[] credentials = frame.text().split("\n", -1);
+      String user =
+          frame.type() == WireProtocol.LOGIN && credentials.length == 3
+              ? userAuthenticationManager.login(credentials[0], credentials[1], credentials[2])
+              : null;
+      if (user != null) {
+        WireProtocol.writeFrame(outputStream, WireProtocol.DONE, "Successfully logged in!");
+        return new Session(user);
+      }
+      WireProtocol.writeFrame(
+          outputStream, WireProtocol.ERROR, "Invalid credentials or Captcha. Please try again.");
+    }
+    return null;
+  }
+
+  /*
+   * Collects what a query prints, or the rows of its binary result, into frames of one type. The
+   * payload is written after room for the header, so a full buffer is sent with one write.
+   */
+  private static class FrameOutputStream extends OutputStream {
+    private final OutputStream connection;
+    private final byte type;
+    private byte[] buffer;
+    private int position;
+
+    private FrameOutputStream(OutputStream connection, byte type) {
+      this.connection = connection;
+      this.type = type;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      if (buffer == null) {
+        buffer = new byte[OUTPUT_BUFFER_SIZE];
+        position = WireProtocol.HEADER_SIZE;
+      } else if (position == buffer.length) {
+        sendOutput();
+      }
+      buffer[position++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+      while (length > 0) {
+        if (buffer == null) {
+          buffer = new byte[OUTPUT_BUFFER_SIZE];
+          position = WireProtocol.HEADER_SIZE;
+        } else if (position == buffer.length) {
+          sendOutput();
+        }
+        int count = Math.min(length, buffer.length - position);
+        System.arraycopy(bytes, offset, buffer, position, count);
+        position += count;
+        offset += count;
+        length -= count;
+      }
+    }
+
+    /* Output is only sent when the buffer is full or the query is answered */
+    @Override
+    public void flush() {}
+
+    /* Sends the rest of the output and lets go of the buffer */
+    private void sendRest() throws IOException {
+      if (buffer != null && position > WireProtocol.HEADER_SIZE) {
+        sendOutput();
+      }
+      buffer = null;
+    }
+
+    private void sendOutput() throws IOException {
+      WireProtocol.writeHeader(buffer, type, position - WireProtocol.HEADER_SIZE);
+      connection.write(buffer, 0, position);
+      position = WireProtocol.HEADER_SIZE;
+    }
+  }
+}
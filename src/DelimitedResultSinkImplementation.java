@@ -0,0 +1,98 @@
+/**
+ * The {@code DelimitedResultSinkImplementation} class writes a result as CSV or TSV: a header
+ * line of column names, then a line per row with the values separated by the delimiter.
+ *
+ * <p>CSV follows RFC 4180: a value holding the delimiter, a double quote or a line break is
+ * enclosed in double quotes, with double quotes doubled, and null is an empty value. TSV escapes a
+ * backslash, tab or line break within a value with a backslash instead, and writes null as {@code
+ * \N}.
+ */
+public class DelimitedResultSinkImplementation implements ResultSink {
+  private final ResultBuffer buffer;
+  private final char delimiter;
+  private int[] columns;
+  private ColumnType[] types;
+
+  /**
+   * @param buffer receives the lines
+   * @param delimiter {@code ','} for CSV, {@code '\t'} for TSV
+   */
+  public DelimitedResultSinkImplementation(ResultBuffer buffer, char delimiter) {
+    this.buffer = buffer;
+    this.delimiter = delimiter;
+  }
+
+  @Override
+  public void writeHeader(TableSchema schema, int[] columns) {
+    this.columns = columns;
+    this.types = new ColumnType[columns.length];
+    for (int i = 0; i < columns.length; i++) {
+      types[i] = schema.getColumnType(columns[i]);
+      if (i > 0) {
+        buffer.writeByte(delimiter);
+      }
+      writeString(schema.getColumnName(columns[i]));
+    }
+    buffer.writeByte('\n');
+  }
+
+  @Override
+  public void writeRow(ColumnarTable table, int row) {
+    for (int i = 0; i < columns.length; i++) {
+      if (i > 0) {
+        buffer.writeByte(delimiter);
+      }
+      if (table.isNull(columns[i], row)) {
+        if (delimiter == '\t') {
+          buffer.writeText("\\N");
+        }
+      } else if (types[i] == ColumnType.VARCHAR) {
+        writeString(table.getString(columns[i], row));
+      } else {
+        buffer.writeValue(table, types[i], columns[i], row);
+      }
+    }
+    buffer.writeByte('\n');
+  }
+
+  @Override
+  public void flush() {
+    buffer.flush();
+  }
+
+  @Override
+  public void close() {
+    buffer.close();
+  }
+
+  private void writeString(String value) {
+    if (!needsEscaping(value)) {
+      buffer.writeText(value);
+    } else if (delimiter == '\t') {
+      buffer.writeText(
+          value
+              .replace("\\", "\\\\")
+              .replace("\t", "\\t")
+              .replace("\n", "\\n")
+              .replace("\r", "\\r"));
+    } else {
+      buffer.writeByte('"');
+      buffer.writeText(value.replace("\"", "\"\""));
+      buffer.writeByte('"');
+    }
+  }
+
+  private boolean needsEscaping(String value) {
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == delimiter
+          || c == '\n'
+          || c == '\r'
+          || (delimiter == '\t' ? c == '\\' : c == '"')) {
+        return true;
+      }
+    }
+    /* An empty string in CSV is quoted, so that it differs from null */
+    return delimiter != '\t' && value.isEmpty();
+  }
+}
@@ -0,0 +1,349 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+
+/**
+ * The {@code Expression} interface is the parsed form of a WHERE condition. It is compiled into a
+ * {@link RowPredicate} against the schema of the queried table by the {@link PredicateCompiler}.
+ */
+public sealed interface Expression {
+  /** Operators comparing two values. */
+  enum ComparisonOperator {
+    EQUAL("="),
+    NOT_EQUAL("!="),
+    LESS("<"),
+    LESS_OR_EQUAL("<="),
+    GREATER(">"),
+    GREATER_OR_EQUAL(">=");
+
+    private final String symbol;
+
+    ComparisonOperator(String symbol) {
+      this.symbol = symbol;
+    }
+
+    public String getSymbol() {
+      return symbol;
+    }
+
+    /**
+     * @param symbol operator as written in a query
+     * @return the operator, or {@code null} if the symbol is not a comparison
+     */
+    public static ComparisonOperator fromSymbol(String symbol) {
+      if (symbol.equals("<>")) {
+        return NOT_EQUAL;
+      }
+      for (ComparisonOperator operator : values()) {
+        if (operator.symbol.equals(symbol)) {
+          return operator;
+        }
+      }
+      return null;
+    }
+
+    /**
+     * @return the operator that is true exactly when this one is false, for non-null values
+     */
+    public ComparisonOperator negate() {
+      return switch (this) {
+        case EQUAL -> NOT_EQUAL;
+        case NOT_EQUAL -> EQUAL;
+        case LESS -> GREATER_OR_EQUAL;
+        case LESS_OR_EQUAL -> GREATER;
+        case GREATER -> LESS_OR_EQUAL;
+        case GREATER_OR_EQUAL -> LESS;
+      };
+    }
+
+    /**
+     * @return the operator with its operands swapped, e.g. {@code 5 < a} is {@code a > 5}
+     */
+    public ComparisonOperator mirror() {
+      return switch (this) {
+        case LESS -> GREATER;
+        case LESS_OR_EQUAL -> GREATER_OR_EQUAL;
+        case GREATER -> LESS;
+        case GREATER_OR_EQUAL -> LESS_OR_EQUAL;
+        default -> this;
+      };
+    }
+
+    /**
+     * @param comparison result of a {@code compare} call
+     * @return whether the compared values satisfy the operator
+     */
+    public boolean test(int comparison) {
+      return switch (this) {
+        case EQUAL -> comparison == 0;
+        case NOT_EQUAL -> comparison != 0;
+        case LESS -> comparison < 0;
+        case LESS_OR_EQUAL -> comparison <= 0;
+        case GREATER -> comparison > 0;
+        case GREATER_OR_EQUAL -> comparison >= 0;
+      };
+    }
+  }
+
+  /**
+   * Adds the names of the columns the expression refers to.
+   *
+   * @param columns receives the column names
+   */
+  void collectColumns(Set<String> columns);
+
+  /**
+   * @param rename maps the name of a column to its new name
+   * @return the expression with every column renamed, such as the qualified columns of a join
+   *     condition that only refers to one of the tables to the columns of that table
+   */
+  Expression renameColumns(UnaryOperator<String> rename);
+
+  /**
+   * Writes an expression as a plan shows it, with every value written the way the column it is
+   * compared with holds it: text quoted, numbers and booleans bare.
+   *
+   * @param expression the expression
+   * @param schema schema of the table the columns belong to
+   * @return the expression as text
+   */
+  static String format(Expression expression, TableSchema schema) {
+    return switch (expression) {
+      case Comparison comparison -> {
+        ColumnType type = typeOf(comparison.left(), schema);
+        if (type == null) {
+          type = typeOf(comparison.right(), schema);
+        }
+        yield format(comparison.left(), type)
+            + " "
+            + comparison.operator().getSymbol()
+            + " "
+            + format(comparison.right(), type);
+      }
+      case And and -> "(" + format(and.left(), schema) + " and " + format(and.right(), schema) + ")";
+      case Or or -> "(" + format(or.left(), schema) + " or " + format(or.right(), schema) + ")";
+      case Not not -> "not " + format(not.operand(), schema);
+      case In in -> {
+        ColumnType type = typeOf(in.operand(), schema);
+        List<String> values = new ArrayList<>();
+        for (Literal value : in.values()) {
+          values.add(format(value, type));
+        }
+        yield in.operand() + (in.negated() ? " not in " : " in ") + values;
+      }
+      case Between between -> {
+        ColumnType type = typeOf(between.operand(), schema);
+        yield between.operand()
+            + (between.negated() ? " not between " : " between ")
+            + format(between.low(), type)
+            + " and "
+            + format(between.high(), type);
+      }
+      default -> expression.toString();
+    };
+  }
+
+  /* A value compared with a column of the type, a column or a value of unknown type as it is */
+  private static String format(Expression operand, ColumnType type) {
+    return operand instanceof Literal literal
+            && literal.value() != null
+            && type != null
+            && type != ColumnType.VARCHAR
+        ? literal.value().trim()
+        : operand.toString();
+  }
+
+  private static ColumnType typeOf(Expression operand, TableSchema schema) {
+    if (!(operand instanceof Column column)) {
+      return null;
+    }
+    int index = schema.indexOf(column.name());
+    return index == -1 ? null : schema.getColumnType(index);
+  }
+
+  /** A column of the queried table, or a bare word used as a text value. */
+  record Column(String name) implements Expression {
+    @Override
+    public void collectColumns(Set<String> columns) {
+      columns.add(name.toLowerCase());
+    }
+
+    @Override
+    public Expression renameColumns(UnaryOperator<String> rename) {
+      return new Column(rename.apply(name));
+    }
+
+    @Override
+    public String toString() {
+      return name;
+    }
+  }
+
+  /**
+   * A constant value.
+   *
+   * @param value text of the value, {@code null} for NULL
+   */
+  record Literal(String value) implements Expression {
+    @Override
+    public void collectColumns(Set<String> columns) {}
+
+    @Override
+    public Expression renameColumns(UnaryOperator<String> rename) {
+      return this;
+    }
+
+    @Override
+    public String toString() {
+      return value == null ? "null" : "'" + value.replace("'", "''") + "'";
+    }
+  }
+
+  record Comparison(Expression left, ComparisonOperator operator, Expression right)
+      implements Expression {
+    @Override
+    public void collectColumns(Set<String> columns) {
+      left.collectColumns(columns);
+      right.collectColumns(columns);
+    }
+
+    @Override
+    public Expression renameColumns(UnaryOperator<String> rename) {
+      return new Comparison(left.renameColumns(rename), operator, right.renameColumns(rename));
+    }
+
+    @Override
+    public String toString() {
+      return left + " " + operator.getSymbol() + " " + right;
+    }
+  }
+
+  record And(Expression left, Expression right) implements Expression {
+    @Override
+    public void collectColumns(Set<String> columns) {
+      left.collectColumns(columns);
+      right.collectColumns(columns);
+    }
+
+    @Override
+    public Expression renameColumns(UnaryOperator<String> rename) {
+      return new And(left.renameColumns(rename), right.renameColumns(rename));
+    }
+
+    @Override
+    public String toString() {
+      return "(" + left + " and " + right + ")";
+    }
+  }
+
+  record Or(Expression left, Expression right) implements Expression {
+    @Override
+    public void collectColumns(Set<String> columns) {
+      left.collectColumns(columns);
+      right.collectColumns(columns);
+    }
+
+    @Override
+    public Expression renameColumns(UnaryOperator<String> rename) {
+      return new Or(left.renameColumns(rename), right.renameColumns(rename));
+    }
+
+    @Override
+    public String toString() {
+      return "(" + left + " or " + right + ")";
+    }
+  }
+
+  record Not(Expression operand) implements Expression {
+    @Override
+    public void collectColumns(Set<String> columns) {
+      operand.collectColumns(columns);
+    }
+
+    @Override
+    public Expression renameColumns(UnaryOperator<String> rename) {
+      return new Not(operand.renameColumns(rename));
+    }
+
+    @Override
+    public String toString() {
+      return "not " + operand;
+    }
+  }
+
+  record In(Expression operand, List<Literal> values, boolean negated) implements Expression {
+    @Override
+    public void collectColumns(Set<String> columns) {
+      operand.collectColumns(columns);
+    }
+
+    @Override
+    public Expression renameColumns(UnaryOperator<String> rename) {
+      return new In(operand.renameColumns(rename), values, negated);
+    }
+
+    @Override
+    public String toString() {
+      return operand + (negated ? " not in " : " in ") + values;
+    }
+  }
+
+  record Between(Expression operand, Expression low, Expression high, boolean negated)
+      implements Expression {
+    @Override
+    public void collectColumns(Set<String> columns) {
+      operand.collectColumns(columns);
+      low.collectColumns(columns);
+      high.collectColumns(columns);
+    }
+
+    @Override
+    public Expression renameColumns(UnaryOperator<String> rename) {
+      return new Between(
+          operand.renameColumns(rename),
+          low.renameColumns(rename),
+          high.renameColumns(rename),
+          negated);
+    }
+
+    @Override
+    public String toString() {
+      return operand + (negated ? " not between " : " between ") + low + " and " + high;
+    }
+  }
+
+  record Like(Expression operand, String pattern, boolean negated) implements Expression {
+    @Override
+    public void collectColumns(Set<String> columns) {
+      operand.collectColumns(columns);
+    }
+
+    @Override
+    public Expression renameColumns(UnaryOperator<String> rename) {
+      return new Like(operand.renameColumns(rename), pattern, negated);
+    }
+
+    @Override
+    public String toString() {
+      return operand + (negated ? " not like '" : " like '") + pattern + "'";
+    }
+  }
+
+  record IsNull(Expression operand, boolean negated) implements Expression {
+    @Override
+    public void collectColumns(Set<String> columns) {
+      operand.collectColumns(columns);
+    }
+
+    @Override
+    public Expression renameColumns(UnaryOperator<String> rename) {
+      return new IsNull(operand.renameColumns(rename), negated);
+    }
+
+    @Override
+    public String toString() {
+      return operand + (negated ? " is not null" : " is null");
+    }
+  }
+}
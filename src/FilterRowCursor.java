@@ -0,0 +1,47 @@
+/**
+ * The {@code FilterRowCursor} class passes on the rows of another cursor that satisfy a WHERE
+ * condition.
+ */
+public class FilterRowCursor implements RowCursor {
+  private final RowCursor source;
+  private final RowPredicate predicate;
+  private long scanned;
+
+  public FilterRowCursor(RowCursor source, RowPredicate predicate) {
+    this.source = source;
+    this.predicate = predicate;
+  }
+
+  @Override
+  public TableSchema getSchema() {
+    return source.getSchema();
+  }
+
+  @Override
+  public boolean next() {
+    while (source.next()) {
+      scanned++;
+      if (predicate.test(source.getTable(), source.getRow())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public ColumnarTable getTable() {
+    return source.getTable();
+  }
+
+  @Override
+  public int getRow() {
+    return source.getRow();
+  }
+
+  @Override
+  public void close() {
+    QueryStats.recordScanned(scanned);
+    scanned = 0;
+    source.close();
+  }
+}
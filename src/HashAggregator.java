@@ -0,0 +1,560 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The {@code HashAggregator} class computes the aggregates of a select for every group of rows.
+ * The values of the group columns are encoded as longs, strings as codes of a dictionary, and the
+ * groups are found in an open-addressing hash table over those keys, so that looking up a group
+ * allocates nothing. The aggregates are kept in primitive arrays indexed by group.
+ *
+ * <p>Rows are added one at a time, but only their group and the aggregated values are taken from
+ * them at once; the aggregates are updated for about a thousand rows at a time, one aggregate
+ * after the other in tight loops. Aggregators of parts of a table, filled on several threads, are
+ * merged into the aggregator of the whole table.
+ */
+public class HashAggregator {
+  private static final int BATCH_SIZE = 1024;
+  private static final int INITIAL_GROUPS = 16;
+
+  private final int[] groupColumns;
+  private final ColumnType[] groupTypes;
+  private final Accumulator[] accumulators;
+  private final TableSchema outputSchema;
+  /* Longs per key: one per group column and a mask of its null columns, none without GROUP BY */
+  private final int keyWidth;
+  /* Codes of the strings of the VARCHAR group columns, null for the other columns */
+  private final Dictionary[] dictionaries;
+
+  /* Open-addressing hash table of group number + 1, 0 for an empty slot */
+  private int[] slots = new int[INITIAL_GROUPS * 2];
+  private long[] keys;
+  private int[] hashes = new int[INITIAL_GROUPS];
+  private int groupCount;
+  private final long[] key;
+
+  /* Rows added since the last update of the aggregates */
+  private final int[] groups = new int[BATCH_SIZE];
+  private int buffered;
+
+  private HashAggregator(
+      int[] groupColumns,
+      ColumnType[] groupTypes,
+      Accumulator[] accumulators,
+      TableSchema outputSchema) {
+    this.groupColumns = groupColumns;
+    this.groupTypes = groupTypes;
+    this.accumulators = accumulators;
+    this.outputSchema = outputSchema;
+    this.keyWidth = groupColumns.length == 0 ? 0 : groupColumns.length + 1;
+    this.keys = new long[INITIAL_GROUPS * keyWidth];
+    this.key = new long[keyWidth];
+    this.dictionaries = new Dictionary[groupColumns.length];
+    for (int i = 0; i < groupColumns.length; i++) {
+      if (groupTypes[i] == ColumnType.VARCHAR) {
+        dictionaries[i] = new Dictionary();
+      }
+    }
+    /* Without GROUP BY all rows form one group, which exists even if there are no rows */
+    if (keyWidth == 0) {
+      groupCount = 1;
+    }
+  }
+
+  /**
+   * Creates an aggregator for the rows of a table or a join.
+   *
+   * @param input schema of the aggregated rows
+   * @param groupBy columns the rows are grouped by, {@code null} for one group of all rows
+   * @param aggregates the aggregates
+   * @return an empty aggregator
+   * @throws IncorrectQueryException if a column does not exist or an aggregate does not apply to
+   *     the type of its column
+   */
+  public static HashAggregator create(
+      TableSchema input, List<String> groupBy, List<Statement.Aggregate> aggregates)
+      throws IncorrectQueryException {
+    List<String> groupNames = groupBy == null ? List.of() : groupBy;
+    List<Statement.Aggregate> aggregateList = aggregates == null ? List.of() : aggregates;
+    if (groupNames.size() > Long.SIZE) {
+      throw new IncorrectQueryException("Too many columns to group by: " + groupNames.size());
+    }
+    List<String> names = new ArrayList<>();
+    List<ColumnType> types = new ArrayList<>();
+    int[] groupColumns = new int[groupNames.size()];
+    ColumnType[] groupTypes = new ColumnType[groupNames.size()];
+    for (int i = 0; i < groupColumns.length; i++) {
+      groupColumns[i] = columnIndex(input, groupNames.get(i));
+      groupTypes[i] = input.getColumnType(groupColumns[i]);
+      names.add(groupNames.get(i));
+      types.add(groupTypes[i]);
+    }
+    Accumulator[] accumulators = new Accumulator[aggregateList.size()];
+    for (int i = 0; i < accumulators.length; i++) {
+      Statement.Aggregate aggregate = aggregateList.get(i);
+      int column = aggregate.column() == null ? -1 : columnIndex(input, aggregate.column());
+      ColumnType inputType = column == -1 ? null : input.getColumnType(column);
+      ColumnType resultType = aggregate.function().resultType(inputType);
+      if (resultType == null) {
+        throw new IncorrectQueryException(
+            "Cannot compute " + aggregate.name() + " of a " + inputType + " column");
+      }
+      accumulators[i] = new Accumulator(aggregate.function(), column, inputType, resultType);
+      names.add(aggregate.name());
+      types.add(resultType);
+    }
+    return new HashAggregator(
+        groupColumns, groupTypes, accumulators, new TableSchema(names, types));
+  }
+
+  private static int columnIndex(TableSchema input, String name) throws IncorrectQueryException {
+    int column = input.indexOf(name);
+    if (column == -1) {
+      throw new IncorrectQueryException("Column not found: " + name);
+    }
+    return column;
+  }
+
+  /**
+   * @return an empty aggregator computing the same aggregates, to aggregate a part of the rows
+   */
+  public HashAggregator emptyCopy() {
+    Accumulator[] copies = new Accumulator[accumulators.length];
+    for (int i = 0; i < copies.length; i++) {
+      Accumulator accumulator = accumulators[i];
+      copies[i] =
+          new Accumulator(
+              accumulator.function,
+              accumulator.column,
+              accumulator.inputType,
+              accumulator.resultType);
+    }
+    return new HashAggregator(groupColumns, groupTypes, copies, outputSchema);
+  }
+
+  /**
+   * @return the group columns followed by the aggregates, named as in the select
+   */
+  public TableSchema getOutputSchema() {
+    return outputSchema;
+  }
+
+  /**
+   * @return number of groups found so far
+   */
+  public int getGroupCount() {
+    return groupCount;
+  }
+
+  /**
+   * Adds a row to its group.
+   *
+   * @param table table of the row
+   * @param row the row
+   */
+  public void add(ColumnarTable table, int row) {
+    int group = keyWidth == 0 ? 0 : groupOf(table, row);
+    groups[buffered] = group;
+    for (Accumulator accumulator : accumulators) {
+      accumulator.load(table, row, buffered);
+    }
+    if (++buffered == BATCH_SIZE) {
+      update();
+    }
+  }
+
+  /**
+   * Adds the groups of another aggregator computing the same aggregates over other rows.
+   *
+   * @param other the aggregator of the other rows, which is no longer used
+   */
+  public void merge(HashAggregator other) {
+    update();
+    other.update();
+    if (keyWidth == 0) {
+      for (int i = 0; i < accumulators.length; i++) {
+        accumulators[i].merge(0, other.accumulators[i], 0);
+      }
+      return;
+    }
+    for (int group = 0; group < other.groupCount; group++) {
+      long nulls = other.keys[group * keyWidth + keyWidth - 1];
+      for (int i = 0; i < groupColumns.length; i++) {
+        long value = other.keys[group * keyWidth + i];
+        /* String codes differ between aggregators, the strings themselves are the same */
+        if (dictionaries[i] != null && (nulls & (1L << i)) == 0) {
+          value = dictionaries[i].code(other.dictionaries[i].values.get((int) value));
+        }
+        key[i] = value;
+      }
+      key[keyWidth - 1] = nulls;
+      int target = findOrInsert(hash(key));
+      for (int i = 0; i < accumulators.length; i++) {
+        accumulators[i].merge(target, other.accumulators[i], group);
+      }
+    }
+  }
+
+  /**
+   * @return one row per group, in the order the groups were found
+   */
+  public ColumnarTable result() {
+    update();
+    ColumnarTable table = new ColumnarTable(outputSchema);
+    for (int group = 0; group < groupCount; group++) {
+      long nulls = keyWidth == 0 ? 0 : keys[group * keyWidth + keyWidth - 1];
+      for (int i = 0; i < groupColumns.length; i++) {
+        long value = keys[group * keyWidth + i];
+        if ((nulls & (1L << i)) != 0) {
+          table.putNull(i);
+          continue;
+        }
+        switch (groupTypes[i]) {
+          case INT -> table.putInt(i, (int) value);
+          case BIGINT -> table.putLong(i, value);
+          case DOUBLE -> table.putDouble(i, Double.longBitsToDouble(value));
+          case BOOLEAN -> table.putBoolean(i, value != 0);
+          case VARCHAR -> table.putString(i, dictionaries[i].values.get((int) value));
+        }
+      }
+      for (int i = 0; i < accumulators.length; i++) {
+        accumulators[i].put(table, groupColumns.length + i, group);
+      }
+      table.finishRow();
+    }
+    return table;
+  }
+
+  /* Encodes the group columns of the row into the key and finds or adds its group */
+  private int groupOf(ColumnarTable table, int row) {
+    long nulls = 0;
+    for (int i = 0; i < groupColumns.length; i++) {
+      int column = groupColumns[i];
+      if (table.isNull(column, row)) {
+        nulls |= 1L << i;
+        key[i] = 0;
+        continue;
+      }
+      key[i] =
+          switch (groupTypes[i]) {
+            case INT -> table.getInt(column, row);
+            case BIGINT -> table.getLong(column, row);
+            /* 0.0 and -0.0 are the same group */
+            case DOUBLE -> Double.doubleToLongBits(table.getDouble(column, row) + 0.0);
+            case BOOLEAN -> table.getBoolean(column, row) ? 1 : 0;
+            case VARCHAR -> dictionaries[i].code(table.getString(column, row));
+          };
+    }
+    key[keyWidth - 1] = nulls;
+    return findOrInsert(hash(key));
+  }
+
+  private int findOrInsert(int hash) {
+    int mask = slots.length - 1;
+    int slot = hash & mask;
+    while (true) {
+      int entry = slots[slot];
+      if (entry == 0) {
+        break;
+      }
+      int group = entry - 1;
+      if (hashes[group] == hash
+          && Arrays.equals(keys, group * keyWidth, (group + 1) * keyWidth, key, 0, keyWidth)) {
+        return group;
+      }
+      slot = (slot + 1) & mask;
+    }
+    int group = groupCount++;
+    if (group == hashes.length) {
+      int capacity = hashes.length * 2;
+      hashes = Arrays.copyOf(hashes, capacity);
+      keys = Arrays.copyOf(keys, capacity * keyWidth);
+    }
+    hashes[group] = hash;
+    System.arraycopy(key, 0, keys, group * keyWidth, keyWidth);
+    for (Accumulator accumulator : accumulators) {
+      accumulator.ensureGroups(groupCount);
+    }
+    slots[slot] = group + 1;
+    /* The table is kept at most half full so that probe sequences stay short */
+    if (groupCount * 2 > slots.length) {
+      rehash();
+    }
+    return group;
+  }
+
+  private void rehash() {
+    slots = new int[slots.length * 2];
+    int mask = slots.length - 1;
+    for (int group = 0; group < groupCount; group++) {
+      int slot = hashes[group] & mask;
+      while (slots[slot] != 0) {
+        slot = (slot + 1) & mask;
+      }
+      slots[slot] = group + 1;
+    }
+  }
+
+  private static int hash(long[] key) {
+    long hash = 0;
+    for (long value : key) {
+      hash = mix(hash ^ value);
+    }
+    return (int) hash;
+  }
+
+  /* The finalizer of MurmurHash3, so that keys differing in few bits land in distant slots */
+  private static long mix(long value) {
+    value ^= value >>> 33;
+    value *= 0xff51afd7ed558ccdL;
+    value ^= value >>> 33;
+    value *= 0xc4ceb9fe1a85ec53L;
+    value ^= value >>> 33;
+    return value;
+  }
+
+  /* Updates the aggregates with the buffered rows */
+  private void update() {
+    if (buffered == 0) {
+      return;
+    }
+    for (Accumulator accumulator : accumulators) {
+      accumulator.update(groups, buffered);
+    }
+    buffered = 0;
+  }
+
+  /* Codes of the strings of a group column, in the order they were first seen */
+  private static class Dictionary {
+    private final Map<String, Integer> codes = new HashMap<>();
+    private final List<String> values = new ArrayList<>();
+
+    private long code(String value) {
+      Integer code = codes.get(value);
+      if (code == null) {
+        code = values.size();
+        values.add(value);
+        codes.put(value, code);
+      }
+      return code;
+    }
+  }
+
+  /* One aggregate of every group, with the values of the buffered rows it has not added yet */
+  private static class Accumulator {
+    private final AggregateFunction function;
+    /* Aggregated column, -1 for COUNT(*) */
+    private final int column;
+    private final ColumnType inputType;
+    private final ColumnType resultType;
+
+    private final boolean[] nullInput;
+    private final long[] longInput;
+    private final double[] doubleInput;
+    private final String[] textInput;
+
+    /* Values added per group; the sum, minimum or maximum as a long, double or string */
+    private long[] counts = new long[INITIAL_GROUPS];
+    private long[] longs;
+    private double[] doubles;
+    private String[] texts;
+
+    private Accumulator(
+        AggregateFunction function, int column, ColumnType inputType, ColumnType resultType) {
+      this.function = function;
+      this.column = column;
+      this.inputType = inputType;
+      this.resultType = resultType;
+      this.nullInput = new boolean[BATCH_SIZE];
+      boolean counting = function == AggregateFunction.COUNT;
+      this.longInput = !counting && isLong() ? new long[BATCH_SIZE] : null;
+      this.doubleInput = !counting && inputType == ColumnType.DOUBLE ? new double[BATCH_SIZE] : null;
+      this.textInput = !counting && inputType == ColumnType.VARCHAR ? new String[BATCH_SIZE] : null;
+      this.longs = longInput != null ? new long[INITIAL_GROUPS] : null;
+      this.doubles = doubleInput != null ? new double[INITIAL_GROUPS] : null;
+      this.texts = textInput != null ? new String[INITIAL_GROUPS] : null;
+    }
+
+    /* INT, BIGINT and BOOLEAN values are aggregated as longs */
+    private boolean isLong() {
+      return inputType == ColumnType.INT
+          || inputType == ColumnType.BIGINT
+          || inputType == ColumnType.BOOLEAN;
+    }
+
+    private void ensureGroups(int groupCount) {
+      if (groupCount <= counts.length) {
+        return;
+      }
+      int capacity = Math.max(counts.length * 2, groupCount);
+      counts = Arrays.copyOf(counts, capacity);
+      if (longs != null) {
+        longs = Arrays.copyOf(longs, capacity);
+      }
+      if (doubles != null) {
+        doubles = Arrays.copyOf(doubles, capacity);
+      }
+      if (texts != null) {
+        texts = Arrays.copyOf(texts, capacity);
+      }
+    }
+
+    private void load(ColumnarTable table, int row, int position) {
+      if (column == -1) {
+        return;
+      }
+      boolean isNull = table.isNull(column, row);
+      nullInput[position] = isNull;
+      if (isNull) {
+        return;
+      }
+      if (longInput != null) {
+        longInput[position] =
+            switch (inputType) {
+              case INT -> table.getInt(column, row);
+              case BOOLEAN -> table.getBoolean(column, row) ? 1 : 0;
+              default -> table.getLong(column, row);
+            };
+      } else if (doubleInput != null) {
+        doubleInput[position] = table.getDouble(column, row);
+      } else if (textInput != null) {
+        textInput[position] = table.getString(column, row);
+      }
+    }
+
+    private void update(int[] groups, int rows) {
+      if (column == -1) {
+        for (int i = 0; i < rows; i++) {
+          counts[groups[i]]++;
+        }
+        return;
+      }
+      switch (function) {
+        case COUNT -> {
+          for (int i = 0; i < rows; i++) {
+            if (!nullInput[i]) {
+              counts[groups[i]]++;
+            }
+          }
+        }
+        case SUM, AVG -> {
+          if (longInput != null) {
+            for (int i = 0; i < rows; i++) {
+              if (!nullInput[i]) {
+                counts[groups[i]]++;
+                longs[groups[i]] += longInput[i];
+              }
+            }
+          } else {
+            for (int i = 0; i < rows; i++) {
+              if (!nullInput[i]) {
+                counts[groups[i]]++;
+                doubles[groups[i]] += doubleInput[i];
+              }
+            }
+          }
+        }
+        case MIN, MAX -> {
+          boolean min = function == AggregateFunction.MIN;
+          if (longInput != null) {
+            for (int i = 0; i < rows; i++) {
+              int group = groups[i];
+              if (!nullInput[i]
+                  && (counts[group]++ == 0
+                      || (min ? longInput[i] < longs[group] : longInput[i] > longs[group]))) {
+                longs[group] = longInput[i];
+              }
+            }
+          } else if (doubleInput != null) {
+            for (int i = 0; i < rows; i++) {
+              int group = groups[i];
+              if (!nullInput[i]
+                  && (counts[group]++ == 0
+                      || (min ? doubleInput[i] < doubles[group] : doubleInput[i] > doubles[group]))) {
+                doubles[group] = doubleInput[i];
+              }
+            }
+          } else {
+            for (int i = 0; i < rows; i++) {
+              int group = groups[i];
+              if (!nullInput[i]
+                  && (counts[group]++ == 0
+                      || (min
+                          ? textInput[i].compareTo(texts[group]) < 0
+                          : textInput[i].compareTo(texts[group]) > 0))) {
+                texts[group] = textInput[i];
+              }
+            }
+          }
+        }
+      }
+    }
+
+    /* Adds the aggregate of a group of another aggregator to a group of this one */
+    private void merge(int group, Accumulator other, int otherGroup) {
+      long otherCount = other.counts[otherGroup];
+      if (otherCount == 0) {
+        return;
+      }
+      switch (function) {
+        case COUNT -> {}
+        case SUM, AVG -> {
+          if (longs != null) {
+            longs[group] += other.longs[otherGroup];
+          } else {
+            doubles[group] += other.doubles[otherGroup];
+          }
+        }
+        case MIN, MAX -> {
+          boolean min = function == AggregateFunction.MIN;
+          boolean first = counts[group] == 0;
+          if (longs != null) {
+            long value = other.longs[otherGroup];
+            if (first || (min ? value < longs[group] : value > longs[group])) {
+              longs[group] = value;
+            }
+          } else if (doubles != null) {
+            double value = other.doubles[otherGroup];
+            if (first || (min ? value < doubles[group] : value > doubles[group])) {
+              doubles[group] = value;
+            }
+          } else {
+            String value = other.texts[otherGroup];
+            int comparison = first ? 0 : value.compareTo(texts[group]);
+            if (first || (min ? comparison < 0 : comparison > 0)) {
+              texts[group] = value;
+            }
+          }
+        }
+      }
+      counts[group] += otherCount;
+    }
+
+    /* Puts the aggregate of a group into the result row */
+    private void put(ColumnarTable table, int outputColumn, int group) {
+      long count = counts[group];
+      if (function == AggregateFunction.COUNT) {
+        table.putLong(outputColumn, count);
+        return;
+      }
+      if (count == 0) {
+        table.putNull(outputColumn);
+        return;
+      }
+      if (function == AggregateFunction.AVG) {
+        double sum = longs != null ? longs[group] : doubles[group];
+        table.putDouble(outputColumn, sum / count);
+        return;
+      }
+      switch (resultType) {
+        case INT -> table.putInt(outputColumn, (int) longs[group]);
+        case BIGINT -> table.putLong(outputColumn, longs[group]);
+        case DOUBLE -> table.putDouble(outputColumn, doubles[group]);
+        case BOOLEAN -> table.putBoolean(outputColumn, longs[group] != 0);
+        case VARCHAR -> table.putString(outputColumn, texts[group]);
+      }
+    }
+  }
+}
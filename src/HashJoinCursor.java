@@ -0,0 +1,335 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+
+/**
+ * The {@code HashJoinCursor} class joins the rows of two tables with equal join keys. The rows of
+ * the build side are put into a hash table keyed by their join column, then the rows of the probe
+ * side are streamed past it, and every pair of rows with equal keys is passed on as one row of the
+ * joined schema, the columns of the left table first.
+ *
+ * <p>If the build side does not fit into the memory budget, both sides are written to partition
+ * files by the hash of their key, and the partitions are joined one pair at a time, so a join
+ * needs memory for one partition of the build side only. Rows with a null key never match.
+ */
+public class HashJoinCursor implements RowCursor {
+  private static final int BATCH_SIZE = 1024;
+  private static final int PARTITION_BITS = 6;
+  private static final int PARTITIONS = 1 << PARTITION_BITS;
+
+  private final RowCursor build;
+  private final RowCursor probe;
+  private final int buildKey;
+  private final int probeKey;
+  private final boolean buildIsLeft;
+  private final JoinKey joinKey;
+  private final long memoryBudget;
+  private final ColumnarTable output;
+  private int row = -1;
+  private boolean started;
+
+  /* Hash table over the rows of the build side in memory: chains of row positions per bucket */
+  private ColumnarTable buildTable;
+  private int[] buckets;
+  private int[] chain;
+  private long[] keyBits;
+  private String[] keyTexts;
+  private int mask;
+
+  /* Probe row whose matches are being passed on, and the next build row of its chain */
+  private RowCursor probeSource;
+  private ColumnarTable probeTable;
+  private int probeRow;
+  private long probeBits;
+  private String probeText;
+  private int match = -1;
+
+  /* Partitions of both sides after a spill, joined pair after pair */
+  private SpillFile[] buildPartitions;
+  private SpillFile[] probePartitions;
+  private int nextPartition;
+
+  /**
+   * @param build rows put into the hash table, the smaller side of the join
+   * @param probe rows streamed past the hash table
+   * @param buildKey join column of the build side
+   * @param probeKey join column of the probe side
+   * @param buildIsLeft whether the build side is the left table of the join
+   * @param schema schema of the joined rows
+   * @param memoryBudget bytes the rows of the build side may take in memory
+   */
+  public HashJoinCursor(
+      RowCursor build,
+      RowCursor probe,
+      int buildKey,
+      int probeKey,
+      boolean buildIsLeft,
+      TableSchema schema,
+      long memoryBudget) {
+    this.build = build;
+    this.probe = probe;
+    this.buildKey = buildKey;
+    this.probeKey = probeKey;
+    this.buildIsLeft = buildIsLeft;
+    this.joinKey =
+        JoinKey.of(
+            build.getSchema().getColumnType(buildKey), probe.getSchema().getColumnType(probeKey));
+    this.memoryBudget = memoryBudget;
+    this.output = new ColumnarTable(schema);
+  }
+
+  @Override
+  public TableSchema getSchema() {
+    return output.getSchema();
+  }
+
+  @Override
+  public boolean next() {
+    if (row + 1 < output.getRowCount()) {
+      row++;
+      return true;
+    }
+    output.clear();
+    row = -1;
+    try {
+      fill();
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to spill the join to disk", e);
+    }
+    if (output.getRowCount() == 0) {
+      return false;
+    }
+    row = 0;
+    return true;
+  }
+
+  /* Passes on up to a batch of joined rows */
+  private void fill() throws IOException {
+    if (!started) {
+      started = true;
+      if (!buildInMemory()) {
+        spill();
+      }
+    }
+    while (output.getRowCount() < BATCH_SIZE) {
+      while (match != -1) {
+        if (matches(match)) {
+          if (buildIsLeft) {
+            output.appendJoinedRow(buildTable, match, probeTable, probeRow);
+          } else {
+            output.appendJoinedRow(probeTable, probeRow, buildTable, match);
+          }
+        }
+        match = chain[match];
+        if (output.getRowCount() >= BATCH_SIZE) {
+          return;
+        }
+      }
+      if (probeSource != null && probeSource.next()) {
+        probeTable = probeSource.getTable();
+        probeRow = probeSource.getRow();
+        if (probeTable.isNull(probeKey, probeRow)) {
+          continue;
+        }
+        if (joinKey == JoinKey.TEXT) {
+          probeText = joinKey.text(probeTable, probeKey, probeRow);
+        } else {
+          probeBits = joinKey.bits(probeTable, probeKey, probeRow);
+        }
+        match = buckets[(int) joinKey.hash(probeTable, probeKey, probeRow) & mask];
+        continue;
+      }
+      if (!loadNextPartition()) {
+        return;
+      }
+    }
+  }
+
+  private boolean matches(int buildRow) {
+    return joinKey == JoinKey.TEXT
+        ? keyTexts[buildRow].equals(probeText)
+        : keyBits[buildRow] == probeBits;
+  }
+
+  /* Reads the build side into memory, false if it does not fit */
+  private boolean buildInMemory() {
+    buildTable = new ColumnarTable(build.getSchema());
+    while (build.next()) {
+      ColumnarTable table = build.getTable();
+      int buildRow = build.getRow();
+      if (table.isNull(buildKey, buildRow)) {
+        continue;
+      }
+      buildTable.appendRowFrom(table, buildRow);
+      if ((buildTable.getRowCount() & (BATCH_SIZE - 1)) == 0
+          && buildTable.estimateMemory() > memoryBudget) {
+        return false;
+      }
+    }
+    index(buildTable);
+    probeSource = probe;
+    return true;
+  }
+
+  /* Builds the hash table over the rows of the build side */
+  private void index(ColumnarTable table) {
+    int rows = table.getRowCount();
+    int capacity = Integer.highestOneBit(Math.max(16, rows * 2 - 1)) << 1;
+    buckets = new int[capacity];
+    Arrays.fill(buckets, -1);
+    chain = new int[rows];
+    mask = capacity - 1;
+    keyBits = joinKey == JoinKey.TEXT ? null : new long[rows];
+    keyTexts = joinKey == JoinKey.TEXT ? new String[rows] : null;
+    for (int buildRow = 0; buildRow < rows; buildRow++) {
+      if (joinKey == JoinKey.TEXT) {
+        keyTexts[buildRow] = joinKey.text(table, buildKey, buildRow);
+      } else {
+        keyBits[buildRow] = joinKey.bits(table, buildKey, buildRow);
+      }
+      int bucket = (int) joinKey.hash(table, buildKey, buildRow) & mask;
+      chain[buildRow] = buckets[bucket];
+      buckets[bucket] = buildRow;
+    }
+  }
+
+  /* Writes the build rows read so far, the rest of the build side and the probe side to partitions */
+  private void spill() throws IOException {
+    buildPartitions = new SpillFile[PARTITIONS];
+    probePartitions = new SpillFile[PARTITIONS];
+    for (int partition = 0; partition < PARTITIONS; partition++) {
+      buildPartitions[partition] = new SpillFile("join-");
+      probePartitions[partition] = new SpillFile("join-");
+    }
+    for (int buildRow = 0; buildRow < buildTable.getRowCount(); buildRow++) {
+      buildPartitions[partitionOf(buildTable, buildKey, buildRow)].writeRow(buildTable, buildRow);
+    }
+    buildTable = null;
+    while (build.next()) {
+      ColumnarTable table = build.getTable();
+      int row = build.getRow();
+      if (!table.isNull(buildKey, row)) {
+        buildPartitions[partitionOf(table, buildKey, row)].writeRow(table, row);
+      }
+    }
+    while (probe.next()) {
+      ColumnarTable table = probe.getTable();
+      int row = probe.getRow();
+      if (!table.isNull(probeKey, row)) {
+        probePartitions[partitionOf(table, probeKey, row)].writeRow(table, row);
+      }
+    }
+  }
+
+  /* The partition is taken from the high bits of the hash, the bucket from the low ones */
+  private int partitionOf(ColumnarTable table, int column, int row) {
+    return (int) (joinKey.hash(table, column, row) >>> (Long.SIZE - PARTITION_BITS));
+  }
+
+  /* Replaces the hash table by the one of the next partition, false after the last one */
+  private boolean loadNextPartition() throws IOException {
+    probeSource = null;
+    if (buildPartitions == null) {
+      return false;
+    }
+    while (nextPartition < PARTITIONS) {
+      int partition = nextPartition++;
+      ColumnarTable table = new ColumnarTable(build.getSchema());
+      buildPartitions[partition].rewind();
+      while (buildPartitions[partition].readRow(table)) {
+        /* Read the whole partition */
+      }
+      buildPartitions[partition].delete();
+      if (table.getRowCount() == 0) {
+        probePartitions[partition].delete();
+        continue;
+      }
+      buildTable = table;
+      index(table);
+      probePartitions[partition].rewind();
+      probeSource = new PartitionCursor(probePartitions[partition], probe.getSchema());
+      return true;
+    }
+    return false;
+  }
+
+  @Override
+  public ColumnarTable getTable() {
+    return output;
+  }
+
+  @Override
+  public int getRow() {
+    return row;
+  }
+
+  @Override
+  public void close() {
+    build.close();
+    probe.close();
+    if (buildPartitions != null) {
+      for (int partition = 0; partition < PARTITIONS; partition++) {
+        buildPartitions[partition].delete();
+        probePartitions[partition].delete();
+      }
+    }
+  }
+
+  /* Reads the rows of a partition of the probe side a batch at a time */
+  private static final class PartitionCursor implements RowCursor {
+    private final SpillFile partition;
+    private final ColumnarTable batch;
+    private int row = -1;
+    private boolean ended;
+
+    private PartitionCursor(SpillFile partition, TableSchema schema) {
+      this.partition = partition;
+      this.batch = new ColumnarTable(schema);
+    }
+
+    @Override
+    public TableSchema getSchema() {
+      return batch.getSchema();
+    }
+
+    @Override
+    public boolean next() {
+      if (row + 1 < batch.getRowCount()) {
+        row++;
+        return true;
+      }
+      batch.clear();
+      row = -1;
+      try {
+        while (!ended && batch.getRowCount() < BATCH_SIZE) {
+          ended = !partition.readRow(batch);
+        }
+      } catch (IOException e) {
+        throw new UncheckedIOException("Failed to read a partition of the join", e);
+      }
+      if (ended) {
+        partition.delete();
+      }
+      if (batch.getRowCount() == 0) {
+        return false;
+      }
+      row = 0;
+      return true;
+    }
+
+    @Override
+    public ColumnarTable getTable() {
+      return batch;
+    }
+
+    @Override
+    public int getRow() {
+      return row;
+    }
+
+    @Override
+    public void close() {
+      partition.delete();
+    }
+  }
+}
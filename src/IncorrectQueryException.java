@@ -2,6 +2,8 @@
  * The {@code IncorrectQueryException} class is a custom exception that indicates an error in the query syntax or semantics.
  */
 public class IncorrectQueryException extends Exception {
+  private static final long serialVersionUID = 1L;
+
   public IncorrectQueryException(String errorMessage) {
     super(errorMessage);
   }
@@ -0,0 +1,84 @@
+import java.util.Arrays;
+
+/**
+ * The {@code IndexOrderCursor} class reads the rows of a table found by an index in the order of
+ * the given row ids, a batch of rows at a time, so that a LIMIT or a merge join stops reading once
+ * it has enough rows and memory does not grow with the number of rows.
+ */
+public class IndexOrderCursor implements RowCursor {
+  private static final int BATCH_SIZE = 1024;
+
+  private final TableStorage tableStorage;
+  private final TableSchema schema;
+  private final long[] rowIds;
+  private final boolean[] projection;
+  private final TableSnapshot tableSnapshot;
+  private int nextRowId;
+  private ColumnarTable batch;
+  private int row = -1;
+
+  /**
+   * @param tableStorage storage of the table
+   * @param schema schema of the table
+   * @param rowIds ids of the rows, in the order they are returned
+   * @param projection the columns that have to be read, or {@code null} for all of them
+   * @param tableSnapshot the snapshot the rows are read in
+   */
+  public IndexOrderCursor(
+      TableStorage tableStorage,
+      TableSchema schema,
+      long[] rowIds,
+      boolean[] projection,
+      TableSnapshot tableSnapshot) {
+    this.tableStorage = tableStorage;
+    this.schema = schema;
+    this.rowIds = rowIds;
+    this.projection = projection;
+    this.tableSnapshot = tableSnapshot;
+  }
+
+  @Override
+  public TableSchema getSchema() {
+    return schema;
+  }
+
+  @Override
+  public boolean next() {
+    if (batch != null && row + 1 < batch.getRowCount()) {
+      row++;
+      return true;
+    }
+    /* Rows that cannot be read are skipped, so a batch may come back empty */
+    while (nextRowId < rowIds.length) {
+      int end = Math.min(rowIds.length, nextRowId + BATCH_SIZE);
+      batch =
+          tableStorage.fetchRows(
+              Arrays.copyOfRange(rowIds, nextRowId, end), projection, tableSnapshot);
+      nextRowId = end;
+      if (batch == null) {
+        nextRowId = rowIds.length;
+        return false;
+      }
+      if (batch.getRowCount() > 0) {
+        row = 0;
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public ColumnarTable getTable() {
+    return batch;
+  }
+
+  @Override
+  public int getRow() {
+    return row;
+  }
+
+  @Override
+  public void close() {
+    nextRowId = rowIds.length;
+  }
+}
@@ -0,0 +1,91 @@
+/**
+ * The {@code JoinKey} enum is the way the join columns of two tables are compared, chosen from
+ * their types: integers and booleans as longs, other numbers as doubles, and anything else by its
+ * text, so that an int column can be joined with a bigint or a double column.
+ */
+public enum JoinKey {
+  LONG,
+  DOUBLE,
+  TEXT;
+
+  /**
+   * @param left type of the join column of the left table
+   * @param right type of the join column of the right table
+   * @return how values of the two columns are compared
+   */
+  public static JoinKey of(ColumnType left, ColumnType right) {
+    if (isIntegral(left) && isIntegral(right)) {
+      return LONG;
+    }
+    if (left == ColumnType.BOOLEAN && right == ColumnType.BOOLEAN) {
+      return LONG;
+    }
+    if (left.isNumeric() && right.isNumeric()) {
+      return DOUBLE;
+    }
+    return TEXT;
+  }
+
+  private static boolean isIntegral(ColumnType type) {
+    return type == ColumnType.INT || type == ColumnType.BIGINT;
+  }
+
+  /**
+   * @return the value of a non-null key of a {@link #LONG} or {@link #DOUBLE} join as a long,
+   *     equal for equal keys
+   */
+  public long bits(ColumnarTable table, int column, int row) {
+    if (this == DOUBLE) {
+      double value = table.getNumber(column, row);
+      /* 0.0 and -0.0 are equal keys */
+      return Double.doubleToLongBits(value == 0 ? 0.0 : value);
+    }
+    return switch (table.getSchema().getColumnType(column)) {
+      case INT -> table.getInt(column, row);
+      case BIGINT -> table.getLong(column, row);
+      case BOOLEAN -> table.getBoolean(column, row) ? 1 : 0;
+      default -> throw new IllegalStateException("Not an integer key");
+    };
+  }
+
+  /**
+   * @return the value of a non-null key of a {@link #TEXT} join
+   */
+  public String text(ColumnarTable table, int column, int row) {
+    return table.format(column, row);
+  }
+
+  /**
+   * @return a hash of a non-null key, equal for equal keys
+   */
+  public long hash(ColumnarTable table, int column, int row) {
+    long value = this == TEXT ? text(table, column, row).hashCode() : bits(table, column, row);
+    /* Spreads the bits over the whole hash, from MurmurHash3 */
+    value ^= value >>> 33;
+    value *= 0xff51afd7ed558ccdL;
+    value ^= value >>> 33;
+    value *= 0xc4ceb9fe1a85ec53L;
+    value ^= value >>> 33;
+    return value;
+  }
+
+  /**
+   * Compares two non-null keys in the order of a numeric index.
+   *
+   * @return a negative number, zero or a positive number as the first key is smaller, equal or
+   *     larger
+   */
+  public int compare(
+      ColumnarTable left, int leftColumn, int leftRow, ColumnarTable right, int rightColumn,
+      int rightRow) {
+    return switch (this) {
+      case LONG ->
+          Long.compare(bits(left, leftColumn, leftRow), bits(right, rightColumn, rightRow));
+      case DOUBLE ->
+          Double.compare(
+              left.getNumber(leftColumn, leftRow), right.getNumber(rightColumn, rightRow));
+      case TEXT ->
+          text(left, leftColumn, leftRow).compareTo(text(right, rightColumn, rightRow));
+    };
+  }
+}
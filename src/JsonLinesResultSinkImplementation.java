@@ -0,0 +1,107 @@
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The {@code JsonLinesResultSinkImplementation} class writes a result as JSON lines: one object
+ * per row, on a line of its own, with a member per column. Numbers and booleans are JSON numbers
+ * and booleans, a double that is not finite is written as null.
+ */
+public class JsonLinesResultSinkImplementation implements ResultSink {
+  private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+  private final ResultBuffer buffer;
+  private int[] columns;
+  private ColumnType[] types;
+  /* "{" or "," and the quoted name of every column with its colon, encoded once */
+  private byte[][] names;
+
+  /**
+   * @param buffer receives the lines
+   */
+  public JsonLinesResultSinkImplementation(ResultBuffer buffer) {
+    this.buffer = buffer;
+  }
+
+  @Override
+  public void writeHeader(TableSchema schema, int[] columns) {
+    this.columns = columns;
+    this.types = new ColumnType[columns.length];
+    this.names = new byte[columns.length][];
+    for (int i = 0; i < columns.length; i++) {
+      types[i] = schema.getColumnType(columns[i]);
+      names[i] =
+          ((i == 0 ? "{" : ",") + quote(schema.getColumnName(columns[i])) + ":")
+              .getBytes(StandardCharsets.UTF_8);
+    }
+  }
+
+  @Override
+  public void writeRow(ColumnarTable table, int row) {
+    if (columns.length == 0) {
+      buffer.writeByte('{');
+    }
+    for (int i = 0; i < columns.length; i++) {
+      buffer.writeBytes(names[i]);
+      int column = columns[i];
+      if (table.isNull(column, row)) {
+        buffer.writeText("null");
+      } else if (types[i] == ColumnType.VARCHAR) {
+        String value = table.getString(column, row);
+        if (needsEscaping(value)) {
+          buffer.writeText(quote(value));
+        } else {
+          buffer.writeByte('"');
+          buffer.writeText(value);
+          buffer.writeByte('"');
+        }
+      } else if (types[i] == ColumnType.DOUBLE
+          && !Double.isFinite(table.getDouble(column, row))) {
+        buffer.writeText("null");
+      } else {
+        buffer.writeValue(table, types[i], column, row);
+      }
+    }
+    buffer.writeText("}\n");
+  }
+
+  @Override
+  public void flush() {
+    buffer.flush();
+  }
+
+  @Override
+  public void close() {
+    buffer.close();
+  }
+
+  private static boolean needsEscaping(String value) {
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '"' || c == '\\' || c < 0x20) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static String quote(String value) {
+    StringBuilder quoted = new StringBuilder(value.length() + 2).append('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      switch (c) {
+        case '"' -> quoted.append("\\\"");
+        case '\\' -> quoted.append("\\\\");
+        case '\n' -> quoted.append("\\n");
+        case '\r' -> quoted.append("\\r");
+        case '\t' -> quoted.append("\\t");
+        default -> {
+          if (c < 0x20) {
+            quoted.append("\\u00").append(HEX_DIGITS[c >> 4]).append(HEX_DIGITS[c & 0xF]);
+          } else {
+            quoted.append(c);
+          }
+        }
+      }
+    }
+    return quoted.append('"').toString();
+  }
+}
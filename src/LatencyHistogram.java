@@ -0,0 +1,95 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The {@code LatencyHistogram} class counts durations in nanoseconds in logarithmic buckets: every
+ * power of two is split into eight buckets, so a percentile is off by at most an eighth, while the
+ * whole range of a long fits in a few hundred counters. Recording is lock-free and can be done by
+ * any number of threads at once.
+ */
+public class LatencyHistogram {
+  /* Values below 2^SUB_BUCKET_BITS have a bucket of their own */
+  private static final int SUB_BUCKET_BITS = 3;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int BUCKET_COUNT = (Long.SIZE - SUB_BUCKET_BITS + 1) << SUB_BUCKET_BITS;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+  private final LongAdder count = new LongAdder();
+  private final LongAdder sum = new LongAdder();
+  private final AtomicLong max = new AtomicLong();
+
+  /**
+   * @param nanos a duration, negative durations count as 0
+   */
+  public void record(long nanos) {
+    long value = Math.max(0, nanos);
+    counts.incrementAndGet(bucketOf(value));
+    count.increment();
+    sum.add(value);
+    max.accumulateAndGet(value, Math::max);
+  }
+
+  /**
+   * @return number of recorded durations
+   */
+  public long getCount() {
+    return count.sum();
+  }
+
+  /**
+   * @return average of the recorded durations, 0 if there are none
+   */
+  public long getMean() {
+    long recorded = count.sum();
+    return recorded == 0 ? 0 : sum.sum() / recorded;
+  }
+
+  /**
+   * @return longest recorded duration
+   */
+  public long getMax() {
+    return max.get();
+  }
+
+  /**
+   * @param fraction a fraction between 0 and 1, e.g. 0.99 for the 99th percentile
+   * @return the duration that the given fraction of the recorded durations does not exceed,
+   *     rounded up to the end of its bucket, 0 if nothing was recorded
+   */
+  public long getPercentile(double fraction) {
+    long total = 0;
+    long[] snapshot = new long[BUCKET_COUNT];
+    for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+      snapshot[bucket] = counts.get(bucket);
+      total += snapshot[bucket];
+    }
+    long rank = Math.max(1, (long) Math.ceil(fraction * total));
+    long seen = 0;
+    for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+      seen += snapshot[bucket];
+      if (seen >= rank) {
+        return Math.min(highestValueOf(bucket), max.get());
+      }
+    }
+    return 0;
+  }
+
+  private static int bucketOf(long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) value;
+    }
+    int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+    int subBucket = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+    return ((shift + 1) << SUB_BUCKET_BITS) + subBucket;
+  }
+
+  private static long highestValueOf(int bucket) {
+    if (bucket < SUB_BUCKETS) {
+      return bucket;
+    }
+    int shift = (bucket >>> SUB_BUCKET_BITS) - 1;
+    long lowest = (long) (SUB_BUCKETS + (bucket & (SUB_BUCKETS - 1))) << shift;
+    return lowest + (1L << shift) - 1;
+  }
+}
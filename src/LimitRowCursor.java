@@ -0,0 +1,43 @@
+/**
+ * The {@code LimitRowCursor} class passes on the first rows of another cursor and stops pulling
+ * from it once the limit is reached, so the rest of the table is never read.
+ */
+public class LimitRowCursor implements RowCursor {
+  private final RowCursor source;
+  private final long limit;
+  private long count;
+
+  public LimitRowCursor(RowCursor source, long limit) {
+    this.source = source;
+    this.limit = limit;
+  }
+
+  @Override
+  public TableSchema getSchema() {
+    return source.getSchema();
+  }
+
+  @Override
+  public boolean next() {
+    if (count >= limit || !source.next()) {
+      return false;
+    }
+    count++;
+    return true;
+  }
+
+  @Override
+  public ColumnarTable getTable() {
+    return source.getTable();
+  }
+
+  @Override
+  public int getRow() {
+    return source.getRow();
+  }
+
+  @Override
+  public void close() {
+    source.close();
+  }
+}
@@ -0,0 +1,11 @@
+/**
+ * The {@code LockException} class indicates that a lock could not be acquired, because waiting for
+ * it took too long or would never end.
+ */
+public class LockException extends Exception {
+  private static final long serialVersionUID = 1L;
+
+  public LockException(String errorMessage) {
+    super(errorMessage);
+  }
+}
@@ -0,0 +1,357 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The {@code LockManager} class hands out locks on the database, its tables and ranges of rows of
+ * a table, in the {@link LockMode modes} of multiple granularity locking: a statement first takes
+ * an intention lock on the database and on the table, then a lock on what it reads or changes.
+ *
+ * <p>Resources are spread over stripes, each with its own lock and its own queue per resource, so
+ * statements on different tables do not contend. Requests on a resource are granted in the order
+ * they were queued, as soon as they are compatible with the locks of other owners granted or
+ * queued before them; locks the owner already holds in a mode covering the request are granted at
+ * once. The owner of a lock is the thread that requested it.
+ *
+ * <p>A waiting owner that may give up checks every {@value #DEADLOCK_CHECK_MILLIS} ms whether the
+ * owners it waits for wait for it in turn, and fails with a {@link LockException} on a deadlock or
+ * once its timeout has passed. Owners that may not give up, such as changes already in the log,
+ * simply wait; the owners they wait for are chosen as victims instead.
+ */
+public class LockManager {
+  private static final long DEADLOCK_CHECK_MILLIS = 100;
+
+  /* Row ids of a range share a lock, 2^16 ids is a page of a paged table */
+  private static final int ROW_RANGE_SHIFT = 16;
+
+  /* Range of the rows being appended after the end of a table */
+  private static final long TAIL_RANGE = -1;
+
+  private final Stripe[] stripes;
+
+  /* The request every waiting owner waits for */
+  private final Map<Thread, Request> waiting = new ConcurrentHashMap<>();
+
+  /**
+   * A lockable resource: the database, a table, or a range of rows of a table.
+   *
+   * @param tableName lower-case name of the table, {@code null} for the database
+   * @param range range of rows, {@code null} for the whole table
+   */
+  public record Resource(String tableName, Long range) {
+    /** The whole database */
+    public static final Resource DATABASE = new Resource(null, null);
+
+    /**
+     * @param tableName name of the table
+     * @return the whole table
+     */
+    public static Resource table(String tableName) {
+      return new Resource(tableName.toLowerCase(), null);
+    }
+
+    /**
+     * @param tableName name of the table
+     * @param rowId id of a row of the table
+     * @return the range of rows holding the row
+     */
+    public static Resource rows(String tableName, long rowId) {
+      return new Resource(tableName.toLowerCase(), rowId >>> ROW_RANGE_SHIFT);
+    }
+
+    /**
+     * @param tableName name of the table
+     * @return the rows about to be appended to the table
+     */
+    public static Resource tail(String tableName) {
+      return new Resource(tableName.toLowerCase(), TAIL_RANGE);
+    }
+  }
+
+  /** Locks queued together and released together, by closing them. */
+  public final class Locks implements AutoCloseable {
+    private final Thread owner = Thread.currentThread();
+    private final List<Request> requests = new ArrayList<>();
+
+    private Locks() {}
+
+    /**
+     * Queues a lock request without waiting for it.
+     *
+     * @param resource the resource
+     * @param mode the mode
+     * @return these locks
+     */
+    public Locks add(Resource resource, LockMode mode) {
+      Stripe stripe = stripeOf(resource);
+      stripe.lock.lock();
+      try {
+        ArrayDeque<Request> queue =
+            stripe.queues.computeIfAbsent(resource, r -> new ArrayDeque<>());
+        for (Request request : queue) {
+          if (request.owner == owner && request.granted && request.mode.covers(mode)) {
+            return this;
+          }
+        }
+        Request request = new Request(owner, resource, mode);
+        queue.add(request);
+        requests.add(request);
+        grant(stripe, queue);
+      } finally {
+        stripe.lock.unlock();
+      }
+      return this;
+    }
+
+    /**
+     * Waits until all locks are granted. If they are not, the locks are released.
+     *
+     * @param timeoutMillis how long to wait at most
+     * @return these locks
+     * @throws LockException if waiting took too long or the owner is part of a deadlock
+     */
+    public Locks await(long timeoutMillis) throws LockException {
+      long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+      try {
+        for (Request request : requests) {
+          awaitRequest(request, deadline);
+        }
+      } catch (LockException | RuntimeException e) {
+        close();
+        throw e;
+      }
+      return this;
+    }
+
+    /**
+     * Waits until all locks are granted, however long it takes.
+     *
+     * @return these locks
+     */
+    public Locks awaitUninterruptibly() {
+      for (Request request : requests) {
+        Stripe stripe = stripeOf(request.resource);
+        stripe.lock.lock();
+        try {
+          if (!request.granted) {
+            waiting.put(owner, request);
+            while (!request.granted) {
+              stripe.changed.awaitUninterruptibly();
+            }
+            waiting.remove(owner);
+          }
+        } finally {
+          stripe.lock.unlock();
+        }
+      }
+      return this;
+    }
+
+    /** Releases the locks, granting the requests waiting for them. */
+    @Override
+    public void close() {
+      for (Request request : requests) {
+        Stripe stripe = stripeOf(request.resource);
+        stripe.lock.lock();
+        try {
+          ArrayDeque<Request> queue = stripe.queues.get(request.resource);
+          if (queue != null && queue.remove(request)) {
+            if (queue.isEmpty()) {
+              stripe.queues.remove(request.resource);
+            } else {
+              grant(stripe, queue);
+            }
+          }
+        } finally {
+          stripe.lock.unlock();
+        }
+      }
+      requests.clear();
+      waiting.remove(owner);
+    }
+
+    private void awaitRequest(Request request, long deadline) throws LockException {
+      Stripe stripe = stripeOf(request.resource);
+      stripe.lock.lock();
+      try {
+        if (request.granted) {
+          return;
+        }
+        waiting.put(owner, request);
+        try {
+          while (!request.granted) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+              throw new LockException(
+                  "Lock wait timeout on " + describe(request.resource) + ", try again");
+            }
+            stripe.changed.await(
+                Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(DEADLOCK_CHECK_MILLIS)),
+                TimeUnit.NANOSECONDS);
+            if (!request.granted) {
+              /* Stripes are locked one at a time while looking for a cycle */
+              stripe.lock.unlock();
+              boolean deadlock;
+              try {
+                deadlock = isDeadlocked(owner);
+              } finally {
+                stripe.lock.lock();
+              }
+              if (deadlock && !request.granted) {
+                throw new LockException(
+                    "Deadlock detected on " + describe(request.resource) + ", try again");
+              }
+            }
+          }
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new LockException("Interrupted while waiting for " + describe(request.resource));
+        } finally {
+          waiting.remove(owner);
+        }
+      } finally {
+        stripe.lock.unlock();
+      }
+    }
+  }
+
+  private static final class Request {
+    private final Thread owner;
+    private final Resource resource;
+    private final LockMode mode;
+    private boolean granted;
+
+    private Request(Thread owner, Resource resource, LockMode mode) {
+      this.owner = owner;
+      this.resource = resource;
+      this.mode = mode;
+    }
+  }
+
+  private static final class Stripe {
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final Map<Resource, ArrayDeque<Request>> queues = new HashMap<>();
+  }
+
+  /**
+   * @param stripeCount number of stripes, rounded up to a power of two
+   */
+  public LockManager(int stripeCount) {
+    int count = Integer.highestOneBit(Math.max(1, stripeCount - 1)) << 1;
+    this.stripes = new Stripe[count];
+    for (int i = 0; i < count; i++) {
+      stripes[i] = new Stripe();
+    }
+  }
+
+  /**
+   * Starts a group of lock requests of the current thread.
+   *
+   * @return the empty group
+   */
+  public Locks newLocks() {
+    return new Locks();
+  }
+
+  private Stripe stripeOf(Resource resource) {
+    int hash = resource.hashCode();
+    hash ^= hash >>> 16;
+    return stripes[hash & (stripes.length - 1)];
+  }
+
+  /* Grants every waiting request compatible with the requests of other owners ahead of it */
+  private static void grant(Stripe stripe, ArrayDeque<Request> queue) {
+    boolean changed = false;
+    List<Request> ahead = new ArrayList<>();
+    for (Request request : queue) {
+      if (!request.granted && isCompatible(request, ahead)) {
+        request.granted = true;
+        changed = true;
+      }
+      ahead.add(request);
+    }
+    if (changed) {
+      /* Waiters of all resources of the stripe share the condition */
+      stripe.changed.signalAll();
+    }
+  }
+
+  private static boolean isCompatible(Request request, List<Request> ahead) {
+    for (Request other : ahead) {
+      if (other.owner != request.owner && !other.mode.isCompatibleWith(request.mode)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /* Owners the waiting request has to wait for */
+  private Set<Thread> blockersOf(Request request) {
+    Set<Thread> blockers = new HashSet<>();
+    Stripe stripe = stripeOf(request.resource);
+    stripe.lock.lock();
+    try {
+      ArrayDeque<Request> queue = stripe.queues.get(request.resource);
+      if (queue == null || request.granted) {
+        return blockers;
+      }
+      Iterator<Request> iterator = queue.iterator();
+      while (iterator.hasNext()) {
+        Request other = iterator.next();
+        if (other == request) {
+          break;
+        }
+        if (other.owner != request.owner && !other.mode.isCompatibleWith(request.mode)) {
+          blockers.add(other.owner);
+        }
+      }
+    } finally {
+      stripe.lock.unlock();
+    }
+    return blockers;
+  }
+
+  /* Follows the owners a waiting owner waits for, looking for a way back to it */
+  private boolean isDeadlocked(Thread owner) {
+    Set<Thread> visited = new HashSet<>();
+    ArrayDeque<Thread> pending = new ArrayDeque<>();
+    pending.add(owner);
+    while (!pending.isEmpty()) {
+      Request request = waiting.get(pending.poll());
+      if (request == null) {
+        continue;
+      }
+      for (Thread blocker : blockersOf(request)) {
+        if (blocker == owner) {
+          return true;
+        }
+        if (visited.add(blocker)) {
+          pending.add(blocker);
+        }
+      }
+    }
+    return false;
+  }
+
+  private static String describe(Resource resource) {
+    if (resource.tableName() == null) {
+      return "the database";
+    }
+    if (resource.range() == null) {
+      return "table " + resource.tableName();
+    }
+    return resource.range() == TAIL_RANGE
+        ? "the end of table " + resource.tableName()
+        : "rows of table " + resource.tableName();
+  }
+}
@@ -0,0 +1,64 @@
+/**
+ * The {@code LockMode} enum lists the modes a {@link LockManager} lock is held in. Intention modes
+ * are taken on the database and on a table before locking something inside of it, so that a lock
+ * on the whole table only has to be checked against the locks on the table itself.
+ */
+public enum LockMode {
+  /* Intention to read inside the locked resource */
+  IS,
+  /* Intention to change inside the locked resource */
+  IX,
+  /* Read the whole resource */
+  S,
+  /* Read the whole resource and change inside of it */
+  SIX,
+  /* Change the whole resource */
+  X;
+
+  /* Which modes can be held by different owners at the same time, indexed by ordinal */
+  private static final boolean[][] COMPATIBLE = {
+    /*        IS     IX     S      SIX    X */
+    /* IS */ {true, true, true, true, false},
+    /* IX */ {true, true, false, false, false},
+    /* S  */ {true, false, true, false, false},
+    /* SIX */ {true, false, false, false, false},
+    /* X  */ {false, false, false, false, false}
+  };
+
+  /**
+   * @param other mode held or requested by another owner
+   * @return whether both modes can be held on the same resource at the same time
+   */
+  public boolean isCompatibleWith(LockMode other) {
+    return COMPATIBLE[ordinal()][other.ordinal()];
+  }
+
+  /**
+   * @param other a requested mode
+   * @return whether holding this mode already allows everything the other mode allows
+   */
+  public boolean covers(LockMode other) {
+    return combine(other) == this;
+  }
+
+  /**
+   * @param other another mode of the same owner
+   * @return the weakest mode allowing everything both modes allow
+   */
+  public LockMode combine(LockMode other) {
+    if (this == other) {
+      return this;
+    }
+    if (this == X || other == X) {
+      return X;
+    }
+    if (this == IS) {
+      return other;
+    }
+    if (other == IS) {
+      return this;
+    }
+    /* Any two of IX, S and SIX */
+    return SIX;
+  }
+}
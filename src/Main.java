@@ -1,7 +1,12 @@
+import java.io.IOException;
 import java.util.Scanner;
 
+/**
+ * Starts the console, or with {@code --server [port]} a {@link DatabaseServer} that clients such
+ * as {@link DatabaseClient} connect to.
+ */
 public class Main {
-  public static void main(String[] args) {
+  public static void main(String[] args) throws IOException {
 
     /* User Authentication Manager */
     UserService userService = new UserServiceImplementation();
@@ -9,16 +14,22 @@ public class Main {
     UserAuthenticationManager authenticationManager =
         new UserAuthenticationManager(userService, captchaService);
 
-    /* Transaction Manager */
-    TransactionManager transactionManager = new TransactionManager(false);
+    if (args.length > 0 && args[0].equals("--server")) {
+      int port = args.length > 1 ? Integer.parseInt(args[1]) : Constants.SERVER_PORT;
+      try (DatabaseServer server = new DatabaseServer(authenticationManager, port)) {
+        System.out.println("Listening on port " + server.getPort());
+        server.serve();
+      }
+      return;
+    }
 
-    boolean isLoggedIn = false;
+    String user = null;
 
     Scanner scanner = new Scanner(System.in);
     System.out.println("Welcome to the Database Management System!");
 
     /* Ask for user credentials until successfully logged in */
-    while (!isLoggedIn) {
+    while (user == null) {
       System.out.print("UserId: ");
       String userId = scanner.nextLine();
 
@@ -30,9 +41,9 @@ public class Main {
       System.out.print("Enter Captcha: ");
       String captcha = scanner.nextLine();
 
-      isLoggedIn = authenticationManager.authenticateUser(userId, password, captcha);
+      user = authenticationManager.login(userId, password, captcha);
 
-      if (!isLoggedIn) {
+      if (user == null) {
         System.out.println("Invalid credentials or Captcha. Please try again.");
       }
     }
@@ -40,10 +51,12 @@ public class Main {
     System.out.println("Successfully logged in!");
     System.out.println("You can now start writing queries.");
 
+    /* The console is a session of its own */
+    Session session = new Session(user);
+    Database database = Database.getInstance(authenticationManager);
+
     /* Allow the user to write queries */
     while (true) {
-      Database database = Database.getInstance(authenticationManager, transactionManager);
-
       System.out.print("Enter your query (or 'exit' to logout): ");
       String query = scanner.nextLine();
 
@@ -53,12 +66,13 @@ public class Main {
       }
 
       try {
-        database.catchQuery(query);
+        database.execute(session, query);
       } catch (IncorrectQueryException incorrectQueryException) {
         System.out.println(incorrectQueryException.getMessage());
       }
     }
 
+    database.closeSession(session);
     scanner.close();
   }
 }
@@ -0,0 +1,59 @@
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * The {@code Md5PasswordHasherImplementation} class hashes passwords with unsalted MD5 as 32 hex
+ * digits, the format the user store was first written in. It is only kept to check those hashes
+ * until they are replaced at the next login.
+ */
+public class Md5PasswordHasherImplementation implements PasswordHasher {
+  private static final int HASH_LENGTH = 32;
+
+  /* Cloned for every hash, which is cheaper than looking the algorithm up again */
+  private static final MessageDigest PROTOTYPE;
+
+  static {
+    try {
+      PROTOTYPE = MessageDigest.getInstance("MD5");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("MD5 is not available", e);
+    }
+  }
+
+  @Override
+  public String hash(String password) {
+    MessageDigest messageDigest;
+    try {
+      messageDigest = (MessageDigest) PROTOTYPE.clone();
+    } catch (CloneNotSupportedException e) {
+      throw new IllegalStateException("MD5 digest cannot be cloned", e);
+    }
+    return HEX.formatHex(messageDigest.digest(password.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  @Override
+  public boolean accepts(String storedHash) {
+    if (storedHash.length() != HASH_LENGTH) {
+      return false;
+    }
+    for (int i = 0; i < HASH_LENGTH; i++) {
+      if (Character.digit(storedHash.charAt(i), 16) == -1) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public boolean verify(String password, String storedHash) {
+    return MessageDigest.isEqual(
+        hash(password).getBytes(StandardCharsets.US_ASCII),
+        storedHash.toLowerCase().getBytes(StandardCharsets.US_ASCII));
+  }
+
+  @Override
+  public boolean needsRehash(String storedHash) {
+    return false;
+  }
+}
@@ -0,0 +1,155 @@
+/**
+ * The {@code MergeJoinCursor} class joins two inputs that both come in the order of their join
+ * keys, such as the rows of two tables read through the indexes of their join columns. Both
+ * inputs are read once side by side; only the rows of the right input sharing one key are kept in
+ * memory, so that they can be paired with every left row of that key. Rows with a null key never
+ * match.
+ */
+public class MergeJoinCursor implements RowCursor {
+  private static final int BATCH_SIZE = 1024;
+
+  private final RowCursor left;
+  private final RowCursor right;
+  private final int leftKey;
+  private final int rightKey;
+  private final JoinKey joinKey;
+  private final ColumnarTable output;
+  private int row = -1;
+
+  /* Right rows with the key of the current group, and the next of them to pair */
+  private final ColumnarTable group;
+  private int groupRow;
+  private boolean pairing;
+  private boolean started;
+  private boolean leftValid;
+  private boolean rightValid;
+
+  /**
+   * @param left rows of the left table, in the order of their join key
+   * @param right rows of the right table, in the order of their join key
+   * @param leftKey join column of the left table
+   * @param rightKey join column of the right table
+   * @param schema schema of the joined rows
+   */
+  public MergeJoinCursor(
+      RowCursor left, RowCursor right, int leftKey, int rightKey, TableSchema schema) {
+    this.left = left;
+    this.right = right;
+    this.leftKey = leftKey;
+    this.rightKey = rightKey;
+    this.joinKey =
+        JoinKey.of(
+            left.getSchema().getColumnType(leftKey), right.getSchema().getColumnType(rightKey));
+    this.output = new ColumnarTable(schema);
+    this.group = new ColumnarTable(right.getSchema());
+  }
+
+  @Override
+  public TableSchema getSchema() {
+    return output.getSchema();
+  }
+
+  @Override
+  public boolean next() {
+    if (row + 1 < output.getRowCount()) {
+      row++;
+      return true;
+    }
+    output.clear();
+    row = -1;
+    fill();
+    if (output.getRowCount() == 0) {
+      return false;
+    }
+    row = 0;
+    return true;
+  }
+
+  /* Passes on up to a batch of joined rows */
+  private void fill() {
+    if (!started) {
+      started = true;
+      leftValid = left.next();
+      rightValid = right.next();
+    }
+    while (output.getRowCount() < BATCH_SIZE) {
+      if (pairing) {
+        ColumnarTable leftTable = left.getTable();
+        int leftRow = left.getRow();
+        while (groupRow < group.getRowCount() && output.getRowCount() < BATCH_SIZE) {
+          output.appendJoinedRow(leftTable, leftRow, group, groupRow++);
+        }
+        if (groupRow < group.getRowCount()) {
+          return;
+        }
+        pairing = false;
+        leftValid = left.next();
+      }
+      if (!leftValid) {
+        return;
+      }
+      if (left.getTable().isNull(leftKey, left.getRow())) {
+        leftValid = left.next();
+        continue;
+      }
+      if (group.getRowCount() > 0) {
+        int comparison =
+            joinKey.compare(left.getTable(), leftKey, left.getRow(), group, rightKey, 0);
+        if (comparison == 0) {
+          pairing = true;
+          groupRow = 0;
+          continue;
+        }
+        if (comparison < 0) {
+          leftValid = left.next();
+          continue;
+        }
+      }
+      if (!nextGroup()) {
+        leftValid = false;
+        return;
+      }
+    }
+  }
+
+  /* Collects the right rows of the smallest key not below the current left key */
+  private boolean nextGroup() {
+    group.clear();
+    while (rightValid
+        && (right.getTable().isNull(rightKey, right.getRow())
+            || joinKey.compare(
+                    left.getTable(), leftKey, left.getRow(), right.getTable(), rightKey,
+                    right.getRow())
+                > 0)) {
+      rightValid = right.next();
+    }
+    if (!rightValid) {
+      return false;
+    }
+    group.appendRowFrom(right.getTable(), right.getRow());
+    rightValid = right.next();
+    while (rightValid
+        && !right.getTable().isNull(rightKey, right.getRow())
+        && joinKey.compare(group, rightKey, 0, right.getTable(), rightKey, right.getRow()) == 0) {
+      group.appendRowFrom(right.getTable(), right.getRow());
+      rightValid = right.next();
+    }
+    return true;
+  }
+
+  @Override
+  public ColumnarTable getTable() {
+    return output;
+  }
+
+  @Override
+  public int getRow() {
+    return row;
+  }
+
+  @Override
+  public void close() {
+    left.close();
+    right.close();
+  }
+}
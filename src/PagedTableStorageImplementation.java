@@ -0,0 +1,954 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.NavigableMap;
+
+/**
+ * The {@code PagedTableStorageImplementation} class stores a table in a binary file made of
+ * fixed-size slotted pages, which are read in place through a memory mapping.
+ *
+ * <p>Page 0 is the file header: magic number, format version, page size, column count and, for
+ * every column, its type and name. Every other page starts with the number of slots and the start
+ * of the record area, followed by the slot array of (offset, length) pairs. Records are written
+ * from the end of the page towards the slot array. A record is a null bitmap followed by the
+ * non-null values: 4 bytes for INT, 8 for BIGINT and DOUBLE, 1 for BOOLEAN and a 2 byte length
+ * plus UTF-8 bytes for VARCHAR.
+ *
+ * <p>The length of a slot is the space the record was given when it was appended. Deleting a row
+ * only sets the highest bit of the length, and a row is rewritten in place if its new record fits
+ * into that space, which the record may then fill only partly, so neither moves another record.
+ */
+public class PagedTableStorageImplementation implements TableStorage {
+  public static final int PAGE_SIZE = 8192;
+  private static final int MAGIC = 0x4C444250;
+  private static final int VERSION = 1;
+  private static final int PAGE_HEADER_SIZE = 4;
+  private static final int SLOT_SIZE = 4;
+  private static final int MAX_RECORD_SIZE = PAGE_SIZE - PAGE_HEADER_SIZE - SLOT_SIZE;
+  /* Flag in the length of the slot of a deleted record */
+  private static final int DELETED_SLOT = 0x8000;
+  /* Number of pages mapped at once, keeps every mapping far below the 2 GB limit of a buffer */
+  private static final int PAGES_PER_MAPPING = 64 * 1024;
+
+  private final String dataFilePath;
+
+  public PagedTableStorageImplementation(String dataFilePath) {
+    this.dataFilePath = dataFilePath;
+  }
+
+  @Override
+  public File getFile() {
+    return new File(dataFilePath);
+  }
+
+  @Override
+  public StorageFormat getFormat() {
+    return StorageFormat.PAGED;
+  }
+
+  /**
+   * @param schema column names and types of the table
+   */
+  @Override
+  public void create(TableSchema schema) {
+    ByteBuffer header = ByteBuffer.allocate(PAGE_SIZE);
+    header.putInt(MAGIC).putInt(VERSION).putInt(PAGE_SIZE).putInt(schema.getColumnCount());
+    for (int i = 0; i < schema.getColumnCount(); i++) {
+      byte[] name = schema.getColumnName(i).getBytes(StandardCharsets.UTF_8);
+      header.put((byte) schema.getColumnType(i).ordinal()).putShort((short) name.length).put(name);
+    }
+    header.clear();
+
+    try (FileChannel channel =
+        FileChannel.open(
+            Path.of(dataFilePath),
+            StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.WRITE)) {
+      while (header.hasRemaining()) {
+        channel.write(header, header.position());
+      }
+    } catch (IOException e) {
+      System.out.println("Error saving data to file: " + dataFilePath);
+      e.printStackTrace();
+    }
+  }
+
+  @Override
+  public TableSchema readSchema() {
+    try (FileChannel channel = FileChannel.open(Path.of(dataFilePath), StandardOpenOption.READ)) {
+      return readSchema(channel);
+    } catch (IOException e) {
+      System.out.println("Error reading schema from file: " + dataFilePath);
+      return null;
+    }
+  }
+
+  /**
+   * A record has to fit into a page of its own.
+   *
+   * @param schema column names and types of the table
+   * @param row values of the row
+   * @return description of the problem, or {@code null} if the row can be stored
+   */
+  @Override
+  public String validateRow(TableSchema schema, List<String> row) {
+    String error = ColumnarTable.validateRow(schema, row);
+    if (error != null) {
+      return error;
+    }
+    int length = encodeRecord(schema, row).length;
+    return length > MAX_RECORD_SIZE
+        ? "Row is larger than a page (" + length + " > " + MAX_RECORD_SIZE + " bytes)"
+        : null;
+  }
+
+  /**
+   * Scans all pages in place. Values of columns outside the projection are skipped over without
+   * being decoded, so no Strings are built for them.
+   *
+   * @param projection the columns that have to be read, or {@code null} for all of them
+   * @return the table, or {@code null} if the file could not be read
+   */
+  @Override
+  public ColumnarTable loadTable(boolean[] projection) {
+    try (FileChannel channel = FileChannel.open(Path.of(dataFilePath), StandardOpenOption.READ)) {
+      TableSchema schema = readSchema(channel);
+      ColumnarTable table = new ColumnarTable(schema);
+
+      /* A torn page at the end of the file is ignored */
+      long pageCount = channel.size() / PAGE_SIZE;
+      for (long firstPage = 1; firstPage < pageCount; firstPage += PAGES_PER_MAPPING) {
+        int pages = (int) Math.min(PAGES_PER_MAPPING, pageCount - firstPage);
+        MappedByteBuffer mapped =
+            channel.map(
+                FileChannel.MapMode.READ_ONLY, firstPage * PAGE_SIZE, (long) pages * PAGE_SIZE);
+        for (int page = 0; page < pages; page++) {
+          readPage(mapped, page * PAGE_SIZE, Integer.MAX_VALUE, projection, table);
+        }
+        /* Mapped pages are read by page faults that are not timed */
+        QueryStats.recordRead((long) pages * PAGE_SIZE, 0);
+      }
+      return table;
+    } catch (IOException e) {
+      System.out.println("Error loading data from file: " + dataFilePath);
+      e.printStackTrace();
+      return null;
+    }
+  }
+
+  /**
+   * @param projection the columns that have to be decoded, or {@code null} for all of them
+   * @param tableSnapshot the rows that are read
+   * @return a cursor decoding one page at a time into a reused batch
+   */
+  @Override
+  public RowCursor openCursor(boolean[] projection, TableSnapshot tableSnapshot) {
+    return openCursor(1, Long.MAX_VALUE, projection, tableSnapshot);
+  }
+
+  /**
+   * Splits the data pages into ranges of whole pages.
+   *
+   * @return a cursor decoding the pages of the range
+   */
+  @Override
+  public RowCursor openSegmentCursor(
+      long fileLength,
+      int segment,
+      int segmentCount,
+      boolean[] projection,
+      TableSnapshot tableSnapshot) {
+    long dataPages = Math.max(fileLength / PAGE_SIZE - 1, 0);
+    long firstPage = 1 + dataPages * segment / segmentCount;
+    long endPage = 1 + dataPages * (segment + 1) / segmentCount;
+    return openCursor(firstPage, endPage, projection, tableSnapshot);
+  }
+
+  private RowCursor openCursor(
+      long firstPage, long endPage, boolean[] projection, TableSnapshot tableSnapshot) {
+    try {
+      FileChannel channel = FileChannel.open(Path.of(dataFilePath), StandardOpenOption.READ);
+      try {
+        TableSchema schema = readSchema(channel);
+        return new PageCursor(
+            channel, new ColumnarTable(schema), projection, firstPage, endPage, tableSnapshot);
+      } catch (IOException e) {
+        channel.close();
+        throw e;
+      }
+    } catch (IOException e) {
+      System.out.println("Error loading data from file: " + dataFilePath);
+      e.printStackTrace();
+      return null;
+    }
+  }
+
+  @Override
+  public void sync() throws IOException {
+    try (FileChannel channel = FileChannel.open(Path.of(dataFilePath), StandardOpenOption.WRITE)) {
+      channel.force(true);
+    }
+  }
+
+  /**
+   * Appends add slots to the last page before they add pages, so the next row gets the next slot
+   * of the last page or the first slot of a new page.
+   *
+   * @return the id of the next slot of the last page
+   */
+  @Override
+  public long endRowId() throws IOException {
+    try (FileChannel channel = FileChannel.open(Path.of(dataFilePath), StandardOpenOption.READ)) {
+      long pageCount = channel.size() / PAGE_SIZE;
+      if (pageCount < 2) {
+        return rowId(1, 0);
+      }
+      ByteBuffer page = ByteBuffer.allocate(PAGE_SIZE);
+      readPage(channel, page, pageCount - 1);
+      return rowId(pageCount - 1, Short.toUnsignedInt(page.getShort(0)));
+    }
+  }
+
+  /**
+   * Appends add slots to the last page before they add pages, so the mark is the number of pages
+   * together with the slot count and record area start of the last page.
+   *
+   * @return page count, slot count and record area start of the last page
+   */
+  @Override
+  public long[] mark() throws IOException {
+    try (FileChannel channel = FileChannel.open(Path.of(dataFilePath), StandardOpenOption.READ)) {
+      long pageCount = channel.size() / PAGE_SIZE;
+      if (pageCount < 2) {
+        return new long[] {pageCount, 0, 0};
+      }
+      ByteBuffer page = ByteBuffer.allocate(PAGE_SIZE);
+      readPage(channel, page, pageCount - 1);
+      return new long[] {
+        pageCount, Short.toUnsignedInt(page.getShort(0)), Short.toUnsignedInt(page.getShort(2))
+      };
+    }
+  }
+
+  @Override
+  public void restore(long[] mark) throws IOException {
+    try (FileChannel channel =
+        FileChannel.open(
+            Path.of(dataFilePath), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      long pageCount = mark[0];
+      channel.truncate(pageCount * PAGE_SIZE);
+      if (pageCount >= 2) {
+        /* Slots added to the last page after the mark are forgotten with the page header */
+        ByteBuffer page = ByteBuffer.allocate(PAGE_SIZE);
+        readPage(channel, page, pageCount - 1);
+        page.putShort(0, (short) mark[1]);
+        page.putShort(2, (short) mark[2]);
+        writePage(channel, page, pageCount - 1);
+      }
+      channel.force(true);
+    }
+  }
+
+  /**
+   * Adds the rows to the last page and to new pages after it. Only the pages that change are
+   * written.
+   *
+   * @param rows rows to be appended, already validated against the schema of the table
+   * @return the ids of the appended rows, made of their page number and slot
+   */
+  @Override
+  public long[] appendRows(List<List<String>> rows) {
+    try (FileChannel channel =
+        FileChannel.open(
+            Path.of(dataFilePath), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      TableSchema schema = readSchema(channel);
+
+      /* Encode everything first so that an oversized row does not leave a partial insert behind */
+      List<byte[]> records = new ArrayList<>(rows.size());
+      for (List<String> row : rows) {
+        byte[] record = encodeRecord(schema, row);
+        if (record.length > MAX_RECORD_SIZE) {
+          System.out.println("Row is larger than a page (" + MAX_RECORD_SIZE + " bytes): " + row);
+          return new long[0];
+        }
+        records.add(record);
+      }
+
+      ByteBuffer page = ByteBuffer.allocate(PAGE_SIZE);
+      long pageNumber = channel.size() / PAGE_SIZE - 1;
+      if (pageNumber >= 1) {
+        readPage(channel, page, pageNumber);
+      } else {
+        pageNumber = 1;
+        initPage(page);
+      }
+
+      long[] rowIds = new long[records.size()];
+      for (int i = 0; i < rowIds.length; i++) {
+        byte[] record = records.get(i);
+        if (!fits(page, record.length)) {
+          writePage(channel, page, pageNumber);
+          pageNumber++;
+          initPage(page);
+        }
+        rowIds[i] = rowId(pageNumber, addRecord(page, record));
+      }
+      writePage(channel, page, pageNumber);
+      return rowIds;
+    } catch (IOException e) {
+      System.out.println("Error appending data to file: " + dataFilePath);
+      e.printStackTrace();
+      return new long[0];
+    }
+  }
+
+  /**
+   * The id of a row is its page number in the upper bits and its slot in the lower 16 bits.
+   *
+   * @return the row ids
+   */
+  @Override
+  public long[] loadRowIds() {
+    try (FileChannel channel = FileChannel.open(Path.of(dataFilePath), StandardOpenOption.READ)) {
+      long pageCount = channel.size() / PAGE_SIZE;
+      long[] rowIds = new long[1024];
+      int rowCount = 0;
+      ByteBuffer page = ByteBuffer.allocate(PAGE_SIZE);
+      for (long pageNumber = 1; pageNumber < pageCount; pageNumber++) {
+        readPage(channel, page, pageNumber);
+        int slotCount = Short.toUnsignedInt(page.getShort(0));
+        for (int slot = 0; slot < slotCount; slot++) {
+          if (!isLive(page, 0, slot)) {
+            continue;
+          }
+          if (rowCount == rowIds.length) {
+            rowIds = Arrays.copyOf(rowIds, rowIds.length * 2);
+          }
+          rowIds[rowCount++] = rowId(pageNumber, slot);
+        }
+      }
+      return Arrays.copyOf(rowIds, rowCount);
+    } catch (IOException e) {
+      System.out.println("Error loading data from file: " + dataFilePath);
+      return null;
+    }
+  }
+
+  /**
+   * Only the slot arrays of the pages are read, the slots of deleted records are marked.
+   *
+   * @param endRowId only rows with smaller ids are counted
+   * @return number of live records
+   */
+  @Override
+  public long countRows(long endRowId) throws IOException {
+    try (FileChannel channel = FileChannel.open(Path.of(dataFilePath), StandardOpenOption.READ)) {
+      long pageCount = Math.min(channel.size() / PAGE_SIZE, (endRowId >>> 16) + 1);
+      ByteBuffer page = ByteBuffer.allocate(PAGE_SIZE);
+      long rows = 0;
+      for (long pageNumber = 1; pageNumber < pageCount; pageNumber++) {
+        /* The slot count and slot array sit at the start of the page */
+        page.clear();
+        page.limit(PAGE_HEADER_SIZE);
+        readSlots(channel, page, pageNumber);
+        int slotCount =
+            Math.min(
+                Short.toUnsignedInt(page.getShort(0)), (PAGE_SIZE - PAGE_HEADER_SIZE) / SLOT_SIZE);
+        if (pageNumber == endRowId >>> 16) {
+          slotCount = Math.min(slotCount, (int) (endRowId & 0xFFFF));
+        }
+        page.limit(PAGE_HEADER_SIZE + slotCount * SLOT_SIZE);
+        readSlots(channel, page, pageNumber);
+        for (int slot = 0; slot < slotCount; slot++) {
+          if (isLive(page, 0, slot)) {
+            rows++;
+          }
+        }
+      }
+      return rows;
+    }
+  }
+
+  /* Reads the start of a page up to the limit of the buffer */
+  private static void readSlots(FileChannel channel, ByteBuffer page, long pageNumber)
+      throws IOException {
+    long start = System.nanoTime();
+    int position = page.position();
+    while (page.hasRemaining()
+        && channel.read(page, pageNumber * PAGE_SIZE + page.position()) > 0) {
+      /* Read up to the limit */
+    }
+    QueryStats.recordRead(page.position() - position, System.nanoTime() - start);
+  }
+
+  /**
+   * Reads the page of every row, a page is read only once for consecutive rows on it.
+   *
+   * @param rowIds ids of the rows to be read
+   * @param projection the columns that have to be read, or {@code null} for all of them
+   * @param tableSnapshot the snapshot the rows are read in
+   * @return the rows
+   */
+  @Override
+  public ColumnarTable fetchRows(
+      long[] rowIds, boolean[] projection, TableSnapshot tableSnapshot) {
+    /* Rows written before the latch was taken have their old values kept already */
+    tableSnapshot.beginRead();
+    try (FileChannel channel = FileChannel.open(Path.of(dataFilePath), StandardOpenOption.READ)) {
+      ColumnarTable table = new ColumnarTable(readSchema(channel));
+      NavigableMap<Long, List<String>> changedRows =
+          rowIds.length == 0
+              ? Collections.emptyNavigableMap()
+              : tableSnapshot.changedRows(
+                  Arrays.stream(rowIds).min().getAsLong(),
+                  Arrays.stream(rowIds).max().getAsLong() + 1);
+      long pageCount = channel.size() / PAGE_SIZE;
+      ByteBuffer page = ByteBuffer.allocate(PAGE_SIZE);
+      long loadedPage = -1;
+      for (long rowId : rowIds) {
+        if (changedRows.containsKey(rowId)) {
+          table.appendRow(changedRows.get(rowId));
+          continue;
+        }
+        long pageNumber = rowId >>> 16;
+        int slot = (int) (rowId & 0xFFFF);
+        if (pageNumber < 1 || pageNumber >= pageCount) {
+          continue;
+        }
+        if (pageNumber != loadedPage) {
+          readPage(channel, page, pageNumber);
+          loadedPage = pageNumber;
+        }
+        if (slot >= Short.toUnsignedInt(page.getShort(0)) || !isLive(page, 0, slot)) {
+          continue;
+        }
+        decodeRecord(page, slotOffset(page, 0, slot), projection, table);
+      }
+      return table;
+    } catch (IOException e) {
+      System.out.println("Error loading data from file: " + dataFilePath);
+      e.printStackTrace();
+      return null;
+    } finally {
+      tableSnapshot.endRead();
+    }
+  }
+
+  /**
+   * Sets the deleted flag in the slots of the rows, every page is written once.
+   *
+   * @param rowIds ids of the rows to be deleted
+   * @return the space of the deleted records
+   */
+  @Override
+  public long deleteRows(long[] rowIds) throws IOException {
+    long[] unused = new long[1];
+    try (FileChannel channel =
+        FileChannel.open(
+            Path.of(dataFilePath), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      changeSlots(
+          channel,
+          rowIds,
+          (page, slot, index) -> {
+            if (!isLive(page, 0, slot)) {
+              return false;
+            }
+            unused[0] += slotSpace(page, 0, slot);
+            setSlotLength(page, slot, slotSpace(page, 0, slot) | DELETED_SLOT);
+            return true;
+          });
+    }
+    return unused[0];
+  }
+
+  /**
+   * Writes a new record over the old one if it is not longer than the space of the slot, which
+   * stays the length of the slot. A deleted slot becomes live again, so repeating the update of a
+   * row that was deleted afterwards restores the row before the delete is repeated as well.
+   *
+   * @param rowIds ids of the rows to be replaced
+   * @param rows the new values
+   * @return for every row whether its new record fitted
+   */
+  @Override
+  public boolean[] updateRows(long[] rowIds, List<List<String>> rows) throws IOException {
+    boolean[] updated = new boolean[rowIds.length];
+    try (FileChannel channel =
+        FileChannel.open(
+            Path.of(dataFilePath), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      TableSchema schema = readSchema(channel);
+      changeSlots(
+          channel,
+          rowIds,
+          (page, slot, index) -> {
+            byte[] record = encodeRecord(schema, rows.get(index));
+            int space = slotSpace(page, 0, slot);
+            if (record.length > space) {
+              return false;
+            }
+            page.put(slotOffset(page, 0, slot), record);
+            setSlotLength(page, slot, space);
+            updated[index] = true;
+            return true;
+          });
+    }
+    return updated;
+  }
+
+  /**
+   * Copies the live records without decoding them into new pages, filled as appends fill them.
+   *
+   * @param target file to be written
+   * @return the number of rows written
+   */
+  @Override
+  public long compactTo(File target) throws IOException {
+    try (FileChannel channel = FileChannel.open(Path.of(dataFilePath), StandardOpenOption.READ)) {
+      TableSchema schema = readSchema(channel);
+      new PagedTableStorageImplementation(target.getPath()).create(schema);
+      try (FileChannel output =
+          FileChannel.open(target.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+        long pageCount = channel.size() / PAGE_SIZE;
+        ByteBuffer page = ByteBuffer.allocate(PAGE_SIZE);
+        ByteBuffer outputPage = ByteBuffer.allocate(PAGE_SIZE);
+        initPage(outputPage);
+        long outputPageNumber = 1;
+        long rows = 0;
+        for (long pageNumber = 1; pageNumber < pageCount; pageNumber++) {
+          readPage(channel, page, pageNumber);
+          int slotCount = Short.toUnsignedInt(page.getShort(0));
+          for (int slot = 0; slot < slotCount; slot++) {
+            if (!isLive(page, 0, slot)) {
+              continue;
+            }
+            int offset = slotOffset(page, 0, slot);
+            byte[] record = new byte[recordLength(page, offset, schema)];
+            page.get(offset, record);
+            if (!fits(outputPage, record.length)) {
+              writePage(output, outputPage, outputPageNumber++);
+              initPage(outputPage);
+            }
+            addRecord(outputPage, record);
+            rows++;
+          }
+        }
+        if (outputPage.getShort(0) != 0) {
+          writePage(output, outputPage, outputPageNumber);
+        }
+        output.force(true);
+        return rows;
+      }
+    }
+  }
+
+  /* Changes the slot of a row on its page, which has been read; returns whether the page changed */
+  private interface SlotChange {
+    boolean apply(ByteBuffer page, int slot, int index) throws IOException;
+  }
+
+  /* Applies the change to the slot of every row, reading a page once for consecutive rows on it and
+   * writing it back once if it changed */
+  private static void changeSlots(FileChannel channel, long[] rowIds, SlotChange change)
+      throws IOException {
+    long pageCount = channel.size() / PAGE_SIZE;
+    ByteBuffer page = ByteBuffer.allocate(PAGE_SIZE);
+    long loadedPage = -1;
+    boolean changed = false;
+    for (int i = 0; i < rowIds.length; i++) {
+      long pageNumber = rowIds[i] >>> 16;
+      int slot = (int) (rowIds[i] & 0xFFFF);
+      if (pageNumber < 1 || pageNumber >= pageCount) {
+        continue;
+      }
+      if (pageNumber != loadedPage) {
+        if (changed) {
+          writePage(channel, page, loadedPage);
+        }
+        readPage(channel, page, pageNumber);
+        loadedPage = pageNumber;
+        changed = false;
+      }
+      if (slot < Short.toUnsignedInt(page.getShort(0)) && change.apply(page, slot, i)) {
+        changed = true;
+      }
+    }
+    if (changed) {
+      writePage(channel, page, loadedPage);
+    }
+  }
+
+  private TableSchema readSchema(FileChannel channel) throws IOException {
+    ByteBuffer header = ByteBuffer.allocate(PAGE_SIZE);
+    channel.read(header, 0);
+    header.flip();
+    if (header.remaining() < 16 || header.getInt() != MAGIC) {
+      throw new IOException("Not a paged table file: " + dataFilePath);
+    }
+    int version = header.getInt();
+    int pageSize = header.getInt();
+    if (version != VERSION || pageSize != PAGE_SIZE) {
+      throw new IOException("Unsupported paged table file: " + dataFilePath);
+    }
+
+    int columnCount = header.getInt();
+    List<String> names = new ArrayList<>(columnCount);
+    List<ColumnType> types = new ArrayList<>(columnCount);
+    for (int i = 0; i < columnCount; i++) {
+      types.add(ColumnType.values()[header.get()]);
+      byte[] name = new byte[Short.toUnsignedInt(header.getShort())];
+      header.get(name);
+      names.add(new String(name, StandardCharsets.UTF_8));
+    }
+    return new TableSchema(names, types);
+  }
+
+  /* Decodes the live records in the first slotLimit slots of a page */
+  private void readPage(
+      ByteBuffer buffer, int pageStart, int slotLimit, boolean[] projection, ColumnarTable table) {
+    int slotCount = Math.min(Short.toUnsignedInt(buffer.getShort(pageStart)), slotLimit);
+    for (int slot = 0; slot < slotCount; slot++) {
+      if (!isLive(buffer, pageStart, slot)) {
+        continue;
+      }
+      decodeRecord(buffer, slotOffset(buffer, pageStart, slot), projection, table);
+    }
+  }
+
+  /* Position of the record in the buffer */
+  private static int slotOffset(ByteBuffer buffer, int pageStart, int slot) {
+    return pageStart
+        + Short.toUnsignedInt(buffer.getShort(pageStart + PAGE_HEADER_SIZE + slot * SLOT_SIZE));
+  }
+
+  private static int slotLength(ByteBuffer buffer, int pageStart, int slot) {
+    return Short.toUnsignedInt(buffer.getShort(pageStart + PAGE_HEADER_SIZE + slot * SLOT_SIZE + 2));
+  }
+
+  /* Records deleted before slots were flagged have a length of 0 */
+  private static boolean isLive(ByteBuffer buffer, int pageStart, int slot) {
+    int length = slotLength(buffer, pageStart, slot);
+    return length != 0 && (length & DELETED_SLOT) == 0;
+  }
+
+  /* Space the record of the slot was given when it was appended */
+  private static int slotSpace(ByteBuffer buffer, int pageStart, int slot) {
+    return slotLength(buffer, pageStart, slot) & ~DELETED_SLOT;
+  }
+
+  private static void setSlotLength(ByteBuffer page, int slot, int length) {
+    page.putShort(PAGE_HEADER_SIZE + slot * SLOT_SIZE + 2, (short) length);
+  }
+
+  private static long rowId(long pageNumber, int slot) {
+    return (pageNumber << 16) | slot;
+  }
+
+  private static void readPage(FileChannel channel, ByteBuffer page, long pageNumber)
+      throws IOException {
+    page.clear();
+    long start = System.nanoTime();
+    long position = pageNumber * PAGE_SIZE;
+    while (page.hasRemaining() && channel.read(page, position + page.position()) > 0) {
+      /* Read the whole page */
+    }
+    QueryStats.recordRead(page.position(), System.nanoTime() - start);
+  }
+
+  private void decodeRecord(
+      ByteBuffer buffer, int position, boolean[] projection, ColumnarTable table) {
+    TableSchema schema = table.getSchema();
+    int columnCount = schema.getColumnCount();
+    int cursor = position + (columnCount + 7) / 8;
+
+    for (int column = 0; column < columnCount; column++) {
+      if ((buffer.get(position + (column >> 3)) & (1 << (column & 7))) != 0) {
+        table.putNull(column);
+        continue;
+      }
+      boolean projected = projection == null || projection[column];
+      switch (schema.getColumnType(column)) {
+        case INT -> {
+          if (projected) {
+            table.putInt(column, buffer.getInt(cursor));
+          }
+          cursor += 4;
+        }
+        case BIGINT -> {
+          if (projected) {
+            table.putLong(column, buffer.getLong(cursor));
+          }
+          cursor += 8;
+        }
+        case DOUBLE -> {
+          if (projected) {
+            table.putDouble(column, buffer.getDouble(cursor));
+          }
+          cursor += 8;
+        }
+        case BOOLEAN -> {
+          if (projected) {
+            table.putBoolean(column, buffer.get(cursor) != 0);
+          }
+          cursor += 1;
+        }
+        case VARCHAR -> {
+          int length = Short.toUnsignedInt(buffer.getShort(cursor));
+          cursor += 2;
+          if (projected) {
+            byte[] bytes = new byte[length];
+            buffer.get(cursor, bytes);
+            table.putString(column, new String(bytes, StandardCharsets.UTF_8));
+          }
+          cursor += length;
+        }
+      }
+      if (!projected) {
+        table.putNull(column);
+      }
+    }
+    table.finishRow();
+  }
+
+  /* Length of the record at the position, which may be less than the space of its slot */
+  private static int recordLength(ByteBuffer buffer, int position, TableSchema schema) {
+    int columnCount = schema.getColumnCount();
+    int cursor = position + (columnCount + 7) / 8;
+    for (int column = 0; column < columnCount; column++) {
+      if ((buffer.get(position + (column >> 3)) & (1 << (column & 7))) != 0) {
+        continue;
+      }
+      cursor +=
+          switch (schema.getColumnType(column)) {
+            case INT -> 4;
+            case BIGINT, DOUBLE -> 8;
+            case BOOLEAN -> 1;
+            case VARCHAR -> 2 + Short.toUnsignedInt(buffer.getShort(cursor));
+          };
+    }
+    return cursor - position;
+  }
+
+  private static byte[] encodeRecord(TableSchema schema, List<String> row) {
+    int columnCount = schema.getColumnCount();
+    int nullBytes = (columnCount + 7) / 8;
+    ByteBuffer record = ByteBuffer.allocate(nullBytes + columnCount * 8 + varcharBytes(schema, row));
+
+    record.position(nullBytes);
+    for (int column = 0; column < columnCount; column++) {
+      String value = row.get(column);
+      ColumnType type = schema.getColumnType(column);
+      if (value == null
+          || (type != ColumnType.VARCHAR
+              && (value.isBlank() || value.trim().equalsIgnoreCase("null")))) {
+        record.put(column >> 3, (byte) (record.get(column >> 3) | (1 << (column & 7))));
+        continue;
+      }
+      switch (type) {
+        case INT -> record.putInt(Integer.parseInt(value.trim()));
+        case BIGINT -> record.putLong(Long.parseLong(value.trim()));
+        case DOUBLE -> record.putDouble(Double.parseDouble(value.trim()));
+        case BOOLEAN -> record.put((byte) (ColumnarTable.parseBoolean(value) ? 1 : 0));
+        case VARCHAR -> {
+          byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+          record.putShort((short) bytes.length).put(bytes);
+        }
+      }
+    }
+
+    byte[] encoded = new byte[record.position()];
+    record.get(0, encoded);
+    return encoded;
+  }
+
+  private static int varcharBytes(TableSchema schema, List<String> row) {
+    int bytes = 0;
+    for (int column = 0; column < schema.getColumnCount(); column++) {
+      if (schema.getColumnType(column) == ColumnType.VARCHAR && row.get(column) != null) {
+        bytes += 2 + row.get(column).length() * 3;
+      }
+    }
+    return bytes;
+  }
+
+  private static void initPage(ByteBuffer page) {
+    page.clear();
+    page.put(new byte[PAGE_SIZE]);
+    page.putShort(0, (short) 0);
+    page.putShort(2, (short) PAGE_SIZE);
+  }
+
+  private static boolean fits(ByteBuffer page, int recordLength) {
+    int slotCount = Short.toUnsignedInt(page.getShort(0));
+    int recordAreaStart = Short.toUnsignedInt(page.getShort(2));
+    int slotArrayEnd = PAGE_HEADER_SIZE + (slotCount + 1) * SLOT_SIZE;
+    return recordAreaStart - recordLength >= slotArrayEnd;
+  }
+
+  /* Returns the slot of the added record */
+  private static int addRecord(ByteBuffer page, byte[] record) {
+    int slotCount = Short.toUnsignedInt(page.getShort(0));
+    int recordOffset = Short.toUnsignedInt(page.getShort(2)) - record.length;
+    page.put(recordOffset, record);
+
+    int slotPosition = PAGE_HEADER_SIZE + slotCount * SLOT_SIZE;
+    page.putShort(slotPosition, (short) recordOffset);
+    page.putShort(slotPosition + 2, (short) record.length);
+    page.putShort(0, (short) (slotCount + 1));
+    page.putShort(2, (short) recordOffset);
+    return slotCount;
+  }
+
+  private static void writePage(FileChannel channel, ByteBuffer page, long pageNumber)
+      throws IOException {
+    page.clear();
+    long start = System.nanoTime();
+    long position = pageNumber * PAGE_SIZE;
+    while (page.hasRemaining()) {
+      position += channel.write(page, position);
+    }
+    QueryStats.recordWrite(PAGE_SIZE, System.nanoTime() - start);
+  }
+
+  private class PageCursor implements RowCursor {
+    private final FileChannel channel;
+    private final ColumnarTable batch;
+    private final boolean[] projection;
+    private final long pageCount;
+    private final long endRowId;
+    private final TableSnapshot tableSnapshot;
+    private MappedByteBuffer mapped;
+    private long mappedFirstPage;
+    private int mappedPages;
+    private long nextPage;
+    /* Id of every row of the batch */
+    private long[] rowIds = new long[256];
+    private int row = -1;
+
+    private PageCursor(
+        FileChannel channel,
+        ColumnarTable batch,
+        boolean[] projection,
+        long firstPage,
+        long endPage,
+        TableSnapshot tableSnapshot)
+        throws IOException {
+      this.channel = channel;
+      this.batch = batch;
+      this.projection = projection;
+      this.nextPage = firstPage;
+      this.endRowId = tableSnapshot.getEndRowId();
+      this.tableSnapshot = tableSnapshot;
+      /* A torn page at the end of the file is ignored, as are pages after the end row */
+      this.pageCount =
+          Math.min(Math.min(channel.size() / PAGE_SIZE, endPage), (endRowId >>> 16) + 1);
+    }
+
+    @Override
+    public TableSchema getSchema() {
+      return batch.getSchema();
+    }
+
+    @Override
+    public boolean next() {
+      if (row + 1 < batch.getRowCount()) {
+        row++;
+        return true;
+      }
+      batch.clear();
+      row = -1;
+      try {
+        /* Pages without live records are skipped */
+        while (batch.getRowCount() == 0 && nextPage < pageCount) {
+          if (mapped == null || nextPage >= mappedFirstPage + mappedPages) {
+            mappedFirstPage = nextPage;
+            mappedPages = (int) Math.min(PAGES_PER_MAPPING, pageCount - nextPage);
+            mapped =
+                channel.map(
+                    FileChannel.MapMode.READ_ONLY,
+                    mappedFirstPage * PAGE_SIZE,
+                    (long) mappedPages * PAGE_SIZE);
+          }
+          /* Slots added to the page of the end row after it are not read */
+          int slotLimit =
+              nextPage == endRowId >>> 16 ? (int) (endRowId & 0xFFFF) : Integer.MAX_VALUE;
+          /* The page is not rewritten while it is decoded, and the rows written before have
+           * their old values kept already */
+          tableSnapshot.beginRead();
+          try {
+            readPage((int) (nextPage - mappedFirstPage) * PAGE_SIZE, slotLimit);
+          } finally {
+            tableSnapshot.endRead();
+          }
+          QueryStats.recordRead(PAGE_SIZE, 0);
+          nextPage++;
+        }
+      } catch (IOException e) {
+        System.out.println("Error loading data from file: " + dataFilePath);
+        e.printStackTrace();
+        nextPage = pageCount;
+        return false;
+      }
+      if (batch.getRowCount() == 0) {
+        return false;
+      }
+      row = 0;
+      return true;
+    }
+
+    /* Decodes the rows in the first slotLimit slots of the page, as the snapshot sees them */
+    private void readPage(int pageStart, int slotLimit) {
+      int slotCount = Math.min(Short.toUnsignedInt(mapped.getShort(pageStart)), slotLimit);
+      NavigableMap<Long, List<String>> changedRows =
+          tableSnapshot.changedRows(rowId(nextPage, 0), rowId(nextPage, slotCount));
+      for (int slot = 0; slot < slotCount; slot++) {
+        List<String> changedRow = changedRows.get(rowId(nextPage, slot));
+        if (changedRow != null) {
+          /* Also a row deleted or moved since is read as the snapshot sees it */
+          batch.appendRow(changedRow);
+        } else if (isLive(mapped, pageStart, slot)) {
+          decodeRecord(mapped, slotOffset(mapped, pageStart, slot), projection, batch);
+        } else {
+          continue;
+        }
+        if (batch.getRowCount() > rowIds.length) {
+          rowIds = Arrays.copyOf(rowIds, rowIds.length * 2);
+        }
+        rowIds[batch.getRowCount() - 1] = rowId(nextPage, slot);
+      }
+    }
+
+    @Override
+    public ColumnarTable getTable() {
+      return batch;
+    }
+
+    @Override
+    public int getRow() {
+      return row;
+    }
+
+    @Override
+    public long getRowId() {
+      return rowIds[row];
+    }
+
+    @Override
+    public void close() {
+      try {
+        channel.close();
+      } catch (IOException e) {
+        e.printStackTrace();
+      }
+    }
+  }
+}
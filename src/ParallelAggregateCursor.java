@@ -0,0 +1,142 @@
+import java.util.ArrayDeque;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * The {@code ParallelAggregateCursor} class aggregates a table on the threads of a parallel scan.
+ * The segments of the table file are read, filtered and aggregated by separate tasks, each into an
+ * aggregator of its own, so the threads share nothing while they scan, and only the partial
+ * aggregates of the segments are merged. Merging happens in the order of the segments while later
+ * segments are still being read, so only a window of partial aggregates is kept at once.
+ */
+public class ParallelAggregateCursor implements RowCursor {
+  private final TableStorage tableStorage;
+  private final boolean[] projection;
+  private final RowPredicate predicate;
+  private final TableSnapshot tableSnapshot;
+  private final HashAggregator aggregator;
+  private final int parallelism;
+  /* Stats of the query, attached to the worker threads while they scan for it */
+  private final QueryStats stats = QueryStats.current();
+  private volatile boolean closed;
+
+  private ColumnarTable result;
+  private int row = -1;
+
+  /**
+   * @param tableStorage storage of the table
+   * @param projection the columns that have to be read, or {@code null} for all of them
+   * @param predicate condition the aggregated rows satisfy
+   * @param tableSnapshot the rows that are read
+   * @param aggregator an empty aggregator for the schema of the table
+   * @param parallelism number of segments read at the same time
+   */
+  public ParallelAggregateCursor(
+      TableStorage tableStorage,
+      boolean[] projection,
+      RowPredicate predicate,
+      TableSnapshot tableSnapshot,
+      HashAggregator aggregator,
+      int parallelism) {
+    this.tableStorage = tableStorage;
+    this.projection = projection;
+    this.predicate = predicate;
+    this.tableSnapshot = tableSnapshot;
+    this.aggregator = aggregator;
+    this.parallelism = parallelism;
+  }
+
+  @Override
+  public TableSchema getSchema() {
+    return aggregator.getOutputSchema();
+  }
+
+  @Override
+  public boolean next() {
+    if (result == null) {
+      aggregate();
+    }
+    if (row + 1 >= result.getRowCount()) {
+      return false;
+    }
+    row++;
+    return true;
+  }
+
+  private void aggregate() {
+    long fileLength = tableStorage.getFile().length();
+    int segmentCount = ParallelScanCursor.segmentCount(fileLength, parallelism);
+    ArrayDeque<ForkJoinTask<HashAggregator>> pending = new ArrayDeque<>();
+    int window = parallelism * 2;
+    int nextSegment = 0;
+    try {
+      while (!closed && (nextSegment < segmentCount || !pending.isEmpty())) {
+        while (pending.size() < window && nextSegment < segmentCount) {
+          pending.add(
+              ParallelScanCursor.pool(parallelism)
+                  .submit(new SegmentAggregate(fileLength, nextSegment++, segmentCount)));
+        }
+        aggregator.merge(pending.poll().join());
+      }
+    } finally {
+      for (ForkJoinTask<HashAggregator> task : pending) {
+        task.cancel(false);
+      }
+    }
+    result = aggregator.result();
+  }
+
+  @Override
+  public ColumnarTable getTable() {
+    return result;
+  }
+
+  @Override
+  public int getRow() {
+    return row;
+  }
+
+  @Override
+  public void close() {
+    closed = true;
+  }
+
+  /* Reads one segment and aggregates the rows that satisfy the condition */
+  private class SegmentAggregate extends RecursiveTask<HashAggregator> {
+    private static final long serialVersionUID = 1L;
+
+    private final long fileLength;
+    private final int segment;
+    private final int segmentCount;
+
+    private SegmentAggregate(long fileLength, int segment, int segmentCount) {
+      this.fileLength = fileLength;
+      this.segment = segment;
+      this.segmentCount = segmentCount;
+    }
+
+    @Override
+    protected HashAggregator compute() {
+      HashAggregator partial = aggregator.emptyCopy();
+      QueryStats previous = QueryStats.attach(stats);
+      long scanned = 0;
+      try (RowCursor cursor =
+          tableStorage.openSegmentCursor(
+              fileLength, segment, segmentCount, projection, tableSnapshot)) {
+        if (cursor == null) {
+          return partial;
+        }
+        while (!closed && cursor.next()) {
+          scanned++;
+          if (predicate.test(cursor.getTable(), cursor.getRow())) {
+            partial.add(cursor.getTable(), cursor.getRow());
+          }
+        }
+      } finally {
+        QueryStats.recordScanned(scanned);
+        QueryStats.attach(previous);
+      }
+      return partial;
+    }
+  }
+}
@@ -0,0 +1,177 @@
+import java.util.ArrayDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * The {@code ParallelScanCursor} class scans a table on a {@link ForkJoinPool}. The table file is
+ * split into segments of a few megabytes that are read and filtered by separate tasks, and the
+ * matching rows are returned segment after segment, in the order of a serial scan.
+ *
+ * <p>Only a window of segments is in flight at once, so memory use depends on the parallelism and
+ * not on the size of the table, and no new segments are started once the cursor is closed, e.g.
+ * when a LIMIT has been reached.
+ */
+public class ParallelScanCursor implements RowCursor {
+  private static final long MIN_SEGMENT_BYTES = 1024 * 1024;
+  private static final long MAX_SEGMENT_BYTES = 8 * 1024 * 1024;
+
+  /* One pool per degree of parallelism, shared by all sessions using it */
+  private static final ConcurrentHashMap<Integer, ForkJoinPool> pools = new ConcurrentHashMap<>();
+
+  private final TableStorage tableStorage;
+  private final TableSchema schema;
+  private final boolean[] projection;
+  private final RowPredicate predicate;
+  private final TableSnapshot tableSnapshot;
+  private final ForkJoinPool pool;
+  private final int window;
+  private final long fileLength;
+  private final int segmentCount;
+  /* Stats of the query, attached to the worker threads while they scan for it */
+  private final QueryStats stats = QueryStats.current();
+
+  private final ArrayDeque<ForkJoinTask<ColumnarTable>> pending = new ArrayDeque<>();
+  private int nextSegment;
+  private volatile boolean closed;
+
+  private ColumnarTable current;
+  private int row = -1;
+
+  /**
+   * @param tableStorage storage of the table
+   * @param schema schema of the table
+   * @param projection the columns that have to be read, or {@code null} for all of them
+   * @param predicate condition the returned rows satisfy
+   * @param tableSnapshot the rows that are read
+   * @param parallelism number of segments read at the same time
+   */
+  public ParallelScanCursor(
+      TableStorage tableStorage,
+      TableSchema schema,
+      boolean[] projection,
+      RowPredicate predicate,
+      TableSnapshot tableSnapshot,
+      int parallelism) {
+    this.tableStorage = tableStorage;
+    this.schema = schema;
+    this.projection = projection;
+    this.predicate = predicate;
+    this.tableSnapshot = tableSnapshot;
+    this.pool = pool(parallelism);
+    /* A few segments ahead keep every worker busy while the consumer drains the oldest one */
+    this.window = parallelism * 2;
+    this.fileLength = tableStorage.getFile().length();
+    this.segmentCount = segmentCount(fileLength, parallelism);
+    fill();
+  }
+
+  /**
+   * @param parallelism degree of parallelism
+   * @return the pool shared by all scans of that degree of parallelism
+   */
+  public static ForkJoinPool pool(int parallelism) {
+    return pools.computeIfAbsent(parallelism, ForkJoinPool::new);
+  }
+
+  /**
+   * @param fileLength length of the table file
+   * @param parallelism degree of parallelism
+   * @return number of segments of a few megabytes the file is split into
+   */
+  public static int segmentCount(long fileLength, int parallelism) {
+    long segmentBytes =
+        Math.clamp(fileLength / (parallelism * 4L), MIN_SEGMENT_BYTES, MAX_SEGMENT_BYTES);
+    return (int) Math.max(1, (fileLength + segmentBytes - 1) / segmentBytes);
+  }
+
+  /**
+   * @param fileLength length of the table file
+   * @param parallelism degree of parallelism of the session
+   * @return whether a table is large enough for a parallel scan to pay off
+   */
+  public static boolean isWorthwhile(long fileLength, int parallelism) {
+    return parallelism > 1 && fileLength >= 2 * MIN_SEGMENT_BYTES;
+  }
+
+  @Override
+  public TableSchema getSchema() {
+    return schema;
+  }
+
+  @Override
+  public boolean next() {
+    while (current == null || row + 1 >= current.getRowCount()) {
+      ForkJoinTask<ColumnarTable> task = pending.poll();
+      if (task == null) {
+        return false;
+      }
+      current = task.join();
+      row = -1;
+      fill();
+    }
+    row++;
+    return true;
+  }
+
+  @Override
+  public ColumnarTable getTable() {
+    return current;
+  }
+
+  @Override
+  public int getRow() {
+    return row;
+  }
+
+  @Override
+  public void close() {
+    closed = true;
+    for (ForkJoinTask<ColumnarTable> task : pending) {
+      task.cancel(false);
+    }
+    pending.clear();
+  }
+
+  private void fill() {
+    while (!closed && pending.size() < window && nextSegment < segmentCount) {
+      pending.add(pool.submit(new SegmentScan(nextSegment++)));
+    }
+  }
+
+  /* Reads one segment and keeps the rows that satisfy the condition */
+  private class SegmentScan extends RecursiveTask<ColumnarTable> {
+    private static final long serialVersionUID = 1L;
+
+    private final int segment;
+
+    private SegmentScan(int segment) {
+      this.segment = segment;
+    }
+
+    @Override
+    protected ColumnarTable compute() {
+      ColumnarTable matches = new ColumnarTable(schema);
+      QueryStats previous = QueryStats.attach(stats);
+      long scanned = 0;
+      try (RowCursor cursor =
+          tableStorage.openSegmentCursor(
+              fileLength, segment, segmentCount, projection, tableSnapshot)) {
+        if (cursor == null) {
+          return matches;
+        }
+        while (!closed && cursor.next()) {
+          scanned++;
+          if (predicate.test(cursor.getTable(), cursor.getRow())) {
+            matches.appendRowFrom(cursor.getTable(), cursor.getRow());
+          }
+        }
+      } finally {
+        QueryStats.recordScanned(scanned);
+        QueryStats.attach(previous);
+      }
+      return matches;
+    }
+  }
+}
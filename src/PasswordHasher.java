@@ -1,30 +1,37 @@
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
 
-public class PasswordHasher {
-  private final String hashedPassword;
+/**
+ * The {@code PasswordHasher} interface defines how passwords are hashed for the user store and
+ * checked against a stored hash. A stored hash carries whatever the hasher needs to check it
+ * again, such as its salt and cost, so hashes of several hashers can live in the same file.
+ */
+public interface PasswordHasher {
+  /* Lower case hex digits, one string per encoded value and nothing else allocated */
+  HexFormat HEX = HexFormat.of();
 
-  public PasswordHasher(String password) {
-    this.hashedPassword = hashPasswordMD5(password);
-  }
+  /**
+   * @param password the password
+   * @return the hash to be stored
+   */
+  String hash(String password);
 
-  public String getHashedPassword() {
-    return hashedPassword;
-  }
+  /**
+   * @param storedHash a stored hash
+   * @return whether the hash was made by this kind of hasher and can be checked by it
+   */
+  boolean accepts(String storedHash);
 
-  private String hashPasswordMD5(String password) {
-    MessageDigest messageDigest = null;
-    try {
-      messageDigest = MessageDigest.getInstance("MD5");
-    } catch (NoSuchAlgorithmException noSuchAlgorithmException) {
-      System.out.println("Hashing failed!");
-    }
-    messageDigest.update(password.getBytes());
-    byte[] bytes = messageDigest.digest();
-    StringBuilder sb = new StringBuilder();
-    for (byte b : bytes) {
-      sb.append(String.format("%02x", b));
-    }
-    return sb.toString();
-  }
+  /**
+   * @param password the password given at login
+   * @param storedHash a hash this hasher accepts
+   * @return whether the password matches the hash
+   */
+  boolean verify(String password, String storedHash);
+
+  /**
+   * @param storedHash a stored hash
+   * @return whether the hash should be replaced by a new one from this hasher, because another
+   *     hasher or another cost made it
+   */
+  boolean needsRehash(String storedHash);
 }
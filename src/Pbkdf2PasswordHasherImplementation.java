@@ -0,0 +1,86 @@
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+/**
+ * The {@code Pbkdf2PasswordHasherImplementation} class hashes passwords with PBKDF2 and
+ * HMAC-SHA512 from the JDK, with a random salt per password. The number of iterations sets the
+ * CPU cost of every login; it is stored with the hash, so the cost can be changed without
+ * breaking existing hashes, which are rehashed with the new cost at their next login.
+ *
+ * <p>A hash is stored as {@code pbkdf2-sha512$<iterations>$<salt>$<key>}, salt and key in hex.
+ */
+public class Pbkdf2PasswordHasherImplementation implements PasswordHasher {
+  private static final String PREFIX = "pbkdf2-sha512$";
+  private static final String ALGORITHM = "PBKDF2WithHmacSHA512";
+  private static final int SALT_BYTES = 16;
+  private static final int KEY_BITS = 256;
+  private static final SecureRandom RANDOM = new SecureRandom();
+
+  private final int iterations;
+
+  /**
+   * @param iterations iterations of new hashes
+   */
+  public Pbkdf2PasswordHasherImplementation(int iterations) {
+    if (iterations < 1) {
+      throw new IllegalArgumentException("Iterations must be positive: " + iterations);
+    }
+    this.iterations = iterations;
+  }
+
+  @Override
+  public String hash(String password) {
+    byte[] salt = new byte[SALT_BYTES];
+    RANDOM.nextBytes(salt);
+    byte[] key = derive(password, salt, iterations, KEY_BITS);
+    return PREFIX + iterations + "$" + HEX.formatHex(salt) + "$" + HEX.formatHex(key);
+  }
+
+  @Override
+  public boolean accepts(String storedHash) {
+    return storedHash.startsWith(PREFIX);
+  }
+
+  @Override
+  public boolean verify(String password, String storedHash) {
+    String[] parts = storedHash.substring(PREFIX.length()).split("\\$");
+    if (parts.length != 3) {
+      return false;
+    }
+    byte[] salt;
+    byte[] expected;
+    int storedIterations;
+    try {
+      storedIterations = Integer.parseInt(parts[0]);
+      salt = HEX.parseHex(parts[1]);
+      expected = HEX.parseHex(parts[2]);
+    } catch (IllegalArgumentException e) {
+      return false;
+    }
+    if (storedIterations < 1 || expected.length == 0) {
+      return false;
+    }
+    /* Compared in constant time, so the time taken tells nothing about the stored key */
+    return MessageDigest.isEqual(
+        derive(password, salt, storedIterations, expected.length * 8), expected);
+  }
+
+  @Override
+  public boolean needsRehash(String storedHash) {
+    return !storedHash.startsWith(PREFIX + iterations + "$");
+  }
+
+  private static byte[] derive(String password, byte[] salt, int iterations, int keyBits) {
+    PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, keyBits);
+    try {
+      return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+    } catch (GeneralSecurityException e) {
+      throw new IllegalStateException(ALGORITHM + " is not available", e);
+    } finally {
+      spec.clearPassword();
+    }
+  }
+}
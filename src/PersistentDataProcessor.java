@@ -1,9 +1,19 @@
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.NavigableMap;
 
 /**
  * The {@code PersistentDataProcessor} class provides methods for loading and saving data to a file using a {@link DataSerializer}.
  */
 public class PersistentDataProcessor {
+  /* First byte of a line that is no longer a row: a deleted row, or the filler left behind when a
+   * row was rewritten in place with a shorter line. Neither can start a UTF-8 encoded line. */
+  public static final byte DELETED_LINE = (byte) 0xFF;
+  public static final byte FILLER_LINE = (byte) 0xFE;
+
   private final String dataFilePath;
   private final DataSerializer dataSerializer;
 
@@ -19,6 +29,7 @@ public class PersistentDataProcessor {
    * @throws IOException if an error occurs while reading from the file
    */
   public void loadData(Data data) {
+    truncatePartialLine();
     try (FileReader fileReader = new FileReader(dataFilePath);
         BufferedReader bufferedReader = new BufferedReader(fileReader)) {
 
@@ -31,6 +42,76 @@ public class PersistentDataProcessor {
     }
   }
 
+  /**
+   * Loads a table file into a {@link ColumnarTable}, converting every value to the type declared
+   * in the header row. Rows are converted one at a time, the file is never held as strings.
+   *
+   * @return the loaded table, or {@code null} if the file could not be read
+   */
+  public ColumnarTable loadTable() {
+    truncatePartialLine();
+    /* One batch holding every row */
+    try (RowCursor cursor =
+        openCursor(0, Long.MAX_VALUE, Integer.MAX_VALUE, TableSnapshot.ALL_ROWS)) {
+      if (cursor == null) {
+        return null;
+      }
+      cursor.next();
+      return cursor.getTable();
+    }
+  }
+
+  /**
+   * @param firstByte first byte of a line of a table file
+   * @return whether the line is a deleted row or filler rather than a row
+   */
+  public static boolean isDeadLine(byte firstByte) {
+    return firstByte == DELETED_LINE || firstByte == FILLER_LINE;
+  }
+
+  /**
+   * Opens a cursor reading the rows whose lines start within a byte range of the file, so that a
+   * file can be split into ranges that are read independently. A range starting inside a line
+   * leaves that line to the previous range, and a line without its new line is not read, so the
+   * file may be appended to while it is read. Rows are converted in batches of {@code batchSize}
+   * into a {@link ColumnarTable} that is reused for every batch, so memory use does not depend on
+   * the size of the file. Lines starting at or after the end row id of the snapshot are not read.
+   *
+   * @param start offset of the first byte of the range
+   * @param end offset after the last byte of the range
+   * @param batchSize number of rows converted at once
+   * @param tableSnapshot the snapshot the rows are read in
+   * @return the cursor, or {@code null} if the file could not be read
+   */
+  public RowCursor openCursor(
+      long start, long end, int batchSize, TableSnapshot tableSnapshot) {
+    TableSchema schema = TableSchema.read(dataFilePath, dataSerializer);
+    if (schema == null) {
+      return null;
+    }
+    try {
+      FileInputStream inputStream = new FileInputStream(dataFilePath);
+      try {
+        LineCursor cursor =
+            new LineCursor(
+                inputStream,
+                new ColumnarTable(schema),
+                batchSize,
+                Math.min(end, tableSnapshot.getEndRowId()),
+                tableSnapshot);
+        cursor.skipTo(start);
+        return cursor;
+      } catch (IOException e) {
+        inputStream.close();
+        throw e;
+      }
+    } catch (IOException e) {
+      System.out.println("Error loading data from file: " + dataFilePath);
+      e.printStackTrace();
+      return null;
+    }
+  }
+
   /**
    * Serializes data from a Data object and saves it to a file.
    *
@@ -50,4 +131,273 @@ public class PersistentDataProcessor {
       e.printStackTrace();
     }
   }
+
+  /**
+   * Serializes only the rows of the given Data object and appends them to the end of the file. The
+   * existing content is never read, so the cost depends on the number of new rows only.
+   *
+   * @param data the Data object holding the rows to be appended
+   * @return the byte offset of every appended row in the file, or an empty array on failure
+   */
+  public long[] appendData(Data data) {
+    truncatePartialLine();
+    long[] offsets = new long[data.getData().size()];
+    long offset = new File(dataFilePath).length();
+    long start = System.nanoTime();
+    long firstOffset = offset;
+    try (FileOutputStream fileOutputStream = new FileOutputStream(dataFilePath, true);
+        BufferedOutputStream bufferedOutputStream = new BufferedOutputStream(fileOutputStream)) {
+
+      for (int i = 0; i < offsets.length; i++) {
+        byte[] serializedRow =
+            dataSerializer.serializeRow(data.getData().get(i)).getBytes(StandardCharsets.UTF_8);
+        bufferedOutputStream.write(serializedRow);
+        offsets[i] = offset;
+        offset += serializedRow.length;
+      }
+    } catch (IOException e) {
+      System.out.println("Error appending data to file: " + dataFilePath);
+      e.printStackTrace();
+      return new long[0];
+    }
+    QueryStats.recordWrite(offset - firstOffset, System.nanoTime() - start);
+    return offsets;
+  }
+
+  /**
+   * Every record ends with a new line, so a file that does not end with one was cut off in the
+   * middle of an append (e.g. the process crashed). The torn record is dropped before the file is
+   * used again so that it is neither read back nor glued to the next appended row.
+   */
+  private void truncatePartialLine() {
+    File file = new File(dataFilePath);
+    if (!file.exists() || file.length() == 0) {
+      return;
+    }
+
+    try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+      long position = randomAccessFile.length() - 1;
+      randomAccessFile.seek(position);
+      if (randomAccessFile.read() == '\n') {
+        return;
+      }
+
+      /* Walk back to the end of the last complete record */
+      while (position > 0) {
+        randomAccessFile.seek(position - 1);
+        if (randomAccessFile.read() == '\n') {
+          break;
+        }
+        position--;
+      }
+      randomAccessFile.setLength(position);
+      System.out.println("Discarded incomplete record at the end of " + dataFilePath);
+    } catch (IOException e) {
+      System.out.println("Error checking file: " + dataFilePath);
+      e.printStackTrace();
+    }
+  }
+
+  private class LineCursor implements RowCursor {
+    private final InputStream inputStream;
+    private final ColumnarTable batch;
+    private final int batchSize;
+    private final long end;
+    private final TableSnapshot tableSnapshot;
+    private final byte[] buffer = new byte[64 * 1024];
+    private int bufferPosition;
+    private int bufferLimit;
+    /* Offset in the file of the next byte to be consumed */
+    private long position;
+    private byte[] line = new byte[256];
+    /* Offset of the line of every row of the batch */
+    private long[] rowIds = new long[16];
+    private int row = -1;
+    private boolean exhausted;
+    /* Rows of the buffer changed after the snapshot, asked for again after every read */
+    private NavigableMap<Long, List<String>> changedRows = Collections.emptyNavigableMap();
+    private boolean changedRowsStale;
+
+    private LineCursor(
+        InputStream inputStream,
+        ColumnarTable batch,
+        int batchSize,
+        long end,
+        TableSnapshot tableSnapshot) {
+      this.inputStream = inputStream;
+      this.batch = batch;
+      this.batchSize = batchSize;
+      this.end = end;
+      this.tableSnapshot = tableSnapshot;
+    }
+
+    /* Moves to the first line starting at or after the offset, the header is never a row */
+    private void skipTo(long start) throws IOException {
+      long skip = Math.max(start - 1, 0);
+      while (skip > 0) {
+        long skipped = inputStream.skip(skip);
+        if (skipped <= 0) {
+          break;
+        }
+        skip -= skipped;
+      }
+      position = Math.max(start - 1, 0) - skip;
+      /* The byte before the range tells whether the range starts a line */
+      if (start == 0 || readByte() != '\n') {
+        exhausted = readLine() < 0;
+      }
+    }
+
+    /* Reads the next block of the file into the buffer, returns false at the end of the file */
+    private boolean fillBuffer() throws IOException {
+      long start = System.nanoTime();
+      /* No row is written in place while the block is read */
+      tableSnapshot.beginRead();
+      try {
+        bufferLimit = inputStream.read(buffer);
+      } finally {
+        tableSnapshot.endRead();
+      }
+      bufferPosition = 0;
+      changedRowsStale = true;
+      if (bufferLimit <= 0) {
+        bufferLimit = 0;
+        return false;
+      }
+      QueryStats.recordRead(bufferLimit, System.nanoTime() - start);
+      return true;
+    }
+
+    private int readByte() throws IOException {
+      if (bufferPosition == bufferLimit && !fillBuffer()) {
+        return -1;
+      }
+      position++;
+      return buffer[bufferPosition++];
+    }
+
+    /* Reads up to the next new line into the line buffer, returns its length or -1 at the end */
+    private int readLine() throws IOException {
+      int length = 0;
+      while (true) {
+        if (bufferPosition == bufferLimit && !fillBuffer()) {
+          /* A line without its new line is cut off, it is not a row */
+          return -1;
+        }
+        int lineEnd = bufferPosition;
+        while (lineEnd < bufferLimit && buffer[lineEnd] != '\n') {
+          lineEnd++;
+        }
+        int count = lineEnd - bufferPosition;
+        if (length + count > line.length) {
+          line = Arrays.copyOf(line, Math.max(line.length * 2, length + count));
+        }
+        System.arraycopy(buffer, bufferPosition, line, length, count);
+        length += count;
+        position += count;
+        bufferPosition = lineEnd;
+        if (lineEnd < bufferLimit) {
+          bufferPosition++;
+          position++;
+          return length;
+        }
+      }
+    }
+
+    /*
+     * The values the snapshot sees for the row on the line starting at the offset if the row was
+     * changed in place after it, null otherwise. The old values are kept before a row is written,
+     * so they are asked for after the line was read.
+     */
+    private List<String> changedRow(long lineStart) {
+      if (changedRowsStale) {
+        long bufferEnd = position + bufferLimit - bufferPosition;
+        changedRows = tableSnapshot.changedRows(lineStart, bufferEnd);
+        changedRowsStale = false;
+      }
+      return changedRows.get(lineStart);
+    }
+
+    private void appendRow(long rowId, List<String> values) {
+      batch.appendRow(values);
+      if (batch.getRowCount() > rowIds.length) {
+        rowIds = Arrays.copyOf(rowIds, rowIds.length * 2);
+      }
+      rowIds[batch.getRowCount() - 1] = rowId;
+    }
+
+    @Override
+    public TableSchema getSchema() {
+      return batch.getSchema();
+    }
+
+    @Override
+    public boolean next() {
+      if (row + 1 < batch.getRowCount()) {
+        row++;
+        return true;
+      }
+      batch.clear();
+      row = -1;
+      try {
+        /* A line belongs to the range it starts in */
+        while (!exhausted && batch.getRowCount() < batchSize && position < end) {
+          long lineStart = position;
+          int length = readLine();
+          if (length < 0) {
+            exhausted = true;
+            break;
+          }
+          List<String> changedRow = changedRow(lineStart);
+          if (changedRow != null) {
+            /* Also a row deleted or moved since is read as the snapshot sees it */
+            appendRow(lineStart, changedRow);
+            continue;
+          }
+          if (length > 0 && isDeadLine(line[0])) {
+            continue;
+          }
+          String text = new String(line, 0, length, StandardCharsets.UTF_8);
+          try {
+            appendRow(lineStart, dataSerializer.deserializeRow(text));
+          } catch (IllegalArgumentException e) {
+            System.out.println("Skipping invalid row in " + dataFilePath + ": " + text);
+          }
+        }
+      } catch (IOException e) {
+        System.out.println("Error loading data from file: " + dataFilePath);
+        e.printStackTrace();
+        exhausted = true;
+      }
+      if (batch.getRowCount() == 0) {
+        return false;
+      }
+      row = 0;
+      return true;
+    }
+
+    @Override
+    public ColumnarTable getTable() {
+      return batch;
+    }
+
+    @Override
+    public int getRow() {
+      return row;
+    }
+
+    @Override
+    public long getRowId() {
+      return rowIds[row];
+    }
+
+    @Override
+    public void close() {
+      try {
+        inputStream.close();
+      } catch (IOException e) {
+        e.printStackTrace();
+      }
+    }
+  }
 }
@@ -0,0 +1,483 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * The {@code PredicateCompiler} class turns a parsed WHERE condition into a {@link RowPredicate}
+ * for one table. Column names are resolved to positions and literals are parsed to the type of the
+ * column they are compared with once, so testing a row only reads the stored values.
+ *
+ * <p>A comparison involving null is never true, and neither is its negation: {@code NOT} is pushed
+ * down to the comparisons at compile time, so rows with nulls are filtered as SQL does.
+ */
+public class PredicateCompiler {
+  /* Returned by parseInt for text that is not an int */
+  private static final long NOT_AN_INT = Long.MIN_VALUE;
+
+  private static final RowPredicate ALWAYS_FALSE = (table, row) -> false;
+
+  private final TableSchema schema;
+
+  private PredicateCompiler(TableSchema schema) {
+    this.schema = schema;
+  }
+
+  /**
+   * Compiles a condition against the schema of the table it filters.
+   *
+   * @param condition the condition, {@code null} for none
+   * @param schema schema of the table
+   * @return the predicate, accepting every row if there is no condition
+   * @throws IncorrectQueryException if the condition refers to unknown columns or compares a column
+   *     with a value of the wrong type
+   */
+  public static RowPredicate compile(Expression condition, TableSchema schema)
+      throws IncorrectQueryException {
+    if (condition == null) {
+      return RowPredicate.ALWAYS_TRUE;
+    }
+    return new PredicateCompiler(schema).compile(condition, false);
+  }
+
+  private RowPredicate compile(Expression expression, boolean negated)
+      throws IncorrectQueryException {
+    switch (expression) {
+      case Expression.Not not -> {
+        return compile(not.operand(), !negated);
+      }
+      case Expression.And and -> {
+        RowPredicate left = compile(and.left(), negated);
+        RowPredicate right = compile(and.right(), negated);
+        return negated ? or(left, right) : and(left, right);
+      }
+      case Expression.Or or -> {
+        RowPredicate left = compile(or.left(), negated);
+        RowPredicate right = compile(or.right(), negated);
+        return negated ? and(left, right) : or(left, right);
+      }
+      case Expression.Comparison comparison -> {
+        Expression.ComparisonOperator operator =
+            negated ? comparison.operator().negate() : comparison.operator();
+        return comparison(comparison.left(), operator, comparison.right());
+      }
+      case Expression.Between between -> {
+        /* x BETWEEN a AND b is x >= a AND x <= b, its negation x < a OR x > b */
+        boolean outside = negated != between.negated();
+        RowPredicate low =
+            comparison(
+                between.operand(),
+                outside
+                    ? Expression.ComparisonOperator.LESS
+                    : Expression.ComparisonOperator.GREATER_OR_EQUAL,
+                between.low());
+        RowPredicate high =
+            comparison(
+                between.operand(),
+                outside
+                    ? Expression.ComparisonOperator.GREATER
+                    : Expression.ComparisonOperator.LESS_OR_EQUAL,
+                between.high());
+        return outside ? or(low, high) : and(low, high);
+      }
+      case Expression.In in -> {
+        return in(column(in.operand()), in.values(), negated != in.negated());
+      }
+      case Expression.Like like -> {
+        return like(column(like.operand()), like.pattern(), negated != like.negated());
+      }
+      case Expression.IsNull isNull -> {
+        int column = column(isNull.operand());
+        if (negated != isNull.negated()) {
+          return (table, row) -> !table.isNull(column, row);
+        }
+        return (table, row) -> table.isNull(column, row);
+      }
+      case Expression.Column column -> throw new IncorrectQueryException(
+          "Expected a condition but found column " + column.name());
+      case Expression.Literal literal -> throw new IncorrectQueryException(
+          "Expected a condition but found value " + literal);
+    }
+  }
+
+  private static RowPredicate and(RowPredicate left, RowPredicate right) {
+    return (table, row) -> left.test(table, row) && right.test(table, row);
+  }
+
+  private static RowPredicate or(RowPredicate left, RowPredicate right) {
+    return (table, row) -> left.test(table, row) || right.test(table, row);
+  }
+
+  /* Operands */
+
+  /* Position of a column operand, or -1 for values and bare words that are not columns */
+  private int resolve(Expression operand) {
+    return operand instanceof Expression.Column column ? schema.indexOf(column.name()) : -1;
+  }
+
+  private int column(Expression operand) throws IncorrectQueryException {
+    int column = resolve(operand);
+    if (column == -1) {
+      throw new IncorrectQueryException("Column not found: " + operand);
+    }
+    return column;
+  }
+
+  /* Text of a value operand; bare words that are not columns are text, as before quoting */
+  private static String value(Expression operand) {
+    return operand instanceof Expression.Column column
+        ? column.name()
+        : ((Expression.Literal) operand).value();
+  }
+
+  /* Comparisons */
+
+  private RowPredicate comparison(
+      Expression left, Expression.ComparisonOperator operator, Expression right)
+      throws IncorrectQueryException {
+    int leftColumn = resolve(left);
+    int rightColumn = resolve(right);
+    if (leftColumn != -1 && rightColumn != -1) {
+      return columnComparison(leftColumn, operator, rightColumn);
+    }
+    if (leftColumn == -1 && rightColumn != -1) {
+      /* 5 < a is a > 5 */
+      return comparison(right, operator.mirror(), left);
+    }
+    if (leftColumn == -1) {
+      throw new IncorrectQueryException("Column not found: " + left);
+    }
+    String value = value(right);
+    if (value == null) {
+      /* Nothing compares with null, use IS NULL */
+      return ALWAYS_FALSE;
+    }
+    return valueComparison(leftColumn, operator, value);
+  }
+
+  /* Text is compared as written, spaces around a number or boolean are ignored */
+  private RowPredicate valueComparison(
+      int column, Expression.ComparisonOperator operator, String value)
+      throws IncorrectQueryException {
+    ColumnType type = schema.getColumnType(column);
+    try {
+      switch (type) {
+        case INT, BIGINT -> {
+          long parsed;
+          try {
+            parsed = Long.parseLong(value.trim());
+          } catch (NumberFormatException e) {
+            /* A fractional value, such as age > 20.5 */
+            return numberComparison(column, operator, Double.parseDouble(value));
+          }
+          long literal = parsed;
+          if (type == ColumnType.INT) {
+            if (operator == Expression.ComparisonOperator.EQUAL) {
+              return (table, row) ->
+                  !table.isNull(column, row) && table.getInt(column, row) == literal;
+            }
+            return (table, row) ->
+                !table.isNull(column, row)
+                    && operator.test(Long.compare(table.getInt(column, row), literal));
+          }
+          if (operator == Expression.ComparisonOperator.EQUAL) {
+            return (table, row) ->
+                !table.isNull(column, row) && table.getLong(column, row) == literal;
+          }
+          return (table, row) ->
+              !table.isNull(column, row)
+                  && operator.test(Long.compare(table.getLong(column, row), literal));
+        }
+        case DOUBLE -> {
+          return numberComparison(column, operator, Double.parseDouble(value));
+        }
+        case BOOLEAN -> {
+          boolean literal = ColumnarTable.parseBoolean(value);
+          return (table, row) ->
+              !table.isNull(column, row)
+                  && operator.test(Boolean.compare(table.getBoolean(column, row), literal));
+        }
+        default -> {
+          return textComparison(column, operator, value);
+        }
+      }
+    } catch (NumberFormatException e) {
+      throw new IncorrectQueryException(
+          "Invalid value for column " + schema.getColumnName(column) + ": " + value);
+    }
+  }
+
+  private static RowPredicate numberComparison(
+      int column, Expression.ComparisonOperator operator, double literal) {
+    return (table, row) ->
+        !table.isNull(column, row)
+            && operator.test(Double.compare(table.getNumber(column, row), literal));
+  }
+
+  /* Text compares as numbers when both sides are ints, otherwise as strings */
+  private static RowPredicate textComparison(
+      int column, Expression.ComparisonOperator operator, String literal) {
+    long literalInt = parseInt(literal);
+    if (literalInt == NOT_AN_INT) {
+      if (operator == Expression.ComparisonOperator.EQUAL) {
+        return (table, row) ->
+            !table.isNull(column, row) && table.getString(column, row).equals(literal);
+      }
+      return (table, row) ->
+          !table.isNull(column, row)
+              && operator.test(table.getString(column, row).compareTo(literal));
+    }
+    return (table, row) -> {
+      if (table.isNull(column, row)) {
+        return false;
+      }
+      String cell = table.getString(column, row);
+      long cellInt = parseInt(cell);
+      return operator.test(
+          cellInt == NOT_AN_INT ? cell.compareTo(literal) : Long.compare(cellInt, literalInt));
+    };
+  }
+
+  private RowPredicate columnComparison(
+      int leftColumn, Expression.ComparisonOperator operator, int rightColumn) {
+    ColumnType leftType = schema.getColumnType(leftColumn);
+    ColumnType rightType = schema.getColumnType(rightColumn);
+    if (leftType.isNumeric() && rightType.isNumeric()) {
+      if (leftType != ColumnType.DOUBLE && rightType != ColumnType.DOUBLE) {
+        return (table, row) ->
+            !table.isNull(leftColumn, row)
+                && !table.isNull(rightColumn, row)
+                && operator.test(
+                    Long.compare(
+                        integral(table, leftColumn, row), integral(table, rightColumn, row)));
+      }
+      return (table, row) ->
+          !table.isNull(leftColumn, row)
+              && !table.isNull(rightColumn, row)
+              && operator.test(
+                  Double.compare(
+                      table.getNumber(leftColumn, row), table.getNumber(rightColumn, row)));
+    }
+    return (table, row) ->
+        !table.isNull(leftColumn, row)
+            && !table.isNull(rightColumn, row)
+            && operator.test(
+                compareText(table.format(leftColumn, row), table.format(rightColumn, row)));
+  }
+
+  private static long integral(ColumnarTable table, int column, int row) {
+    return table.getSchema().getColumnType(column) == ColumnType.INT
+        ? table.getInt(column, row)
+        : table.getLong(column, row);
+  }
+
+  private static int compareText(String value1, String value2) {
+    long int1 = parseInt(value1);
+    long int2 = parseInt(value2);
+    if (int1 != NOT_AN_INT && int2 != NOT_AN_INT) {
+      return Long.compare(int1, int2);
+    }
+    return value1.compareTo(value2);
+  }
+
+  /**
+   * Parses text the way {@link Integer#parseInt(String)} does, without throwing for text that is not
+   * an int, as most cells of a text column are not.
+   *
+   * @return the value, or {@code NOT_AN_INT}
+   */
+  private static long parseInt(String text) {
+    int length = text.length();
+    if (length == 0 || length > 11) {
+      return NOT_AN_INT;
+    }
+    int start = 0;
+    boolean negative = false;
+    char first = text.charAt(0);
+    if (first == '-' || first == '+') {
+      negative = first == '-';
+      start = 1;
+      if (length == 1) {
+        return NOT_AN_INT;
+      }
+    }
+    long value = 0;
+    for (int i = start; i < length; i++) {
+      int digit = Character.digit(text.charAt(i), 10);
+      if (digit < 0) {
+        return NOT_AN_INT;
+      }
+      value = value * 10 + digit;
+    }
+    value = negative ? -value : value;
+    return value < Integer.MIN_VALUE || value > Integer.MAX_VALUE ? NOT_AN_INT : value;
+  }
+
+  /* IN */
+
+  private RowPredicate in(int column, List<Expression.Literal> literals, boolean negated)
+      throws IncorrectQueryException {
+    List<String> values = new ArrayList<>();
+    boolean containsNull = false;
+    for (Expression.Literal literal : literals) {
+      if (literal.value() == null) {
+        containsNull = true;
+      } else {
+        values.add(literal.value());
+      }
+    }
+    if (negated && containsNull) {
+      /* x NOT IN (.., null) is never true */
+      return ALWAYS_FALSE;
+    }
+    RowPredicate contains = contains(column, values);
+    if (negated) {
+      return (table, row) -> !table.isNull(column, row) && !contains.test(table, row);
+    }
+    return contains;
+  }
+
+  private RowPredicate contains(int column, List<String> values) throws IncorrectQueryException {
+    ColumnType type = schema.getColumnType(column);
+    try {
+      switch (type) {
+        case INT, BIGINT -> {
+          long[] sorted = new long[values.size()];
+          int count = 0;
+          for (String value : values) {
+            try {
+              sorted[count++] = Long.parseLong(value.trim());
+            } catch (NumberFormatException e) {
+              double parsed = Double.parseDouble(value);
+              count--;
+              /* Fractional values never equal an integer */
+              if (parsed == Math.rint(parsed)) {
+                sorted[count++] = (long) parsed;
+              }
+            }
+          }
+          long[] keys = Arrays.copyOf(sorted, count);
+          Arrays.sort(keys);
+          return (table, row) ->
+              !table.isNull(column, row)
+                  && Arrays.binarySearch(keys, integral(table, column, row)) >= 0;
+        }
+        case DOUBLE -> {
+          double[] keys = new double[values.size()];
+          for (int i = 0; i < keys.length; i++) {
+            keys[i] = Double.parseDouble(values.get(i));
+          }
+          Arrays.sort(keys);
+          return (table, row) ->
+              !table.isNull(column, row)
+                  && Arrays.binarySearch(keys, table.getDouble(column, row)) >= 0;
+        }
+        case BOOLEAN -> {
+          boolean containsTrue = false;
+          boolean containsFalse = false;
+          for (String value : values) {
+            if (ColumnarTable.parseBoolean(value)) {
+              containsTrue = true;
+            } else {
+              containsFalse = true;
+            }
+          }
+          boolean matchTrue = containsTrue;
+          boolean matchFalse = containsFalse;
+          return (table, row) ->
+              !table.isNull(column, row)
+                  && (table.getBoolean(column, row) ? matchTrue : matchFalse);
+        }
+        default -> {
+          /* An int cell equals int values numerically, any other cell equals text exactly */
+          Set<String> texts = new HashSet<>();
+          List<Long> ints = new ArrayList<>();
+          for (String value : values) {
+            long parsed = parseInt(value);
+            if (parsed == NOT_AN_INT) {
+              texts.add(value);
+            } else {
+              ints.add(parsed);
+            }
+          }
+          long[] keys = ints.stream().mapToLong(Long::longValue).sorted().toArray();
+          return (table, row) -> {
+            if (table.isNull(column, row)) {
+              return false;
+            }
+            String cell = table.getString(column, row);
+            long cellInt = parseInt(cell);
+            return cellInt == NOT_AN_INT
+                ? texts.contains(cell)
+                : Arrays.binarySearch(keys, cellInt) >= 0;
+          };
+        }
+      }
+    } catch (NumberFormatException e) {
+      throw new IncorrectQueryException(
+          "Invalid value for column " + schema.getColumnName(column) + ": " + e.getMessage());
+    }
+  }
+
+  /* LIKE */
+
+  private RowPredicate like(int column, String pattern, boolean negated) {
+    RowPredicate matches = matcher(column, pattern);
+    if (negated) {
+      return (table, row) -> !table.isNull(column, row) && !matches.test(table, row);
+    }
+    return matches;
+  }
+
+  /* % matches any text and _ any single character; common shapes avoid regular expressions */
+  private RowPredicate matcher(int column, String pattern) {
+    boolean text = schema.getColumnType(column) == ColumnType.VARCHAR;
+    String inner = pattern.length() >= 2 ? pattern.substring(1, pattern.length() - 1) : "";
+    if (pattern.indexOf('_') == -1) {
+      int wildcards = pattern.length() - pattern.replace("%", "").length();
+      if (wildcards == 0) {
+        return (table, row) ->
+            !table.isNull(column, row) && cell(table, column, row, text).equals(pattern);
+      }
+      if (wildcards == 1 && pattern.endsWith("%")) {
+        String prefix = pattern.substring(0, pattern.length() - 1);
+        return (table, row) ->
+            !table.isNull(column, row) && cell(table, column, row, text).startsWith(prefix);
+      }
+      if (wildcards == 1 && pattern.startsWith("%")) {
+        String suffix = pattern.substring(1);
+        return (table, row) ->
+            !table.isNull(column, row) && cell(table, column, row, text).endsWith(suffix);
+      }
+      if (wildcards == 2 && pattern.startsWith("%") && pattern.endsWith("%")) {
+        return (table, row) ->
+            !table.isNull(column, row) && cell(table, column, row, text).contains(inner);
+      }
+    }
+    StringBuilder regex = new StringBuilder();
+    StringBuilder literal = new StringBuilder();
+    for (char c : pattern.toCharArray()) {
+      if (c == '%' || c == '_') {
+        if (!literal.isEmpty()) {
+          regex.append(Pattern.quote(literal.toString()));
+          literal.setLength(0);
+        }
+        regex.append(c == '%' ? ".*" : ".");
+      } else {
+        literal.append(c);
+      }
+    }
+    if (!literal.isEmpty()) {
+      regex.append(Pattern.quote(literal.toString()));
+    }
+    Pattern compiled = Pattern.compile(regex.toString(), Pattern.DOTALL);
+    return (table, row) ->
+        !table.isNull(column, row) && compiled.matcher(cell(table, column, row, text)).matches();
+  }
+
+  private static String cell(ColumnarTable table, int column, int row, boolean text) {
+    return text ? table.getString(column, row) : table.format(column, row);
+  }
+}
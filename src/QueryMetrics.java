@@ -0,0 +1,196 @@
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.FileHandler;
+import java.util.logging.Logger;
+import java.util.logging.SimpleFormatter;
+
+/**
+ * The {@code QueryMetrics} class aggregates the {@link QueryStats} of all executed queries by
+ * statement type: a latency histogram, and the totals of parse, execution and I/O time, rows
+ * scanned and returned and bytes read and written. {@code SHOW STATS} prints them, with the hits
+ * and misses of the table and statement caches.
+ *
+ * <p>Queries taking longer than the slow query threshold are written to {@code
+ * files/slow_query.log} with their stats. The threshold starts at {@code -Ddbms.slowQueryMillis}
+ * and is changed with {@code SET SLOW_QUERY_THRESHOLD n}. Passwords in the queries are
+ * replaced by {@code '***'} before they are logged.
+ */
+public class QueryMetrics {
+  private final Map<String, StatementMetrics> metrics = new ConcurrentHashMap<>();
+  private volatile long slowQueryThresholdNanos =
+      TimeUnit.MILLISECONDS.toNanos(Constants.SLOW_QUERY_THRESHOLD_MILLIS);
+  private volatile Logger slowQueryLogger;
+
+  private static final class StatementMetrics {
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder parseNanos = new LongAdder();
+    private final LongAdder executeNanos = new LongAdder();
+    private final LongAdder ioNanos = new LongAdder();
+    private final LongAdder rowsScanned = new LongAdder();
+    private final LongAdder rowsReturned = new LongAdder();
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+    private final LongAdder slowQueries = new LongAdder();
+  }
+
+  /**
+   * Adds a finished query to the metrics and to the slow query log if it took too long.
+   *
+   * @param stats stats of the query
+   * @param query text of the query
+   * @param user user who executed it
+   * @param nanos time from receiving the query until it was answered
+   */
+  public void record(QueryStats stats, String query, String user, long nanos) {
+    String type =
+        stats.getStatement() == null ? "Invalid" : stats.getStatement().getClass().getSimpleName();
+    StatementMetrics statementMetrics =
+        metrics.computeIfAbsent(type, statementType -> new StatementMetrics());
+    statementMetrics.latency.record(nanos);
+    statementMetrics.parseNanos.add(stats.getParseNanos());
+    statementMetrics.executeNanos.add(stats.getExecuteNanos());
+    statementMetrics.ioNanos.add(stats.getIoNanos());
+    statementMetrics.rowsScanned.add(stats.getRowsScanned());
+    statementMetrics.rowsReturned.add(stats.getRowsReturned());
+    statementMetrics.bytesRead.add(stats.getBytesRead());
+    statementMetrics.bytesWritten.add(stats.getBytesWritten());
+
+    if (nanos >= slowQueryThresholdNanos) {
+      statementMetrics.slowQueries.increment();
+      /* The message is only built when the log takes it, without the secrets of the query */
+      slowQueryLogger()
+          .warning(
+              () ->
+                  String.format(
+                      "%.3f ms (parse %.3f ms, execute %.3f ms, I/O %.3f ms), rows scanned %d, "
+                          + "returned %d, bytes read %d, written %d, by %s: %s",
+                      nanos / 1e6,
+                      stats.getParseNanos() / 1e6,
+                      stats.getExecuteNanos() / 1e6,
+                      stats.getIoNanos() / 1e6,
+                      stats.getRowsScanned(),
+                      stats.getRowsReturned(),
+                      stats.getBytesRead(),
+                      stats.getBytesWritten(),
+                      user,
+                      SqlParser.redact(query)));
+    }
+  }
+
+  /**
+   * @param millis queries taking at least this long are written to the slow query log
+   */
+  public void setSlowQueryThreshold(long millis) {
+    slowQueryThresholdNanos = TimeUnit.MILLISECONDS.toNanos(millis);
+  }
+
+  /**
+   * @return threshold of the slow query log in milliseconds
+   */
+  public long getSlowQueryThreshold() {
+    return TimeUnit.NANOSECONDS.toMillis(slowQueryThresholdNanos);
+  }
+
+  /**
+   * @param statementType simple name of a {@link Statement} record, e.g. {@code Select}
+   * @return latencies of the statements of this type, {@code null} if none was executed
+   */
+  public LatencyHistogram getLatency(String statementType) {
+    StatementMetrics statementMetrics = metrics.get(statementType);
+    return statementMetrics == null ? null : statementMetrics.latency;
+  }
+
+  /**
+   * Prints a row of metrics for every statement type executed so far, and how the caches did.
+   *
+   * @param tableCache the cache of table rows
+   * @param statementCache the cache of parsed statements
+   */
+  public void print(TableCache tableCache, StatementCache statementCache) {
+    System.out.println(
+        "| statement\t| count\t| avg us\t| p50 us\t| p99 us\t| max us\t| parse ms\t"
+            + "| execute ms\t| I/O ms\t| rows scanned\t| rows returned\t| bytes read\t"
+            + "| bytes written\t| slow\t|");
+    System.out.println("-".repeat(220));
+    for (Map.Entry<String, StatementMetrics> entry : new TreeMap<>(metrics).entrySet()) {
+      StatementMetrics statementMetrics = entry.getValue();
+      LatencyHistogram latency = statementMetrics.latency;
+      System.out.println(
+          "| "
+              + entry.getKey()
+              + "\t| "
+              + latency.getCount()
+              + "\t| "
+              + latency.getMean() / 1_000
+              + "\t| "
+              + latency.getPercentile(0.5) / 1_000
+              + "\t| "
+              + latency.getPercentile(0.99) / 1_000
+              + "\t| "
+              + latency.getMax() / 1_000
+              + "\t| "
+              + statementMetrics.parseNanos.sum() / 1_000_000
+              + "\t| "
+              + statementMetrics.executeNanos.sum() / 1_000_000
+              + "\t| "
+              + statementMetrics.ioNanos.sum() / 1_000_000
+              + "\t| "
+              + statementMetrics.rowsScanned.sum()
+              + "\t| "
+              + statementMetrics.rowsReturned.sum()
+              + "\t| "
+              + statementMetrics.bytesRead.sum()
+              + "\t| "
+              + statementMetrics.bytesWritten.sum()
+              + "\t| "
+              + statementMetrics.slowQueries.sum()
+              + "\t|");
+    }
+    System.out.println("Slow query threshold: " + getSlowQueryThreshold() + " ms");
+    System.out.println(
+        "Table cache: "
+            + tableCache.getHits()
+            + " hits, "
+            + tableCache.getMisses()
+            + " misses, "
+            + tableCache.getEvictions()
+            + " evictions, "
+            + tableCache.getUsedMemory()
+            + " of "
+            + tableCache.getMemoryBudget()
+            + " bytes used");
+    System.out.println(
+        "Statement cache: "
+            + statementCache.getHits()
+            + " hits, "
+            + statementCache.getMisses()
+            + " misses");
+  }
+
+  /* The log file is only created once a query is slow */
+  private Logger slowQueryLogger() {
+    Logger logger = slowQueryLogger;
+    if (logger == null) {
+      synchronized (this) {
+        logger = slowQueryLogger;
+        if (logger == null) {
+          logger = Logger.getLogger("SlowQueryLog");
+          logger.setUseParentHandlers(false);
+          try {
+            FileHandler fileHandler = new FileHandler(Constants.SLOW_QUERY_LOG_PATH, true);
+            fileHandler.setFormatter(new SimpleFormatter());
+            logger.addHandler(fileHandler);
+          } catch (IOException e) {
+            e.printStackTrace();
+          }
+          slowQueryLogger = logger;
+        }
+      }
+    }
+    return logger;
+  }
+}
@@ -0,0 +1,221 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The {@code QueryPlan} class is the way the {@link QueryPlanner} chose to execute a select: the
+ * access method reading the table, and the steps the rows pass through after it, each with the
+ * number of rows it is estimated to pass on. The plan of a join holds the plans reading its two
+ * tables, and its steps start with theirs. {@code EXPLAIN} prints the plan, {@code EXPLAIN
+ * ANALYZE} prints it next to the rows every step actually passed on and the time it took.
+ */
+public class QueryPlan {
+  /** Ways of reading the rows of a table. */
+  public enum AccessMethod {
+    /** Every row is read in file order, from the table cache if the table fits into it. */
+    FULL_SCAN,
+    /** Only the rows an index finds for a part of the condition are read. */
+    INDEX_SCAN,
+    /** Segments of the file are read and filtered on several threads. */
+    PARALLEL_SCAN,
+    /** Every row an index holds is read in the order of its keys, for a merge join. */
+    INDEX_ORDER_SCAN,
+    /** The rows of the smaller table are put into a hash table the other table is matched with. */
+    HASH_JOIN,
+    /** Both tables are read in the order of their join keys and matched side by side. */
+    MERGE_JOIN,
+    /** Segments of the file are read, filtered and grouped on several threads. */
+    PARALLEL_AGGREGATE,
+    /** The rows are counted from the layout of the table file without reading them. */
+    ROW_COUNT
+  }
+
+  /**
+   * A step of the plan.
+   *
+   * @param description what the step does
+   * @param estimatedRows rows it is estimated to pass on
+   */
+  public record Node(String description, double estimatedRows) {}
+
+  private final AccessMethod accessMethod;
+  private final QueryPlanner.IndexRange indexRange;
+  private final boolean cached;
+  private final double cost;
+  private final boolean analyzed;
+  /* From the access method up to the last step */
+  private final List<Node> nodes;
+  /* Inputs of a join, the node of the join is the one after theirs */
+  private final QueryPlan left;
+  private final QueryPlan right;
+  private final boolean buildLeft;
+
+  QueryPlan(
+      AccessMethod accessMethod,
+      QueryPlanner.IndexRange indexRange,
+      boolean cached,
+      double cost,
+      boolean analyzed,
+      List<Node> nodes) {
+    this.accessMethod = accessMethod;
+    this.indexRange = indexRange;
+    this.cached = cached;
+    this.cost = cost;
+    this.analyzed = analyzed;
+    this.nodes = List.copyOf(nodes);
+    this.left = null;
+    this.right = null;
+    this.buildLeft = false;
+  }
+
+  QueryPlan(
+      AccessMethod accessMethod,
+      QueryPlan left,
+      QueryPlan right,
+      boolean buildLeft,
+      double cost,
+      List<Node> nodes) {
+    this.accessMethod = accessMethod;
+    this.indexRange = null;
+    this.cached = false;
+    this.cost = cost;
+    this.analyzed = left.analyzed && right.analyzed;
+    this.nodes = List.copyOf(nodes);
+    this.left = left;
+    this.right = right;
+    this.buildLeft = buildLeft;
+  }
+
+  private QueryPlan(QueryPlan plan, double cost, List<Node> nodes) {
+    this.accessMethod = plan.accessMethod;
+    this.indexRange = plan.indexRange;
+    this.cached = plan.cached;
+    this.cost = cost;
+    this.analyzed = plan.analyzed;
+    this.nodes = List.copyOf(nodes);
+    this.left = plan.left;
+    this.right = plan.right;
+    this.buildLeft = plan.buildLeft;
+  }
+
+  /**
+   * @param cost estimated cost of the plan with the steps
+   * @param steps steps added after the last step of this plan
+   * @return the plan followed by the steps
+   */
+  QueryPlan withSteps(double cost, List<Node> steps) {
+    List<Node> allNodes = new ArrayList<>(nodes);
+    allNodes.addAll(steps);
+    return new QueryPlan(this, cost, allNodes);
+  }
+
+  public AccessMethod getAccessMethod() {
+    return accessMethod;
+  }
+
+  /**
+   * @return the index range read by an index scan, {@code null} for other access methods
+   */
+  public QueryPlanner.IndexRange getIndexRange() {
+    return indexRange;
+  }
+
+  /**
+   * @return plan reading the left table of a join, {@code null} if the plan is no join
+   */
+  public QueryPlan getLeft() {
+    return left;
+  }
+
+  /**
+   * @return plan reading the right table of a join, {@code null} if the plan is no join
+   */
+  public QueryPlan getRight() {
+    return right;
+  }
+
+  /**
+   * @return whether a hash join builds its hash table from the left table
+   */
+  public boolean isBuildLeft() {
+    return buildLeft;
+  }
+
+  /**
+   * @return rows the last step is estimated to pass on
+   */
+  public double getEstimatedRows() {
+    return nodes.get(nodes.size() - 1).estimatedRows();
+  }
+
+  /**
+   * @return whether a full scan reads the table from the table cache
+   */
+  public boolean isCached() {
+    return cached;
+  }
+
+  /**
+   * @return estimated cost of the plan, in units of reading a page of the table file
+   */
+  public double getCost() {
+    return cost;
+  }
+
+  /**
+   * @return the steps of the plan, from the access method up to the last step
+   */
+  public List<Node> getNodes() {
+    return nodes;
+  }
+
+  /**
+   * Prints the plan, the last step first.
+   *
+   * @param actual the cursors that executed the steps, in the order of {@link #getNodes()}, or
+   *     {@code null} if the plan was not executed
+   */
+  public void print(List<AnalyzeRowCursor> actual) {
+    int inputNodes = left == null ? 0 : left.nodes.size() + right.nodes.size();
+    List<String> lines = new ArrayList<>();
+    int depth = 0;
+    for (int i = nodes.size() - 1; i >= inputNodes; i--) {
+      lines.add(indent(depth++) + describe(i, inputNodes, actual));
+    }
+    /* The steps of both inputs of a join hang below it side by side */
+    if (left != null) {
+      for (int i = left.nodes.size() - 1; i >= 0; i--) {
+        lines.add(indent(depth + left.nodes.size() - 1 - i) + describe(i, inputNodes, actual));
+      }
+      for (int i = inputNodes - 1; i >= left.nodes.size(); i--) {
+        lines.add(indent(depth + inputNodes - 1 - i) + describe(i, inputNodes, actual));
+      }
+    }
+    for (String line : lines) {
+      System.out.println(line);
+    }
+    if (!analyzed) {
+      System.out.println("No statistics, estimates are guesses until the table is analyzed");
+    }
+  }
+
+  private static String indent(int depth) {
+    return depth == 0 ? "" : "  ".repeat(depth - 1) + "  -> ";
+  }
+
+  private String describe(int i, int costNode, List<AnalyzeRowCursor> actual) {
+    Node node = nodes.get(i);
+    StringBuilder line = new StringBuilder(node.description());
+    line.append("  (");
+    if (i == costNode) {
+      line.append(String.format("cost=%.1f ", cost));
+    }
+    line.append("rows=").append(Math.round(node.estimatedRows())).append(')');
+    if (actual != null) {
+      AnalyzeRowCursor cursor = actual.get(i);
+      line.append(
+          String.format(
+              " (actual rows=%d time=%.3f ms)", cursor.getRows(), cursor.getNanos() / 1e6));
+    }
+    return line.toString();
+  }
+}
@@ -0,0 +1,845 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The {@code QueryPlanner} class chooses how a select reads its table. It estimates the rows the
+ * condition lets through from the {@link TableStatistics} collected by {@code ANALYZE}, or from
+ * fixed guesses for tables that were not analyzed, and compares the cost of a full scan, a scan
+ * of every index that can answer a part of the condition and a parallel scan.
+ *
+ * <p>Costs are measured in reads of a page of the table file: a full scan costs its pages and the
+ * decoding of every row, unless the table is served from the table cache, while an index scan
+ * costs a read of its own for every row the index finds. A LIMIT shortens full and parallel scans,
+ * which stop once enough rows were found.
+ *
+ * <p>Each table of a join is planned on its own with the parts of the condition that only refer
+ * to it. The join then either builds a hash table from the smaller of the two inputs, which costs
+ * twice the reads of both inputs if it does not fit into memory, or, if both join columns have an
+ * index, reads both tables in key order and merges them, which is cheap when the rows lie in the
+ * order of their keys.
+ */
+public class QueryPlanner {
+  private static final double PAGE_BYTES = 8192;
+  private static final double SEQUENTIAL_PAGE_COST = 1.0;
+  /* Decoding a row read from the table file */
+  private static final double ROW_DECODE_COST = 0.3;
+  /* Checking the condition on a decoded row */
+  private static final double ROW_FILTER_COST = 0.05;
+  /* Descending the tree of an index */
+  private static final double INDEX_LOOKUP_COST = 10;
+  /* Reading a row found by an index with a read of its own */
+  private static final double INDEX_ROW_COST = 3.0;
+  /* Starting the tasks of a parallel scan */
+  private static final double PARALLEL_SETUP_COST = 1000;
+  /* Putting a row into the hash table of a join, and looking up a row in it */
+  private static final double HASH_BUILD_COST = 0.2;
+  private static final double HASH_PROBE_COST = 0.1;
+  /* Comparing a row of a merge join with the other input */
+  private static final double MERGE_ROW_COST = 0.05;
+  /* Rows in the hash table of a join take about this many times their bytes in the file */
+  private static final double HASH_MEMORY_FACTOR = 2;
+  /* Adding a row to its group */
+  private static final double AGGREGATE_ROW_COST = 0.1;
+  /* Comparing two rows of a sort */
+  private static final double SORT_COMPARE_COST = 0.02;
+  /* Rows buffered by a sort take about this many times their bytes in the file */
+  private static final double SORT_MEMORY_FACTOR = 2;
+
+  /* Guesses for tables that were not analyzed */
+  private static final double DEFAULT_ROW_BYTES = 64;
+  private static final double DEFAULT_EQUAL_SELECTIVITY = 0.005;
+  private static final double DEFAULT_INEQUALITY_SELECTIVITY = 1.0 / 3;
+  private static final double DEFAULT_LIKE_SELECTIVITY = 0.1;
+  private static final double DEFAULT_NULL_SELECTIVITY = 0.01;
+  private static final double DEFAULT_DISTINCT_VALUES = 100;
+
+  private QueryPlanner() {
+    throw new AssertionError("QueryPlanner class should not be instantiated.");
+  }
+
+  /**
+   * A range of keys of an index that all rows satisfying a part of a condition lie in.
+   *
+   * @param index the index
+   * @param low lowest value, {@code null} for no lower bound
+   * @param high highest value, {@code null} for no upper bound
+   * @param lowKey {@code low} encoded as a key of the index
+   * @param highKey {@code high} encoded as a key of the index
+   */
+  public record IndexRange(
+      BPlusTreeIndex index,
+      String low,
+      boolean lowInclusive,
+      String high,
+      boolean highInclusive,
+      long[] lowKey,
+      long[] highKey) {
+
+    /**
+     * @return ids of the rows in the range in file order, or {@code null} if the index cannot be
+     *     read
+     */
+    public long[] search() {
+      try {
+        long[] rowIds = index.search(lowKey, lowInclusive, highKey, highInclusive);
+        /* Reading in file order keeps the order of a full scan */
+        Arrays.sort(rowIds);
+        return rowIds;
+      } catch (IOException e) {
+        return null;
+      }
+    }
+
+    /**
+     * @return ids of the rows in the range in key order, or {@code null} if the index cannot be
+     *     read
+     */
+    public long[] searchInKeyOrder() {
+      try {
+        return index.search(lowKey, lowInclusive, highKey, highInclusive);
+      } catch (IOException e) {
+        return null;
+      }
+    }
+
+    @Override
+    public String toString() {
+      if (low == null && high == null) {
+        return "all keys";
+      }
+      String column = index.getColumnName();
+      if (low != null && low.equals(high)) {
+        return column + " = " + bound(low);
+      }
+      List<String> bounds = new ArrayList<>();
+      if (low != null) {
+        bounds.add(column + (lowInclusive ? " >= " : " > ") + bound(low));
+      }
+      if (high != null) {
+        bounds.add(column + (highInclusive ? " <= " : " < ") + bound(high));
+      }
+      return String.join(" and ", bounds);
+    }
+
+    /* Text keys are quoted like the values of a condition */
+    private String bound(String value) {
+      return index.getKeyType() == ColumnType.VARCHAR
+          ? new Expression.Literal(value).toString()
+          : value.trim();
+    }
+  }
+
+  /**
+   * One of the two tables of a join.
+   *
+   * @param name name the columns of the table are qualified with in the join
+   * @param schema schema of the table
+   * @param plan how the table is read when it is scanned, with the conditions only on it
+   * @param statistics statistics of the table, {@code null} if it was not analyzed
+   * @param fileLength length of the table file
+   * @param keyColumn the join column
+   * @param keyIndex an index on the join column with keys in the order of its numbers, {@code
+   *     null} if there is none
+   * @param condition the part of the condition only on the table, {@code null} if there is none
+   */
+  public record JoinInput(
+      String name,
+      TableSchema schema,
+      QueryPlan plan,
+      TableStatistics statistics,
+      long fileLength,
+      String keyColumn,
+      BPlusTreeIndex keyIndex,
+      Expression condition) {}
+
+  /**
+   * Chooses the plan of a join.
+   *
+   * @param left the left table
+   * @param right the right table
+   * @param schema schema of the joined rows
+   * @param condition the part of the condition on both tables other than the join key, {@code
+   *     null} if there is none
+   * @param limit maximum number of rows, {@code -1} for all rows
+   * @param memoryBudget bytes the hash table of a hash join may take
+   * @return the cheaper of a hash join and a merge join
+   */
+  public static QueryPlan planJoin(
+      JoinInput left,
+      JoinInput right,
+      TableSchema schema,
+      Expression condition,
+      long limit,
+      long memoryBudget) {
+    double leftRows = left.plan().getEstimatedRows();
+    double rightRows = right.plan().getEstimatedRows();
+    /* Every key of the input with fewer distinct keys is assumed to find its match */
+    double joinRows =
+        leftRows * rightRows / Math.max(1, Math.max(distinctKeys(left), distinctKeys(right)));
+    double matchedRows = joinRows * selectivity(condition, schema, null);
+    double scannedFraction = limit >= 0 ? Math.min(1, limit / Math.max(1, matchedRows)) : 1;
+    String keys =
+        left.name() + "." + left.keyColumn() + " = " + right.name() + "." + right.keyColumn();
+
+    /* The smaller input is built, the larger one only streams past */
+    boolean buildLeft = leftRows < rightRows;
+    JoinInput build = buildLeft ? left : right;
+    JoinInput probe = buildLeft ? right : left;
+    double buildRows = Math.min(leftRows, rightRows);
+    double probeRows = Math.max(leftRows, rightRows);
+    double buildBytes = buildRows * rowBytes(build) * HASH_MEMORY_FACTOR;
+    boolean spills = buildBytes > memoryBudget;
+    /* The build input is read completely, the probe input stops at the limit unless it spills */
+    double probeFraction = spills ? 1 : scannedFraction;
+    double hashCost =
+        build.plan().getCost()
+            + buildRows * HASH_BUILD_COST
+            + (probe.plan().getCost() + probeRows * HASH_PROBE_COST) * probeFraction
+            + joinRows * ROW_FILTER_COST * scannedFraction;
+    if (spills) {
+      /* Both inputs are written to partitions and read back */
+      hashCost +=
+          2 * (buildRows * rowBytes(build) + probeRows * rowBytes(probe)) / PAGE_BYTES
+              * SEQUENTIAL_PAGE_COST;
+    }
+
+    QueryPlan mergeLeft = planIndexOrder(left);
+    QueryPlan mergeRight = planIndexOrder(right);
+    boolean mergeable =
+        mergeLeft != null
+            && mergeRight != null
+            && JoinKey.of(left.keyIndex().getKeyType(), right.keyIndex().getKeyType())
+                != JoinKey.TEXT;
+    double mergeCost = Double.POSITIVE_INFINITY;
+    if (mergeable) {
+      mergeCost =
+          (mergeLeft.getCost()
+                  + mergeRight.getCost()
+                  + (leftRows + rightRows) * MERGE_ROW_COST
+                  + joinRows * ROW_FILTER_COST)
+              * scannedFraction;
+    }
+
+    boolean merge = mergeCost < hashCost;
+    QueryPlan leftPlan = merge ? mergeLeft : left.plan();
+    QueryPlan rightPlan = merge ? mergeRight : right.plan();
+    List<QueryPlan.Node> nodes = new ArrayList<>();
+    String leftRole = merge ? "Left: " : buildLeft ? "Build: " : "Probe: ";
+    String rightRole = merge ? "Right: " : buildLeft ? "Probe: " : "Build: ";
+    addInputNodes(nodes, leftRole, leftPlan);
+    addInputNodes(nodes, rightRole, rightPlan);
+    String join =
+        merge ? "Merge join on " + keys : "Hash join on " + keys + (spills ? " (spills)" : "");
+    nodes.add(new QueryPlan.Node(join, joinRows * scannedFraction));
+    double rows = matchedRows * scannedFraction;
+    if (condition != null) {
+      nodes.add(new QueryPlan.Node("Filter: " + Expression.format(condition, schema), rows));
+    }
+    if (limit >= 0) {
+      nodes.add(new QueryPlan.Node("Limit " + limit, Math.min(limit, rows)));
+    }
+    return new QueryPlan(
+        merge ? QueryPlan.AccessMethod.MERGE_JOIN : QueryPlan.AccessMethod.HASH_JOIN,
+        leftPlan,
+        rightPlan,
+        buildLeft,
+        merge ? mergeCost : hashCost,
+        nodes);
+  }
+
+  /* The steps of an input of a join, the last one named after the role of the input */
+  private static void addInputNodes(List<QueryPlan.Node> nodes, String role, QueryPlan input) {
+    List<QueryPlan.Node> inputNodes = input.getNodes();
+    for (int i = 0; i < inputNodes.size(); i++) {
+      QueryPlan.Node node = inputNodes.get(i);
+      String description = i == inputNodes.size() - 1 ? role + node.description() : node.description();
+      nodes.add(new QueryPlan.Node(description, node.estimatedRows()));
+    }
+  }
+
+  /* Reading every row of a join input through the index on its join column, null without one */
+  private static QueryPlan planIndexOrder(JoinInput input) {
+    BPlusTreeIndex index = input.keyIndex();
+    if (index == null || !index.getKeyType().isNumeric()) {
+      return null;
+    }
+    TableStatistics statistics = input.statistics();
+    double tableRows =
+        statistics != null
+            ? statistics.estimateRowCount(input.fileLength())
+            : Math.ceil(input.fileLength() / DEFAULT_ROW_BYTES);
+    TableStatistics.ColumnStatistics key =
+        statistics == null ? null : statistics.getColumn(input.keyColumn());
+    /* Rows lying in key order are read from the pages before them, others with a read each */
+    double sorted = key == null ? 0 : key.sortedFraction();
+    double sequentialRowCost =
+        rowBytes(input) / PAGE_BYTES * SEQUENTIAL_PAGE_COST + ROW_DECODE_COST;
+    double indexRows = tableRows * (key == null ? 1 : 1 - key.nullFraction());
+    double cost =
+        INDEX_LOOKUP_COST
+            + indexRows
+                * (sorted * sequentialRowCost + (1 - sorted) * INDEX_ROW_COST + ROW_FILTER_COST);
+    IndexRange range = new IndexRange(index, null, false, null, false, null, null);
+    List<QueryPlan.Node> nodes = new ArrayList<>();
+    String tableName = index.getTableName();
+    nodes.add(
+        new QueryPlan.Node(
+            "Index order scan using " + index.getIndexName() + " on " + tableName, indexRows));
+    Expression condition = input.condition();
+    if (condition != null) {
+      nodes.add(
+          new QueryPlan.Node(
+              "Filter: " + Expression.format(condition, input.schema()),
+              indexRows * selectivity(condition, input.schema(), statistics)));
+    }
+    return new QueryPlan(
+        QueryPlan.AccessMethod.INDEX_ORDER_SCAN, range, false, cost, statistics != null, nodes);
+  }
+
+  /* Distinct join keys of an input, all of its rows unless the table was analyzed */
+  private static double distinctKeys(JoinInput input) {
+    double rows = input.plan().getEstimatedRows();
+    if (input.statistics() == null) {
+      return rows;
+    }
+    TableStatistics.ColumnStatistics key = input.statistics().getColumn(input.keyColumn());
+    return key == null ? rows : Math.min(rows, key.distinctCount());
+  }
+
+  private static double rowBytes(JoinInput input) {
+    return rowBytes(input.statistics(), input.fileLength());
+  }
+
+  /**
+   * @param statistics statistics of a table, {@code null} if it was not analyzed
+   * @param fileLength length of the table file
+   * @return estimated bytes of a row of the table in its file
+   */
+  public static double rowBytes(TableStatistics statistics, long fileLength) {
+    if (statistics == null || statistics.getRowCount() == 0) {
+      return DEFAULT_ROW_BYTES;
+    }
+    return fileLength / statistics.estimateRowCount(fileLength);
+  }
+
+  /**
+   * Chooses the plan of a select.
+   *
+   * @param tableName name of the table
+   * @param schema schema of the table
+   * @param statistics statistics of the table, {@code null} if it was not analyzed
+   * @param fileLength length of the table file
+   * @param condition the condition, {@code null} if there is none
+   * @param indexRanges the ranges indexes can read for parts of the condition
+   * @param limit maximum number of rows, {@code -1} for all rows
+   * @param cacheable whether a full scan is served from the table cache
+   * @param parallelism number of threads a parallel scan may use
+   * @return the cheapest plan
+   */
+  public static QueryPlan plan(
+      String tableName,
+      TableSchema schema,
+      TableStatistics statistics,
+      long fileLength,
+      Expression condition,
+      List<IndexRange> indexRanges,
+      long limit,
+      boolean cacheable,
+      int parallelism) {
+    double tableRows =
+        statistics != null
+            ? statistics.estimateRowCount(fileLength)
+            : Math.ceil(fileLength / DEFAULT_ROW_BYTES);
+    double pages = Math.ceil(fileLength / PAGE_BYTES);
+    double matchedRows = tableRows * selectivity(condition, schema, statistics);
+    /* Scans without an index stop once the limit is reached */
+    double scannedFraction = limit >= 0 ? Math.min(1, limit / Math.max(1, matchedRows)) : 1;
+
+    QueryPlan.AccessMethod accessMethod = QueryPlan.AccessMethod.FULL_SCAN;
+    double cost =
+        cacheable
+            ? tableRows * ROW_FILTER_COST * scannedFraction
+            : (pages * SEQUENTIAL_PAGE_COST + tableRows * (ROW_DECODE_COST + ROW_FILTER_COST))
+                * scannedFraction;
+
+    if (!cacheable
+        && condition != null
+        && ParallelScanCursor.isWorthwhile(fileLength, parallelism)) {
+      double parallelCost =
+          PARALLEL_SETUP_COST
+              + (pages * SEQUENTIAL_PAGE_COST + tableRows * (ROW_DECODE_COST + ROW_FILTER_COST))
+                  * scannedFraction
+                  / parallelism;
+      if (parallelCost < cost) {
+        accessMethod = QueryPlan.AccessMethod.PARALLEL_SCAN;
+        cost = parallelCost;
+      }
+    }
+
+    IndexRange indexRange = null;
+    double indexRows = 0;
+    for (IndexRange range : indexRanges) {
+      double rangeRows = tableRows * rangeSelectivity(range, statistics);
+      double indexCost = INDEX_LOOKUP_COST + rangeRows * (INDEX_ROW_COST + ROW_FILTER_COST);
+      if (indexCost < cost) {
+        accessMethod = QueryPlan.AccessMethod.INDEX_SCAN;
+        cost = indexCost;
+        indexRange = range;
+        indexRows = rangeRows;
+      }
+    }
+
+    List<QueryPlan.Node> nodes = new ArrayList<>();
+    double rows;
+    switch (accessMethod) {
+      case INDEX_SCAN -> {
+        nodes.add(
+            new QueryPlan.Node(
+                "Index scan using "
+                    + indexRange.index().getIndexName()
+                    + " on "
+                    + tableName
+                    + ": "
+                    + indexRange,
+                indexRows));
+        rows = Math.min(indexRows, matchedRows);
+        nodes.add(new QueryPlan.Node("Filter: " + Expression.format(condition, schema), rows));
+      }
+      case PARALLEL_SCAN -> {
+        rows = matchedRows * scannedFraction;
+        nodes.add(
+            new QueryPlan.Node(
+                "Parallel scan on "
+                    + tableName
+                    + " with "
+                    + parallelism
+                    + " threads, filter: "
+                    + Expression.format(condition, schema),
+                rows));
+      }
+      default -> {
+        nodes.add(
+            new QueryPlan.Node(
+                "Full scan on " + tableName + (cacheable ? " (cached)" : ""),
+                tableRows * scannedFraction));
+        rows = matchedRows * scannedFraction;
+        if (condition != null) {
+          nodes.add(new QueryPlan.Node("Filter: " + Expression.format(condition, schema), rows));
+        }
+      }
+    }
+    if (limit >= 0) {
+      nodes.add(new QueryPlan.Node("Limit " + limit, Math.min(limit, rows)));
+    }
+    return new QueryPlan(
+        accessMethod,
+        indexRange,
+        accessMethod == QueryPlan.AccessMethod.FULL_SCAN && cacheable,
+        cost,
+        statistics != null,
+        nodes);
+  }
+
+  /**
+   * Chooses how the groups of a select on one table are computed: from the layout of the table
+   * file if only the rows are counted, by aggregating the segments of the file on several threads,
+   * or by aggregating the rows of the plan reading the table.
+   *
+   * @param tableName name of the table
+   * @param scan the plan reading the rows, without a limit
+   * @param schema schema of the table
+   * @param statistics statistics of the table, {@code null} if it was not analyzed
+   * @param fileLength length of the table file
+   * @param condition the condition, {@code null} if there is none
+   * @param description the aggregates and the columns the rows are grouped by
+   * @param groupBy the columns the rows are grouped by, {@code null} for one group
+   * @param countOnly whether the select only counts all rows of the table
+   * @param limit maximum number of groups, {@code -1} for all groups
+   * @param parallelism number of threads a parallel aggregation may use
+   * @return the cheapest plan
+   */
+  public static QueryPlan planTableAggregate(
+      String tableName,
+      QueryPlan scan,
+      TableSchema schema,
+      TableStatistics statistics,
+      long fileLength,
+      Expression condition,
+      String description,
+      List<String> groupBy,
+      boolean countOnly,
+      long limit,
+      int parallelism) {
+    double pages = Math.ceil(fileLength / PAGE_BYTES);
+    double groups = estimateGroups(groupBy, statistics, scan.getEstimatedRows());
+    List<QueryPlan.Node> nodes = new ArrayList<>();
+    if (countOnly) {
+      /* Line ends or slot arrays are counted, no row is decoded */
+      nodes.add(new QueryPlan.Node("Count rows of " + tableName + " from the file layout", 1));
+      if (limit >= 0) {
+        nodes.add(new QueryPlan.Node("Limit " + limit, Math.min(limit, 1)));
+      }
+      return new QueryPlan(
+          QueryPlan.AccessMethod.ROW_COUNT,
+          null,
+          false,
+          pages * SEQUENTIAL_PAGE_COST,
+          statistics != null,
+          nodes);
+    }
+
+    double serialCost = scan.getCost() + scan.getEstimatedRows() * AGGREGATE_ROW_COST;
+    boolean scansFile =
+        scan.getAccessMethod() == QueryPlan.AccessMethod.PARALLEL_SCAN
+            || (scan.getAccessMethod() == QueryPlan.AccessMethod.FULL_SCAN && !scan.isCached());
+    if (scansFile && ParallelScanCursor.isWorthwhile(fileLength, parallelism)) {
+      double tableRows =
+          statistics != null
+              ? statistics.estimateRowCount(fileLength)
+              : Math.ceil(fileLength / DEFAULT_ROW_BYTES);
+      /* Every thread aggregates its segments, merging the partial groups is cheap */
+      double parallelCost =
+          PARALLEL_SETUP_COST
+              + (pages * SEQUENTIAL_PAGE_COST
+                      + tableRows * (ROW_DECODE_COST + ROW_FILTER_COST)
+                      + scan.getEstimatedRows() * AGGREGATE_ROW_COST)
+                  / parallelism;
+      if (parallelCost < serialCost) {
+        nodes.add(
+            new QueryPlan.Node(
+                "Parallel aggregate on "
+                    + tableName
+                    + " with "
+                    + parallelism
+                    + " threads: "
+                    + description
+                    + (condition != null
+                        ? ", filter: " + Expression.format(condition, schema)
+                        : ""),
+                groups));
+        if (limit >= 0) {
+          nodes.add(new QueryPlan.Node("Limit " + limit, Math.min(limit, groups)));
+        }
+        return new QueryPlan(
+            QueryPlan.AccessMethod.PARALLEL_AGGREGATE,
+            null,
+            false,
+            parallelCost,
+            statistics != null,
+            nodes);
+      }
+    }
+    return planAggregate(scan, description, groups, limit);
+  }
+
+  /**
+   * Adds the grouping of the rows to the plan reading them.
+   *
+   * @param input the plan reading the rows, without a limit
+   * @param description the aggregates and the columns the rows are grouped by
+   * @param groups estimated number of groups
+   * @param limit maximum number of groups, {@code -1} for all groups
+   * @return the plan of the input followed by the aggregation
+   */
+  public static QueryPlan planAggregate(
+      QueryPlan input, String description, double groups, long limit) {
+    List<QueryPlan.Node> steps = new ArrayList<>();
+    steps.add(new QueryPlan.Node("Aggregate: " + description, groups));
+    if (limit >= 0) {
+      steps.add(new QueryPlan.Node("Limit " + limit, Math.min(limit, groups)));
+    }
+    return input.withSteps(
+        input.getCost() + input.getEstimatedRows() * AGGREGATE_ROW_COST, steps);
+  }
+
+  /**
+   * Adds the sorting of the rows to the plan reading them. With a limit only the first rows are
+   * kept in a heap; otherwise the rows are sorted in memory, or in sorted runs written to disk and
+   * merged if they do not fit into the memory budget.
+   *
+   * @param input the plan reading the rows, without a limit
+   * @param description the keys the rows are sorted by
+   * @param limit maximum number of rows, {@code -1} for all rows
+   * @param memoryBudget bytes the sort may keep in memory
+   * @param rowBytes estimated bytes of a row in its file
+   * @return the plan of the input followed by the sort
+   */
+  public static QueryPlan planSort(
+      QueryPlan input, String description, long limit, long memoryBudget, double rowBytes) {
+    double rows = input.getEstimatedRows();
+    double memory = rowBytes * SORT_MEMORY_FACTOR;
+    /* A heap of k rows costs log k comparisons for every row, a full sort log n */
+    double keptRows = limit >= 0 ? Math.min(limit, rows) : rows;
+    double comparisons = Math.max(1, Math.log(keptRows + 1) / Math.log(2));
+    double cost = input.getCost() + rows * comparisons * SORT_COMPARE_COST;
+    String method = "";
+    if (limit >= 0 && keptRows * memory <= memoryBudget) {
+      method = " (top-k " + limit + ")";
+    } else if (rows * memory > memoryBudget) {
+      /* Every row is written to a run and read back once */
+      cost += 2 * rows * rowBytes / PAGE_BYTES * SEQUENTIAL_PAGE_COST;
+      method = " (spills)";
+    }
+    List<QueryPlan.Node> steps = new ArrayList<>();
+    steps.add(new QueryPlan.Node("Sort: " + description + method, rows));
+    if (limit >= 0) {
+      steps.add(new QueryPlan.Node("Limit " + limit, keptRows));
+    }
+    return input.withSteps(cost, steps);
+  }
+
+  /**
+   * @param groupBy the columns the rows are grouped by, {@code null} for one group
+   * @param statistics statistics of the table, {@code null} if it was not analyzed
+   * @param rows estimated number of grouped rows
+   * @return estimated number of groups, the product of the distinct values of the columns
+   */
+  public static double estimateGroups(
+      List<String> groupBy, TableStatistics statistics, double rows) {
+    if (groupBy == null) {
+      return 1;
+    }
+    double groups = 1;
+    for (String column : groupBy) {
+      TableStatistics.ColumnStatistics columnStatistics =
+          statistics == null ? null : statistics.getColumn(column);
+      groups *=
+          columnStatistics == null
+              ? DEFAULT_DISTINCT_VALUES
+              /* Null is a group of its own */
+              : columnStatistics.distinctCount() + (columnStatistics.nullFraction() > 0 ? 1 : 0);
+    }
+    return Math.max(1, Math.min(groups, rows));
+  }
+
+  /**
+   * @param condition a condition, {@code null} for none
+   * @param schema schema of the table
+   * @param statistics statistics of the table, {@code null} if it was not analyzed
+   * @return estimated fraction of the rows satisfying the condition
+   */
+  public static double selectivity(
+      Expression condition, TableSchema schema, TableStatistics statistics) {
+    double selectivity =
+        switch (condition) {
+          case null -> 1;
+          case Expression.And and ->
+              selectivity(and.left(), schema, statistics)
+                  * selectivity(and.right(), schema, statistics);
+          case Expression.Or or -> {
+            double left = selectivity(or.left(), schema, statistics);
+            double right = selectivity(or.right(), schema, statistics);
+            yield left + right - left * right;
+          }
+          case Expression.Not not -> 1 - selectivity(not.operand(), schema, statistics);
+          case Expression.Comparison comparison ->
+              comparisonSelectivity(comparison, schema, statistics);
+          case Expression.In in -> {
+            TableStatistics.ColumnStatistics column = columnOf(in.operand(), schema, statistics);
+            double matched = 0;
+            for (Expression.Literal value : in.values()) {
+              matched += equalSelectivity(column, value.value());
+            }
+            yield in.negated() ? 1 - Math.min(1, matched) : matched;
+          }
+          case Expression.Between between -> {
+            TableStatistics.ColumnStatistics column =
+                columnOf(between.operand(), schema, statistics);
+            double matched =
+                column == null
+                    ? DEFAULT_INEQUALITY_SELECTIVITY * DEFAULT_INEQUALITY_SELECTIVITY
+                    : rangeSelectivity(
+                        column, valueOf(between.low()), true, valueOf(between.high()), true);
+            yield between.negated() ? 1 - matched : matched;
+          }
+          case Expression.Like like -> {
+            /* A pattern without wildcards is an equality */
+            double matched =
+                like.pattern().contains("%") || like.pattern().contains("_")
+                    ? DEFAULT_LIKE_SELECTIVITY
+                    : equalSelectivity(columnOf(like.operand(), schema, statistics), like.pattern());
+            yield like.negated() ? 1 - matched : matched;
+          }
+          case Expression.IsNull isNull -> {
+            TableStatistics.ColumnStatistics column =
+                columnOf(isNull.operand(), schema, statistics);
+            double matched =
+                column == null ? DEFAULT_NULL_SELECTIVITY : column.nullFraction();
+            yield isNull.negated() ? 1 - matched : matched;
+          }
+          default -> DEFAULT_INEQUALITY_SELECTIVITY;
+        };
+    return Math.clamp(selectivity, 0.0, 1.0);
+  }
+
+  private static double comparisonSelectivity(
+      Expression.Comparison comparison, TableSchema schema, TableStatistics statistics) {
+    Expression column = comparison.left();
+    Expression value = comparison.right();
+    Expression.ComparisonOperator operator = comparison.operator();
+    if (!isColumn(schema, column)) {
+      column = comparison.right();
+      value = comparison.left();
+      operator = operator.mirror();
+    }
+    if (!isColumn(schema, column)) {
+      /* Constants are true or false for all rows alike */
+      return 1;
+    }
+    TableStatistics.ColumnStatistics columnStatistics = columnOf(column, schema, statistics);
+    if (isColumn(schema, value)) {
+      if (operator != Expression.ComparisonOperator.EQUAL) {
+        return DEFAULT_INEQUALITY_SELECTIVITY;
+      }
+      TableStatistics.ColumnStatistics other = columnOf(value, schema, statistics);
+      if (columnStatistics == null || other == null) {
+        return DEFAULT_EQUAL_SELECTIVITY;
+      }
+      return 1.0 / Math.max(1, Math.max(columnStatistics.distinctCount(), other.distinctCount()));
+    }
+    String text = valueOf(value);
+    if (text == null) {
+      /* Comparisons with null are never true */
+      return 0;
+    }
+    if (columnStatistics == null) {
+      return switch (operator) {
+        case EQUAL -> DEFAULT_EQUAL_SELECTIVITY;
+        case NOT_EQUAL -> 1 - DEFAULT_EQUAL_SELECTIVITY;
+        default -> DEFAULT_INEQUALITY_SELECTIVITY;
+      };
+    }
+    return switch (operator) {
+      case EQUAL -> equalSelectivity(columnStatistics, text);
+      case NOT_EQUAL ->
+          1
+              - equalSelectivity(columnStatistics, text)
+              - columnStatistics.nullFraction();
+      case LESS -> rangeSelectivity(columnStatistics, null, false, text, false);
+      case LESS_OR_EQUAL -> rangeSelectivity(columnStatistics, null, false, text, true);
+      case GREATER -> rangeSelectivity(columnStatistics, text, false, null, false);
+      case GREATER_OR_EQUAL -> rangeSelectivity(columnStatistics, text, true, null, false);
+    };
+  }
+
+  /* Fraction of the rows an index range reads */
+  private static double rangeSelectivity(IndexRange indexRange, TableStatistics statistics) {
+    TableStatistics.ColumnStatistics column =
+        statistics == null ? null : statistics.getColumn(indexRange.index().getColumnName());
+    if (column == null) {
+      if (indexRange.low() != null && indexRange.low().equals(indexRange.high())) {
+        return DEFAULT_EQUAL_SELECTIVITY;
+      }
+      return indexRange.low() != null && indexRange.high() != null
+          ? DEFAULT_INEQUALITY_SELECTIVITY * DEFAULT_INEQUALITY_SELECTIVITY
+          : DEFAULT_INEQUALITY_SELECTIVITY;
+    }
+    return rangeSelectivity(
+        column,
+        indexRange.low(),
+        indexRange.lowInclusive(),
+        indexRange.high(),
+        indexRange.highInclusive());
+  }
+
+  private static double equalSelectivity(TableStatistics.ColumnStatistics column, String value) {
+    if (column == null) {
+      return DEFAULT_EQUAL_SELECTIVITY;
+    }
+    if (value == null || column.distinctCount() == 0 || isOutside(column, value)) {
+      return 0;
+    }
+    return nonNullFraction(column) / column.distinctCount();
+  }
+
+  /* Fraction of the rows between two values, null for an open end */
+  private static double rangeSelectivity(
+      TableStatistics.ColumnStatistics column,
+      String low,
+      boolean lowInclusive,
+      String high,
+      boolean highInclusive) {
+    if (low != null && low.equals(high)) {
+      return lowInclusive && highInclusive ? equalSelectivity(column, low) : 0;
+    }
+    if (column.distinctCount() == 0) {
+      return 0;
+    }
+    double[] histogram = column.histogram();
+    if (histogram.length < 2) {
+      /* Text is only known to be outside of the range of the column or not */
+      if ((low != null && column.max() != null && low.compareTo(column.max()) > 0)
+          || (high != null && column.min() != null && high.compareTo(column.min()) < 0)) {
+        return 0;
+      }
+      return low != null && high != null
+          ? DEFAULT_INEQUALITY_SELECTIVITY * DEFAULT_INEQUALITY_SELECTIVITY
+          : DEFAULT_INEQUALITY_SELECTIVITY;
+    }
+    double lowValue;
+    double highValue;
+    try {
+      lowValue = low == null ? Double.NEGATIVE_INFINITY : Double.parseDouble(low.trim());
+      highValue = high == null ? Double.POSITIVE_INFINITY : Double.parseDouble(high.trim());
+    } catch (NumberFormatException e) {
+      return DEFAULT_INEQUALITY_SELECTIVITY;
+    }
+    /* Values are assumed to be spread evenly within a bucket */
+    int buckets = histogram.length - 1;
+    double matched = 0;
+    for (int bucket = 0; bucket < buckets; bucket++) {
+      double start = histogram[bucket];
+      double end = histogram[bucket + 1];
+      if (end == start) {
+        matched += start >= lowValue && start <= highValue ? 1 : 0;
+      } else {
+        double overlap = (Math.min(highValue, end) - Math.max(lowValue, start)) / (end - start);
+        matched += Math.clamp(overlap, 0.0, 1.0);
+      }
+    }
+    return matched / buckets * nonNullFraction(column);
+  }
+
+  private static boolean isOutside(TableStatistics.ColumnStatistics column, String value) {
+    if (column.min() == null) {
+      return true;
+    }
+    if (column.type().isNumeric()) {
+      try {
+        double number = Double.parseDouble(value.trim());
+        return number < Double.parseDouble(column.min()) || number > Double.parseDouble(column.max());
+      } catch (NumberFormatException e) {
+        return false;
+      }
+    }
+    if (column.type() == ColumnType.VARCHAR) {
+      return value.compareTo(column.min()) < 0 || value.compareTo(column.max()) > 0;
+    }
+    return false;
+  }
+
+  private static double nonNullFraction(TableStatistics.ColumnStatistics column) {
+    return 1 - column.nullFraction();
+  }
+
+  private static boolean isColumn(TableSchema schema, Expression operand) {
+    return operand instanceof Expression.Column column && schema.indexOf(column.name()) != -1;
+  }
+
+  private static TableStatistics.ColumnStatistics columnOf(
+      Expression operand, TableSchema schema, TableStatistics statistics) {
+    if (statistics == null || !isColumn(schema, operand)) {
+      return null;
+    }
+    return statistics.getColumn(((Expression.Column) operand).name());
+  }
+
+  /* Text of a value operand, bare words included */
+  private static String valueOf(Expression operand) {
+    return operand instanceof Expression.Column column
+        ? column.name()
+        : ((Expression.Literal) operand).value();
+  }
+}
@@ -0,0 +1,159 @@
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The {@code QueryStats} class collects what one query costs while it runs: the time spent
+ * parsing it, executing it and in file I/O, the rows it scanned and returned, and the bytes it
+ * read and wrote. The stats of a query are attached to the thread executing it, and the storage
+ * code records into whatever stats the current thread is attached to through the static methods,
+ * which do nothing for threads without stats. Tasks working for a query on other threads attach
+ * its stats too.
+ */
+public class QueryStats {
+  private static final ThreadLocal<QueryStats> current = new ThreadLocal<>();
+
+  private Statement statement;
+  private long parseNanos;
+  private long executeNanos;
+  private long rowsReturned;
+  /* Added to by the threads of a parallel scan at the same time */
+  private final LongAdder ioNanos = new LongAdder();
+  private final LongAdder rowsScanned = new LongAdder();
+  private final LongAdder bytesRead = new LongAdder();
+  private final LongAdder bytesWritten = new LongAdder();
+
+  /**
+   * Attaches stats to the current thread.
+   *
+   * @param stats the stats, or {@code null} to detach the thread
+   * @return the stats the thread was attached to before, to be attached again afterwards
+   */
+  public static QueryStats attach(QueryStats stats) {
+    QueryStats previous = current.get();
+    if (stats == null) {
+      current.remove();
+    } else {
+      current.set(stats);
+    }
+    return previous;
+  }
+
+  /**
+   * @return the stats of the current thread, or {@code null} if it is not running a query
+   */
+  public static QueryStats current() {
+    return current.get();
+  }
+
+  /**
+   * @param statement the parsed query; only the first statement parsed for a query is kept
+   * @param nanos time spent parsing it
+   */
+  public static void recordParse(Statement statement, long nanos) {
+    QueryStats stats = current.get();
+    if (stats != null) {
+      if (stats.statement == null) {
+        stats.statement = statement;
+      }
+      stats.parseNanos += nanos;
+    }
+  }
+
+  /**
+   * @param nanos time spent executing the parsed query, or committing the transaction
+   */
+  public static void recordExecute(long nanos) {
+    QueryStats stats = current.get();
+    if (stats != null) {
+      stats.executeNanos += nanos;
+    }
+  }
+
+  /**
+   * @param bytes bytes read from a file
+   * @param nanos time spent reading them, 0 if it was not measured
+   */
+  public static void recordRead(long bytes, long nanos) {
+    QueryStats stats = current.get();
+    if (stats != null) {
+      stats.bytesRead.add(bytes);
+      stats.ioNanos.add(nanos);
+    }
+  }
+
+  /**
+   * @param bytes bytes written to a file
+   * @param nanos time spent writing them, 0 if it was not measured
+   */
+  public static void recordWrite(long bytes, long nanos) {
+    QueryStats stats = current.get();
+    if (stats != null) {
+      stats.bytesWritten.add(bytes);
+      stats.ioNanos.add(nanos);
+    }
+  }
+
+  /**
+   * @param nanos time spent waiting for files to reach the disk
+   */
+  public static void recordSync(long nanos) {
+    QueryStats stats = current.get();
+    if (stats != null) {
+      stats.ioNanos.add(nanos);
+    }
+  }
+
+  /**
+   * @param rows rows read from a table before they were filtered
+   */
+  public static void recordScanned(long rows) {
+    QueryStats stats = current.get();
+    if (stats != null) {
+      stats.rowsScanned.add(rows);
+    }
+  }
+
+  /**
+   * @param rows rows sent back to the user
+   */
+  public static void recordReturned(long rows) {
+    QueryStats stats = current.get();
+    if (stats != null) {
+      stats.rowsReturned += rows;
+    }
+  }
+
+  /**
+   * @return the parsed query, {@code null} if it could not be parsed
+   */
+  public Statement getStatement() {
+    return statement;
+  }
+
+  public long getParseNanos() {
+    return parseNanos;
+  }
+
+  public long getExecuteNanos() {
+    return executeNanos;
+  }
+
+  public long getIoNanos() {
+    return ioNanos.sum();
+  }
+
+  public long getRowsScanned() {
+    return rowsScanned.sum();
+  }
+
+  public long getRowsReturned() {
+    return rowsReturned;
+  }
+
+  public long getBytesRead() {
+    return bytesRead.sum();
+  }
+
+  public long getBytesWritten() {
+    return bytesWritten.sum();
+  }
+}
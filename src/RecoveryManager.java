@@ -0,0 +1,723 @@
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.stream.LongStream;
+
+/**
+ * The {@code RecoveryManager} class keeps the table files in step with the transaction log. It
+ * applies logged changes to the table files, during commits and when the log is replayed on
+ * startup, vacuums tables whose files hold too many unused bytes, and writes the checkpoints that
+ * let the log be trimmed. The {@link Database} validates and logs the changes; this class only
+ * carries them out, calling back into the database for its storages and indexes.
+ */
+public class RecoveryManager {
+  /* Compacted copy of a table, named after the vacuum that wrote it, until it replaces the table */
+  private static final String VACUUM_FILE_EXTENSION = ".vacuum";
+
+  private final Database database;
+  private final WriteAheadLog writeAheadLog;
+  private final VersionManager versionManager;
+  private final LockManager lockManager;
+  private final TableCache tableCache;
+  private final Object checkpointLock = new Object();
+  private final Set<String> dirtyTables = ConcurrentHashMap.newKeySet();
+  /* Bytes of deleted and moved rows in every table file since it was vacuumed or opened */
+  private final Map<String, Long> unusedBytes = new ConcurrentHashMap<>();
+  private final Set<String> vacuumScheduled = ConcurrentHashMap.newKeySet();
+  /* The state of the table files the last checkpoint file records */
+  private Checkpoint lastCheckpoint = new Checkpoint(0, Map.of(), Map.of(), Map.of());
+  private boolean recovering;
+  private final ScheduledExecutorService checkpointer =
+      Executors.newSingleThreadScheduledExecutor(
+          runnable -> {
+            Thread thread = new Thread(runnable, "checkpoint");
+            thread.setDaemon(true);
+            return thread;
+          });
+
+  /**
+   * @param database the database whose table files are kept
+   * @param writeAheadLog the transaction log
+   * @param versionManager the manager of the snapshots reading the tables
+   * @param lockManager the lock manager of the database
+   * @param tableCache the cache of table rows
+   */
+  public RecoveryManager(
+      Database database,
+      WriteAheadLog writeAheadLog,
+      VersionManager versionManager,
+      LockManager lockManager,
+      TableCache tableCache) {
+    this.database = database;
+    this.writeAheadLog = writeAheadLog;
+    this.versionManager = versionManager;
+    this.lockManager = lockManager;
+    this.tableCache = tableCache;
+  }
+
+  /** Writes checkpoints at a fixed interval, and one when the process exits. */
+  public void scheduleCheckpoints() {
+    checkpointer.scheduleWithFixedDelay(
+        this::checkpoint,
+        Constants.CHECKPOINT_INTERVAL_MILLIS,
+        Constants.CHECKPOINT_INTERVAL_MILLIS,
+        TimeUnit.MILLISECONDS);
+    /* After a clean exit the table files hold everything and the log starts empty */
+    Runtime.getRuntime().addShutdownHook(new Thread(this::checkpoint, "checkpoint-on-exit"));
+  }
+
+  /** Writes a checkpoint on the checkpoint thread, once the log has grown too long. */
+  public void checkpointInBackground() {
+    checkpointer.execute(this::checkpoint);
+  }
+
+  /**
+   * @return the lock held while a checkpoint is written, which a vacuum holds from its commit on,
+   *     as it replaces the table file the checkpoint records
+   */
+  public Object getCheckpointLock() {
+    return checkpointLock;
+  }
+
+  /**
+   * Applies a logged change of a statement of its own to the table files.
+   *
+   * @param record the change
+   * @param lsn sequence number of the transaction
+   * @param updateIndexes whether the indexes of the table are changed along with it
+   * @return whether the change was applied
+   */
+  public boolean apply(RedoRecord record, long lsn, boolean updateIndexes) {
+    return apply(record, lsn, updateIndexes, new HashMap<>());
+  }
+
+  /**
+   * Applies a logged change to the table files, during a commit or when replaying the log.
+   *
+   * @param record the change
+   * @param lsn sequence number of the transaction
+   * @param updateIndexes whether the indexes of the table are changed along with it
+   * @param moved new ids of the rows earlier updates of the transaction moved, by table and old
+   *     id, which the update adds the rows it moves to
+   * @return whether the change was applied
+   */
+  public boolean apply(
+      RedoRecord record, long lsn, boolean updateIndexes, Map<String, Map<Long, Long>> moved) {
+    return switch (record) {
+      case RedoRecord.CreateTable createTable -> applyCreateTable(createTable, lsn);
+      case RedoRecord.DropTable dropTable -> applyDropTable(dropTable);
+      case RedoRecord.Insert insert -> applyInsert(insert, lsn, updateIndexes);
+      case RedoRecord.Delete delete ->
+          applyDelete(
+              delete,
+              lsn,
+              updateIndexes,
+              moved.computeIfAbsent(delete.tableName().toLowerCase(), table -> new HashMap<>()));
+      case RedoRecord.Update update ->
+          applyUpdate(
+              update,
+              lsn,
+              updateIndexes,
+              moved.computeIfAbsent(update.tableName().toLowerCase(), table -> new HashMap<>()));
+      case RedoRecord.Vacuum vacuum -> applyVacuum(vacuum, lsn, updateIndexes) >= 0;
+    };
+  }
+
+  private boolean applyCreateTable(RedoRecord.CreateTable record, long lsn) {
+    /* When the log is replayed, a file left by an earlier attempt is replaced */
+    database.deleteTableFiles(record.tableName());
+    TableStorage tableStorage = database.newStorage(record.tableName(), record.storageFormat());
+    tableStorage.create(record.schema());
+    versionManager.tableCreated(record.tableName(), lsn);
+    tableCache.invalidate(record.tableName().toLowerCase());
+    dirtyTables.add(record.tableName().toLowerCase());
+    return true;
+  }
+
+  private boolean applyDropTable(RedoRecord.DropTable record) {
+    dirtyTables.remove(record.tableName().toLowerCase());
+    versionManager.tableDropped(record.tableName());
+    return database.deleteTableFiles(record.tableName());
+  }
+
+  private boolean applyInsert(RedoRecord.Insert record, long lsn, boolean updateIndexes) {
+    TableStorage tableStorage = database.openStorage(record.tableName());
+    if (tableStorage == null) {
+      System.out.println("Table " + record.tableName() + " does not exists!");
+      return false;
+    }
+    /* Snapshots taken before this transaction stop reading where its rows start */
+    try {
+      versionManager.beginAppend(record.tableName(), lsn, tableStorage.endRowId());
+    } catch (IOException e) {
+      System.out.println("Error appending data to file: " + tableStorage.getFile());
+      e.printStackTrace();
+      return false;
+    }
+    /* Only the new rows are written, the existing rows are left untouched */
+    long[] rowIds;
+    if (tableStorage.getFormat() == StorageFormat.PAGED) {
+      /* The last page may hold rows that are read while it is rewritten */
+      Lock latch = versionManager.latch(record.tableName()).writeLock();
+      latch.lock();
+      try {
+        rowIds = tableStorage.appendRows(record.rows());
+      } finally {
+        latch.unlock();
+      }
+    } else {
+      rowIds =
+          tableCache.appendRows(record.tableName().toLowerCase(), tableStorage, record.rows());
+    }
+    dirtyTables.add(record.tableName().toLowerCase());
+    if (rowIds.length != record.rows().size()) {
+      return false;
+    }
+    if (updateIndexes) {
+      database.updateIndexes(record.tableName(), tableStorage.readSchema(), record.rows(), rowIds);
+    }
+    return true;
+  }
+
+  private boolean applyDelete(
+      RedoRecord.Delete record, long lsn, boolean updateIndexes, Map<Long, Long> moved) {
+    long[] rowIds = movedRowIds(record.rowIds(), moved);
+    if (rowIds.length == 0) {
+      return true;
+    }
+    TableStorage tableStorage = database.openStorage(record.tableName());
+    if (tableStorage == null) {
+      System.out.println("Table " + record.tableName() + " does not exists!");
+      return false;
+    }
+    Lock latch = versionManager.latch(record.tableName()).writeLock();
+    try {
+      ColumnarTable rows = rowsChanging(record.tableName(), tableStorage, lsn, rowIds);
+      boolean indexed = updateIndexes && !database.indexesOf(record.tableName()).isEmpty();
+      boolean indexesUpdated =
+          indexed && removeFromIndexes(record.tableName(), tableStorage, rowIds, rows);
+      /* Only a byte or a slot per row is written, the rows stay where they are */
+      long unused;
+      latch.lock();
+      try {
+        unused = tableStorage.deleteRows(rowIds);
+      } finally {
+        latch.unlock();
+      }
+      rowsRewritten(record.tableName(), tableStorage, unused);
+      if (indexed && !indexesUpdated) {
+        database.rebuildIndexes(record.tableName());
+      }
+      return true;
+    } catch (IOException e) {
+      System.out.println("Error writing data to file: " + tableStorage.getFile());
+      e.printStackTrace();
+      return false;
+    }
+  }
+
+  private boolean applyUpdate(
+      RedoRecord.Update record, long lsn, boolean updateIndexes, Map<Long, Long> moved) {
+    long[] rowIds = movedRowIds(record.rowIds(), moved);
+    if (rowIds.length == 0) {
+      return true;
+    }
+    TableStorage tableStorage = database.openStorage(record.tableName());
+    if (tableStorage == null) {
+      System.out.println("Table " + record.tableName() + " does not exists!");
+      return false;
+    }
+    Lock latch = versionManager.latch(record.tableName()).writeLock();
+    try {
+      ColumnarTable rows = rowsChanging(record.tableName(), tableStorage, lsn, rowIds);
+      boolean indexed = updateIndexes && !database.indexesOf(record.tableName()).isEmpty();
+      boolean indexesUpdated =
+          indexed && removeFromIndexes(record.tableName(), tableStorage, rowIds, rows);
+      latch.lock();
+      boolean[] fitted;
+      try {
+        fitted = tableStorage.updateRows(rowIds, record.rows());
+      } finally {
+        latch.unlock();
+      }
+
+      /* Rows whose new values do not fit are deleted and appended, in the order of the record */
+      LongStream.Builder movedRowIds = LongStream.builder();
+      List<List<String>> movedRows = new ArrayList<>();
+      for (int i = 0; i < rowIds.length; i++) {
+        if (!fitted[i]) {
+          movedRowIds.add(rowIds[i]);
+          movedRows.add(record.rows().get(i));
+        }
+      }
+      long unused = 0;
+      if (!movedRows.isEmpty()) {
+        long[] appended;
+        latch.lock();
+        try {
+          unused = tableStorage.deleteRows(movedRowIds.build().toArray());
+          versionManager.beginAppend(record.tableName(), lsn, tableStorage.endRowId());
+          appended = tableStorage.appendRows(movedRows);
+        } finally {
+          latch.unlock();
+        }
+        if (appended.length != movedRows.size()) {
+          return false;
+        }
+        for (int i = 0, j = 0; i < rowIds.length; i++) {
+          if (!fitted[i]) {
+            rowIds[i] = appended[j++];
+            moved.put(record.rowIds()[i], rowIds[i]);
+          }
+        }
+      }
+      rowsRewritten(record.tableName(), tableStorage, unused);
+      if (indexesUpdated) {
+        database.updateIndexes(record.tableName(), tableStorage.readSchema(), record.rows(), rowIds);
+      } else if (indexed) {
+        database.rebuildIndexes(record.tableName());
+      }
+      return true;
+    } catch (IOException e) {
+      System.out.println("Error writing data to file: " + tableStorage.getFile());
+      e.printStackTrace();
+      return false;
+    }
+  }
+
+  /* The ids of the rows at the time of the change, for rows moved earlier in the transaction */
+  private static long[] movedRowIds(long[] rowIds, Map<Long, Long> moved) {
+    long[] current = rowIds.clone();
+    if (!moved.isEmpty()) {
+      for (int i = 0; i < current.length; i++) {
+        current[i] = moved.getOrDefault(current[i], current[i]);
+      }
+    }
+    return current;
+  }
+
+  /*
+   * Reads rows about to change in place and keeps their values for the snapshots that do not see
+   * the change. Returns null if the rows cannot all be read. When the log is replayed, no snapshot
+   * is in use and nothing is kept.
+   */
+  private ColumnarTable rowsChanging(
+      String tableName, TableStorage tableStorage, long lsn, long[] rowIds) {
+    /* Only this transaction changes the rows, they are read as they are in the file */
+    ColumnarTable rows =
+        tableStorage.fetchRows(rowIds, null, versionManager.currentRows(tableName));
+    if (rows == null || rows.getRowCount() != rowIds.length) {
+      return null;
+    }
+    if (!recovering) {
+      List<List<String>> values = new ArrayList<>(rowIds.length);
+      for (int row = 0; row < rowIds.length; row++) {
+        values.add(rows.formatRow(row));
+      }
+      versionManager.rowsChanged(tableName, lsn, rowIds, values);
+    }
+    return rows;
+  }
+
+  /*
+   * Takes the entries of rows about to change out of the indexes of their table. Returns false if
+   * the rows could not all be read or an entry is not found, the indexes then have to be rebuilt
+   * after the change.
+   */
+  private boolean removeFromIndexes(
+      String tableName, TableStorage tableStorage, long[] rowIds, ColumnarTable rows) {
+    TableSchema schema = tableStorage.readSchema();
+    if (schema == null || rows == null) {
+      return false;
+    }
+    boolean removed = true;
+    for (BPlusTreeIndex index : database.indexesOf(tableName)) {
+      int column = schema.indexOf(index.getColumnName());
+      try {
+        for (int i = 0; i < rowIds.length; i++) {
+          removed &= index.delete(rows, column, i, rowIds[i]);
+        }
+      } catch (IOException e) {
+        System.out.println("Failed to update index " + index.getIndexName());
+        e.printStackTrace();
+        removed = false;
+      }
+    }
+    return removed;
+  }
+
+  /*
+   * Drops the cached rows of a table whose rows were changed in place, and vacuums the table in the
+   * background once enough of its file is unused.
+   */
+  private void rowsRewritten(String tableName, TableStorage tableStorage, long unused) {
+    String name = tableName.toLowerCase();
+    tableCache.invalidate(name);
+    dirtyTables.add(name);
+    long tableUnused = unusedBytes.merge(name, unused, Long::sum);
+    if (!recovering
+        && tableUnused >= Constants.VACUUM_MIN_GARBAGE_BYTES
+        && tableUnused >= Constants.VACUUM_GARBAGE_RATIO * tableStorage.getFile().length()
+        && vacuumScheduled.add(name)) {
+      checkpointer.execute(() -> vacuumInBackground(name));
+    }
+  }
+
+  /**
+   * Copies the rows of a table into a file named after the vacuum and writes a checkpoint saying
+   * the table is complete up to the vacuum in that file before it replaces the table file. On
+   * startup, a copy the checkpoint names replaces the table file if it is still there, any other
+   * one is deleted, so the log is replayed onto the file it was written for either way.
+   *
+   * @param record the vacuum
+   * @param lsn sequence number of the vacuum
+   * @param updateIndexes whether the indexes of the table are rebuilt for the new row ids
+   * @return the bytes the file shrank by, -1 if it was not vacuumed
+   */
+  public long applyVacuum(RedoRecord.Vacuum record, long lsn, boolean updateIndexes) {
+    String tableName = record.tableName().toLowerCase();
+    TableStorage tableStorage = database.openStorage(tableName);
+    if (tableStorage == null) {
+      System.out.println("Table " + tableName + " does not exists!");
+      return -1;
+    }
+    File compacted = new File(vacuumPath(tableName, lsn));
+    synchronized (checkpointLock) {
+      Checkpoint previous = lastCheckpoint;
+      try {
+        long length = tableStorage.getFile().length();
+        tableStorage.compactTo(compacted);
+        Checkpoint next =
+            previous.withTable(
+                tableName,
+                tableStorage.getFormat(),
+                database.storageAt(compacted.getPath(), tableStorage.getFormat()).mark(),
+                lsn);
+        writeCheckpoint(next);
+        lastCheckpoint = next;
+        try {
+          Files.move(
+              compacted.toPath(),
+              tableStorage.getFile().toPath(),
+              StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+          /* The table file is the one the log goes on with */
+          writeCheckpoint(previous);
+          lastCheckpoint = previous;
+          throw e;
+        }
+        versionManager.tableCompacted(tableName);
+        tableCache.invalidate(tableName);
+        unusedBytes.remove(tableName);
+        if (updateIndexes) {
+          database.rebuildIndexes(tableName);
+        }
+        return length - tableStorage.getFile().length();
+      } catch (IOException e) {
+        System.out.println("Failed to vacuum table " + tableName);
+        e.printStackTrace();
+        compacted.delete();
+        return -1;
+      }
+    }
+  }
+
+  private static String vacuumPath(String tableName, long lsn) {
+    return "files/" + tableName.toLowerCase() + "." + lsn + VACUUM_FILE_EXTENSION;
+  }
+
+  /*
+   * Moves the copy written by a vacuum over its table file if the checkpoint says the table is
+   * complete in it, and deletes copies of vacuums that did not get that far.
+   */
+  private void finishVacuums(Checkpoint checkpoint) {
+    File[] copies =
+        new File("files").listFiles((directory, name) -> name.endsWith(VACUUM_FILE_EXTENSION));
+    if (copies == null) {
+      return;
+    }
+    for (File copy : copies) {
+      String name =
+          copy.getName().substring(0, copy.getName().length() - VACUUM_FILE_EXTENSION.length());
+      int separator = name.lastIndexOf('.');
+      String tableName = separator == -1 ? name : name.substring(0, separator);
+      Long tableLsn = checkpoint.tableLsns().get(tableName);
+      StorageFormat format = checkpoint.formats().get(tableName);
+      if (tableLsn != null
+          && format != null
+          && copy.getName().equals(new File(vacuumPath(tableName, tableLsn)).getName())) {
+        try {
+          Files.move(
+              copy.toPath(),
+              Path.of(database.newStorage(tableName, format).getFile().getPath()),
+              StandardCopyOption.ATOMIC_MOVE);
+          continue;
+        } catch (IOException e) {
+          throw new UncheckedIOException("Failed to finish the vacuum of " + tableName, e);
+        }
+      }
+      copy.delete();
+    }
+  }
+
+  /**
+   * Brings the table files to the state of the last committed transaction: every table changed by
+   * the transactions after the last checkpoint is cut back to its end at that checkpoint, then the
+   * transactions are applied again. Rows changed in place are changed again, as a row keeps its
+   * space, repeating the changes of a row ends with the same file. A table vacuumed after the
+   * checkpoint is only applied the transactions after its vacuum. Indexes of those tables are
+   * rebuilt rather than logged.
+   */
+  public void recover() {
+    Checkpoint checkpoint = readCheckpoint();
+    lastCheckpoint = checkpoint;
+    finishVacuums(checkpoint);
+    writeAheadLog.advanceTo(checkpoint.lsn());
+
+    List<WriteAheadLog.Entry> entries = new ArrayList<>();
+    Set<String> changedTables = new HashSet<>();
+    for (WriteAheadLog.Entry entry : writeAheadLog.getRecoveredEntries()) {
+      if (entry.lsn() > checkpoint.lsn()) {
+        entries.add(entry);
+        for (RedoRecord record : entry.records()) {
+          if (entry.lsn() > checkpoint.tableLsn(record.tableName())) {
+            changedTables.add(record.tableName().toLowerCase());
+          }
+        }
+      }
+    }
+    if (!entries.isEmpty()) {
+      /* Index files are not logged, replaying a create table would remove them with the table */
+      Map<String, List<BPlusTreeIndex>> tableIndexes = new HashMap<>();
+      for (String tableName : changedTables) {
+        tableIndexes.put(tableName, database.closeIndexes(tableName));
+      }
+      try {
+        for (String tableName : changedTables) {
+          TableStorage tableStorage = database.openStorage(tableName);
+          if (tableStorage != null
+              && checkpoint.marks().containsKey(tableName)
+              && tableStorage.getFormat() == checkpoint.formats().get(tableName)) {
+            tableStorage.restore(checkpoint.marks().get(tableName));
+          }
+        }
+      } catch (IOException e) {
+        throw new UncheckedIOException("Failed to restore the table files", e);
+      }
+      recovering = true;
+      for (WriteAheadLog.Entry entry : entries) {
+        Map<String, Map<Long, Long>> moved = new HashMap<>();
+        for (RedoRecord record : entry.records()) {
+          if (entry.lsn() > checkpoint.tableLsn(record.tableName())) {
+            apply(record, entry.lsn(), false, moved);
+          }
+        }
+      }
+      recovering = false;
+      for (String tableName : changedTables) {
+        database.rebuildIndexes(tableName, tableIndexes.get(tableName));
+      }
+      System.out.println("Recovered " + entries.size() + " committed transactions from the log");
+    }
+    versionManager.advanceTo(writeAheadLog.getLastLsn());
+    checkpoint();
+  }
+
+  /* A vacuum started by the rewrites of a table, on the checkpoint thread */
+  private void vacuumInBackground(String tableName) {
+    vacuumScheduled.remove(tableName);
+    /* A table older transactions read is vacuumed after a later rewrite */
+    if (database.openStorage(tableName) != null && versionManager.isQuiet(tableName)) {
+      database.vacuumTable(tableName);
+    }
+  }
+
+  /**
+   * Forces the table files changed since the last checkpoint and records up to which transaction
+   * they are complete, together with where every table ends, then trims the log. The database is
+   * locked for reading while the ends are taken, which waits for the transactions logged so far to
+   * be applied and holds back later ones; commits continue while the files are forced.
+   */
+  public void checkpoint() {
+    synchronized (checkpointLock) {
+      long lsn;
+      Set<String> tablesToSync = new HashSet<>();
+      Map<String, TableStorage> tables = new HashMap<>();
+      Map<String, long[]> marks = new HashMap<>();
+      Map<String, StorageFormat> formats = new HashMap<>();
+      try {
+        LockManager.Locks locks = lockManager.newLocks();
+        versionManager.getLock().lock();
+        try {
+          lsn = writeAheadLog.getLastLsn();
+          locks.add(LockManager.Resource.DATABASE, LockMode.S);
+        } finally {
+          versionManager.getLock().unlock();
+        }
+        try (locks) {
+          locks.awaitUninterruptibly();
+          tablesToSync.addAll(dirtyTables);
+          dirtyTables.clear();
+          for (String tableName : listTables()) {
+            TableStorage tableStorage = database.openStorage(tableName);
+            if (tableStorage != null) {
+              tables.put(tableName, tableStorage);
+              marks.put(tableName, tableStorage.mark());
+              formats.put(tableName, tableStorage.getFormat());
+            }
+          }
+        }
+        for (String tableName : tablesToSync) {
+          TableStorage tableStorage = tables.get(tableName);
+          if (tableStorage != null) {
+            tableStorage.sync();
+          }
+          for (BPlusTreeIndex index : new ArrayList<>(database.indexesOf(tableName))) {
+            try {
+              index.sync();
+            } catch (IOException e) {
+              /* A dropped index is closed, there is nothing left to force */
+            }
+          }
+        }
+
+        /* Tables vacuumed before are complete up to the checkpoint now as well */
+        Checkpoint checkpoint = new Checkpoint(lsn, formats, marks, Map.of());
+        writeCheckpoint(checkpoint);
+        lastCheckpoint = checkpoint;
+        writeAheadLog.discardUpTo(lsn);
+      } catch (IOException e) {
+        System.out.println("Checkpoint failed, the log is kept");
+        e.printStackTrace();
+        dirtyTables.addAll(tablesToSync);
+      }
+    }
+  }
+
+  /*
+   * What the checkpoint file records: the transaction up to which the table files are complete,
+   * where every table ends, in the format of its file, and the tables vacuumed after that
+   * transaction, which are complete up to their vacuum.
+   */
+  private record Checkpoint(
+      long lsn,
+      Map<String, StorageFormat> formats,
+      Map<String, long[]> marks,
+      Map<String, Long> tableLsns) {
+    private long tableLsn(String tableName) {
+      return Math.max(lsn, tableLsns.getOrDefault(tableName.toLowerCase(), 0L));
+    }
+
+    /* The checkpoint after a table was vacuumed into a file ending at the mark */
+    private Checkpoint withTable(
+        String tableName, StorageFormat format, long[] mark, long tableLsn) {
+      Map<String, StorageFormat> tableFormats = new HashMap<>(formats);
+      Map<String, long[]> tableMarks = new HashMap<>(marks);
+      Map<String, Long> vacuumed = new HashMap<>(tableLsns);
+      tableFormats.put(tableName, format);
+      tableMarks.put(tableName, mark);
+      vacuumed.put(tableName, tableLsn);
+      return new Checkpoint(lsn, tableFormats, tableMarks, vacuumed);
+    }
+  }
+
+  /* Replaces the checkpoint file at once, a crash leaves the old or the new one */
+  private static void writeCheckpoint(Checkpoint checkpoint) throws IOException {
+    Path checkpointPath = Path.of(Constants.CHECKPOINT_FILE_PATH);
+    Path temporary = checkpointPath.resolveSibling(checkpointPath.getFileName() + ".tmp");
+    try (FileOutputStream fileOutputStream = new FileOutputStream(temporary.toFile());
+        DataOutputStream output = new DataOutputStream(fileOutputStream)) {
+      output.writeLong(checkpoint.lsn());
+      output.writeInt(checkpoint.marks().size());
+      for (Map.Entry<String, long[]> mark : checkpoint.marks().entrySet()) {
+        output.writeUTF(mark.getKey());
+        output.writeByte(checkpoint.formats().get(mark.getKey()).ordinal());
+        output.writeInt(mark.getValue().length);
+        for (long value : mark.getValue()) {
+          output.writeLong(value);
+        }
+      }
+      /* Checkpoints written before vacuums existed end here */
+      output.writeInt(checkpoint.tableLsns().size());
+      for (Map.Entry<String, Long> tableLsn : checkpoint.tableLsns().entrySet()) {
+        output.writeUTF(tableLsn.getKey());
+        output.writeLong(tableLsn.getValue());
+      }
+      output.flush();
+      fileOutputStream.getFD().sync();
+    }
+    Files.move(temporary, checkpointPath, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  private static Checkpoint readCheckpoint() {
+    File checkpointFile = new File(Constants.CHECKPOINT_FILE_PATH);
+    if (!checkpointFile.exists()) {
+      return new Checkpoint(0, Map.of(), Map.of(), Map.of());
+    }
+    try (DataInputStream input = new DataInputStream(new FileInputStream(checkpointFile))) {
+      long lsn = input.readLong();
+      Map<String, StorageFormat> formats = new HashMap<>();
+      Map<String, long[]> marks = new HashMap<>();
+      int tableCount = input.readInt();
+      for (int i = 0; i < tableCount; i++) {
+        String tableName = input.readUTF();
+        formats.put(tableName, StorageFormat.values()[input.readByte()]);
+        long[] mark = new long[input.readInt()];
+        for (int j = 0; j < mark.length; j++) {
+          mark[j] = input.readLong();
+        }
+        marks.put(tableName, mark);
+      }
+      Map<String, Long> tableLsns = new HashMap<>();
+      if (input.available() > 0) {
+        int vacuumedCount = input.readInt();
+        for (int i = 0; i < vacuumedCount; i++) {
+          tableLsns.put(input.readUTF(), input.readLong());
+        }
+      }
+      return new Checkpoint(lsn, formats, marks, tableLsns);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to read the checkpoint", e);
+    }
+  }
+
+  /* Names of all tables, the user store is not a table */
+  private List<String> listTables() {
+    List<String> tableNames = new ArrayList<>();
+    File[] files = new File("files").listFiles();
+    if (files == null) {
+      return tableNames;
+    }
+    for (File file : files) {
+      if (file.getPath().equals(new File(Constants.USERS_FILE_PATH).getPath())) {
+        continue;
+      }
+      for (StorageFormat storageFormat : StorageFormat.values()) {
+        String name = file.getName();
+        if (name.endsWith(storageFormat.getFileExtension())) {
+          tableNames.add(
+              name.substring(0, name.length() - storageFormat.getFileExtension().length()));
+        }
+      }
+    }
+    return tableNames;
+  }
+}
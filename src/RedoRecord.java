@@ -0,0 +1,216 @@
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The {@code RedoRecord} interface describes a change to the table files that is written to the
+ * {@link WriteAheadLog} before it is applied, so that it can be applied again after a crash.
+ */
+public sealed interface RedoRecord {
+  /**
+   * @return name of the changed table
+   */
+  String tableName();
+
+  /**
+   * Writes the record in the binary format of the log.
+   *
+   * @param output the log entry being written
+   * @throws IOException if the record cannot be written
+   */
+  void write(DataOutputStream output) throws IOException;
+
+  /**
+   * Reads a record written by {@link #write(DataOutputStream)}.
+   *
+   * @param input the log entry being read
+   * @return the record
+   * @throws IOException if the record is malformed
+   */
+  static RedoRecord read(DataInputStream input) throws IOException {
+    byte type = input.readByte();
+    String tableName = readString(input);
+    switch (type) {
+      case CreateTable.TYPE -> {
+        StorageFormat storageFormat = StorageFormat.values()[input.readByte()];
+        int columnCount = input.readInt();
+        List<String> names = new ArrayList<>(columnCount);
+        List<ColumnType> types = new ArrayList<>(columnCount);
+        for (int i = 0; i < columnCount; i++) {
+          names.add(readString(input));
+          types.add(ColumnType.values()[input.readByte()]);
+        }
+        return new CreateTable(tableName, storageFormat, new TableSchema(names, types));
+      }
+      case DropTable.TYPE -> {
+        return new DropTable(tableName);
+      }
+      case Insert.TYPE -> {
+        return new Insert(tableName, readRows(input));
+      }
+      case Delete.TYPE -> {
+        return new Delete(tableName, readRowIds(input));
+      }
+      case Update.TYPE -> {
+        long[] rowIds = readRowIds(input);
+        return new Update(tableName, rowIds, readRows(input));
+      }
+      case Vacuum.TYPE -> {
+        return new Vacuum(tableName);
+      }
+      default -> throw new IOException("Unknown redo record type " + type);
+    }
+  }
+
+  /* Strings are written as a length and UTF-8 bytes, values may exceed the limit of writeUTF; a
+   * null value has the length -1 */
+  private static void writeString(DataOutputStream output, String value) throws IOException {
+    if (value == null) {
+      output.writeInt(-1);
+      return;
+    }
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    output.writeInt(bytes.length);
+    output.write(bytes);
+  }
+
+  private static String readString(DataInputStream input) throws IOException {
+    int length = input.readInt();
+    if (length == -1) {
+      return null;
+    }
+    byte[] bytes = new byte[length];
+    input.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static void writeRows(DataOutputStream output, List<List<String>> rows)
+      throws IOException {
+    output.writeInt(rows.size());
+    for (List<String> row : rows) {
+      output.writeInt(row.size());
+      for (String value : row) {
+        writeString(output, value);
+      }
+    }
+  }
+
+  private static List<List<String>> readRows(DataInputStream input) throws IOException {
+    int rowCount = input.readInt();
+    List<List<String>> rows = new ArrayList<>(rowCount);
+    for (int i = 0; i < rowCount; i++) {
+      int valueCount = input.readInt();
+      List<String> row = new ArrayList<>(valueCount);
+      for (int j = 0; j < valueCount; j++) {
+        row.add(readString(input));
+      }
+      rows.add(row);
+    }
+    return rows;
+  }
+
+  private static void writeRowIds(DataOutputStream output, long[] rowIds) throws IOException {
+    output.writeInt(rowIds.length);
+    for (long rowId : rowIds) {
+      output.writeLong(rowId);
+    }
+  }
+
+  private static long[] readRowIds(DataInputStream input) throws IOException {
+    long[] rowIds = new long[input.readInt()];
+    for (int i = 0; i < rowIds.length; i++) {
+      rowIds[i] = input.readLong();
+    }
+    return rowIds;
+  }
+
+  record CreateTable(String tableName, StorageFormat storageFormat, TableSchema schema)
+      implements RedoRecord {
+    private static final byte TYPE = 1;
+
+    @Override
+    public void write(DataOutputStream output) throws IOException {
+      output.writeByte(TYPE);
+      writeString(output, tableName);
+      output.writeByte(storageFormat.ordinal());
+      output.writeInt(schema.getColumnCount());
+      for (int i = 0; i < schema.getColumnCount(); i++) {
+        writeString(output, schema.getColumnName(i));
+        output.writeByte(schema.getColumnType(i).ordinal());
+      }
+    }
+  }
+
+  record DropTable(String tableName) implements RedoRecord {
+    private static final byte TYPE = 2;
+
+    @Override
+    public void write(DataOutputStream output) throws IOException {
+      output.writeByte(TYPE);
+      writeString(output, tableName);
+    }
+  }
+
+  /**
+   * Rows appended to a table, already validated against its schema.
+   */
+  record Insert(String tableName, List<List<String>> rows) implements RedoRecord {
+    private static final byte TYPE = 3;
+
+    @Override
+    public void write(DataOutputStream output) throws IOException {
+      output.writeByte(TYPE);
+      writeString(output, tableName);
+      writeRows(output, rows);
+    }
+  }
+
+  /**
+   * Rows deleted where they are, named by the ids they had in the snapshot of the transaction.
+   * Deleting a row twice changes nothing, so the record can be applied again after a crash.
+   */
+  record Delete(String tableName, long[] rowIds) implements RedoRecord {
+    private static final byte TYPE = 4;
+
+    @Override
+    public void write(DataOutputStream output) throws IOException {
+      output.writeByte(TYPE);
+      writeString(output, tableName);
+      writeRowIds(output, rowIds);
+    }
+  }
+
+  /**
+   * New values of rows, named by the ids they had in the snapshot of the transaction. A row that
+   * does not fit into its old space is deleted and appended again, which depends only on that
+   * space, so applying the record again after a crash makes the same choices.
+   */
+  record Update(String tableName, long[] rowIds, List<List<String>> rows) implements RedoRecord {
+    private static final byte TYPE = 5;
+
+    @Override
+    public void write(DataOutputStream output) throws IOException {
+      output.writeByte(TYPE);
+      writeString(output, tableName);
+      writeRowIds(output, rowIds);
+      writeRows(output, rows);
+    }
+  }
+
+  /**
+   * The table file replaced by a copy without deleted rows. The copy is made next to the file and
+   * moved over it only after the checkpoint names it, see {@link Database}.
+   */
+  record Vacuum(String tableName) implements RedoRecord {
+    private static final byte TYPE = 6;
+
+    @Override
+    public void write(DataOutputStream output) throws IOException {
+      output.writeByte(TYPE);
+      writeString(output, tableName);
+    }
+  }
+}
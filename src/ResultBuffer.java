@@ -0,0 +1,207 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * The {@code ResultBuffer} class collects the bytes a {@link ResultSink} writes in a large buffer
+ * and hands them to the output stream a buffer at a time, or when it is flushed. Numbers and ASCII
+ * text are encoded straight into the buffer, without a string or a byte array per value.
+ *
+ * <p>Buffers are taken from a small pool when a buffer is opened and returned to it when it is
+ * closed, so results do not allocate a new buffer every time and idle sessions hold none.
+ *
+ * <p>Like a {@link java.io.PrintStream}, a buffer does not throw when the output stream fails: the
+ * rest of the output is dropped and {@link #checkError()} tells about it.
+ */
+public final class ResultBuffer implements AutoCloseable {
+  private static final int BUFFER_SIZE = 64 * 1024;
+  private static final int POOLED_BUFFERS = 8;
+  private static final Queue<byte[]> pool = new ConcurrentLinkedQueue<>();
+
+  /* Digits of a long, with room for the sign */
+  private static final int MAX_LONG_DIGITS = 20;
+
+  private final OutputStream outputStream;
+  private byte[] buffer;
+  private int position;
+  private boolean error;
+
+  private ResultBuffer(OutputStream outputStream, byte[] buffer) {
+    this.outputStream = outputStream;
+    this.buffer = buffer;
+  }
+
+  /**
+   * @param outputStream receives the bytes, it is flushed but not closed by the buffer
+   * @return a buffer writing to the stream
+   */
+  public static ResultBuffer open(OutputStream outputStream) {
+    byte[] buffer = pool.poll();
+    return new ResultBuffer(outputStream, buffer != null ? buffer : new byte[BUFFER_SIZE]);
+  }
+
+  /**
+   * @param b the byte, only its lowest 8 bits are written
+   */
+  public void writeByte(int b) {
+    if (position == buffer.length) {
+      drain();
+    }
+    buffer[position++] = (byte) b;
+  }
+
+  /**
+   * @param bytes bytes to be written
+   */
+  public void writeBytes(byte[] bytes) {
+    int offset = 0;
+    while (offset < bytes.length) {
+      if (position == buffer.length) {
+        drain();
+      }
+      int count = Math.min(bytes.length - offset, buffer.length - position);
+      System.arraycopy(bytes, offset, buffer, position, count);
+      position += count;
+      offset += count;
+    }
+  }
+
+  /**
+   * Writes text as UTF-8. Text that is ASCII, as most values are, is copied without being encoded
+   * into a new array first.
+   *
+   * @param text the text
+   */
+  public void writeText(String text) {
+    int length = text.length();
+    if (buffer.length - position < length) {
+      drain();
+    }
+    if (length <= buffer.length - position) {
+      int start = position;
+      for (int i = 0; i < length; i++) {
+        char c = text.charAt(i);
+        if (c >= 0x80) {
+          /* Not ASCII, the copied part is dropped and the text encoded as a whole */
+          position = start;
+          writeBytes(text.getBytes(StandardCharsets.UTF_8));
+          return;
+        }
+        buffer[position++] = (byte) c;
+      }
+      return;
+    }
+    writeBytes(text.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * @param value number written as decimal digits
+   */
+  public void writeDecimal(long value) {
+    if (buffer.length - position < MAX_LONG_DIGITS) {
+      drain();
+    }
+    if (value == Long.MIN_VALUE) {
+      writeText(Long.toString(value));
+      return;
+    }
+    if (value < 0) {
+      buffer[position++] = '-';
+      value = -value;
+    }
+    int digits = 1;
+    for (long rest = value / 10; rest != 0; rest /= 10) {
+      digits++;
+    }
+    for (int i = position + digits - 1; i >= position; i--) {
+      buffer[i] = (byte) ('0' + value % 10);
+      value /= 10;
+    }
+    position += digits;
+  }
+
+  /**
+   * Writes a value that is not null the way {@link ColumnarTable#format(int, int)} formats it.
+   *
+   * @param table table holding the value
+   * @param type type of the column
+   * @param column column of the value
+   * @param row row of the value
+   */
+  public void writeValue(ColumnarTable table, ColumnType type, int column, int row) {
+    switch (type) {
+      case INT -> writeDecimal(table.getInt(column, row));
+      case BIGINT -> writeDecimal(table.getLong(column, row));
+      case DOUBLE -> writeText(Double.toString(table.getDouble(column, row)));
+      case BOOLEAN -> writeText(table.getBoolean(column, row) ? "true" : "false");
+      case VARCHAR -> writeText(table.getString(column, row));
+    }
+  }
+
+  /**
+   * @param value number written as 4 bytes, big-endian
+   */
+  public void writeInt(int value) {
+    if (buffer.length - position < 4) {
+      drain();
+    }
+    buffer[position++] = (byte) (value >>> 24);
+    buffer[position++] = (byte) (value >>> 16);
+    buffer[position++] = (byte) (value >>> 8);
+    buffer[position++] = (byte) value;
+  }
+
+  /**
+   * @param value number written as 8 bytes, big-endian
+   */
+  public void writeLong(long value) {
+    writeInt((int) (value >>> 32));
+    writeInt((int) value);
+  }
+
+  /** Hands the buffered bytes to the output stream and flushes it. */
+  public void flush() {
+    drain();
+    if (error) {
+      return;
+    }
+    try {
+      outputStream.flush();
+    } catch (IOException e) {
+      error = true;
+    }
+  }
+
+  /**
+   * @return whether writing to the output stream failed
+   */
+  public boolean checkError() {
+    return error;
+  }
+
+  /** Flushes the buffer and returns it to the pool. */
+  @Override
+  public void close() {
+    if (buffer == null) {
+      return;
+    }
+    flush();
+    if (pool.size() < POOLED_BUFFERS) {
+      pool.offer(buffer);
+    }
+    buffer = null;
+  }
+
+  private void drain() {
+    if (position > 0 && !error) {
+      try {
+        outputStream.write(buffer, 0, position);
+      } catch (IOException e) {
+        error = true;
+      }
+    }
+    position = 0;
+  }
+}
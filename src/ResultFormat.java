@@ -0,0 +1,46 @@
+import java.io.OutputStream;
+
+/**
+ * The {@code ResultFormat} enum lists the formats query results can be written in, chosen for a
+ * session with {@code SET OUTPUT FORMAT}.
+ */
+public enum ResultFormat {
+  /* Columns separated by bars and tabs, for people reading the console */
+  TABLE,
+  /* Comma-separated values with a header line, values quoted as needed */
+  CSV,
+  /* Tab-separated values with a header line, special characters escaped */
+  TSV,
+  /* One JSON object per row */
+  JSON,
+  /* Typed binary rows, for programs reading the result over the server protocol */
+  BINARY;
+
+  /**
+   * @param outputStream receives the result
+   * @return a sink writing results in this format
+   */
+  public ResultSink open(OutputStream outputStream) {
+    ResultBuffer buffer = ResultBuffer.open(outputStream);
+    return switch (this) {
+      case TABLE -> new TextTableResultSinkImplementation(buffer);
+      case CSV -> new DelimitedResultSinkImplementation(buffer, ',');
+      case TSV -> new DelimitedResultSinkImplementation(buffer, '\t');
+      case JSON -> new JsonLinesResultSinkImplementation(buffer);
+      case BINARY -> new BinaryResultSinkImplementation(buffer);
+    };
+  }
+
+  /**
+   * @param name name of the format, case-insensitive
+   * @return the format, or {@code null} if there is no format with this name
+   */
+  public static ResultFormat fromName(String name) {
+    for (ResultFormat format : values()) {
+      if (format.name().equalsIgnoreCase(name.trim())) {
+        return format;
+      }
+    }
+    return null;
+  }
+}
@@ -0,0 +1,28 @@
+/**
+ * The {@code ResultSink} interface defines how the rows of a query result are written to their
+ * reader, in one of the {@link ResultFormat}s. A sink writes through a {@link ResultBuffer}, so
+ * the output stream sees a few large writes instead of one per value, and nothing reaches it
+ * before the buffer fills up, {@link #flush()} is called or the sink is closed.
+ */
+public interface ResultSink extends AutoCloseable {
+  /**
+   * Writes what comes before the rows, such as the column names. Called once, first.
+   *
+   * @param schema schema of the rows
+   * @param columns the columns of the schema to be written, in order
+   */
+  void writeHeader(TableSchema schema, int[] columns);
+
+  /**
+   * @param table batch holding the row
+   * @param row position of the row in the batch
+   */
+  void writeRow(ColumnarTable table, int row);
+
+  /** Hands everything written so far to the output stream. */
+  void flush();
+
+  /** Writes what comes after the rows, flushes and releases the buffer. */
+  @Override
+  void close();
+}
@@ -0,0 +1,204 @@
+import java.io.PrintStream;
+import java.util.Locale;
+
+/**
+ * The {@code RoutingPrintStream} class replaces {@code System.out} when several sessions run at
+ * once, so that the messages and result tables a statement prints reach the client of the session
+ * executing it. Every thread prints to the stream it has routed to with {@link #route(PrintStream)},
+ * or to the console if it has not.
+ *
+ * <p>All printing methods are forwarded without taking a lock of this stream, so sessions do not
+ * wait for each other while they print.
+ */
+public class RoutingPrintStream extends PrintStream {
+  private final PrintStream console;
+  private final ThreadLocal<PrintStream> target = new ThreadLocal<>();
+
+  /**
+   * @param console stream of the threads that are not routed
+   */
+  public RoutingPrintStream(PrintStream console) {
+    super(console);
+    this.console = console;
+  }
+
+  /**
+   * Routes what the current thread prints.
+   *
+   * @param stream the stream of the current thread, or {@code null} for the console
+   */
+  public void route(PrintStream stream) {
+    if (stream == null) {
+      target.remove();
+    } else {
+      target.set(stream);
+    }
+  }
+
+  private PrintStream target() {
+    PrintStream stream = target.get();
+    return stream == null ? console : stream;
+  }
+
+  @Override
+  public void flush() {
+    target().flush();
+  }
+
+  @Override
+  public void close() {
+    target().close();
+  }
+
+  @Override
+  public boolean checkError() {
+    return target().checkError();
+  }
+
+  @Override
+  public void write(int b) {
+    target().write(b);
+  }
+
+  @Override
+  public void write(byte[] buf, int off, int len) {
+    target().write(buf, off, len);
+  }
+
+  @Override
+  public void print(boolean b) {
+    target().print(b);
+  }
+
+  @Override
+  public void print(char c) {
+    target().print(c);
+  }
+
+  @Override
+  public void print(int i) {
+    target().print(i);
+  }
+
+  @Override
+  public void print(long l) {
+    target().print(l);
+  }
+
+  @Override
+  public void print(float f) {
+    target().print(f);
+  }
+
+  @Override
+  public void print(double d) {
+    target().print(d);
+  }
+
+  @Override
+  public void print(char[] s) {
+    target().print(s);
+  }
+
+  @Override
+  public void print(String s) {
+    target().print(s);
+  }
+
+  @Override
+  public void print(Object obj) {
+    target().print(obj);
+  }
+
+  @Override
+  public void println() {
+    target().println();
+  }
+
+  @Override
+  public void println(boolean x) {
+    target().println(x);
+  }
+
+  @Override
+  public void println(char x) {
+    target().println(x);
+  }
+
+  @Override
+  public void println(int x) {
+    target().println(x);
+  }
+
+  @Override
+  public void println(long x) {
+    target().println(x);
+  }
+
+  @Override
+  public void println(float x) {
+    target().println(x);
+  }
+
+  @Override
+  public void println(double x) {
+    target().println(x);
+  }
+
+  @Override
+  public void println(char[] x) {
+    target().println(x);
+  }
+
+  @Override
+  public void println(String x) {
+    target().println(x);
+  }
+
+  @Override
+  public void println(Object x) {
+    target().println(x);
+  }
+
+  @Override
+  public PrintStream printf(String format, Object... args) {
+    target().printf(format, args);
+    return this;
+  }
+
+  @Override
+  public PrintStream printf(Locale l, String format, Object... args) {
+    target().printf(l, format, args);
+    return this;
+  }
+
+  @Override
+  public PrintStream format(String format, Object... args) {
+    target().format(format, args);
+    return this;
+  }
+
+  @Override
+  public PrintStream format(Locale l, String format, Object... args) {
+    target().format(l, format, args);
+    return this;
+  }
+
+  @Override
+  public PrintStream append(CharSequence csq) {
+    target().append(csq);
+    return this;
+  }
+
+  @Override
+  public PrintStream append(CharSequence csq, int start, int end) {
+    target().append(csq, start, end);
+    return this;
+  }
+
+  @Override
+  public PrintStream append(char c) {
+    target().append(c);
+    return this;
+  }
+}
@@ -0,0 +1,59 @@
+/**
+ * The {@code RowComparator} class compares rows by the keys of an {@code ORDER BY}, each ascending
+ * or descending. Null is larger than every value, so it comes last in ascending order and first in
+ * descending order.
+ */
+public class RowComparator {
+  private final int[] columns;
+  private final ColumnType[] types;
+  private final boolean[] descending;
+
+  /**
+   * @param schema schema of the compared rows
+   * @param columns the key columns, the most significant first
+   * @param descending whether each key is sorted in descending order
+   */
+  public RowComparator(TableSchema schema, int[] columns, boolean[] descending) {
+    this.columns = columns;
+    this.descending = descending;
+    this.types = new ColumnType[columns.length];
+    for (int i = 0; i < columns.length; i++) {
+      types[i] = schema.getColumnType(columns[i]);
+    }
+  }
+
+  /**
+   * @return negative if the left row comes first, positive if the right row comes first, 0 if
+   *     their keys are equal
+   */
+  public int compare(ColumnarTable left, int leftRow, ColumnarTable right, int rightRow) {
+    for (int i = 0; i < columns.length; i++) {
+      int column = columns[i];
+      boolean leftNull = left.isNull(column, leftRow);
+      boolean rightNull = right.isNull(column, rightRow);
+      int comparison;
+      if (leftNull || rightNull) {
+        comparison = Boolean.compare(leftNull, rightNull);
+      } else {
+        comparison =
+            switch (types[i]) {
+              case INT ->
+                  Integer.compare(left.getInt(column, leftRow), right.getInt(column, rightRow));
+              case BIGINT ->
+                  Long.compare(left.getLong(column, leftRow), right.getLong(column, rightRow));
+              case DOUBLE ->
+                  Double.compare(left.getDouble(column, leftRow), right.getDouble(column, rightRow));
+              case BOOLEAN ->
+                  Boolean.compare(
+                      left.getBoolean(column, leftRow), right.getBoolean(column, rightRow));
+              case VARCHAR ->
+                  left.getString(column, leftRow).compareTo(right.getString(column, rightRow));
+            };
+      }
+      if (comparison != 0) {
+        return descending[i] ? -comparison : comparison;
+      }
+    }
+    return 0;
+  }
+}
@@ -0,0 +1,41 @@
+/**
+ * The {@code RowCursor} interface is a pull-based stream of rows. Every call to {@link #next()}
+ * moves to the next row, which is read from {@link #getTable()} at position {@link #getRow()}.
+ * Cursors read their source incrementally in batches, so the rows behind them never have to be in
+ * memory at once, and reading stops as soon as the consumer stops pulling.
+ */
+public interface RowCursor extends AutoCloseable {
+  /**
+   * @return the columns of the rows
+   */
+  TableSchema getSchema();
+
+  /**
+   * Moves to the next row.
+   *
+   * @return {@code false} if there are no more rows
+   */
+  boolean next();
+
+  /**
+   * @return the batch holding the current row, valid until the next call to {@link #next()}
+   */
+  ColumnarTable getTable();
+
+  /**
+   * @return position of the current row in {@link #getTable()}
+   */
+  int getRow();
+
+  /**
+   * @return id of the current row in its table file, or -1 if the cursor does not read a table
+   *     file
+   */
+  default long getRowId() {
+    return -1;
+  }
+
+  /** Releases the files the cursor reads from. */
+  @Override
+  void close();
+}
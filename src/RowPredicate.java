@@ -0,0 +1,17 @@
+/**
+ * The {@code RowPredicate} interface is a compiled WHERE condition, tested against single rows of a
+ * {@link ColumnarTable}. Column positions and literal values are resolved when the predicate is
+ * compiled, not per row.
+ */
+@FunctionalInterface
+public interface RowPredicate {
+  /** Accepts every row, used when a query has no condition. */
+  RowPredicate ALWAYS_TRUE = (table, row) -> true;
+
+  /**
+   * @param table the table holding the row
+   * @param row position of the row in the table
+   * @return whether the row satisfies the condition
+   */
+  boolean test(ColumnarTable table, int row);
+}
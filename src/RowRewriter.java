@@ -0,0 +1,349 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.LongStream;
+
+/**
+ * The {@code RowRewriter} class finds the rows an update or delete changes. It reads them in a
+ * snapshot, through an index if the planner would use one for a select with the condition, checks
+ * the new values against the schema and turns the change into a record naming exactly the rows
+ * read, so the change stays right whatever is committed after the snapshot. Updates and deletes of
+ * a transaction also change the rows inserted earlier in it, which are not in the table file yet.
+ */
+public class RowRewriter {
+  private final Database database;
+  private final VersionManager versionManager;
+  private final RecoveryManager recoveryManager;
+
+  /**
+   * @param database the database whose tables are rewritten
+   * @param versionManager the manager of the snapshots reading the tables
+   * @param recoveryManager the manager applying committed changes to the table files
+   */
+  public RowRewriter(
+      Database database, VersionManager versionManager, RecoveryManager recoveryManager) {
+    this.database = database;
+    this.versionManager = versionManager;
+    this.recoveryManager = recoveryManager;
+  }
+
+  /**
+   * Finds the rows of an update or delete in a snapshot and commits the change of exactly them.
+   *
+   * @param statement the update or delete
+   * @return the committed change, or {@code null} if it failed
+   */
+  public RedoRecord rewrite(Statement statement) {
+    RedoRecord[] record = new RedoRecord[1];
+    Snapshot[] snapshot = new Snapshot[1];
+    database.withSnapshot(
+        tableNameOf(statement),
+        readSnapshot -> {
+          try {
+            record[0] = recordOf(statement, readSnapshot, new HashMap<>());
+            snapshot[0] = versionManager.keep(readSnapshot);
+          } catch (IncorrectQueryException e) {
+            System.out.println(e.getMessage());
+          }
+        });
+    if (record[0] == null) {
+      return null;
+    }
+    boolean committed;
+    try {
+      /* A change of no rows does not have to keep other rewrites of the table from committing */
+      committed =
+          rowCountOf(record[0]) == 0
+              || database.commit(
+                  List.of(record[0]),
+                  snapshot[0],
+                  lsn -> recoveryManager.apply(record[0], lsn, true));
+    } finally {
+      versionManager.release(snapshot[0]);
+    }
+    if (!committed) {
+      return null;
+    }
+    System.out.println(TransactionCommitter.describe(record[0], 0));
+    return record[0];
+  }
+
+  /**
+   * Reads the rows an update or delete changes in a snapshot and returns the record of the change.
+   * Rows changed earlier in the same transaction are taken from its pending rows, by row id, a null
+   * value for a deleted row; the change is added to them.
+   *
+   * @param statement the update or delete
+   * @param snapshot the snapshot the rows are read in
+   * @param pendingRows rows of the table changed earlier in the transaction
+   * @return the record of the change
+   * @throws IncorrectQueryException if the table, a column or a new value is invalid
+   */
+  public RedoRecord recordOf(
+      Statement statement, Snapshot snapshot, Map<Long, List<String>> pendingRows)
+      throws IncorrectQueryException {
+    String tableName = tableNameOf(statement);
+    Expression condition = conditionOf(statement);
+    TableStorage tableStorage = database.openStorage(tableName);
+    if (tableStorage == null || !versionManager.isVisible(tableName, snapshot)) {
+      throw new IncorrectQueryException("Table " + tableName + " does not exists!");
+    }
+    TableSchema schema = tableStorage.readSchema();
+    if (schema == null) {
+      throw new IncorrectQueryException("Table " + tableName + " has no valid header!");
+    }
+    Collector collector =
+        collectorOf(
+            statement,
+            tableStorage,
+            schema,
+            pendingRows,
+            /* The only byte of an empty line cannot mark it deleted */
+            tableStorage.getFormat() == StorageFormat.TEXT
+                && schema.getColumnCount() == 1
+                && schema.getColumnType(0) == ColumnType.VARCHAR);
+
+    TableSnapshot tableSnapshot;
+    try {
+      tableSnapshot = versionManager.tableSnapshot(tableName, tableStorage, snapshot);
+    } catch (IOException e) {
+      throw new IncorrectQueryException("Error loading data from file: " + tableStorage.getFile());
+    }
+    long endRowId = tableSnapshot.getEndRowId();
+    long[] candidates = indexCandidates(tableName, tableStorage, schema, condition, tableSnapshot);
+    if (candidates != null) {
+      /* Rows changed earlier in the transaction may match now, whatever the index says */
+      candidates =
+          LongStream.concat(
+                  Arrays.stream(candidates),
+                  pendingRows.entrySet().stream()
+                      .filter(pending -> pending.getValue() != null)
+                      .mapToLong(Map.Entry::getKey)
+                      .filter(rowId -> rowId < endRowId))
+              .sorted()
+              .distinct()
+              .toArray();
+      ColumnarTable rows = tableStorage.fetchRows(candidates, null, tableSnapshot);
+      if (rows != null && rows.getRowCount() == candidates.length) {
+        for (int row = 0; row < candidates.length; row++) {
+          collector.add(candidates[row], rows, row);
+        }
+        return collector.toRecord(statement, tableName);
+      }
+    }
+
+    try (RowCursor cursor = tableStorage.openCursor(null, tableSnapshot)) {
+      if (cursor == null) {
+        throw new IncorrectQueryException("Failed to read table " + tableName);
+      }
+      while (cursor.next()) {
+        collector.add(cursor.getRowId(), cursor.getTable(), cursor.getRow());
+      }
+    }
+    return collector.toRecord(statement, tableName);
+  }
+
+  /**
+   * Applies an update or delete of a transaction to the rows inserted earlier in it, which are not
+   * in the table file yet, so the change is logged with them.
+   *
+   * @param statement the update or delete
+   * @param tableStorage storage of the table
+   * @param schema schema of the table as the transaction leaves it
+   * @param insertedRows rows of every insert into the table, changed in place
+   * @return the number of rows changed
+   * @throws IncorrectQueryException if a column or a new value is invalid
+   */
+  public int rewriteInserted(
+      Statement statement,
+      TableStorage tableStorage,
+      TableSchema schema,
+      List<List<List<String>>> insertedRows)
+      throws IncorrectQueryException {
+    String tableName = tableNameOf(statement);
+    int changed = 0;
+    for (List<List<String>> rows : insertedRows) {
+      Collector collector = collectorOf(statement, tableStorage, schema, new HashMap<>(), false);
+      ColumnarTable table = new ColumnarTable(schema);
+      for (List<String> row : rows) {
+        table.appendRow(row);
+      }
+      for (int row = 0; row < rows.size(); row++) {
+        collector.add(row, table, row);
+      }
+      /* The positions of the rows in the insert stand in for their ids */
+      switch (collector.toRecord(statement, tableName)) {
+        case RedoRecord.Update update -> {
+          for (int i = 0; i < update.rowIds().length; i++) {
+            rows.set((int) update.rowIds()[i], update.rows().get(i));
+          }
+          changed += update.rowIds().length;
+        }
+        case RedoRecord.Delete delete -> {
+          for (int i = delete.rowIds().length - 1; i >= 0; i--) {
+            rows.remove((int) delete.rowIds()[i]);
+          }
+          changed += delete.rowIds().length;
+        }
+        default -> throw new IllegalStateException();
+      }
+    }
+    return changed;
+  }
+
+  /**
+   * @param record a change
+   * @return the number of rows an update or delete changes, 0 for other changes
+   */
+  public static int rowCountOf(RedoRecord record) {
+    return switch (record) {
+      case RedoRecord.Update update -> update.rowIds().length;
+      case RedoRecord.Delete delete -> delete.rowIds().length;
+      default -> 0;
+    };
+  }
+
+  /**
+   * @param statement an update or delete
+   * @return the name of the table it changes
+   */
+  public static String tableNameOf(Statement statement) {
+    return switch (statement) {
+      case Statement.Update update -> update.tableName();
+      case Statement.Delete delete -> delete.tableName();
+      default -> throw new IllegalArgumentException("Not an update or delete: " + statement);
+    };
+  }
+
+  private static Expression conditionOf(Statement statement) {
+    return switch (statement) {
+      case Statement.Update update -> update.condition();
+      case Statement.Delete delete -> delete.condition();
+      default -> throw new IllegalArgumentException("Not an update or delete: " + statement);
+    };
+  }
+
+  /* Collects the rows an update or delete changes, checking its columns against the schema */
+  private static Collector collectorOf(
+      Statement statement,
+      TableStorage tableStorage,
+      TableSchema schema,
+      Map<Long, List<String>> pendingRows,
+      boolean emptyLines)
+      throws IncorrectQueryException {
+    List<String> columns =
+        statement instanceof Statement.Update update ? update.columns() : List.of();
+    List<String> values = statement instanceof Statement.Update update ? update.values() : null;
+    int[] changedColumns = new int[columns.size()];
+    for (int i = 0; i < changedColumns.length; i++) {
+      changedColumns[i] = schema.indexOf(columns.get(i));
+      if (changedColumns[i] == -1) {
+        throw new IncorrectQueryException("Column not found: " + columns.get(i));
+      }
+    }
+    RowPredicate predicate = PredicateCompiler.compile(conditionOf(statement), schema);
+    return new Collector(
+        tableStorage, schema, predicate, changedColumns, values, pendingRows, emptyLines);
+  }
+
+  /*
+   * Ids of the rows the index a select with the condition would use finds, null without one or
+   * when the index holds values of rows the snapshot does not see
+   */
+  private long[] indexCandidates(
+      String tableName,
+      TableStorage tableStorage,
+      TableSchema schema,
+      Expression condition,
+      TableSnapshot tableSnapshot) {
+    QueryPlan plan = database.planScan(tableName, tableStorage, schema, condition, -1);
+    if (plan.getAccessMethod() != QueryPlan.AccessMethod.INDEX_SCAN) {
+      return null;
+    }
+    long[] rowIds = plan.getIndexRange().search();
+    long endRowId = tableSnapshot.getEndRowId();
+    return rowIds == null || !tableSnapshot.isCurrent()
+        ? null
+        : Arrays.stream(rowIds).filter(rowId -> rowId < endRowId).toArray();
+  }
+
+  /* Collects the rows an update or delete changes, with their new values */
+  private static final class Collector {
+    private final TableSchema schema;
+    private final RowPredicate predicate;
+    private final TableStorage tableStorage;
+    private final int[] changedColumns;
+    private final List<String> values;
+    private final Map<Long, List<String>> pendingRows;
+    private final boolean emptyLines;
+    private final LongStream.Builder rowIds = LongStream.builder();
+    private final List<List<String>> rows = new ArrayList<>();
+
+    private Collector(
+        TableStorage tableStorage,
+        TableSchema schema,
+        RowPredicate predicate,
+        int[] changedColumns,
+        List<String> values,
+        Map<Long, List<String>> pendingRows,
+        boolean emptyLines) {
+      this.tableStorage = tableStorage;
+      this.schema = schema;
+      this.predicate = predicate;
+      this.changedColumns = changedColumns;
+      this.values = values;
+      this.pendingRows = pendingRows;
+      this.emptyLines = emptyLines;
+    }
+
+    private void add(long rowId, ColumnarTable table, int row) throws IncorrectQueryException {
+      List<String> current;
+      if (pendingRows.containsKey(rowId)) {
+        current = pendingRows.get(rowId);
+        if (current == null) {
+          return;
+        }
+        ColumnarTable pending = new ColumnarTable(schema);
+        pending.appendRow(current);
+        if (!predicate.test(pending, 0)) {
+          return;
+        }
+      } else {
+        if (!predicate.test(table, row)) {
+          return;
+        }
+        current = table.formatRow(row);
+      }
+      if (emptyLines && "".equals(current.get(0))) {
+        throw new IncorrectQueryException(
+            "Rows with an empty value cannot be changed in a text table with a single column");
+      }
+      List<String> changed = null;
+      if (values != null) {
+        changed = new ArrayList<>(current);
+        for (int i = 0; i < changedColumns.length; i++) {
+          changed.set(changedColumns[i], values.get(i));
+        }
+        String error = tableStorage.validateRow(schema, changed);
+        if (error != null) {
+          throw new IncorrectQueryException(error);
+        }
+      }
+      rowIds.add(rowId);
+      rows.add(changed);
+    }
+
+    private RedoRecord toRecord(Statement statement, String tableName) {
+      long[] ids = rowIds.build().toArray();
+      for (int i = 0; i < ids.length; i++) {
+        pendingRows.put(ids[i], rows.get(i));
+      }
+      return statement instanceof Statement.Update
+          ? new RedoRecord.Update(tableName, ids, rows)
+          : new RedoRecord.Delete(tableName, ids);
+    }
+  }
+}
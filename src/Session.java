@@ -0,0 +1,57 @@
+import java.io.OutputStream;
+
+/**
+ * The {@code Session} class holds the state of one logged-in user: the transaction in progress and
+ * the session settings. Every console or network connection has its own session, while the
+ * {@link Database} is shared by all of them.
+ */
+public class Session {
+  private final String user;
+  private final TransactionManager transactionManager = new TransactionManager(false);
+  private final SessionSettings sessionSettings = new SessionSettings();
+  private OutputStream resultOutput;
+
+  /**
+   * @param user name of the logged-in user
+   */
+  public Session(String user) {
+    this.user = user;
+  }
+
+  /**
+   * @return name of the logged-in user
+   */
+  public String getUser() {
+    return user;
+  }
+
+  /**
+   * @return state of the transaction of the session
+   */
+  public TransactionManager getTransactionManager() {
+    return transactionManager;
+  }
+
+  /**
+   * @return settings of the session
+   */
+  public SessionSettings getSessionSettings() {
+    return sessionSettings;
+  }
+
+  /**
+   * @return where binary results are written, {@code null} to write them to {@code System.out}
+   *     with the rest of the output
+   */
+  public OutputStream getResultOutput() {
+    return resultOutput;
+  }
+
+  /**
+   * @param resultOutput where binary results are written, kept apart from the text the statements
+   *     print, or {@code null} to write them to {@code System.out}
+   */
+  public void setResultOutput(OutputStream resultOutput) {
+    this.resultOutput = resultOutput;
+  }
+}
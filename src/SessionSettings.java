@@ -0,0 +1,36 @@
+/**
+ * The {@code SessionSettings} class holds the settings a user can change for their own session
+ * with {@code SET}, without affecting other sessions.
+ */
+public class SessionSettings {
+  private int parallelism = Constants.DEFAULT_PARALLELISM;
+  private ResultFormat resultFormat = ResultFormat.TABLE;
+
+  /**
+   * @return number of threads a table scan may use
+   */
+  public int getParallelism() {
+    return parallelism;
+  }
+
+  /**
+   * @param parallelism number of threads a table scan may use, 1 for serial scans
+   */
+  public void setParallelism(int parallelism) {
+    this.parallelism = parallelism;
+  }
+
+  /**
+   * @return format the results of selects are written in
+   */
+  public ResultFormat getResultFormat() {
+    return resultFormat;
+  }
+
+  /**
+   * @param resultFormat format the results of selects are written in
+   */
+  public void setResultFormat(ResultFormat resultFormat) {
+    this.resultFormat = resultFormat;
+  }
+}
@@ -0,0 +1,7 @@
+/**
+ * The {@code Snapshot} record is the state of the database a transaction reads: the changes of
+ * every transaction committed up to a log sequence number, and nothing committed after it.
+ *
+ * @param lsn sequence number of the last transaction visible in the snapshot
+ */
+public record Snapshot(long lsn) {}
@@ -0,0 +1,359 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * The {@code SortCursor} class returns the rows of another cursor in the order of a {@link
+ * RowComparator}; rows with equal keys keep the order they came in. The input is read completely
+ * when the first row is pulled.
+ *
+ * <p>Rows are sorted in memory as long as they fit into the memory budget. Beyond it, every budget
+ * full of rows is sorted and written to a run file, and the runs are merged, at most {@value
+ * #MERGE_FAN_IN} at a time, so memory use depends on the budget and not on the number of rows.
+ * With a limit of k rows, only the k first rows seen so far are kept, in a heap whose root is the
+ * one to be dropped next, and the rest of the input is never sorted.
+ */
+public class SortCursor implements RowCursor {
+  private static final int BATCH_SIZE = 1024;
+  private static final int MERGE_FAN_IN = 64;
+  /* Ranges this short are sorted by insertion */
+  private static final int INSERTION_SORT_ROWS = 16;
+
+  private final RowCursor input;
+  private final RowComparator comparator;
+  private final long limit;
+  private final long memoryBudget;
+  private boolean sorted;
+
+  /* Rows held in memory, and their positions in sorted order */
+  private ColumnarTable rows;
+  private int[] order;
+  private int position = -1;
+
+  /* Sorted runs spilled to disk, in the order of the input */
+  private final List<SpillFile> runs = new ArrayList<>();
+  private PriorityQueue<Run> merge;
+  private ColumnarTable output;
+  private int row = -1;
+
+  /**
+   * @param input the rows to be sorted
+   * @param comparator order of the rows
+   * @param limit number of rows that are read from the cursor, {@code -1} for all rows
+   * @param memoryBudget bytes the rows in memory may take before they are spilled
+   */
+  public SortCursor(RowCursor input, RowComparator comparator, long limit, long memoryBudget) {
+    this.input = input;
+    this.comparator = comparator;
+    this.limit = limit;
+    this.memoryBudget = memoryBudget;
+    this.rows = new ColumnarTable(input.getSchema());
+  }
+
+  @Override
+  public TableSchema getSchema() {
+    return input.getSchema();
+  }
+
+  @Override
+  public boolean next() {
+    try {
+      if (!sorted) {
+        sorted = true;
+        sort();
+      }
+      if (merge == null) {
+        if (position + 1 >= order.length) {
+          return false;
+        }
+        position++;
+        return true;
+      }
+      if (row + 1 < output.getRowCount()) {
+        row++;
+        return true;
+      }
+      output.clear();
+      row = -1;
+      while (output.getRowCount() < BATCH_SIZE && !merge.isEmpty()) {
+        Run run = merge.poll();
+        output.appendRowFrom(run.head, 0);
+        if (run.advance()) {
+          merge.add(run);
+        }
+      }
+      if (output.getRowCount() == 0) {
+        return false;
+      }
+      row = 0;
+      return true;
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to read a sorted run", e);
+    }
+  }
+
+  @Override
+  public ColumnarTable getTable() {
+    return merge == null ? rows : output;
+  }
+
+  @Override
+  public int getRow() {
+    return merge == null ? order[position] : row;
+  }
+
+  @Override
+  public void close() {
+    input.close();
+    for (SpillFile run : runs) {
+      run.delete();
+    }
+  }
+
+  /* Reads the input and prepares the rows to be returned in order */
+  private void sort() throws IOException {
+    if (limit == 0) {
+      order = new int[0];
+      return;
+    }
+    if (limit < 0 || !selectTop()) {
+      readAll();
+    }
+    if (!runs.isEmpty()) {
+      if (rows.getRowCount() > 0) {
+        spill();
+      }
+      rows = null;
+      startMerge();
+    }
+  }
+
+  /* Sorts all rows, spilling a sorted run whenever the rows in memory exceed the budget */
+  private void readAll() throws IOException {
+    while (input.next()) {
+      rows.appendRowFrom(input.getTable(), input.getRow());
+      if (rows.getRowCount() % BATCH_SIZE == 0 && rows.estimateMemory() > memoryBudget) {
+        spill();
+      }
+    }
+    order = sortedRows(rows, identity(rows.getRowCount()));
+  }
+
+  private void spill() throws IOException {
+    int[] sortedRows = sortedRows(rows, identity(rows.getRowCount()));
+    SpillFile run = new SpillFile("sort-");
+    runs.add(run);
+    for (int sortedRow : sortedRows) {
+      run.writeRow(rows, sortedRow);
+    }
+    run.rewind();
+    rows.clear();
+  }
+
+  /*
+   * Keeps the first limit rows in a heap, the last of them at the root. Returns false if they do
+   * not fit into the budget, after moving them to the rows to be sorted completely.
+   */
+  private boolean selectTop() {
+    int capacity = (int) Math.min(limit, Integer.MAX_VALUE - 8);
+    int[] heap = new int[Math.min(capacity, BATCH_SIZE)];
+    int size = 0;
+    while (input.next()) {
+      ColumnarTable table = input.getTable();
+      int inputRow = input.getRow();
+      if (size < capacity) {
+        if (size == heap.length) {
+          heap = Arrays.copyOf(heap, (int) Math.min((long) heap.length * 2, capacity));
+        }
+        rows.appendRowFrom(table, inputRow);
+        heap[size] = rows.getRowCount() - 1;
+        siftUp(heap, size++);
+      } else if (comparator.compare(table, inputRow, rows, heap[0]) < 0) {
+        /* The root is dropped; its row stays in the table until the table is compacted */
+        rows.appendRowFrom(table, inputRow);
+        heap[0] = rows.getRowCount() - 1;
+        siftDown(heap, size);
+        if (rows.getRowCount() >= 2 * size + BATCH_SIZE) {
+          compact(heap, size);
+        }
+      } else {
+        continue;
+      }
+      if (rows.getRowCount() % BATCH_SIZE == 0 && rows.estimateMemory() > memoryBudget) {
+        compact(heap, size);
+        if (rows.estimateMemory() > memoryBudget) {
+          return false;
+        }
+      }
+    }
+    compact(heap, size);
+    order = sortedRows(rows, identity(size));
+    return true;
+  }
+
+  /* Heap order: a row is above the rows that come before it, so the root is the last row */
+  private boolean above(int first, int second) {
+    int comparison = comparator.compare(rows, first, rows, second);
+    /* Of equal rows the one read later is dropped first, as a stable sort would */
+    return comparison > 0 || (comparison == 0 && first > second);
+  }
+
+  private void siftUp(int[] heap, int index) {
+    while (index > 0) {
+      int parent = (index - 1) / 2;
+      if (!above(heap[index], heap[parent])) {
+        return;
+      }
+      swap(heap, index, parent);
+      index = parent;
+    }
+  }
+
+  private void siftDown(int[] heap, int size) {
+    int index = 0;
+    while (true) {
+      int largest = index;
+      int left = 2 * index + 1;
+      int right = left + 1;
+      if (left < size && above(heap[left], heap[largest])) {
+        largest = left;
+      }
+      if (right < size && above(heap[right], heap[largest])) {
+        largest = right;
+      }
+      if (largest == index) {
+        return;
+      }
+      swap(heap, index, largest);
+      index = largest;
+    }
+  }
+
+  private static void swap(int[] array, int i, int j) {
+    int value = array[i];
+    array[i] = array[j];
+    array[j] = value;
+  }
+
+  /* Copies the rows of the heap to a new table in the order they were read, which keeps the heap */
+  private void compact(int[] heap, int size) {
+    int[] kept = Arrays.copyOf(heap, size);
+    Arrays.sort(kept);
+    ColumnarTable compacted = new ColumnarTable(rows.getSchema());
+    for (int keptRow : kept) {
+      compacted.appendRowFrom(rows, keptRow);
+    }
+    for (int i = 0; i < size; i++) {
+      heap[i] = Arrays.binarySearch(kept, heap[i]);
+    }
+    rows = compacted;
+  }
+
+  private static int[] identity(int length) {
+    int[] positions = new int[length];
+    for (int i = 0; i < length; i++) {
+      positions[i] = i;
+    }
+    return positions;
+  }
+
+  /* Sorts the positions of rows of a table by a stable merge sort */
+  private int[] sortedRows(ColumnarTable table, int[] positions) {
+    mergeSort(table, positions, positions.clone(), 0, positions.length);
+    return positions;
+  }
+
+  /* Sorts positions[from, to), using scratch, which holds the same positions, as the other half */
+  private void mergeSort(ColumnarTable table, int[] positions, int[] scratch, int from, int to) {
+    if (to - from <= INSERTION_SORT_ROWS) {
+      for (int i = from + 1; i < to; i++) {
+        int value = positions[i];
+        int j = i - 1;
+        while (j >= from && comparator.compare(table, positions[j], table, value) > 0) {
+          positions[j + 1] = positions[j];
+          j--;
+        }
+        positions[j + 1] = value;
+      }
+      return;
+    }
+    int middle = (from + to) >>> 1;
+    mergeSort(table, scratch, positions, from, middle);
+    mergeSort(table, scratch, positions, middle, to);
+    /* scratch now holds the sorted halves, merged back into positions */
+    int left = from;
+    int right = middle;
+    for (int i = from; i < to; i++) {
+      if (right >= to
+          || (left < middle
+              && comparator.compare(table, scratch[left], table, scratch[right]) <= 0)) {
+        positions[i] = scratch[left++];
+      } else {
+        positions[i] = scratch[right++];
+      }
+    }
+  }
+
+  /* Merges the runs until few enough are left to be merged while the rows are returned */
+  private void startMerge() throws IOException {
+    while (runs.size() > MERGE_FAN_IN) {
+      List<SpillFile> group = new ArrayList<>(runs.subList(0, MERGE_FAN_IN));
+      SpillFile merged = new SpillFile("sort-");
+      runs.add(0, merged);
+      PriorityQueue<Run> queue = openRuns(group);
+      while (!queue.isEmpty()) {
+        Run run = queue.poll();
+        merged.writeRow(run.head, 0);
+        if (run.advance()) {
+          queue.add(run);
+        }
+      }
+      merged.rewind();
+      for (SpillFile run : group) {
+        run.delete();
+      }
+      runs.subList(1, MERGE_FAN_IN + 1).clear();
+    }
+    merge = openRuns(runs);
+    output = new ColumnarTable(getSchema());
+  }
+
+  private PriorityQueue<Run> openRuns(List<SpillFile> files) throws IOException {
+    PriorityQueue<Run> queue =
+        new PriorityQueue<>(
+            Math.max(1, files.size()),
+            (first, second) -> {
+              int comparison = comparator.compare(first.head, 0, second.head, 0);
+              /* Equal rows come from the earlier run first, which keeps the sort stable */
+              return comparison != 0 ? comparison : Integer.compare(first.index, second.index);
+            });
+    for (int i = 0; i < files.size(); i++) {
+      Run run = new Run(files.get(i), i);
+      if (run.advance()) {
+        queue.add(run);
+      }
+    }
+    return queue;
+  }
+
+  /* A sorted run being merged, with its next row */
+  private final class Run {
+    private final SpillFile file;
+    private final int index;
+    private final ColumnarTable head = new ColumnarTable(getSchema());
+
+    private Run(SpillFile file, int index) {
+      this.file = file;
+      this.index = index;
+    }
+
+    /* Reads the next row of the run into the head, false at its end */
+    private boolean advance() throws IOException {
+      head.clear();
+      return file.readRow(head);
+    }
+  }
+}
@@ -0,0 +1,212 @@
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The {@code SpillFile} class is a temporary file in {@link Constants#SPILL_DIRECTORY} that
+ * operators write rows to when they do not fit into their memory budget, such as the partitions of
+ * a hash join or the sorted runs of a sort. Rows are written typed, so that they read back exactly
+ * as they were, nulls included, in the order they were written. Rows go through a buffer of its
+ * own rather than a stream, which would take a lock for every value.
+ */
+public class SpillFile {
+  private static final int BUFFER_SIZE = 32 * 1024;
+
+  private final Path path;
+  private final FileChannel channel;
+  private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+  private boolean deleted;
+
+  /**
+   * Creates an empty file to be written.
+   *
+   * @param prefix start of the file name, telling which operator spilled
+   * @throws IOException if the file cannot be created
+   */
+  public SpillFile(String prefix) throws IOException {
+    Path directory = Path.of(Constants.SPILL_DIRECTORY);
+    Files.createDirectories(directory);
+    this.path = Files.createTempFile(directory, prefix, ".spill");
+    this.channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+  }
+
+  /**
+   * Removes the spill files left behind by a crash. Only called on startup, when no operator can
+   * be using them.
+   */
+  public static void deleteAll() {
+    File[] files = new File(Constants.SPILL_DIRECTORY).listFiles();
+    if (files == null) {
+      return;
+    }
+    for (File file : files) {
+      if (file.getName().endsWith(".spill") && !file.delete()) {
+        System.out.println("Failed to delete spill file: " + file);
+      }
+    }
+  }
+
+  /**
+   * Appends a row.
+   *
+   * @param table table of the row, with the schema every row of the file has
+   * @param row the row
+   * @throws IOException if the file cannot be written
+   */
+  public void writeRow(ColumnarTable table, int row) throws IOException {
+    TableSchema schema = table.getSchema();
+    for (int column = 0; column < schema.getColumnCount(); column++) {
+      reserve(Long.BYTES + 1);
+      if (table.isNull(column, row)) {
+        buffer.put((byte) 1);
+        continue;
+      }
+      buffer.put((byte) 0);
+      switch (schema.getColumnType(column)) {
+        case INT -> buffer.putInt(table.getInt(column, row));
+        case BIGINT -> buffer.putLong(table.getLong(column, row));
+        case DOUBLE -> buffer.putDouble(table.getDouble(column, row));
+        case BOOLEAN -> buffer.put((byte) (table.getBoolean(column, row) ? 1 : 0));
+        case VARCHAR -> {
+          byte[] bytes = table.getString(column, row).getBytes(StandardCharsets.UTF_8);
+          reserve(Integer.BYTES + bytes.length);
+          buffer.putInt(bytes.length).put(bytes);
+        }
+      }
+    }
+  }
+
+  /* Makes room for a value, writing out what the buffer holds */
+  private void reserve(int bytes) throws IOException {
+    if (buffer.remaining() >= bytes) {
+      return;
+    }
+    flush();
+    if (buffer.capacity() < bytes) {
+      buffer = ByteBuffer.allocate(bytes);
+    }
+  }
+
+  private void flush() throws IOException {
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    buffer.clear();
+  }
+
+  /**
+   * Switches from writing the file to reading it from the start.
+   *
+   * @throws IOException if the rows written last cannot be written out
+   */
+  public void rewind() throws IOException {
+    flush();
+    channel.position(0);
+    buffer.flip();
+  }
+
+  /**
+   * Appends the next row of the file to a table.
+   *
+   * @param table table with the schema of the rows
+   * @return whether a row was read, false at the end of the file
+   * @throws IOException if the file cannot be read or ends within a row
+   */
+  public boolean readRow(ColumnarTable table) throws IOException {
+    TableSchema schema = table.getSchema();
+    for (int column = 0; column < schema.getColumnCount(); column++) {
+      if (!require(Long.BYTES + 1)) {
+        if (column == 0 && !buffer.hasRemaining()) {
+          return false;
+        }
+        if (!require(1)) {
+          throw new EOFException("Spill file ends within a row: " + path);
+        }
+      }
+      if (buffer.get() == 1) {
+        table.putNull(column);
+        continue;
+      }
+      switch (schema.getColumnType(column)) {
+        case INT -> table.putInt(column, readInt());
+        case BIGINT -> table.putLong(column, readLong());
+        case DOUBLE -> table.putDouble(column, Double.longBitsToDouble(readLong()));
+        case BOOLEAN -> table.putBoolean(column, readByte() == 1);
+        case VARCHAR -> {
+          int length = readInt();
+          if (!require(length)) {
+            throw new EOFException("Spill file ends within a row: " + path);
+          }
+          String value =
+              new String(
+                  buffer.array(), buffer.arrayOffset() + buffer.position(), length,
+                  StandardCharsets.UTF_8);
+          buffer.position(buffer.position() + length);
+          table.putString(column, value);
+        }
+      }
+    }
+    table.finishRow();
+    return true;
+  }
+
+  private int readInt() throws IOException {
+    if (!require(Integer.BYTES)) {
+      throw new EOFException("Spill file ends within a row: " + path);
+    }
+    return buffer.getInt();
+  }
+
+  private long readLong() throws IOException {
+    if (!require(Long.BYTES)) {
+      throw new EOFException("Spill file ends within a row: " + path);
+    }
+    return buffer.getLong();
+  }
+
+  private byte readByte() throws IOException {
+    if (!require(1)) {
+      throw new EOFException("Spill file ends within a row: " + path);
+    }
+    return buffer.get();
+  }
+
+  /* Reads until the buffer holds the bytes, false if the file ends before */
+  private boolean require(int bytes) throws IOException {
+    if (buffer.remaining() >= bytes) {
+      return true;
+    }
+    buffer.compact();
+    if (buffer.capacity() < bytes) {
+      buffer = ByteBuffer.allocate(bytes).put(buffer.flip());
+    }
+    while (buffer.position() < bytes) {
+      if (channel.read(buffer) < 0) {
+        break;
+      }
+    }
+    buffer.flip();
+    return buffer.remaining() >= bytes;
+  }
+
+  /** Closes and deletes the file, it may be called more than once. */
+  public void delete() {
+    if (deleted) {
+      return;
+    }
+    deleted = true;
+    try {
+      channel.close();
+      Files.deleteIfExists(path);
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+  }
+}
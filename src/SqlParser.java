@@ -0,0 +1,599 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The {@code SqlParser} class is a recursive-descent parser turning the tokens of a query into a
+ * {@link Statement}.
+ */
+public class SqlParser {
+  /* Used when a query cannot be tokenized, everything after IDENTIFIED BY is hidden */
+  private static final Pattern SECRET_CLAUSE =
+      Pattern.compile("\\bIDENTIFIED\\s+BY\\b", Pattern.CASE_INSENSITIVE);
+  private static final String REDACTED = "'***'";
+
+  private final List<SqlTokenizer.Token> tokens;
+  private int position;
+
+  private SqlParser(List<SqlTokenizer.Token> tokens) {
+    this.tokens = tokens;
+  }
+
+  /**
+   * Parses a single statement, optionally ended by a semicolon.
+   *
+   * @param query the query
+   * @return the parsed statement
+   * @throws IncorrectQueryException if the query is not a valid statement
+   */
+  public static Statement parse(String query) throws IncorrectQueryException {
+    SqlParser parser = new SqlParser(SqlTokenizer.tokenize(query));
+    Statement statement = parser.statement();
+    parser.acceptSymbol(";");
+    if (parser.peek().type() != SqlTokenizer.TokenType.END) {
+      throw parser.error("end of statement");
+    }
+    return statement;
+  }
+
+  /**
+   * Hides the secrets of a query, the password of {@code CREATE USER ... IDENTIFIED BY}, before
+   * the query is printed or written to a log.
+   *
+   * @param query the query
+   * @return the query with every secret replaced by {@code '***'}
+   */
+  public static String redact(String query) {
+    if (query == null) {
+      return null;
+    }
+    List<SqlTokenizer.Token> tokens;
+    try {
+      tokens = SqlTokenizer.tokenize(query);
+    } catch (IncorrectQueryException e) {
+      Matcher matcher = SECRET_CLAUSE.matcher(query);
+      return matcher.find() ? query.substring(0, matcher.end()) + " " + REDACTED : query;
+    }
+    StringBuilder redacted = new StringBuilder();
+    int copied = 0;
+    for (int i = 2; i < tokens.size() - 1; i++) {
+      if (tokens.get(i - 2).isKeyword("IDENTIFIED") && tokens.get(i - 1).isKeyword("BY")) {
+        /* The secret reaches up to the next token, a quoted one may hold doubled quotes */
+        int start = tokens.get(i).position();
+        int end = tokens.get(i + 1).position();
+        while (end > start && Character.isWhitespace(query.charAt(end - 1))) {
+          end--;
+        }
+        redacted.append(query, copied, start).append(REDACTED);
+        copied = end;
+      }
+    }
+    return copied == 0 ? query : redacted.append(query, copied, query.length()).toString();
+  }
+
+  private Statement statement() throws IncorrectQueryException {
+    if (acceptKeyword("BEGIN")) {
+      expectKeyword("TRANSACTION");
+      return new Statement.BeginTransaction();
+    }
+    if (acceptKeyword("END")) {
+      expectKeyword("TRANSACTION");
+      return new Statement.EndTransaction();
+    }
+    if (acceptKeyword("COMMIT")) {
+      return new Statement.Commit();
+    }
+    if (acceptKeyword("ROLLBACK")) {
+      return new Statement.Rollback();
+    }
+    if (acceptKeyword("CREATE")) {
+      return create();
+    }
+    if (acceptKeyword("DROP")) {
+      return drop();
+    }
+    if (acceptKeyword("INSERT")) {
+      return insert();
+    }
+    if (acceptKeyword("SELECT")) {
+      return select();
+    }
+    if (acceptKeyword("UPDATE")) {
+      return update();
+    }
+    if (acceptKeyword("DELETE")) {
+      expectKeyword("FROM");
+      String tableName = identifier();
+      Expression condition = null;
+      if (acceptKeyword("WHERE")) {
+        condition = expression();
+      }
+      return new Statement.Delete(tableName, condition);
+    }
+    if (acceptKeyword("VACUUM")) {
+      acceptKeyword("TABLE");
+      return new Statement.Vacuum(identifier());
+    }
+    if (acceptKeyword("LOAD")) {
+      expectKeyword("DATA");
+      acceptKeyword("INFILE");
+      String path = expect(SqlTokenizer.TokenType.STRING, "a file path").text();
+      expectKeyword("INTO");
+      expectKeyword("TABLE");
+      return new Statement.Load(identifier(), path, header());
+    }
+    if (acceptKeyword("COPY")) {
+      String tableName = identifier();
+      expectKeyword("FROM");
+      String path = expect(SqlTokenizer.TokenType.STRING, "a file path").text();
+      return new Statement.Load(tableName, path, header());
+    }
+    if (acceptKeyword("SET")) {
+      return set();
+    }
+    if (acceptKeyword("EXPLAIN")) {
+      boolean analyze = acceptKeyword("ANALYZE");
+      expectKeyword("SELECT");
+      return new Statement.Explain(select(), analyze);
+    }
+    if (acceptKeyword("ANALYZE")) {
+      acceptKeyword("TABLE");
+      return new Statement.Analyze(identifier());
+    }
+    if (acceptKeyword("SHOW")) {
+      expectKeyword("STATS");
+      return new Statement.ShowStats();
+    }
+    throw error("a statement");
+  }
+
+  private Statement create() throws IncorrectQueryException {
+    if (acceptKeyword("TABLE")) {
+      String tableName = identifier();
+      expectSymbol("(");
+      List<String> columns = new ArrayList<>();
+      List<ColumnType> types = new ArrayList<>();
+      do {
+        columns.add(identifier());
+        /* Columns declared without a type hold text, as before types were supported */
+        ColumnType type = ColumnType.VARCHAR;
+        if (peek().type() == SqlTokenizer.TokenType.WORD) {
+          SqlTokenizer.Token typeToken = next();
+          type = ColumnType.fromDeclaration(typeToken.text());
+          if (type == null) {
+            throw new IncorrectQueryException("Unknown column type: " + typeToken.text());
+          }
+          /* Lengths and precisions such as varchar(20) are accepted and ignored */
+          if (acceptSymbol("(")) {
+            do {
+              expect(SqlTokenizer.TokenType.NUMBER, "a number");
+            } while (acceptSymbol(","));
+            expectSymbol(")");
+          }
+        }
+        types.add(type);
+      } while (acceptSymbol(","));
+      expectSymbol(")");
+      return new Statement.CreateTable(tableName, new TableSchema(columns, types));
+    }
+    if (acceptKeyword("USER")) {
+      String username = identifier();
+      expectKeyword("IDENTIFIED");
+      expectKeyword("BY");
+      String password = literal();
+      if (password == null) {
+        throw new IncorrectQueryException("The password of a user cannot be NULL");
+      }
+      return new Statement.CreateUser(username, password);
+    }
+    if (acceptKeyword("INDEX")) {
+      String indexName = identifier();
+      expectKeyword("ON");
+      String tableName = identifier();
+      expectSymbol("(");
+      String columnName = identifier();
+      expectSymbol(")");
+      return new Statement.CreateIndex(indexName, tableName, columnName);
+    }
+    throw error("TABLE, USER or INDEX");
+  }
+
+  private Statement drop() throws IncorrectQueryException {
+    if (acceptKeyword("TABLE")) {
+      return new Statement.DropTable(identifier());
+    }
+    if (acceptKeyword("USER")) {
+      return new Statement.DropUser(identifier());
+    }
+    if (acceptKeyword("INDEX")) {
+      String indexName = identifier();
+      if (acceptKeyword("ON")) {
+        identifier();
+      }
+      return new Statement.DropIndex(indexName);
+    }
+    throw error("TABLE, USER or INDEX");
+  }
+
+  /* The optional WITH HEADER of a load */
+  private boolean header() throws IncorrectQueryException {
+    if (acceptKeyword("WITH")) {
+      expectKeyword("HEADER");
+      return true;
+    }
+    return false;
+  }
+
+  private Statement insert() throws IncorrectQueryException {
+    expectKeyword("INTO");
+    String tableName = identifier();
+    expectKeyword("VALUES");
+    List<List<String>> values = new ArrayList<>();
+    do {
+      expectSymbol("(");
+      List<String> row = new ArrayList<>();
+      do {
+        row.add(literal());
+      } while (acceptSymbol(","));
+      expectSymbol(")");
+      values.add(row);
+    } while (acceptSymbol(","));
+    return new Statement.Insert(tableName, values);
+  }
+
+  private Statement update() throws IncorrectQueryException {
+    String tableName = identifier();
+    expectKeyword("SET");
+    List<String> columns = new ArrayList<>();
+    List<String> values = new ArrayList<>();
+    do {
+      columns.add(identifier());
+      expectSymbol("=");
+      values.add(literal());
+    } while (acceptSymbol(","));
+    Expression condition = null;
+    if (acceptKeyword("WHERE")) {
+      condition = expression();
+    }
+    return new Statement.Update(tableName, columns, values, condition);
+  }
+
+  private Statement.Select select() throws IncorrectQueryException {
+    List<String> columns = null;
+    List<Statement.Aggregate> aggregates = null;
+    if (!acceptSymbol("*")) {
+      columns = new ArrayList<>();
+      do {
+        Statement.Aggregate aggregate = aggregate();
+        if (aggregate != null) {
+          if (aggregates == null) {
+            aggregates = new ArrayList<>();
+          }
+          aggregates.add(aggregate);
+          columns.add(aggregate.name());
+        } else {
+          columns.add(columnName());
+        }
+      } while (acceptSymbol(","));
+    }
+    expectKeyword("FROM");
+    String tableName = identifier();
+    String alias = alias();
+    Statement.Join join = null;
+    if (acceptKeyword("INNER")) {
+      expectKeyword("JOIN");
+      join = join();
+    } else if (acceptKeyword("JOIN")) {
+      join = join();
+    }
+
+    Expression condition = null;
+    if (acceptKeyword("WHERE")) {
+      condition = expression();
+    }
+    List<String> groupBy = null;
+    if (acceptKeyword("GROUP")) {
+      expectKeyword("BY");
+      groupBy = new ArrayList<>();
+      do {
+        groupBy.add(columnName());
+      } while (acceptSymbol(","));
+    }
+    List<Statement.SortKey> orderBy = null;
+    if (acceptKeyword("ORDER")) {
+      expectKeyword("BY");
+      orderBy = new ArrayList<>();
+      do {
+        String column;
+        Statement.Aggregate aggregate = aggregate();
+        if (aggregate != null) {
+          /* An aggregate that is only sorted by is computed but not selected */
+          if (aggregates == null) {
+            aggregates = new ArrayList<>();
+          }
+          if (!aggregates.contains(aggregate)) {
+            aggregates.add(aggregate);
+          }
+          column = aggregate.name();
+        } else {
+          column = columnName();
+        }
+        boolean descending = acceptKeyword("DESC");
+        if (!descending) {
+          acceptKeyword("ASC");
+        }
+        orderBy.add(new Statement.SortKey(column, descending));
+      } while (acceptSymbol(","));
+    }
+    long limit = -1;
+    if (acceptKeyword("LIMIT")) {
+      SqlTokenizer.Token token = expect(SqlTokenizer.TokenType.NUMBER, "a row count");
+      try {
+        limit = Long.parseLong(token.text());
+      } catch (NumberFormatException e) {
+        limit = -1;
+      }
+      if (limit < 0) {
+        throw new IncorrectQueryException("Invalid row count: " + token.text());
+      }
+    }
+    return new Statement.Select(
+        tableName, columns, condition, limit, alias, join, groupBy, aggregates, orderBy);
+  }
+
+  /* An aggregate such as COUNT(*) or SUM(column), null if the next select item is a column */
+  private Statement.Aggregate aggregate() throws IncorrectQueryException {
+    SqlTokenizer.Token token = peek();
+    AggregateFunction function =
+        token.type() == SqlTokenizer.TokenType.WORD
+            ? AggregateFunction.fromName(token.text())
+            : null;
+    if (function == null || !tokens.get(position + 1).isSymbol("(")) {
+      return null;
+    }
+    position += 2;
+    String column = null;
+    if (function != AggregateFunction.COUNT || !acceptSymbol("*")) {
+      column = columnName();
+    }
+    expectSymbol(")");
+    return new Statement.Aggregate(function, column);
+  }
+
+  private Statement.Join join() throws IncorrectQueryException {
+    String tableName = identifier();
+    String alias = alias();
+    expectKeyword("ON");
+    return new Statement.Join(tableName, alias, expression());
+  }
+
+  /* An optional table alias, which cannot be one of the words that may follow a table name */
+  private String alias() throws IncorrectQueryException {
+    if (acceptKeyword("AS")) {
+      return identifier();
+    }
+    SqlTokenizer.Token token = peek();
+    if (token.type() != SqlTokenizer.TokenType.WORD) {
+      return null;
+    }
+    for (String keyword : List.of("WHERE", "GROUP", "ORDER", "LIMIT", "JOIN", "INNER", "ON")) {
+      if (token.isKeyword(keyword)) {
+        return null;
+      }
+    }
+    position++;
+    return token.text();
+  }
+
+  /* A column name, qualified as table.column in joins */
+  private String columnName() throws IncorrectQueryException {
+    String name = identifier();
+    if (acceptSymbol(".")) {
+      return name + "." + identifier();
+    }
+    return name;
+  }
+
+  private Statement set() throws IncorrectQueryException {
+    if (acceptKeyword("OUTPUT")) {
+      expectKeyword("FORMAT");
+      if (!acceptSymbol("=")) {
+        acceptKeyword("TO");
+      }
+      String name = identifier();
+      ResultFormat format = ResultFormat.fromName(name);
+      if (format == null) {
+        throw new IncorrectQueryException("Unknown output format: " + name);
+      }
+      return new Statement.SetOutputFormat(format);
+    }
+    if (acceptKeyword("SLOW_QUERY_THRESHOLD")) {
+      if (!acceptSymbol("=")) {
+        acceptKeyword("TO");
+      }
+      SqlTokenizer.Token token = expect(SqlTokenizer.TokenType.NUMBER, "a number of milliseconds");
+      long millis;
+      try {
+        millis = Long.parseLong(token.text());
+      } catch (NumberFormatException e) {
+        millis = -1;
+      }
+      if (millis < 0) {
+        throw new IncorrectQueryException("Invalid threshold: " + token.text());
+      }
+      return new Statement.SetSlowQueryThreshold(millis);
+    }
+    expectKeyword("PARALLELISM");
+    if (!acceptSymbol("=")) {
+      acceptKeyword("TO");
+    }
+    SqlTokenizer.Token token = expect(SqlTokenizer.TokenType.NUMBER, "a number of threads");
+    int parallelism;
+    try {
+      parallelism = Integer.parseInt(token.text());
+    } catch (NumberFormatException e) {
+      parallelism = 0;
+    }
+    if (parallelism < 1) {
+      throw new IncorrectQueryException("Invalid number of threads: " + token.text());
+    }
+    return new Statement.SetParallelism(parallelism);
+  }
+
+  /* Conditions, from lowest to highest precedence: OR, AND, NOT, predicates */
+  private Expression expression() throws IncorrectQueryException {
+    Expression expression = conjunction();
+    while (acceptKeyword("OR")) {
+      expression = new Expression.Or(expression, conjunction());
+    }
+    return expression;
+  }
+
+  private Expression conjunction() throws IncorrectQueryException {
+    Expression expression = negation();
+    while (acceptKeyword("AND")) {
+      expression = new Expression.And(expression, negation());
+    }
+    return expression;
+  }
+
+  private Expression negation() throws IncorrectQueryException {
+    if (acceptKeyword("NOT")) {
+      return new Expression.Not(negation());
+    }
+    return predicate();
+  }
+
+  private Expression predicate() throws IncorrectQueryException {
+    if (acceptSymbol("(")) {
+      Expression expression = expression();
+      expectSymbol(")");
+      return expression;
+    }
+    Expression operand = operand();
+    if (acceptKeyword("IS")) {
+      boolean negated = acceptKeyword("NOT");
+      expectKeyword("NULL");
+      return new Expression.IsNull(operand, negated);
+    }
+    boolean negated = acceptKeyword("NOT");
+    if (acceptKeyword("IN")) {
+      expectSymbol("(");
+      List<Expression.Literal> values = new ArrayList<>();
+      do {
+        values.add(new Expression.Literal(literal()));
+      } while (acceptSymbol(","));
+      expectSymbol(")");
+      return new Expression.In(operand, values, negated);
+    }
+    if (acceptKeyword("BETWEEN")) {
+      Expression low = operand();
+      expectKeyword("AND");
+      return new Expression.Between(operand, low, operand(), negated);
+    }
+    if (acceptKeyword("LIKE")) {
+      String pattern = expect(SqlTokenizer.TokenType.STRING, "a pattern").text();
+      return new Expression.Like(operand, pattern, negated);
+    }
+    if (negated) {
+      throw error("IN, BETWEEN or LIKE");
+    }
+    SqlTokenizer.Token token = peek();
+    Expression.ComparisonOperator operator =
+        token.type() == SqlTokenizer.TokenType.SYMBOL
+            ? Expression.ComparisonOperator.fromSymbol(token.text())
+            : null;
+    if (operator == null) {
+      throw error("a comparison operator");
+    }
+    position++;
+    return new Expression.Comparison(operand, operator, operand());
+  }
+
+  /* A column or a value; bare words are resolved against the table when the condition is compiled */
+  private Expression operand() throws IncorrectQueryException {
+    SqlTokenizer.Token token = peek();
+    if (token.type() == SqlTokenizer.TokenType.WORD) {
+      if (token.isKeyword("NULL")) {
+        position++;
+        return new Expression.Literal(null);
+      }
+      return new Expression.Column(columnName());
+    }
+    if (token.type() == SqlTokenizer.TokenType.NUMBER
+        || token.type() == SqlTokenizer.TokenType.STRING) {
+      position++;
+      return new Expression.Literal(token.text());
+    }
+    throw error("a column or value");
+  }
+
+  /* A value: number, quoted string, NULL, returned as null, or, as before quoting was supported, a
+   * bare word */
+  private String literal() throws IncorrectQueryException {
+    SqlTokenizer.Token token = peek();
+    if (token.type() == SqlTokenizer.TokenType.NUMBER
+        || token.type() == SqlTokenizer.TokenType.STRING
+        || token.type() == SqlTokenizer.TokenType.WORD) {
+      position++;
+      return token.isKeyword("NULL") ? null : token.text();
+    }
+    throw error("a value");
+  }
+
+  private String identifier() throws IncorrectQueryException {
+    return expect(SqlTokenizer.TokenType.WORD, "a name").text();
+  }
+
+  private SqlTokenizer.Token peek() {
+    return tokens.get(position);
+  }
+
+  private SqlTokenizer.Token next() {
+    return tokens.get(position++);
+  }
+
+  private boolean acceptKeyword(String keyword) {
+    if (peek().isKeyword(keyword)) {
+      position++;
+      return true;
+    }
+    return false;
+  }
+
+  private boolean acceptSymbol(String symbol) {
+    if (peek().isSymbol(symbol)) {
+      position++;
+      return true;
+    }
+    return false;
+  }
+
+  private void expectKeyword(String keyword) throws IncorrectQueryException {
+    if (!acceptKeyword(keyword)) {
+      throw error(keyword);
+    }
+  }
+
+  private void expectSymbol(String symbol) throws IncorrectQueryException {
+    if (!acceptSymbol(symbol)) {
+      throw error("'" + symbol + "'");
+    }
+  }
+
+  private SqlTokenizer.Token expect(SqlTokenizer.TokenType type, String description)
+      throws IncorrectQueryException {
+    if (peek().type() != type) {
+      throw error(description);
+    }
+    return next();
+  }
+
+  private IncorrectQueryException error(String expected) {
+    SqlTokenizer.Token token = peek();
+    String found = token.type() == SqlTokenizer.TokenType.END ? "end of query" : "'" + token.text() + "'";
+    return new IncorrectQueryException(
+        "Expected " + expected + " but found " + found + " at position " + token.position());
+  }
+}
@@ -0,0 +1,126 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The {@code SqlTokenizer} class splits a query into tokens: words, numbers, quoted strings and
+ * symbols. Keywords are not told apart from identifiers here, the parser decides by position.
+ */
+public class SqlTokenizer {
+  /** The kinds of tokens a query is made of. */
+  public enum TokenType {
+    WORD,
+    NUMBER,
+    STRING,
+    SYMBOL,
+    END
+  }
+
+  /**
+   * A single token with its position in the query.
+   *
+   * @param type kind of the token
+   * @param text the word, number or symbol, or the content of a string without its quotes
+   * @param position offset of the token in the query
+   */
+  public record Token(TokenType type, String text, int position) {
+    /**
+     * @param word keyword to compare with, in upper case
+     * @return {@code true} if the token is this keyword
+     */
+    public boolean isKeyword(String word) {
+      return type == TokenType.WORD && text.equalsIgnoreCase(word);
+    }
+
+    /**
+     * @param symbol symbol to compare with
+     * @return {@code true} if the token is this symbol
+     */
+    public boolean isSymbol(String symbol) {
+      return type == TokenType.SYMBOL && text.equals(symbol);
+    }
+  }
+
+  /**
+   * Splits the query into tokens, ending with a {@link TokenType#END} token.
+   *
+   * @param query the query
+   * @return the tokens
+   * @throws IncorrectQueryException if the query contains an unterminated string or an unknown
+   *     character
+   */
+  public static List<Token> tokenize(String query) throws IncorrectQueryException {
+    List<Token> tokens = new ArrayList<>();
+    int length = query.length();
+    int position = 0;
+    while (position < length) {
+      char current = query.charAt(position);
+      if (Character.isWhitespace(current)) {
+        position++;
+      } else if (Character.isLetter(current) || current == '_') {
+        int start = position;
+        while (position < length
+            && (Character.isLetterOrDigit(query.charAt(position)) || query.charAt(position) == '_')) {
+          position++;
+        }
+        tokens.add(new Token(TokenType.WORD, query.substring(start, position), start));
+      } else if (Character.isDigit(current) || (current == '-' && isNumberStart(query, position, tokens))) {
+        int start = position++;
+        while (position < length
+            && (Character.isDigit(query.charAt(position)) || query.charAt(position) == '.')) {
+          position++;
+        }
+        tokens.add(new Token(TokenType.NUMBER, query.substring(start, position), start));
+      } else if (current == '\'' || current == '"') {
+        int start = position++;
+        StringBuilder value = new StringBuilder();
+        while (true) {
+          if (position >= length) {
+            throw new IncorrectQueryException("Unterminated string at position " + start);
+          }
+          char next = query.charAt(position++);
+          if (next == current) {
+            /* A doubled quote stands for the quote character itself */
+            if (position < length && query.charAt(position) == current) {
+              value.append(current);
+              position++;
+              continue;
+            }
+            break;
+          }
+          value.append(next);
+        }
+        tokens.add(new Token(TokenType.STRING, value.toString(), start));
+      } else if (current == '<' || current == '>' || current == '!') {
+        int start = position++;
+        if (position < length
+            && (query.charAt(position) == '=' || (current == '<' && query.charAt(position) == '>'))) {
+          position++;
+        }
+        String symbol = query.substring(start, position);
+        if (symbol.equals("!")) {
+          throw new IncorrectQueryException("Unexpected character '!' at position " + start);
+        }
+        tokens.add(new Token(TokenType.SYMBOL, symbol, start));
+      } else if ("(),;*=.+-/%".indexOf(current) != -1) {
+        tokens.add(new Token(TokenType.SYMBOL, String.valueOf(current), position++));
+      } else {
+        throw new IncorrectQueryException(
+            "Unexpected character '" + current + "' at position " + position);
+      }
+    }
+    tokens.add(new Token(TokenType.END, "", length));
+    return tokens;
+  }
+
+  /* A minus sign starts a number unless it follows a value, where it is the subtraction operator */
+  private static boolean isNumberStart(String query, int position, List<Token> tokens) {
+    if (position + 1 >= query.length() || !Character.isDigit(query.charAt(position + 1))) {
+      return false;
+    }
+    if (tokens.isEmpty()) {
+      return true;
+    }
+    Token previous = tokens.getLast();
+    return previous.type() == TokenType.SYMBOL && !previous.isSymbol(")");
+  }
+}
@@ -0,0 +1,188 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The {@code Statement} interface is the parsed form of a query, produced once by the {@link
+ * SqlParser} and shared through the {@link StatementCache}. Statements are immutable.
+ */
+public sealed interface Statement {
+  /** {@code BEGIN TRANSACTION} */
+  record BeginTransaction() implements Statement {}
+
+  /** {@code END TRANSACTION} */
+  record EndTransaction() implements Statement {}
+
+  /** {@code COMMIT} */
+  record Commit() implements Statement {}
+
+  /** {@code ROLLBACK} */
+  record Rollback() implements Statement {}
+
+  /** {@code CREATE TABLE name (column type, ...)} */
+  record CreateTable(String tableName, TableSchema schema) implements Statement {}
+
+  /** {@code DROP TABLE name} */
+  record DropTable(String tableName) implements Statement {}
+
+  /** {@code CREATE USER name IDENTIFIED BY password} */
+  record CreateUser(String username, String password) implements Statement {}
+
+  /** {@code DROP USER name} */
+  record DropUser(String username) implements Statement {}
+
+  /** {@code CREATE INDEX name ON table(column)} */
+  record CreateIndex(String indexName, String tableName, String columnName) implements Statement {}
+
+  /** {@code DROP INDEX name} */
+  record DropIndex(String indexName) implements Statement {}
+
+  /** {@code INSERT INTO table VALUES (value, ...), ...} */
+  record Insert(String tableName, List<List<String>> values) implements Statement {}
+
+  /**
+   * {@code UPDATE table SET column = value, ... [WHERE condition]}
+   *
+   * @param columns the changed columns
+   * @param values the new value of every changed column
+   * @param condition the condition, {@code null} to change every row
+   */
+  record Update(String tableName, List<String> columns, List<String> values, Expression condition)
+      implements Statement {}
+
+  /**
+   * {@code DELETE FROM table [WHERE condition]}
+   *
+   * @param condition the condition, {@code null} to delete every row
+   */
+  record Delete(String tableName, Expression condition) implements Statement {}
+
+  /** {@code VACUUM [TABLE] name}, gives back the space of deleted and moved rows at once. */
+  record Vacuum(String tableName) implements Statement {}
+
+  /**
+   * {@code LOAD DATA 'path' INTO TABLE name [WITH HEADER]} or {@code COPY name FROM 'path' [WITH
+   * HEADER]}, appends the rows of a CSV file to a table.
+   *
+   * @param header whether the first line of the file names the columns and is skipped
+   */
+  record Load(String tableName, String path, boolean header) implements Statement {}
+
+  /**
+   * {@code SET PARALLELISM [=] n}, changes the number of threads table scans of the session use.
+   */
+  record SetParallelism(int parallelism) implements Statement {}
+
+  /**
+   * {@code SET OUTPUT FORMAT [=] table|csv|tsv|json|binary}, changes the format the results of the
+   * session are written in.
+   */
+  record SetOutputFormat(ResultFormat format) implements Statement {}
+
+  /**
+   * {@code SET SLOW_QUERY_THRESHOLD [=] n}, changes the time in milliseconds from which queries
+   * are written to the slow query log.
+   */
+  record SetSlowQueryThreshold(long millis) implements Statement {}
+
+  /** {@code SHOW STATS}, prints the metrics of the executed queries. */
+  record ShowStats() implements Statement {}
+
+  /**
+   * {@code SELECT columns FROM table [alias] [JOIN table [alias] ON condition] [WHERE condition]
+   * [GROUP BY columns] [ORDER BY keys] [LIMIT n]}
+   *
+   * @param columns selected columns, {@code null} for all columns; aggregates are named like
+   *     {@code sum(score)}
+   * @param condition the condition, {@code null} if there is none
+   * @param limit maximum number of rows, {@code -1} for all rows
+   * @param alias name the columns of the table are qualified with, {@code null} for the table name
+   * @param join the joined table, {@code null} if there is none
+   * @param groupBy columns the rows are grouped by, {@code null} if there is no GROUP BY
+   * @param aggregates the aggregates the select computes, the selected ones in the order of the
+   *     columns followed by those only sorted by, {@code null} if there are none
+   * @param orderBy keys the rows are sorted by, {@code null} if there is no ORDER BY
+   */
+  record Select(
+      String tableName, List<String> columns, Expression condition, long limit, String alias,
+      Join join, List<String> groupBy, List<Aggregate> aggregates, List<SortKey> orderBy)
+      implements Statement {
+    Select(String tableName, List<String> columns, Expression condition, long limit) {
+      this(tableName, columns, condition, limit, null, null, null, null, null);
+    }
+
+    /**
+     * @return whether the select returns groups of rows rather than rows
+     */
+    public boolean isAggregate() {
+      return groupBy != null || aggregates != null;
+    }
+
+    /**
+     * @return the columns of the table the output is computed from, {@code null} for all columns
+     */
+    public List<String> inputColumns() {
+      if (!isAggregate()) {
+        if (columns == null || orderBy == null) {
+          return columns;
+        }
+        List<String> inputColumns = new ArrayList<>(columns);
+        for (SortKey key : orderBy) {
+          inputColumns.add(key.column());
+        }
+        return inputColumns;
+      }
+      List<String> inputColumns = new ArrayList<>();
+      if (groupBy != null) {
+        inputColumns.addAll(groupBy);
+      }
+      if (aggregates != null) {
+        for (Aggregate aggregate : aggregates) {
+          if (aggregate.column() != null) {
+            inputColumns.add(aggregate.column());
+          }
+        }
+      }
+      return inputColumns;
+    }
+  }
+
+  /**
+   * An aggregate of a {@link Select}, such as {@code COUNT(*)} or {@code MAX(score)}.
+   *
+   * @param column the aggregated column, {@code null} for {@code COUNT(*)}
+   */
+  record Aggregate(AggregateFunction function, String column) {
+    /**
+     * @return the name of the aggregate in the selected columns
+     */
+    public String name() {
+      return function.name().toLowerCase() + "(" + (column == null ? "*" : column) + ")";
+    }
+  }
+
+  /**
+   * A key of the {@code ORDER BY} of a {@link Select}.
+   *
+   * @param column the sorted column, an aggregate is named like {@code sum(score)}
+   * @param descending whether the key is sorted in descending order
+   */
+  record SortKey(String column, boolean descending) {
+    @Override
+    public String toString() {
+      return descending ? column + " desc" : column;
+    }
+  }
+
+  /**
+   * {@code JOIN table [alias] ON condition}, the second table of a {@link Select}.
+   *
+   * @param alias name the columns of the table are qualified with, {@code null} for the table name
+   */
+  record Join(String tableName, String alias, Expression condition) {}
+
+  /** {@code EXPLAIN [ANALYZE] SELECT ...} */
+  record Explain(Select select, boolean analyze) implements Statement {}
+
+  /** {@code ANALYZE table} */
+  record Analyze(String tableName) implements Statement {}
+}
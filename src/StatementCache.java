@@ -0,0 +1,82 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The {@code StatementCache} class keeps the parsed form of recently executed queries, so that a
+ * repeated query is not tokenized and parsed again. Queries are keyed by their text with runs of
+ * whitespace outside quotes collapsed, and the least recently used entry is dropped once the cache
+ * is full.
+ */
+public class StatementCache {
+  private final Map<String, Statement> statements;
+  private long hits;
+  private long misses;
+
+  public StatementCache(int capacity) {
+    this.statements =
+        new LinkedHashMap<>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<String, Statement> eldest) {
+            return size() > capacity;
+          }
+        };
+  }
+
+  /**
+   * Returns the parsed statement of a query, parsing it only if it is not cached.
+   *
+   * @param query the query
+   * @return the parsed statement
+   * @throws IncorrectQueryException if the query is not a valid statement
+   */
+  public Statement get(String query) throws IncorrectQueryException {
+    String key = normalize(query);
+    synchronized (this) {
+      Statement statement = statements.get(key);
+      if (statement != null) {
+        hits++;
+        return statement;
+      }
+      misses++;
+    }
+    /* Parsing happens outside the lock, two threads may parse the same new query at once */
+    Statement statement = SqlParser.parse(query);
+    synchronized (this) {
+      statements.put(key, statement);
+    }
+    return statement;
+  }
+
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  public synchronized long getMisses() {
+    return misses;
+  }
+
+  /* Collapses whitespace outside of quoted strings, which keep their exact content */
+  static String normalize(String query) {
+    StringBuilder normalized = new StringBuilder(query.length());
+    char quote = 0;
+    boolean pendingSpace = false;
+    for (int i = 0; i < query.length(); i++) {
+      char current = query.charAt(i);
+      if (quote == 0 && Character.isWhitespace(current)) {
+        pendingSpace = !normalized.isEmpty();
+        continue;
+      }
+      if (pendingSpace) {
+        normalized.append(' ');
+        pendingSpace = false;
+      }
+      if (quote == 0 && (current == '\'' || current == '"')) {
+        quote = current;
+      } else if (current == quote) {
+        quote = 0;
+      }
+      normalized.append(current);
+    }
+    return normalized.toString();
+  }
+}
@@ -0,0 +1,33 @@
+/**
+ * The {@code StorageFormat} enum lists the on-disk formats a table can be stored in, each with the
+ * extension of its table file.
+ */
+public enum StorageFormat {
+  /* Text rows separated by new lines, values separated by the custom delimiter */
+  TEXT(".csv"),
+  /* Binary fixed-size slotted pages with the schema in a header page */
+  PAGED(".tbl");
+
+  private final String fileExtension;
+
+  StorageFormat(String fileExtension) {
+    this.fileExtension = fileExtension;
+  }
+
+  public String getFileExtension() {
+    return fileExtension;
+  }
+
+  /**
+   * @param name name of the format, case-insensitive
+   * @return the format, or {@code null} if there is no format with this name
+   */
+  public static StorageFormat fromName(String name) {
+    for (StorageFormat format : values()) {
+      if (format.name().equalsIgnoreCase(name.trim())) {
+        return format;
+      }
+    }
+    return null;
+  }
+}
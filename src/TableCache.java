@@ -0,0 +1,259 @@
+import java.io.File;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The {@code TableCache} class keeps recently used tables in memory so that repeated queries on a
+ * hot table do not parse the table file again. Tables are evicted in least recently used order once
+ * the configured memory budget is exceeded, and an entry is dropped as soon as the modification
+ * time or size of its file no longer matches the one it was loaded from.
+ *
+ * <p>A cached table is only changed in place while no cursor reads it. Rows appended while it is
+ * being read drop it from the cache instead, the open cursors keep reading the old copy and the
+ * next query loads the file again.
+ */
+public class TableCache {
+  private final long memoryBudget;
+
+  /* Guards the cache; loading a table reads the versions and latches, a virtual thread waiting
+   * for a monitor around that would pin its carrier */
+  private final ReentrantLock lock = new ReentrantLock();
+
+  /* Access ordered map, the eldest entry is the least recently used table */
+  private final LinkedHashMap<String, CachedTable> tables = new LinkedHashMap<>(16, 0.75f, true);
+  private long usedMemory;
+
+  private long hits;
+  private long misses;
+  private long evictions;
+
+  public TableCache(long memoryBudget) {
+    this.memoryBudget = memoryBudget;
+  }
+
+  /**
+   * Opens a cursor over a table, loading the table file only if it is not cached or has changed
+   * since it was cached.
+   *
+   * @param tableName name of the table
+   * @param tableStorage storage of a text table, where row ids are offsets in the file
+   * @param tableSnapshot the rows that may be returned
+   * @return the cursor, or {@code null} if the table holds rows at or after the end row id of the
+   *     snapshot, rows of it were changed after the snapshot, or the file could not be read
+   */
+  public RowCursor openCursor(
+      String tableName, TableStorage tableStorage, TableSnapshot tableSnapshot) {
+    lock.lock();
+    try {
+      /* Rows changed in place are not in the cache as the snapshot sees them */
+      if (!tableSnapshot.isCurrent()) {
+        return null;
+      }
+      long endRowId = tableSnapshot.getEndRowId();
+      File tableFile = tableStorage.getFile();
+      CachedTable cachedTable = tables.get(tableName);
+      if (cachedTable != null && cachedTable.isFresh(tableFile)) {
+        hits++;
+      } else {
+        misses++;
+        if (cachedTable != null) {
+          remove(tableName);
+        }
+        /* Rows after the end would have to be read and thrown away on every query */
+        if (tableFile.length() > endRowId) {
+          return null;
+        }
+        ColumnarTable table = tableStorage.loadTable(null);
+        /* The old values of rows are kept before they are written, a row changed while the file
+         * was loaded is seen here */
+        if (table == null || !tableSnapshot.isCurrent()) {
+          return null;
+        }
+        cachedTable = new CachedTable(table, tableFile);
+        put(tableName, cachedTable);
+      }
+      if (cachedTable.length > endRowId) {
+        return null;
+      }
+      cachedTable.readers++;
+      return new CachedTableCursor(cachedTable);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Appends rows to a table file and, if the table is cached and was up-to-date before the append,
+   * adds the rows to the cached copy as well instead of dropping it.
+   *
+   * @param tableName name of the table
+   * @param tableStorage storage of the table
+   * @param values rows to be appended, already validated against the schema of the table
+   * @return the ids of the appended rows
+   */
+  public long[] appendRows(
+      String tableName, TableStorage tableStorage, List<List<String>> values) {
+    lock.lock();
+    try {
+      File tableFile = tableStorage.getFile();
+      CachedTable cachedTable = tables.get(tableName);
+      boolean wasFresh = cachedTable != null && cachedTable.isFresh(tableFile);
+
+      long[] rowIds = tableStorage.appendRows(values);
+
+      if (!wasFresh || cachedTable.readers > 0) {
+        invalidate(tableName);
+        return rowIds;
+      }
+      for (List<String> row : values) {
+        cachedTable.table.appendRow(row);
+      }
+      cachedTable.refreshStamp(tableFile);
+      long memory = cachedTable.table.estimateMemory();
+      usedMemory += memory - cachedTable.memory;
+      cachedTable.memory = memory;
+      evictIfNeeded(tableName);
+      return rowIds;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Drops the cached copy of a table, e.g. when the table is created or dropped.
+   *
+   * @param tableName name of the table
+   */
+  public void invalidate(String tableName) {
+    lock.lock();
+    try {
+      remove(tableName);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public long getHits() {
+    lock.lock();
+    try {
+      return hits;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public long getMisses() {
+    lock.lock();
+    try {
+      return misses;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public long getEvictions() {
+    lock.lock();
+    try {
+      return evictions;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public long getUsedMemory() {
+    lock.lock();
+    try {
+      return usedMemory;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public long getMemoryBudget() {
+    return memoryBudget;
+  }
+
+  private void put(String tableName, CachedTable cachedTable) {
+    /* A table that alone exceeds the budget is served but never cached */
+    if (cachedTable.memory > memoryBudget) {
+      return;
+    }
+    tables.put(tableName, cachedTable);
+    usedMemory += cachedTable.memory;
+    evictIfNeeded(tableName);
+  }
+
+  private void remove(String tableName) {
+    CachedTable removed = tables.remove(tableName);
+    if (removed != null) {
+      usedMemory -= removed.memory;
+    }
+  }
+
+  private void evictIfNeeded(String protectedTable) {
+    Iterator<Map.Entry<String, CachedTable>> iterator = tables.entrySet().iterator();
+    while (usedMemory > memoryBudget && iterator.hasNext()) {
+      Map.Entry<String, CachedTable> eldest = iterator.next();
+      if (eldest.getKey().equals(protectedTable) && tables.size() > 1) {
+        continue;
+      }
+      iterator.remove();
+      usedMemory -= eldest.getValue().memory;
+      evictions++;
+    }
+  }
+
+  private void release(CachedTable cachedTable) {
+    lock.lock();
+    try {
+      cachedTable.readers--;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private static class CachedTable {
+    private final ColumnarTable table;
+    /* Open cursors reading the table, guarded by the lock of the cache */
+    private int readers;
+    private long memory;
+    private long lastModified;
+    private long length;
+
+    private CachedTable(ColumnarTable table, File tableFile) {
+      this.table = table;
+      this.memory = table.estimateMemory();
+      refreshStamp(tableFile);
+    }
+
+    private boolean isFresh(File tableFile) {
+      return tableFile.lastModified() == lastModified && tableFile.length() == length;
+    }
+
+    private void refreshStamp(File tableFile) {
+      this.lastModified = tableFile.lastModified();
+      this.length = tableFile.length();
+    }
+  }
+
+  private class CachedTableCursor extends TableRowCursor {
+    private final CachedTable cachedTable;
+    private boolean closed;
+
+    private CachedTableCursor(CachedTable cachedTable) {
+      super(cachedTable.table);
+      this.cachedTable = cachedTable;
+    }
+
+    @Override
+    public void close() {
+      if (!closed) {
+        closed = true;
+        release(cachedTable);
+      }
+    }
+  }
+}
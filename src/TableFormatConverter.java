@@ -0,0 +1,114 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The {@code TableFormatConverter} class converts text table files into the paged format offline,
+ * while the database is not running. The text file is kept next to the new one with a {@code .bak}
+ * extension, so the table is served from the paged file afterwards.
+ *
+ * <p>Usage: {@code java TableFormatConverter files/<table>.csv [files/<table>.csv ...]}
+ */
+public class TableFormatConverter {
+  private static final int BATCH_SIZE = 10_000;
+
+  public static void main(String[] args) {
+    if (args.length == 0) {
+      System.out.println("Usage: java TableFormatConverter files/<table>.csv ...");
+      return;
+    }
+    for (String textFilePath : args) {
+      convert(textFilePath);
+    }
+  }
+
+  /**
+   * Converts a single text table file.
+   *
+   * @param textFilePath path of the text table file
+   */
+  public static void convert(String textFilePath) {
+    if (!textFilePath.endsWith(StorageFormat.TEXT.getFileExtension())) {
+      System.out.println("Not a text table file: " + textFilePath);
+      return;
+    }
+    /* The user store is read as text by the user service and must stay a text file */
+    File usersFile = new File(Constants.USERS_FILE_PATH).getAbsoluteFile();
+    if (new File(textFilePath).getAbsoluteFile().equals(usersFile)) {
+      System.out.println("The user store cannot be converted: " + textFilePath);
+      return;
+    }
+    String basePath =
+        textFilePath.substring(
+            0, textFilePath.length() - StorageFormat.TEXT.getFileExtension().length());
+    String pagedFilePath = basePath + StorageFormat.PAGED.getFileExtension();
+    if (new File(pagedFilePath).exists()) {
+      System.out.println("Paged file already exists: " + pagedFilePath);
+      return;
+    }
+
+    DataSerializer dataSerializer = new CustomDelimiterDataSerializerImplementation();
+    PagedTableStorageImplementation pagedStorage = new PagedTableStorageImplementation(pagedFilePath);
+    long rows = 0;
+    long skipped = 0;
+
+    /* Lines are read as bytes, one char each, so that deleted rows and filler lines can be told by
+     * their first byte before the rest is decoded */
+    try (BufferedReader bufferedReader =
+        new BufferedReader(new FileReader(textFilePath, StandardCharsets.ISO_8859_1))) {
+      String header = decode(bufferedReader.readLine());
+      if (header == null) {
+        System.out.println("Empty table file: " + textFilePath);
+        return;
+      }
+      TableSchema schema = TableSchema.fromHeader(dataSerializer.deserializeRow(header));
+      pagedStorage.create(schema);
+
+      /* Rows are streamed in batches, the text file is never loaded as a whole */
+      List<List<String>> batch = new ArrayList<>(BATCH_SIZE);
+      String line;
+      while ((line = bufferedReader.readLine()) != null) {
+        if (!line.isEmpty() && PersistentDataProcessor.isDeadLine((byte) line.charAt(0))) {
+          continue;
+        }
+        List<String> row = dataSerializer.deserializeRow(decode(line));
+        /* A row larger than a page is skipped too, it would stop the whole batch */
+        if (pagedStorage.validateRow(schema, row) != null) {
+          skipped++;
+          continue;
+        }
+        batch.add(row);
+        if (batch.size() == BATCH_SIZE) {
+          pagedStorage.appendRows(batch);
+          rows += batch.size();
+          batch.clear();
+        }
+      }
+      pagedStorage.appendRows(batch);
+      rows += batch.size();
+    } catch (IOException e) {
+      System.out.println("Error converting file: " + textFilePath);
+      e.printStackTrace();
+      new File(pagedFilePath).delete();
+      return;
+    }
+
+    File textFile = new File(textFilePath);
+    if (!textFile.renameTo(new File(textFilePath + ".bak"))) {
+      System.out.println("Could not rename " + textFilePath + ", remove it to use the paged file");
+    }
+    System.out.println(
+        "Converted " + textFilePath + " to " + pagedFilePath + ": " + rows + " rows, "
+            + skipped + " invalid rows skipped");
+  }
+
+  private static String decode(String bytes) {
+    return bytes == null
+        ? null
+        : new String(bytes.getBytes(StandardCharsets.ISO_8859_1), StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,39 @@
+/**
+ * The {@code TableRowCursor} class is a {@link RowCursor} over a table that is already in memory,
+ * such as a cached table or the rows fetched through an index.
+ */
+public class TableRowCursor implements RowCursor {
+  private final ColumnarTable table;
+  private int row = -1;
+
+  public TableRowCursor(ColumnarTable table) {
+    this.table = table;
+  }
+
+  @Override
+  public TableSchema getSchema() {
+    return table.getSchema();
+  }
+
+  @Override
+  public boolean next() {
+    if (row + 1 >= table.getRowCount()) {
+      return false;
+    }
+    row++;
+    return true;
+  }
+
+  @Override
+  public ColumnarTable getTable() {
+    return table;
+  }
+
+  @Override
+  public int getRow() {
+    return row;
+  }
+
+  @Override
+  public void close() {}
+}
@@ -0,0 +1,120 @@
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The {@code TableSchema} class holds the column names and types of a table. The schema is stored
+ * in the header row of the table file, each column as {@code name:TYPE}. Columns of files written
+ * before types were kept have no type and are treated as {@link ColumnType#VARCHAR}.
+ */
+public class TableSchema {
+  private static final String TYPE_SEPARATOR = ":";
+
+  private final List<String> columnNames;
+  private final List<ColumnType> columnTypes;
+
+  public TableSchema(List<String> columnNames, List<ColumnType> columnTypes) {
+    this.columnNames = List.copyOf(columnNames);
+    this.columnTypes = List.copyOf(columnTypes);
+  }
+
+  /**
+   * Builds the schema from the header row of a table file.
+   *
+   * @param header the header row
+   * @return schema of the table
+   */
+  public static TableSchema fromHeader(List<String> header) {
+    List<String> names = new ArrayList<>(header.size());
+    List<ColumnType> types = new ArrayList<>(header.size());
+    for (String column : header) {
+      int separatorIndex = column.lastIndexOf(TYPE_SEPARATOR);
+      ColumnType type =
+          separatorIndex == -1 ? null : ColumnType.fromDeclaration(column.substring(separatorIndex + 1));
+      if (type == null) {
+        names.add(column.trim());
+        types.add(ColumnType.VARCHAR);
+      } else {
+        names.add(column.substring(0, separatorIndex).trim());
+        types.add(type);
+      }
+    }
+    return new TableSchema(names, types);
+  }
+
+  /**
+   * Reads only the header row of a table file.
+   *
+   * @param filePath path of the table file
+   * @param dataSerializer serializer of the table file
+   * @return schema of the table, or {@code null} if the file could not be read
+   */
+  public static TableSchema read(String filePath, DataSerializer dataSerializer) {
+    try (BufferedReader bufferedReader = new BufferedReader(new FileReader(filePath))) {
+      String header = bufferedReader.readLine();
+      return header == null ? null : fromHeader(dataSerializer.deserializeRow(header));
+    } catch (IOException e) {
+      System.out.println("Error reading schema from file: " + filePath);
+      return null;
+    }
+  }
+
+  /**
+   * @return the header row, each column written as {@code name:TYPE}
+   */
+  public List<String> toHeader() {
+    List<String> header = new ArrayList<>(columnNames.size());
+    for (int i = 0; i < columnNames.size(); i++) {
+      header.add(columnNames.get(i) + TYPE_SEPARATOR + columnTypes.get(i));
+    }
+    return header;
+  }
+
+  public int getColumnCount() {
+    return columnNames.size();
+  }
+
+  public List<String> getColumnNames() {
+    return columnNames;
+  }
+
+  public String getColumnName(int column) {
+    return columnNames.get(column);
+  }
+
+  public ColumnType getColumnType(int column) {
+    return columnTypes.get(column);
+  }
+
+  /**
+   * The columns of a join are named {@code table.column}, and can also be found by the column name
+   * alone as long as only one of the joined tables has such a column.
+   *
+   * @param columnName name of the column, case-insensitive
+   * @return position of the column, or -1 if the table has no such column
+   */
+  public int indexOf(String columnName) {
+    String target = columnName.trim();
+    for (int i = 0; i < columnNames.size(); i++) {
+      if (columnNames.get(i).equalsIgnoreCase(target)) {
+        return i;
+      }
+    }
+    if (target.indexOf('.') != -1) {
+      return -1;
+    }
+    String suffix = "." + target.toLowerCase();
+    int found = -1;
+    for (int i = 0; i < columnNames.size(); i++) {
+      if (columnNames.get(i).toLowerCase().endsWith(suffix)) {
+        if (found != -1) {
+          return -1;
+        }
+        found = i;
+      }
+    }
+    return found;
+  }
+}
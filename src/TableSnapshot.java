@@ -0,0 +1,97 @@
+import java.util.Collections;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * The {@code TableSnapshot} class is what a {@link Snapshot} sees of one table: the rows before an
+ * end row id, where the rows appended by later transactions start, and for the rows later
+ * transactions changed in place, their values before the change, kept by the {@link
+ * VersionManager}. Cursors read the table file and put those old values in place of what they
+ * find on the rows, so a snapshot reads the table as it was, while it is being changed.
+ *
+ * <p>Writers change the file under the write side of a latch of the table, held for single writes
+ * only. Cursors read the file under its read side, so they never see a write half done.
+ */
+public class TableSnapshot {
+  /** Every row of a table file as it is, for readers that no change can run concurrently with */
+  public static final TableSnapshot ALL_ROWS = upTo(Long.MAX_VALUE);
+
+  private final VersionManager versionManager;
+  private final String tableName;
+  private final long lsn;
+  private final long endRowId;
+  private final Lock latch;
+
+  /**
+   * @param versionManager the manager keeping the old values of changed rows
+   * @param tableName lower-case name of the table
+   * @param lsn sequence number of the snapshot
+   * @param endRowId the id before which the rows are visible to the snapshot
+   * @param latch read side of the latch of the table
+   */
+  public TableSnapshot(
+      VersionManager versionManager, String tableName, long lsn, long endRowId, Lock latch) {
+    this.versionManager = versionManager;
+    this.tableName = tableName;
+    this.lsn = lsn;
+    this.endRowId = endRowId;
+    this.latch = latch;
+  }
+
+  /**
+   * @param endRowId the id before which rows are read, {@code Long.MAX_VALUE} for all rows
+   * @return the rows of a table file before an id, as they are, without a latch
+   */
+  public static TableSnapshot upTo(long endRowId) {
+    return new TableSnapshot(null, null, 0, endRowId, null);
+  }
+
+  /**
+   * @return the id before which the rows are visible, {@code Long.MAX_VALUE} for all rows
+   */
+  public long getEndRowId() {
+    return endRowId;
+  }
+
+  /**
+   * Tells whether the table file holds every row as the snapshot sees it, so that indexes, the
+   * table cache and counts from the layout of the file can be used. Rows appended after the end
+   * row id do not count.
+   *
+   * @return whether no transaction the snapshot does not see has changed rows in place
+   */
+  public boolean isCurrent() {
+    return versionManager == null || versionManager.isCurrent(tableName, lsn);
+  }
+
+  /**
+   * Returns the old values of the rows changed in place after the snapshot. A cursor asks for them
+   * after it has read the rows from the file, as the old values are kept before a row is written.
+   *
+   * @param fromRowId first row id of the range
+   * @param toRowId row id after the range
+   * @return the values the snapshot sees, by row id; a row that is deleted or moved in the file is
+   *     read from here as well
+   */
+  public NavigableMap<Long, List<String>> changedRows(long fromRowId, long toRowId) {
+    if (versionManager == null) {
+      return Collections.emptyNavigableMap();
+    }
+    return versionManager.changedRows(tableName, lsn, fromRowId, Math.min(toRowId, endRowId));
+  }
+
+  /** Keeps the table file from being written until {@link #endRead()}. */
+  public void beginRead() {
+    if (latch != null) {
+      latch.lock();
+    }
+  }
+
+  /** Lets the table file be written again. */
+  public void endRead() {
+    if (latch != null) {
+      latch.unlock();
+    }
+  }
+}
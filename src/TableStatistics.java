@@ -0,0 +1,348 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * The {@code TableStatistics} class holds what {@code ANALYZE} found out about the rows of a
+ * table: the row count, and for every column the fraction of nulls, an estimate of the number of
+ * distinct values, the smallest and largest value and, for numeric columns, an equi-depth
+ * histogram. The {@link QueryPlanner} estimates the selectivity of conditions from them.
+ *
+ * <p>Distinct values are counted with a sketch of the smallest value hashes, which is exact for
+ * columns with few distinct values, and histograms are built from a sample of the values, so
+ * analyzing a table takes memory independent of its size.
+ */
+public class TableStatistics {
+  /* Changed whenever the layout of the file changes, older files are then ignored */
+  private static final int MAGIC = 0x53544132;
+  /* Smallest hashes kept by a distinct value sketch */
+  private static final int SKETCH_SIZE = 1024;
+  /* Values sampled per numeric column for its histogram */
+  private static final int SAMPLE_SIZE = 10_000;
+  private static final int HISTOGRAM_BUCKETS = 32;
+
+  private final long rowCount;
+  private final long fileLength;
+  private final long analyzedAt;
+  private final ColumnStatistics[] columns;
+
+  /**
+   * Statistics of one column.
+   *
+   * @param name name of the column
+   * @param type type of the column
+   * @param nullFraction fraction of the rows in which the column is null
+   * @param distinctCount estimated number of distinct values other than null
+   * @param min smallest value, {@code null} if all values are null
+   * @param max largest value, {@code null} if all values are null
+   * @param histogram bounds of equal-sized buckets of the values of a numeric column, empty for
+   *     other columns
+   * @param sortedFraction fraction of the non-null values of a numeric column not smaller than the
+   *     one before them in file order, 1 for a column the rows were inserted in order of, 0 for
+   *     other columns
+   */
+  public record ColumnStatistics(
+      String name,
+      ColumnType type,
+      double nullFraction,
+      long distinctCount,
+      String min,
+      String max,
+      double[] histogram,
+      double sortedFraction) {}
+
+  private TableStatistics(
+      long rowCount, long fileLength, long analyzedAt, ColumnStatistics[] columns) {
+    this.rowCount = rowCount;
+    this.fileLength = fileLength;
+    this.analyzedAt = analyzedAt;
+    this.columns = columns;
+  }
+
+  /**
+   * Reads the rows of a cursor and collects their statistics.
+   *
+   * @param cursor rows of the table, closed by the caller
+   * @param fileLength length of the table file when the rows were read
+   * @return the statistics
+   */
+  public static TableStatistics collect(RowCursor cursor, long fileLength) {
+    TableSchema schema = cursor.getSchema();
+    int columnCount = schema.getColumnCount();
+    ColumnCollector[] collectors = new ColumnCollector[columnCount];
+    for (int column = 0; column < columnCount; column++) {
+      collectors[column] = new ColumnCollector(schema.getColumnType(column));
+    }
+    long rowCount = 0;
+    while (cursor.next()) {
+      ColumnarTable table = cursor.getTable();
+      int row = cursor.getRow();
+      for (int column = 0; column < columnCount; column++) {
+        collectors[column].add(table, column, row);
+      }
+      rowCount++;
+    }
+    ColumnStatistics[] columns = new ColumnStatistics[columnCount];
+    for (int column = 0; column < columnCount; column++) {
+      columns[column] = collectors[column].finish(schema.getColumnName(column), rowCount);
+    }
+    return new TableStatistics(rowCount, fileLength, System.currentTimeMillis(), columns);
+  }
+
+  /**
+   * @param filePath the statistics file
+   * @return the statistics in the file, or {@code null} if there is none or it cannot be read
+   */
+  public static TableStatistics read(String filePath) {
+    File file = new File(filePath);
+    if (!file.exists()) {
+      return null;
+    }
+    try (DataInputStream input =
+        new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+      if (input.readInt() != MAGIC) {
+        return null;
+      }
+      long rowCount = input.readLong();
+      long fileLength = input.readLong();
+      long analyzedAt = input.readLong();
+      ColumnStatistics[] columns = new ColumnStatistics[input.readInt()];
+      for (int column = 0; column < columns.length; column++) {
+        String name = input.readUTF();
+        ColumnType type = ColumnType.valueOf(input.readUTF());
+        double nullFraction = input.readDouble();
+        long distinctCount = input.readLong();
+        String min = input.readBoolean() ? input.readUTF() : null;
+        String max = input.readBoolean() ? input.readUTF() : null;
+        double[] histogram = new double[input.readInt()];
+        for (int bound = 0; bound < histogram.length; bound++) {
+          histogram[bound] = input.readDouble();
+        }
+        double sortedFraction = input.readDouble();
+        columns[column] =
+            new ColumnStatistics(
+                name, type, nullFraction, distinctCount, min, max, histogram, sortedFraction);
+      }
+      return new TableStatistics(rowCount, fileLength, analyzedAt, columns);
+    } catch (IOException | IllegalArgumentException e) {
+      System.out.println("Ignoring unreadable statistics file " + filePath);
+      return null;
+    }
+  }
+
+  /**
+   * @param filePath the statistics file, replaced if it exists
+   * @throws IOException if the file cannot be written
+   */
+  public void write(String filePath) throws IOException {
+    try (DataOutputStream output =
+        new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filePath)))) {
+      output.writeInt(MAGIC);
+      output.writeLong(rowCount);
+      output.writeLong(fileLength);
+      output.writeLong(analyzedAt);
+      output.writeInt(columns.length);
+      for (ColumnStatistics column : columns) {
+        output.writeUTF(column.name());
+        output.writeUTF(column.type().name());
+        output.writeDouble(column.nullFraction());
+        output.writeLong(column.distinctCount());
+        output.writeBoolean(column.min() != null);
+        if (column.min() != null) {
+          output.writeUTF(column.min());
+        }
+        output.writeBoolean(column.max() != null);
+        if (column.max() != null) {
+          output.writeUTF(column.max());
+        }
+        output.writeInt(column.histogram().length);
+        for (double bound : column.histogram()) {
+          output.writeDouble(bound);
+        }
+        output.writeDouble(column.sortedFraction());
+      }
+    }
+  }
+
+  /**
+   * @return number of rows when the table was analyzed
+   */
+  public long getRowCount() {
+    return rowCount;
+  }
+
+  /**
+   * @param currentFileLength length of the table file now
+   * @return the row count scaled by how much the file has grown since it was analyzed
+   */
+  public double estimateRowCount(long currentFileLength) {
+    if (fileLength <= 0 || rowCount == 0) {
+      return rowCount;
+    }
+    return (double) rowCount * currentFileLength / fileLength;
+  }
+
+  /**
+   * @return time the table was analyzed in milliseconds since the epoch
+   */
+  public long getAnalyzedAt() {
+    return analyzedAt;
+  }
+
+  /**
+   * @param columnName name of a column, in any case
+   * @return its statistics, or {@code null} if the table has no such column
+   */
+  public ColumnStatistics getColumn(String columnName) {
+    for (ColumnStatistics column : columns) {
+      if (column.name().equalsIgnoreCase(columnName.trim())) {
+        return column;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @return statistics of all columns, in the order of the schema
+   */
+  public ColumnStatistics[] getColumns() {
+    return columns.clone();
+  }
+
+  /* Gathers the statistics of one column while the rows stream past */
+  private static final class ColumnCollector {
+    private final ColumnType type;
+    private final long[] sketch = new long[SKETCH_SIZE];
+    private int sketchLength;
+    private final double[] sample;
+    private long sampled;
+    private final Random random = new Random(SAMPLE_SIZE);
+    private long nullCount;
+    private double minNumber = Double.POSITIVE_INFINITY;
+    private double maxNumber = Double.NEGATIVE_INFINITY;
+    private String minText;
+    private String maxText;
+    private double lastNumber = Double.NEGATIVE_INFINITY;
+    private long orderedCount;
+
+    private ColumnCollector(ColumnType type) {
+      this.type = type;
+      this.sample = type.isNumeric() ? new double[SAMPLE_SIZE] : null;
+    }
+
+    private void add(ColumnarTable table, int column, int row) {
+      if (table.isNull(column, row)) {
+        nullCount++;
+        return;
+      }
+      long hash;
+      if (type.isNumeric()) {
+        double value = table.getNumber(column, row);
+        hash = mix(Double.doubleToLongBits(value == 0 ? 0 : value));
+        if (value >= lastNumber) {
+          orderedCount++;
+        }
+        lastNumber = value;
+        minNumber = Math.min(minNumber, value);
+        maxNumber = Math.max(maxNumber, value);
+        /* Reservoir sampling keeps every value with the same probability */
+        if (sampled < SAMPLE_SIZE) {
+          sample[(int) sampled] = value;
+        } else {
+          long slot = (long) (random.nextDouble() * (sampled + 1));
+          if (slot < SAMPLE_SIZE) {
+            sample[(int) slot] = value;
+          }
+        }
+        sampled++;
+      } else {
+        String value = table.format(column, row);
+        hash = hash(value);
+        if (minText == null || value.compareTo(minText) < 0) {
+          minText = value;
+        }
+        if (maxText == null || value.compareTo(maxText) > 0) {
+          maxText = value;
+        }
+      }
+      addHash(hash >>> 1);
+    }
+
+    /* Keeps the smallest distinct hashes in ascending order */
+    private void addHash(long hash) {
+      if (sketchLength == SKETCH_SIZE && hash >= sketch[SKETCH_SIZE - 1]) {
+        return;
+      }
+      int position = Arrays.binarySearch(sketch, 0, sketchLength, hash);
+      if (position >= 0) {
+        return;
+      }
+      position = -position - 1;
+      int moved = Math.min(sketchLength, SKETCH_SIZE - 1) - position;
+      System.arraycopy(sketch, position, sketch, position + 1, moved);
+      sketch[position] = hash;
+      sketchLength = Math.min(sketchLength + 1, SKETCH_SIZE);
+    }
+
+    private ColumnStatistics finish(String name, long rowCount) {
+      long distinctCount = sketchLength;
+      if (sketchLength == SKETCH_SIZE) {
+        /* The k-th smallest of n uniform hashes lies near k / n of the hash range */
+        double fraction = (double) sketch[SKETCH_SIZE - 1] / Long.MAX_VALUE;
+        distinctCount = Math.round((SKETCH_SIZE - 1) / fraction);
+      }
+      String min = minText;
+      String max = maxText;
+      double[] histogram = new double[0];
+      if (type.isNumeric() && sampled > 0) {
+        min = format(minNumber);
+        max = format(maxNumber);
+        double[] values = Arrays.copyOf(sample, (int) Math.min(sampled, SAMPLE_SIZE));
+        Arrays.sort(values);
+        histogram = new double[HISTOGRAM_BUCKETS + 1];
+        for (int bound = 0; bound <= HISTOGRAM_BUCKETS; bound++) {
+          int position = (int) ((long) bound * (values.length - 1) / HISTOGRAM_BUCKETS);
+          histogram[bound] = values[position];
+        }
+        /* The sample may have missed the extremes */
+        histogram[0] = minNumber;
+        histogram[HISTOGRAM_BUCKETS] = maxNumber;
+      }
+      double nullFraction = rowCount == 0 ? 0 : (double) nullCount / rowCount;
+      double sortedFraction = sampled == 0 ? 0 : (double) orderedCount / sampled;
+      return new ColumnStatistics(
+          name, type, nullFraction, distinctCount, min, max, histogram, sortedFraction);
+    }
+
+    private String format(double value) {
+      return type == ColumnType.DOUBLE ? Double.toString(value) : Long.toString((long) value);
+    }
+  }
+
+  /* 64-bit FNV-1a of the characters, finished by mix */
+  private static long hash(String value) {
+    long hash = 0xcbf29ce484222325L;
+    for (int i = 0; i < value.length(); i++) {
+      hash ^= value.charAt(i);
+      hash *= 0x100000001b3L;
+    }
+    return mix(hash);
+  }
+
+  /* Spreads the bits of a value over the whole hash, from MurmurHash3 */
+  private static long mix(long value) {
+    value ^= value >>> 33;
+    value *= 0xff51afd7ed558ccdL;
+    value ^= value >>> 33;
+    value *= 0xc4ceb9fe1a85ec53L;
+    value ^= value >>> 33;
+    return value;
+  }
+}
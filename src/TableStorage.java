@@ -0,0 +1,186 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * The {@code TableStorage} interface defines how the rows of a table are kept on disk, independent
+ * of the file format.
+ */
+public interface TableStorage {
+  /**
+   * @return the file holding the table
+   */
+  File getFile();
+
+  /**
+   * @return the format of the table file
+   */
+  StorageFormat getFormat();
+
+  /**
+   * Creates an empty table file holding only the schema.
+   *
+   * @param schema column names and types of the table
+   */
+  void create(TableSchema schema);
+
+  /**
+   * Reads the schema without reading any rows.
+   *
+   * @return the schema, or {@code null} if the file could not be read
+   */
+  TableSchema readSchema();
+
+  /**
+   * Loads the rows of the table.
+   *
+   * @param projection the columns that have to be read, or {@code null} for all of them. A format
+   *     may skip decoding the other columns, in which case they read as null.
+   * @return the table, or {@code null} if the file could not be read
+   */
+  ColumnarTable loadTable(boolean[] projection);
+
+  /**
+   * Opens a cursor reading the rows of the table incrementally, in the order of {@link
+   * #loadTable(boolean[])}. Rows at or above the end row id of the snapshot are not read, and rows
+   * changed in place after it are read with the values it sees, also while they are changed.
+   *
+   * @param projection the columns that have to be read, or {@code null} for all of them
+   * @param tableSnapshot the rows that are read, {@link TableSnapshot#ALL_ROWS} for all rows
+   * @return the cursor, which has to be closed, or {@code null} if the file could not be read; it
+   *     tells the id of every row
+   */
+  RowCursor openCursor(boolean[] projection, TableSnapshot tableSnapshot);
+
+  /**
+   * Opens a cursor over one of {@code segmentCount} parts of roughly equal size the table file is
+   * split into. The parts do not overlap, and reading them in order returns the rows in the order
+   * of {@link #openCursor(boolean[], TableSnapshot)}, so they can be scanned in parallel.
+   *
+   * @param fileLength length of the table file the split is based on, the same for every part
+   * @param segment number of the part, from 0
+   * @param segmentCount number of parts
+   * @param projection the columns that have to be read, or {@code null} for all of them
+   * @param tableSnapshot the rows that are read, {@link TableSnapshot#ALL_ROWS} for all rows
+   * @return the cursor, which has to be closed, or {@code null} if the file could not be read
+   */
+  RowCursor openSegmentCursor(
+      long fileLength,
+      int segment,
+      int segmentCount,
+      boolean[] projection,
+      TableSnapshot tableSnapshot);
+
+  /**
+   * Checks that a row is valid for the schema, see {@link ColumnarTable#validateRow(TableSchema,
+   * List)}, and that the format can store it.
+   *
+   * @param schema column names and types of the table
+   * @param row values of the row
+   * @return description of the problem, or {@code null} if the row can be stored
+   */
+  String validateRow(TableSchema schema, List<String> row);
+
+  /**
+   * Appends rows to the end of the table without rewriting the existing rows.
+   *
+   * @param rows rows to be appended, already validated against the schema of the table
+   * @return the ids of the appended rows, or an empty array if nothing was written
+   */
+  long[] appendRows(List<List<String>> rows);
+
+  /**
+   * Marks rows as deleted where they are. No other row moves and their ids stay valid; the space
+   * of the deleted rows is only given back by {@link #compactTo(File)}.
+   *
+   * @param rowIds ids of the rows to be deleted, rows that are already deleted are left as they are
+   * @return the number of bytes that became unused
+   * @throws IOException if the file cannot be written
+   */
+  long deleteRows(long[] rowIds) throws IOException;
+
+  /**
+   * Replaces rows where they are, keeping their ids, if the new version fits into the space the
+   * row was given when it was appended. Whether a row fits only depends on that space and the new
+   * values, so the same call makes the same decisions when it is repeated.
+   *
+   * @param rowIds ids of the rows to be replaced
+   * @param rows the new values, already validated against the schema of the table
+   * @return for every row whether it was replaced; rows that do not fit are left unchanged
+   * @throws IOException if the file cannot be written
+   */
+  boolean[] updateRows(long[] rowIds, List<List<String>> rows) throws IOException;
+
+  /**
+   * Writes the rows that are not deleted, in order, to a new file of the same format that holds no
+   * unused space. The rows get new ids there. The table file itself is not changed.
+   *
+   * @param target file to be written, replaced if it exists, and forced to disk
+   * @return the number of rows written
+   * @throws IOException if a file cannot be read or written
+   */
+  long compactTo(File target) throws IOException;
+
+  /**
+   * Row ids grow in the order rows are appended. The result is larger than the id of every row in
+   * the table and not larger than the id the next appended row gets, so it separates the rows
+   * that exist now from the rows appended later.
+   *
+   * @return the end of the row ids
+   * @throws IOException if the file cannot be read
+   */
+  long endRowId() throws IOException;
+
+  /**
+   * Reads the id of every row, in the order {@link #loadTable(boolean[])} returns the rows. A row
+   * id locates the row in the file and stays valid until the file is rewritten.
+   *
+   * @return the row ids, or {@code null} if the file could not be read
+   */
+  long[] loadRowIds();
+
+  /**
+   * Counts the rows of the table from the layout of the file, without decoding them.
+   *
+   * @param endRowId only rows with smaller ids are counted, {@code Long.MAX_VALUE} for all rows
+   * @return number of rows
+   * @throws IOException if the file cannot be read
+   */
+  long countRows(long endRowId) throws IOException;
+
+  /**
+   * Reads single rows by their ids without scanning the table. Rows that are deleted are left
+   * out.
+   *
+   * @param rowIds ids of the rows to be read
+   * @param projection the columns that have to be read, or {@code null} for all of them
+   * @param tableSnapshot the snapshot the rows are read in, {@link TableSnapshot#ALL_ROWS} for the
+   *     rows as they are in the file
+   * @return the rows in the order of the given ids, or {@code null} if the file could not be read
+   */
+  ColumnarTable fetchRows(long[] rowIds, boolean[] projection, TableSnapshot tableSnapshot);
+
+  /**
+   * Forces the table file to disk.
+   *
+   * @throws IOException if the file cannot be forced
+   */
+  void sync() throws IOException;
+
+  /**
+   * Describes where the rows of the table currently end, so that rows appended later can be cut
+   * off again with {@link #restore(long[])}.
+   *
+   * @return the end of the table, in a form only this format understands
+   * @throws IOException if the file cannot be read
+   */
+  long[] mark() throws IOException;
+
+  /**
+   * Removes every row appended after the mark was taken.
+   *
+   * @param mark a result of {@link #mark()}
+   * @throws IOException if the file cannot be written
+   */
+  void restore(long[] mark) throws IOException;
+}
@@ -0,0 +1,60 @@
+/**
+ * The {@code TextTableResultSinkImplementation} class writes a result as the text table of the
+ * console: a header line of column names and a line per row, every value after a bar and
+ * followed by a tab.
+ */
+public class TextTableResultSinkImplementation implements ResultSink {
+  private static final String SEPARATOR = "----------------";
+
+  private final ResultBuffer buffer;
+  private int[] columns;
+  private ColumnType[] types;
+
+  /**
+   * @param buffer receives the table
+   */
+  public TextTableResultSinkImplementation(ResultBuffer buffer) {
+    this.buffer = buffer;
+  }
+
+  @Override
+  public void writeHeader(TableSchema schema, int[] columns) {
+    this.columns = columns;
+    this.types = new ColumnType[columns.length];
+    for (int i = 0; i < columns.length; i++) {
+      types[i] = schema.getColumnType(columns[i]);
+      buffer.writeText("| ");
+      buffer.writeText(schema.getColumnName(columns[i]));
+      buffer.writeByte('\t');
+    }
+    buffer.writeText("|\n");
+    for (int i = 0; i < schema.getColumnCount(); i++) {
+      buffer.writeText(SEPARATOR);
+    }
+    buffer.writeByte('\n');
+  }
+
+  @Override
+  public void writeRow(ColumnarTable table, int row) {
+    for (int i = 0; i < columns.length; i++) {
+      buffer.writeText("| ");
+      if (table.isNull(columns[i], row)) {
+        buffer.writeText("null");
+      } else {
+        buffer.writeValue(table, types[i], columns[i], row);
+      }
+      buffer.writeByte('\t');
+    }
+    buffer.writeText("|\n");
+  }
+
+  @Override
+  public void flush() {
+    buffer.flush();
+  }
+
+  @Override
+  public void close() {
+    buffer.close();
+  }
+}
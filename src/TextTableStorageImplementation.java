@@ -0,0 +1,513 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.stream.LongStream;
+
+/**
+ * The {@code TextTableStorageImplementation} class stores a table as text through a {@link
+ * PersistentDataProcessor} and a {@link DataSerializer}, one row per line.
+ */
+public class TextTableStorageImplementation implements TableStorage {
+  /* Rows converted at once by a cursor */
+  private static final int BATCH_SIZE = 1024;
+
+  private final String dataFilePath;
+  private final DataSerializer dataSerializer;
+  private final PersistentDataProcessor persistentDataProcessor;
+
+  public TextTableStorageImplementation(String dataFilePath, DataSerializer dataSerializer) {
+    this.dataFilePath = dataFilePath;
+    this.dataSerializer = dataSerializer;
+    this.persistentDataProcessor = new PersistentDataProcessor(dataFilePath, dataSerializer);
+  }
+
+  @Override
+  public File getFile() {
+    return new File(dataFilePath);
+  }
+
+  @Override
+  public StorageFormat getFormat() {
+    return StorageFormat.TEXT;
+  }
+
+  @Override
+  public void create(TableSchema schema) {
+    persistentDataProcessor.saveData(new Data(List.of(schema.toHeader())));
+  }
+
+  @Override
+  public TableSchema readSchema() {
+    return TableSchema.read(dataFilePath, dataSerializer);
+  }
+
+  @Override
+  public String validateRow(TableSchema schema, List<String> row) {
+    String error = ColumnarTable.validateRow(schema, row);
+    if (error != null) {
+      return error;
+    }
+    for (int i = 0; i < row.size(); i++) {
+      if (!dataSerializer.canSerialize(row.get(i))) {
+        return "Value for column "
+            + schema.getColumnName(i)
+            + " cannot be stored in a text table, where line breaks and -_- split it";
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Every line has to be split anyway, so all columns are always loaded.
+   *
+   * @param projection ignored
+   * @return the table
+   */
+  @Override
+  public ColumnarTable loadTable(boolean[] projection) {
+    return persistentDataProcessor.loadTable();
+  }
+
+  /**
+   * @param projection ignored, every line is split completely
+   * @param tableSnapshot the rows that are read, up to the offset of its end row id
+   * @return a cursor reading the file one batch of lines at a time
+   */
+  @Override
+  public RowCursor openCursor(boolean[] projection, TableSnapshot tableSnapshot) {
+    return persistentDataProcessor.openCursor(0, Long.MAX_VALUE, BATCH_SIZE, tableSnapshot);
+  }
+
+  /**
+   * Splits the file into byte ranges; a line belongs to the range it starts in.
+   *
+   * @return a cursor reading the lines of the range
+   */
+  @Override
+  public RowCursor openSegmentCursor(
+      long fileLength,
+      int segment,
+      int segmentCount,
+      boolean[] projection,
+      TableSnapshot tableSnapshot) {
+    long start = fileLength * segment / segmentCount;
+    long end = fileLength * (segment + 1) / segmentCount;
+    return persistentDataProcessor.openCursor(start, end, BATCH_SIZE, tableSnapshot);
+  }
+
+  /**
+   * @param rows rows to be appended, already validated against the schema of the table
+   * @return the byte offsets of the appended rows, which are their row ids
+   */
+  @Override
+  public long[] appendRows(List<List<String>> rows) {
+    return persistentDataProcessor.appendData(new Data(rows));
+  }
+
+  @Override
+  public void sync() throws IOException {
+    try (FileChannel channel = FileChannel.open(Path.of(dataFilePath), StandardOpenOption.WRITE)) {
+      channel.force(true);
+    }
+  }
+
+  /**
+   * @return the length of the file, where the line of the next row starts
+   */
+  @Override
+  public long endRowId() {
+    return new File(dataFilePath).length();
+  }
+
+  /**
+   * Rows are only ever appended, so the length of the file marks their end.
+   *
+   * @return the length of the file
+   */
+  @Override
+  public long[] mark() {
+    return new long[] {new File(dataFilePath).length()};
+  }
+
+  @Override
+  public void restore(long[] mark) throws IOException {
+    try (FileChannel channel = FileChannel.open(Path.of(dataFilePath), StandardOpenOption.WRITE)) {
+      if (channel.size() > mark[0]) {
+        channel.truncate(mark[0]);
+        channel.force(true);
+      }
+    }
+  }
+
+  /**
+   * The id of a row is the byte offset its line starts at.
+   *
+   * @return the row ids
+   */
+  @Override
+  public long[] loadRowIds() {
+    try (FileChannel channel = FileChannel.open(Path.of(dataFilePath), StandardOpenOption.READ)) {
+      LongStream.Builder rowIds = LongStream.builder();
+      /* The header line at offset 0 is not a row */
+      scanLines(
+          channel,
+          Long.MAX_VALUE,
+          (lineStart, lineEnd, row) -> {
+            if (row && lineStart > 0) {
+              rowIds.add(lineStart);
+            }
+          });
+      return rowIds.build().toArray();
+    } catch (IOException e) {
+      System.out.println("Error loading data from file: " + dataFilePath);
+      return null;
+    }
+  }
+
+  /**
+   * Every complete line after the header that is not deleted or filler is a row, so only the line
+   * ends and first bytes are looked at.
+   *
+   * @param endRowId offset at which counting stops
+   * @return number of rows on the lines before the offset
+   */
+  @Override
+  public long countRows(long endRowId) throws IOException {
+    try (FileChannel channel = FileChannel.open(Path.of(dataFilePath), StandardOpenOption.READ)) {
+      long[] rows = new long[1];
+      scanLines(
+          channel,
+          Math.min(channel.size(), endRowId),
+          (lineStart, lineEnd, row) -> {
+            if (row) {
+              rows[0]++;
+            }
+          });
+      return Math.max(rows[0] - 1, 0);
+    }
+  }
+
+  /**
+   * Reads every row by seeking to its offset and reading up to the end of its line.
+   *
+   * @param rowIds ids of the rows to be read
+   * @param projection ignored, every line is split completely
+   * @param tableSnapshot the snapshot the rows are read in
+   * @return the rows, without the ones that are deleted
+   */
+  @Override
+  public ColumnarTable fetchRows(
+      long[] rowIds, boolean[] projection, TableSnapshot tableSnapshot) {
+    TableSchema schema = readSchema();
+    if (schema == null) {
+      return null;
+    }
+    ColumnarTable table = new ColumnarTable(schema);
+    if (rowIds.length == 0) {
+      return table;
+    }
+    /* Rows written before the latch was taken have their old values kept already */
+    tableSnapshot.beginRead();
+    try (FileChannel channel = FileChannel.open(Path.of(dataFilePath), StandardOpenOption.READ)) {
+      NavigableMap<Long, List<String>> changedRows =
+          tableSnapshot.changedRows(
+              Arrays.stream(rowIds).min().getAsLong(),
+              Arrays.stream(rowIds).max().getAsLong() + 1);
+      LineWindow window = new LineWindow(channel);
+      for (long rowId : rowIds) {
+        if (changedRows.containsKey(rowId)) {
+          table.appendRow(changedRows.get(rowId));
+          continue;
+        }
+        String line = window.readRow(rowId);
+        if (line == null) {
+          continue;
+        }
+        try {
+          table.appendRow(dataSerializer.deserializeRow(line));
+        } catch (IllegalArgumentException e) {
+          System.out.println("Skipping invalid row in " + dataFilePath + ": " + line);
+        }
+      }
+      return table;
+    } catch (IOException e) {
+      System.out.println("Error loading data from file: " + dataFilePath);
+      return null;
+    } finally {
+      tableSnapshot.endRead();
+    }
+  }
+
+  /**
+   * A deleted row keeps its line, only its first byte is overwritten with {@link
+   * PersistentDataProcessor#DELETED_LINE}, so deleting a row writes a single byte.
+   *
+   * @param rowIds ids of the rows to be deleted
+   * @return the bytes of the deleted lines and of the filler lines following them
+   */
+  @Override
+  public long deleteRows(long[] rowIds) throws IOException {
+    long unused = 0;
+    try (FileChannel channel =
+        FileChannel.open(
+            Path.of(dataFilePath), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      LineWindow window = new LineWindow(channel);
+      for (long rowId : rowIds) {
+        /* An empty line has no byte to mark without joining it to the next line */
+        int space = window.readRow(rowId) == null ? -1 : window.space(rowId);
+        if (space <= 0) {
+          continue;
+        }
+        window.write(rowId, new byte[] {PersistentDataProcessor.DELETED_LINE});
+        unused += space + 1;
+      }
+    }
+    return unused;
+  }
+
+  /**
+   * The space of a row is its line and the filler lines following it. A new line of the same
+   * length overwrites the old one, a shorter one is followed by a new filler line over the rest of
+   * the space, which needs at least two bytes for its first byte and its new line.
+   *
+   * @param rowIds ids of the rows to be replaced
+   * @param rows the new values
+   * @return for every row whether its new line fitted
+   */
+  @Override
+  public boolean[] updateRows(long[] rowIds, List<List<String>> rows) throws IOException {
+    boolean[] updated = new boolean[rowIds.length];
+    try (FileChannel channel =
+        FileChannel.open(
+            Path.of(dataFilePath), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      LineWindow window = new LineWindow(channel);
+      for (int i = 0; i < rowIds.length; i++) {
+        int space = window.space(rowIds[i]);
+        byte[] line = dataSerializer.serializeRow(rows.get(i)).getBytes(StandardCharsets.UTF_8);
+        /* Without its new line, the new line of the space is kept */
+        int length = line.length - 1;
+        if (length == space) {
+          window.write(rowIds[i], Arrays.copyOf(line, length));
+        } else if (space >= 0 && length <= space - 2) {
+          byte[] bytes = Arrays.copyOf(line, space);
+          bytes[line.length] = PersistentDataProcessor.FILLER_LINE;
+          Arrays.fill(bytes, line.length + 1, space, (byte) ' ');
+          window.write(rowIds[i], bytes);
+        } else {
+          continue;
+        }
+        updated[i] = true;
+      }
+    }
+    return updated;
+  }
+
+  /**
+   * Copies the header and the rows as they are, consecutive rows with a single transfer.
+   *
+   * @param target file to be written
+   * @return the number of rows written
+   */
+  @Override
+  public long compactTo(File target) throws IOException {
+    try (FileChannel channel = FileChannel.open(Path.of(dataFilePath), StandardOpenOption.READ);
+        FileChannel output =
+            FileChannel.open(
+                target.toPath(),
+                StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+      /* Start and end of the lines not copied yet, and the number of lines */
+      long[] run = new long[3];
+      scanLines(
+          channel,
+          Long.MAX_VALUE,
+          (lineStart, lineEnd, row) -> {
+            if (!row) {
+              return;
+            }
+            if (lineStart != run[1]) {
+              transfer(channel, run[0], run[1], output);
+              run[0] = lineStart;
+            }
+            run[1] = lineEnd;
+            run[2]++;
+          });
+      transfer(channel, run[0], run[1], output);
+      output.force(true);
+      return Math.max(run[2] - 1, 0);
+    }
+  }
+
+  private static void transfer(FileChannel channel, long start, long end, FileChannel output)
+      throws IOException {
+    long started = System.nanoTime();
+    long position = start;
+    while (position < end) {
+      long transferred = channel.transferTo(position, end - position, output);
+      if (transferred <= 0) {
+        throw new IOException("Table file ended while it was copied");
+      }
+      position += transferred;
+    }
+    QueryStats.recordWrite(end - start, System.nanoTime() - started);
+  }
+
+  /* Receives a complete line: its start, the offset after its new line, and whether it is a row */
+  private interface LineVisitor {
+    void visit(long lineStart, long lineEnd, boolean row) throws IOException;
+  }
+
+  /* Visits every complete line starting before the end, the file is scanned in large reads and
+   * not a byte at a time */
+  private static void scanLines(FileChannel channel, long end, LineVisitor visitor)
+      throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+    byte[] bytes = buffer.array();
+    long position = 0;
+    long lineStart = 0;
+    boolean dead = false;
+    while (lineStart < end) {
+      long start = System.nanoTime();
+      int read = channel.read(buffer.clear(), position);
+      if (read <= 0) {
+        break;
+      }
+      QueryStats.recordRead(read, System.nanoTime() - start);
+      for (int i = 0; i < read; i++) {
+        if (position + i == lineStart) {
+          dead = PersistentDataProcessor.isDeadLine(bytes[i]);
+        }
+        if (bytes[i] == '\n') {
+          if (lineStart < end) {
+            visitor.visit(lineStart, position + i + 1, !dead);
+          }
+          lineStart = position + i + 1;
+        }
+      }
+      position += read;
+    }
+  }
+
+  /*
+   * Window of the file kept from the last read, so that rows fetched in file order, as from an
+   * index on a column the rows were inserted in order of, share one read instead of one each.
+   */
+  private final class LineWindow {
+    private static final int WINDOW_SIZE = 64 * 1024;
+
+    private final FileChannel channel;
+    private ByteBuffer buffer = ByteBuffer.allocate(WINDOW_SIZE);
+    private long windowStart;
+    private int windowLength;
+    /* Bounds in the buffer of the line found last, without its new line */
+    private int lineStart;
+    private int lineEnd;
+
+    private LineWindow(FileChannel channel) {
+      this.channel = channel;
+    }
+
+    /* The row on the line at the offset, or null if the line is not a row or not complete */
+    private String readRow(long offset) throws IOException {
+      if (!locate(offset)) {
+        return null;
+      }
+      byte[] bytes = buffer.array();
+      if (lineEnd > lineStart && PersistentDataProcessor.isDeadLine(bytes[lineStart])) {
+        return null;
+      }
+      return new String(bytes, lineStart, lineEnd - lineStart, StandardCharsets.UTF_8);
+    }
+
+    /* Length of the line at the offset and of the filler lines following it, up to the last new
+     * line, or -1 if the line is not complete */
+    private int space(long offset) throws IOException {
+      if (!locate(offset)) {
+        return -1;
+      }
+      int space = lineEnd - lineStart;
+      long next = offset + space + 1;
+      while (locate(next)
+          && lineEnd > lineStart
+          && buffer.array()[lineStart] == PersistentDataProcessor.FILLER_LINE) {
+        int length = lineEnd - lineStart + 1;
+        space += length;
+        next += length;
+      }
+      return space;
+    }
+
+    /* Writes the bytes at the offset, the window is kept in line with the file */
+    private void write(long offset, byte[] bytes) throws IOException {
+      ByteBuffer source = ByteBuffer.wrap(bytes);
+      long start = System.nanoTime();
+      while (source.hasRemaining()) {
+        channel.write(source, offset + source.position());
+      }
+      QueryStats.recordWrite(bytes.length, System.nanoTime() - start);
+      long from = Math.max(offset, windowStart);
+      long to = Math.min(offset + bytes.length, windowStart + windowLength);
+      if (from < to) {
+        System.arraycopy(
+            bytes,
+            (int) (from - offset),
+            buffer.array(),
+            (int) (from - windowStart),
+            (int) (to - from));
+      }
+    }
+
+    /* Finds the line at the offset, reading the file there if the line is not in the window */
+    private boolean locate(long offset) throws IOException {
+      if (lineInWindow(offset)) {
+        return true;
+      }
+      fill(offset);
+      while (!lineInWindow(offset)) {
+        if (windowLength < buffer.capacity()) {
+          /* No line end, the offset is past the last complete row */
+          return false;
+        }
+        /* The line is longer than the window */
+        buffer = ByteBuffer.allocate(buffer.capacity() * 2);
+        fill(offset);
+      }
+      return true;
+    }
+
+    private void fill(long offset) throws IOException {
+      buffer.clear();
+      long start = System.nanoTime();
+      while (buffer.hasRemaining() && channel.read(buffer, offset + buffer.position()) > 0) {
+        /* Reads until the window is full or the file ends */
+      }
+      QueryStats.recordRead(buffer.position(), System.nanoTime() - start);
+      windowStart = offset;
+      windowLength = buffer.position();
+    }
+
+    private boolean lineInWindow(long offset) {
+      if (offset < windowStart || offset >= windowStart + windowLength) {
+        return false;
+      }
+      int from = (int) (offset - windowStart);
+      byte[] bytes = buffer.array();
+      for (int i = from; i < windowLength; i++) {
+        if (bytes[i] == '\n') {
+          lineStart = from;
+          lineEnd = i;
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+}
@@ -0,0 +1,424 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongPredicate;
+
+/**
+ * The {@code TransactionCommitter} class commits changes of the tables. It validates the
+ * statements of a transaction against the tables as its earlier statements leave them, checks the
+ * changes against the transactions committed after its snapshot, writes them to the log and
+ * applies them in log order. Single statements outside a transaction are committed the same way.
+ */
+public class TransactionCommitter {
+  private final Database database;
+  private final UserAuthenticationManager userAuthenticationManager;
+  private final WriteAheadLog writeAheadLog;
+  private final VersionManager versionManager;
+  private final LockManager lockManager;
+  private final RecoveryManager recoveryManager;
+  private final RowRewriter rowRewriter;
+
+  /**
+   * @param database the database whose tables are changed
+   * @param userAuthenticationManager user authentication manager running statements of
+   *     transactions that do not change table files
+   * @param writeAheadLog the transaction log
+   * @param versionManager the manager of the snapshots reading the tables
+   * @param lockManager the lock manager of the database
+   * @param recoveryManager the manager applying logged changes to the table files
+   * @param rowRewriter the finder of the rows updates and deletes change
+   */
+  public TransactionCommitter(
+      Database database,
+      UserAuthenticationManager userAuthenticationManager,
+      WriteAheadLog writeAheadLog,
+      VersionManager versionManager,
+      LockManager lockManager,
+      RecoveryManager recoveryManager,
+      RowRewriter rowRewriter) {
+    this.database = database;
+    this.userAuthenticationManager = userAuthenticationManager;
+    this.writeAheadLog = writeAheadLog;
+    this.versionManager = versionManager;
+    this.lockManager = lockManager;
+    this.recoveryManager = recoveryManager;
+    this.rowRewriter = rowRewriter;
+  }
+
+  /**
+   * Commits a transaction atomically: all its changes are validated, written to the log with a
+   * single fsync and then applied in order. If any statement is invalid, or a table it changes was
+   * changed by a transaction committed after it started, nothing is applied.
+   *
+   * @param transactionManager the transaction state of the committing session
+   * @throws IncorrectQueryException if a query of the transaction cannot be parsed
+   */
+  public void commit(TransactionManager transactionManager) throws IncorrectQueryException {
+    transactionManager.setInTransaction(false);
+    List<String> queries = new ArrayList<>(transactionManager.getTransactionQueries());
+    transactionManager.clear();
+    /* The snapshot is used until the transaction is committed, see VersionManager.keep */
+    Snapshot snapshot = transactionManager.getSnapshot();
+    transactionManager.setSnapshot(null);
+    if (snapshot == null) {
+      snapshot = versionManager.openSnapshot();
+    }
+
+    /* Tables created or dropped earlier in the transaction, a null schema marks a dropped table */
+    Map<String, TableSchema> pendingSchemas = new HashMap<>();
+    /* Rows updated or deleted earlier in the transaction, by table */
+    Map<String, Map<Long, List<String>>> pendingRows = new HashMap<>();
+    /* Rows inserted earlier in the transaction, by table and insert */
+    Map<String, List<List<List<String>>>> pendingInserts = new HashMap<>();
+    List<RedoRecord> records = new ArrayList<>();
+    List<RedoRecord> recordOfQuery = new ArrayList<>();
+    /* Inserted rows an update or delete changed, by query */
+    int[] insertedOfQuery = new int[queries.size()];
+    /* Updates and deletes read their rows in the snapshot */
+    try {
+      for (int i = 0; i < queries.size(); i++) {
+        Statement statement = QueryTransactionProcessor.getStatementCache().get(queries.get(i));
+        RedoRecord record = redoRecordOf(statement, pendingSchemas, snapshot, pendingRows);
+        switch (record) {
+          case RedoRecord.Insert insert ->
+              pendingInserts
+                  .computeIfAbsent(insert.tableName().toLowerCase(), table -> new ArrayList<>())
+                  .add(insert.rows());
+          case RedoRecord.Update update ->
+              insertedOfQuery[i] =
+                  rewriteInserted(
+                      statement,
+                      pendingSchemas,
+                      pendingInserts.getOrDefault(update.tableName().toLowerCase(), List.of()));
+          case RedoRecord.Delete delete ->
+              insertedOfQuery[i] =
+                  rewriteInserted(
+                      statement,
+                      pendingSchemas,
+                      pendingInserts.getOrDefault(delete.tableName().toLowerCase(), List.of()));
+          case RedoRecord.CreateTable createTable ->
+              pendingInserts.remove(createTable.tableName().toLowerCase());
+          case RedoRecord.DropTable dropTable ->
+              pendingInserts.remove(dropTable.tableName().toLowerCase());
+          case null, default -> {}
+        }
+        /* A change of no rows does not have to keep other rewrites of the table from committing */
+        if (record != null && !(RowRewriter.rowCountOf(record) == 0 && isRewrite(record))) {
+          records.add(record);
+        }
+        recordOfQuery.add(record);
+      }
+    } catch (IncorrectQueryException e) {
+      versionManager.release(snapshot);
+      System.out.println("Transaction rolled back: " + e.getMessage());
+      return;
+    }
+
+    /* Indexes created or dropped by the transaction need their table to themselves */
+    Map<LockManager.Resource, LockMode> tableLocks = tableLocksOf(records);
+    for (String query : queries) {
+      String indexedTable =
+          switch (QueryTransactionProcessor.getStatementCache().get(query)) {
+            case Statement.CreateIndex createIndex -> createIndex.tableName();
+            case Statement.DropIndex dropIndex -> {
+              File indexFile = database.findIndexFile(dropIndex.indexName());
+              yield indexFile == null
+                  ? null
+                  : indexFile.getName().substring(0, indexFile.getName().indexOf('.'));
+            }
+            default -> null;
+          };
+      if (indexedTable != null) {
+        tableLocks.merge(LockManager.Resource.table(indexedTable), LockMode.X, LockMode::combine);
+      }
+    }
+
+    /* Rows moved by an update of the transaction are found by the later ones at their new ids */
+    Map<String, Map<Long, Long>> moved = new HashMap<>();
+    boolean committed;
+    try {
+      committed =
+          commit(
+              records,
+              tableLocks,
+              snapshot,
+              lsn -> {
+                for (int i = 0; i < queries.size(); i++) {
+                  RedoRecord record = recordOfQuery.get(i);
+                  if (record == null) {
+                    /* Statements that do not change table files run as before */
+                    try {
+                      new QueryTransactionProcessor(
+                              database, userAuthenticationManager, transactionManager)
+                          .processor(queries.get(i));
+                    } catch (IncorrectQueryException e) {
+                      System.out.println(e.getMessage());
+                    }
+                  } else if (recoveryManager.apply(record, lsn, true, moved)) {
+                    System.out.println(describe(record, insertedOfQuery[i]));
+                  }
+                }
+                return true;
+              });
+    } finally {
+      versionManager.release(snapshot);
+    }
+    if (committed) {
+      System.out.println("Transaction committed successfully!");
+    }
+  }
+
+  /**
+   * Commits changes of a statement, taking the locks their tables need.
+   *
+   * @param records the changes
+   * @param snapshot the snapshot the changes are based on
+   * @param apply applies the changes to the table files, given the sequence number they were
+   *     logged with
+   * @return whether the changes were applied, see {@link #commit(List, Map, Snapshot,
+   *     LongPredicate)}
+   */
+  public boolean commit(List<RedoRecord> records, Snapshot snapshot, LongPredicate apply) {
+    return commit(records, tableLocksOf(records), snapshot, apply);
+  }
+
+  /*
+   * Commits changes: the records are written to the log and forced to disk, sharing the fsync with
+   * concurrent commits, and then applied to the table files without forcing them, in log order for
+   * each table while other tables are changed in parallel. Returns false if a table was changed
+   * after the snapshot the changes are based on, or if the log could not be written, in which case
+   * nothing was applied.
+   */
+  private boolean commit(
+      List<RedoRecord> records,
+      Map<LockManager.Resource, LockMode> tableLocks,
+      Snapshot snapshot,
+      LongPredicate apply) {
+    long lsn;
+    LockManager.Locks locks = lockManager.newLocks();
+    /* The first committer wins, the check and the log order have to agree */
+    versionManager.getLock().lock();
+    try {
+      String conflict = versionManager.findConflict(records, snapshot);
+      if (conflict != null) {
+        System.out.println("Transaction rolled back: " + conflict);
+        return false;
+      }
+      lsn = writeAheadLog.append(records);
+      versionManager.recordWrites(records, lsn);
+
+      /* Locks are queued in log order, so they are granted in log order on every table */
+      locks.add(LockManager.Resource.DATABASE, LockMode.IX);
+      for (Map.Entry<LockManager.Resource, LockMode> tableLock : tableLocks.entrySet()) {
+        locks.add(tableLock.getKey(), tableLock.getValue());
+      }
+    } finally {
+      versionManager.getLock().unlock();
+    }
+    boolean durable = true;
+    long syncStart = System.nanoTime();
+    try {
+      writeAheadLog.sync(lsn);
+      QueryStats.recordSync(System.nanoTime() - syncStart);
+    } catch (IOException e) {
+      System.out.println("Failed to write the transaction log");
+      e.printStackTrace();
+      durable = false;
+    }
+    boolean applied = false;
+    /* Logged changes have to be applied, they wait for their locks as long as it takes */
+    try (locks) {
+      locks.awaitUninterruptibly();
+      applied = durable && apply.test(lsn);
+    } finally {
+      versionManager.markApplied(lsn);
+    }
+    /* Later statements of the session see the change, even while earlier ones are applied */
+    TransactionManager transactionManager = database.transactionManager();
+    if (transactionManager != null) {
+      transactionManager.setLastCommitLsn(lsn);
+    }
+    if (writeAheadLog.size() > Constants.WAL_CHECKPOINT_BYTES) {
+      recoveryManager.checkpointInBackground();
+    }
+    return applied;
+  }
+
+  /**
+   * @param record a committed change
+   * @param insertedRows rows the change changed that its transaction inserted
+   * @return the message of the change
+   */
+  public static String describe(RedoRecord record, int insertedRows) {
+    return switch (record) {
+      case RedoRecord.CreateTable createTable -> "Table created successfully!";
+      case RedoRecord.DropTable dropTable ->
+          "Table " + dropTable.tableName() + " dropped successfully.";
+      case RedoRecord.Insert insert -> "Values inserted successfully!";
+      case RedoRecord.Update update ->
+          update.rowIds().length + insertedRows + " row(s) updated successfully!";
+      case RedoRecord.Delete delete ->
+          delete.rowIds().length + insertedRows + " row(s) deleted successfully!";
+      case RedoRecord.Vacuum vacuum -> "Table " + vacuum.tableName() + " vacuumed.";
+    };
+  }
+
+  /*
+   * Validates a statement of a transaction against the tables as the earlier statements of the
+   * transaction leave them. Returns null for statements that do not change table files.
+   */
+  private RedoRecord redoRecordOf(
+      Statement statement,
+      Map<String, TableSchema> pendingSchemas,
+      Snapshot snapshot,
+      Map<String, Map<Long, List<String>>> pendingRows)
+      throws IncorrectQueryException {
+    switch (statement) {
+      case Statement.Update update -> {
+        return rewriteRecordOf(update, update.tableName(), pendingSchemas, snapshot, pendingRows);
+      }
+      case Statement.Delete delete -> {
+        return rewriteRecordOf(delete, delete.tableName(), pendingSchemas, snapshot, pendingRows);
+      }
+      case Statement.CreateTable createTable -> {
+        if (schemaOf(createTable.tableName(), pendingSchemas) != null) {
+          throw new IncorrectQueryException("Table already exists!");
+        }
+        pendingSchemas.put(createTable.tableName().toLowerCase(), createTable.schema());
+        return new RedoRecord.CreateTable(
+            createTable.tableName(),
+            database.getStorageFormat(createTable.tableName()),
+            createTable.schema());
+      }
+      case Statement.DropTable dropTable -> {
+        if (schemaOf(dropTable.tableName(), pendingSchemas) == null) {
+          throw new IncorrectQueryException(
+              "Table " + dropTable.tableName() + " does not exists!");
+        }
+        pendingSchemas.put(dropTable.tableName().toLowerCase(), null);
+        return new RedoRecord.DropTable(dropTable.tableName());
+      }
+      case Statement.Insert insert -> {
+        TableSchema schema = schemaOf(insert.tableName(), pendingSchemas);
+        if (schema == null) {
+          throw new IncorrectQueryException("Table " + insert.tableName() + " does not exists!");
+        }
+        TableStorage tableStorage = storageOf(insert.tableName(), pendingSchemas);
+        for (List<String> row : insert.values()) {
+          String error = tableStorage.validateRow(schema, row);
+          if (error != null) {
+            throw new IncorrectQueryException(error);
+          }
+        }
+        /* Later updates and deletes of the transaction change the rows before they are logged */
+        return new RedoRecord.Insert(insert.tableName(), new ArrayList<>(insert.values()));
+      }
+      default -> {
+        return null;
+      }
+    }
+  }
+
+  /* Reads the rows an update or delete of a transaction changes, see RowRewriter.recordOf */
+  private RedoRecord rewriteRecordOf(
+      Statement statement,
+      String tableName,
+      Map<String, TableSchema> pendingSchemas,
+      Snapshot snapshot,
+      Map<String, Map<Long, List<String>>> pendingRows)
+      throws IncorrectQueryException {
+    if (pendingSchemas.containsKey(tableName.toLowerCase())) {
+      if (pendingSchemas.get(tableName.toLowerCase()) == null) {
+        throw new IncorrectQueryException("Table " + tableName + " does not exists!");
+      }
+      /* A table created by the transaction has no rows in its snapshot */
+      return statement instanceof Statement.Update
+          ? new RedoRecord.Update(tableName, new long[0], List.of())
+          : new RedoRecord.Delete(tableName, new long[0]);
+    }
+    try (LockManager.Locks locks = database.lock(tableName, LockMode.IS)) {
+      locks.await(Constants.LOCK_TIMEOUT_MILLIS);
+      return rowRewriter.recordOf(
+          statement,
+          snapshot,
+          pendingRows.computeIfAbsent(tableName.toLowerCase(), table -> new HashMap<>()));
+    } catch (LockException e) {
+      throw new IncorrectQueryException(e.getMessage());
+    }
+  }
+
+  /*
+   * Applies an update or delete of a transaction to the rows inserted earlier in it. Returns the
+   * number of rows changed.
+   */
+  private int rewriteInserted(
+      Statement statement,
+      Map<String, TableSchema> pendingSchemas,
+      List<List<List<String>>> insertedRows)
+      throws IncorrectQueryException {
+    String tableName = RowRewriter.tableNameOf(statement);
+    TableSchema schema = schemaOf(tableName, pendingSchemas);
+    if (schema == null) {
+      throw new IncorrectQueryException("Table " + tableName + " does not exists!");
+    }
+    return rowRewriter.rewriteInserted(
+        statement, storageOf(tableName, pendingSchemas), schema, insertedRows);
+  }
+
+  private static boolean isRewrite(RedoRecord record) {
+    return record instanceof RedoRecord.Update || record instanceof RedoRecord.Delete;
+  }
+
+  /* Storage of a table that exists, or is created by the transaction and has no file yet */
+  private TableStorage storageOf(String tableName, Map<String, TableSchema> pendingSchemas) {
+    TableStorage tableStorage = database.openStorage(tableName);
+    return tableStorage == null || pendingSchemas.containsKey(tableName.toLowerCase())
+        ? database.newStorage(tableName, database.getStorageFormat(tableName))
+        : tableStorage;
+  }
+
+  private TableSchema schemaOf(String tableName, Map<String, TableSchema> pendingSchemas) {
+    if (pendingSchemas.containsKey(tableName.toLowerCase())) {
+      return pendingSchemas.get(tableName.toLowerCase());
+    }
+    TableStorage tableStorage = database.openStorage(tableName);
+    return tableStorage == null ? null : tableStorage.readSchema();
+  }
+
+  /*
+   * Locks the changes need on their tables: inserts append behind the rows of the table, so they
+   * only exclude each other, updates and deletes exclude the changes of the ranges of rows they
+   * change, and of the end of the table if they move rows there, while creating, dropping or
+   * vacuuming a table excludes every other statement. Selects read their snapshot and only keep
+   * tables from being created, dropped or vacuumed.
+   */
+  private static Map<LockManager.Resource, LockMode> tableLocksOf(List<RedoRecord> records) {
+    Map<LockManager.Resource, LockMode> locks = new HashMap<>();
+    for (RedoRecord record : records) {
+      String tableName = record.tableName();
+      long[] rowIds =
+          switch (record) {
+            case RedoRecord.Update update -> update.rowIds();
+            case RedoRecord.Delete delete -> delete.rowIds();
+            default -> null;
+          };
+      if (record instanceof RedoRecord.Insert || rowIds != null) {
+        locks.merge(LockManager.Resource.table(tableName), LockMode.IX, LockMode::combine);
+      } else {
+        locks.merge(LockManager.Resource.table(tableName), LockMode.X, LockMode::combine);
+      }
+      if (record instanceof RedoRecord.Insert || record instanceof RedoRecord.Update) {
+        locks.put(LockManager.Resource.tail(tableName), LockMode.X);
+      }
+      if (rowIds != null) {
+        for (long rowId : rowIds) {
+          locks.put(LockManager.Resource.rows(tableName, rowId), LockMode.X);
+        }
+      }
+    }
+    return locks;
+  }
+}
@@ -7,6 +7,10 @@ import java.util.List;
 public class TransactionManager {
   private boolean isInTransaction;
   private List<String> transactionQueries = new ArrayList<>();
+  /* The snapshot the transaction reads, null outside of a transaction */
+  private Snapshot snapshot;
+  /* The last transaction the session committed, its later statements have to see it */
+  private long lastCommitLsn;
 
   public TransactionManager(boolean isInTransaction) {
     this.isInTransaction = isInTransaction;
@@ -27,6 +31,22 @@ public class TransactionManager {
   public void setTransactionQueries(String transactionQuery) {
     this.transactionQueries.add(transactionQuery);
   }
+  public Snapshot getSnapshot() {
+    return snapshot;
+  }
+
+  public void setSnapshot(Snapshot snapshot) {
+    this.snapshot = snapshot;
+  }
+
+  public long getLastCommitLsn() {
+    return lastCommitLsn;
+  }
+
+  public void setLastCommitLsn(long lastCommitLsn) {
+    this.lastCommitLsn = lastCommitLsn;
+  }
+
   public void clear(){
     this.transactionQueries = new ArrayList<>();
   }
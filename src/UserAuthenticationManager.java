@@ -5,27 +5,45 @@
 public class UserAuthenticationManager {
   private final UserService userService;
   private final CaptchaService captchaService;
-  private String currentUser;
 
   public UserAuthenticationManager(UserService userService, CaptchaService captchaService) {
     this.userService = userService;
     this.captchaService = captchaService;
   }
 
-  public String getCurrentUser(){
-    return currentUser;
+  /**
+   * @return a new captcha the user has to answer when logging in
+   */
+  public String generateCaptcha() {
+    return captchaService.generateCaptcha();
   }
 
   public boolean authenticateUser(String userId, String password, String captcha) {
+    return login(userId, password, captcha) != null;
+  }
+
+  /**
+   * Authenticates a user without keeping any state, so that several sessions can log in at the
+   * same time.
+   *
+   * @param userId id of the user
+   * @param password password of the user
+   * @param captcha answer to the captcha
+   * @return the username of the logged-in user, or {@code null} if the credentials or the captcha
+   *     are invalid
+   */
+  public String login(String userId, String password, String captcha) {
     /* Authenticate user using UserService */
     boolean isAuthenticated = userService.authenticateUser(userId, password);
 
     /* Verify captcha using CaptchaService */
     boolean isCaptchaValid = captchaService.verifyCaptcha(captcha);
 
-    /* Return true only if both authentication and captcha verification succeed */
-    currentUser = userService.getUserById(userId);
-    return isAuthenticated && isCaptchaValid;
+    /* Succeed only if both authentication and captcha verification succeed */
+    if (!isAuthenticated || !isCaptchaValid) {
+      return null;
+    }
+    return userService.getUserById(userId);
   }
 
   public void addUser(User user) {
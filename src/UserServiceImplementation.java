@@ -1,84 +1,198 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * The {@code UserServiceImplementation} class implements the {@link UserService} interface and
  * provides functionality for authenticating users, adding users, and removing users using a
  * persistent data source.
+ *
+ * <p>The users are kept in memory, indexed by user ID and by username, so a login is a lookup
+ * instead of a scan of the file. The file is a log: adding a user appends its row, dropping one
+ * appends a tombstone row with the same ID, and the last row of an ID wins. Once most rows are
+ * dead the file is rewritten with the live users only. Lookups do not lock; changes are
+ * synchronized, and a file changed by something else is read again on the next call.
+ *
+ * <p>Passwords are hashed by a {@link PasswordHasher}. Hashes of older hashers, or of the same
+ * hasher with another cost, are still accepted and replaced with a new hash once the user logs in
+ * with the right password. Successful logins are remembered for a short time in a {@link
+ * CredentialCache}, so that reconnecting does not pay for the hash again.
  */
 public class UserServiceImplementation implements UserService {
+  /* Password hash of a tombstone row, no hash looks like it */
+  private static final String TOMBSTONE = "*";
+  private static final List<String> HEADER = List.of("UserId", "Username", "Password", "Email");
+  /* The file is compacted when it holds this many dead rows and more dead than live rows */
+  private static final int COMPACTION_MIN_DEAD_ROWS = 64;
+
   DataSerializer dataSerializer = new CustomDelimiterDataSerializerImplementation();
   PersistentDataProcessor persistentDataProcessorForUsers =
-      new PersistentDataProcessor("files/users.csv", dataSerializer);
-  PasswordHasher passwordHasher;
+      new PersistentDataProcessor(Constants.USERS_FILE_PATH, dataSerializer);
 
-  @Override
-  public boolean authenticateUser(String userId, String password) {
-    Data data = new Data(new ArrayList<>());
-    this.persistentDataProcessorForUsers.loadData(data);
+  private final PasswordHasher passwordHasher;
+  /* Hashers of hashes written before, checked when the current hasher does not accept a hash */
+  private final List<PasswordHasher> previousHashers =
+      List.of(new Md5PasswordHasherImplementation());
+  private final CredentialCache credentialCache;
+
+  private volatile Catalog catalog;
 
-    for (List<String> user : data.getData()) {
-      passwordHasher = new PasswordHasher(password);
-      if (user.get(0).equals(userId) && user.get(2).equals(passwordHasher.getHashedPassword())) {
-        return true; /* Authentication successful */
+  public UserServiceImplementation() {
+    this(
+        new Pbkdf2PasswordHasherImplementation(Constants.PASSWORD_HASH_ITERATIONS),
+        Constants.CREDENTIAL_CACHE_MILLIS);
+  }
+
+  /**
+   * @param passwordHasher hashes new passwords
+   * @param credentialCacheMillis how long a successful login is remembered, 0 to check every one
+   */
+  public UserServiceImplementation(PasswordHasher passwordHasher, long credentialCacheMillis) {
+    this.passwordHasher = passwordHasher;
+    this.credentialCache = new CredentialCache(credentialCacheMillis);
+  }
+
+  /* A user as stored in a row of the file */
+  private record UserRow(int userId, String username, String passwordHash, String email) {
+    private List<String> toRow() {
+      return List.of(String.valueOf(userId), username, passwordHash, String.valueOf(email));
+    }
+  }
+
+  /*
+   * The live users by ID and by lowercase username, with the state of the file they were read
+   * from: its size and modification time, and the number of rows that no longer count.
+   */
+  private static final class Catalog {
+    private final Map<Integer, UserRow> usersById = new ConcurrentHashMap<>();
+    private final Map<String, UserRow> usersByName = new ConcurrentHashMap<>();
+    private int nextUserId = 1;
+    private int deadRows;
+    private volatile BasicFileAttributes fileAttributes;
+
+    private void put(UserRow user) {
+      UserRow previous = usersById.put(user.userId(), user);
+      if (previous != null) {
+        deadRows++;
+        usersByName.remove(previous.username().toLowerCase(), previous);
       }
+      /* Of users with the same name, the one added first is found by name */
+      usersByName.putIfAbsent(user.username().toLowerCase(), user);
+      nextUserId = Math.max(nextUserId, user.userId() + 1);
+    }
+
+    private void remove(int userId) {
+      /* The tombstone is a dead row and so is the row it drops */
+      deadRows++;
+      UserRow removed = usersById.remove(userId);
+      if (removed == null) {
+        return;
+      }
+      deadRows++;
+      String name = removed.username().toLowerCase();
+      if (usersByName.remove(name, removed)) {
+        usersById.values().stream()
+            .filter(user -> user.username().equalsIgnoreCase(name))
+            .min((first, second) -> Integer.compare(first.userId(), second.userId()))
+            .ifPresent(user -> usersByName.put(name, user));
+      }
+      nextUserId = Math.max(nextUserId, userId + 1);
     }
-    return false; /* Authentication failed */
   }
 
+  /**
+   * @param userId id of the user
+   * @param password password of the user
+   * @return whether a user with the id has the password
+   */
   @Override
-  public void addUser(User user) {
-    Data data = new Data(new ArrayList<>());
-    this.persistentDataProcessorForUsers.loadData(data);
-    passwordHasher = new PasswordHasher(user.getPassword());
+  public boolean authenticateUser(String userId, String password) {
+    UserRow user = findById(userId);
+    if (user == null) {
+      return false;
+    }
+    String cacheKey = String.valueOf(user.userId());
+    if (credentialCache.contains(cacheKey, password, user.passwordHash())) {
+      return true;
+    }
+    /* Authentication succeeds only if the user exists and the password matches the stored hash */
+    PasswordHasher hasher = hasherOf(user.passwordHash());
+    if (hasher == null || !hasher.verify(password, user.passwordHash())) {
+      return false;
+    }
+    if (passwordHasher.needsRehash(user.passwordHash())) {
+      user = rehash(user, password);
+    }
+    credentialCache.put(cacheKey, password, user.passwordHash());
+    return true;
+  }
 
-    List<List<String>> existingData = data.getData();
+  private PasswordHasher hasherOf(String storedHash) {
+    if (passwordHasher.accepts(storedHash)) {
+      return passwordHasher;
+    }
+    for (PasswordHasher previousHasher : previousHashers) {
+      if (previousHasher.accepts(storedHash)) {
+        return previousHasher;
+      }
+    }
+    return null;
+  }
 
-    int nextUserId = 1;
-    if (!existingData.isEmpty()) {
-      /* Get the user ID of the last record and increment by 1 */
-      nextUserId = Integer.parseInt(existingData.getLast().getFirst()) + 1;
+  /* Replaces the hash of a user who just logged in with one of the current hasher */
+  private UserRow rehash(UserRow user, String password) {
+    /* The slow hash is computed before taking the lock */
+    UserRow rehashed =
+        new UserRow(user.userId(), user.username(), passwordHasher.hash(password), user.email());
+    synchronized (this) {
+      Catalog current = currentCatalog();
+      /* The user may have been dropped or changed meanwhile */
+      if (!user.equals(current.usersById.get(user.userId())) || !append(rehashed.toRow())) {
+        return user;
+      }
+      current.put(rehashed);
+      afterChange(current);
+      return rehashed;
     }
+  }
 
-    /* Create a new user with the dynamically generated user ID */
-    List<String> newUser =
-        Arrays.asList(
-            String.valueOf(nextUserId),
+  @Override
+  public synchronized void addUser(User user) {
+    Catalog current = currentCatalog();
+    /* The ID after the highest one ever used, dropped IDs are not given out again */
+    UserRow newUser =
+        new UserRow(
+            current.nextUserId,
             user.getUsername(),
-            passwordHasher.getHashedPassword(),
+            passwordHasher.hash(user.getPassword()),
             user.getEmail());
-
-    /* Add the new user to the existing data */
-    existingData.add(newUser);
-
-    /* Update the data and save */
-    data.setData(existingData);
-    this.persistentDataProcessorForUsers.saveData(data);
+    if (append(newUser.toRow())) {
+      current.put(newUser);
+      afterChange(current);
+    }
   }
 
   @Override
-  public void removeUser(String username) {
-    Data data = new Data(new ArrayList<>());
-    this.persistentDataProcessorForUsers.loadData(data);
-
-    /* Find the index of the user with the specified username */
-    int indexToRemove = -1;
-    for (int i = 0; i < data.getData().size(); i++) {
-      List<String> user = data.getData().get(i);
-      if (user.size() > 1 && user.get(1).equalsIgnoreCase(username)) {
-        indexToRemove = i;
-        break;
-      }
+  public synchronized void removeUser(String username) {
+    Catalog current = currentCatalog();
+    UserRow user = current.usersByName.get(username.toLowerCase());
+    if (user == null) {
+      System.out.println("User not found.");
+      return;
     }
-
-    /* Remove the user if found */
-    if (indexToRemove != -1) {
-      data.getData().remove(indexToRemove);
-      this.persistentDataProcessorForUsers.saveData(data);
+    UserRow tombstone = new UserRow(user.userId(), user.username(), TOMBSTONE, null);
+    if (append(tombstone.toRow())) {
+      current.remove(user.userId());
+      credentialCache.remove(String.valueOf(user.userId()));
+      afterChange(current);
       System.out.println("User dropped successfully.");
-    } else {
-      System.out.println("User not found.");
     }
   }
 
@@ -88,23 +202,136 @@ public class UserServiceImplementation implements UserService {
    */
   @Override
   public String getUserById(String userId) {
+    UserRow user = findById(userId);
+    return user == null ? null : user.username();
+  }
+
+  private UserRow findById(String userId) {
+    int id;
+    try {
+      id = Integer.parseInt(userId.trim());
+    } catch (NumberFormatException e) {
+      return null;
+    }
+    return currentCatalog().usersById.get(id);
+  }
+
+  /* The catalog, read again if the file is not the one it was read from */
+  private Catalog currentCatalog() {
+    Catalog current = catalog;
+    if (current != null && isCurrent(current.fileAttributes)) {
+      return current;
+    }
+    synchronized (this) {
+      current = catalog;
+      if (current == null || !isCurrent(current.fileAttributes)) {
+        current = load();
+        catalog = current;
+      }
+      return current;
+    }
+  }
+
+  private static boolean isCurrent(BasicFileAttributes loaded) {
+    BasicFileAttributes attributes = readAttributes();
+    if (loaded == null || attributes == null) {
+      return loaded == attributes;
+    }
+    return loaded.size() == attributes.size()
+        && loaded.lastModifiedTime().equals(attributes.lastModifiedTime());
+  }
+
+  private static BasicFileAttributes readAttributes() {
+    try {
+      return Files.readAttributes(Path.of(Constants.USERS_FILE_PATH), BasicFileAttributes.class);
+    } catch (NoSuchFileException e) {
+      return null;
+    } catch (IOException e) {
+      System.out.println("Error loading data from file: " + Constants.USERS_FILE_PATH);
+      e.printStackTrace();
+      return null;
+    }
+  }
+
+  /* Replays the rows of the file */
+  private Catalog load() {
+    Catalog loaded = new Catalog();
+    /* The attributes are read first, so a change made while reading triggers another load */
+    loaded.fileAttributes = readAttributes();
+    if (loaded.fileAttributes == null) {
+      return loaded;
+    }
     Data data = new Data(new ArrayList<>());
-    this.persistentDataProcessorForUsers.loadData(data);
-
-    /* Find the index of the user with the specified userId */
-    int indexToRemove = -1;
-    for (int i = 0; i < data.getData().size(); i++) {
-      List<String> user = data.getData().get(i);
-      if (user.size() > 1 && user.getFirst().equalsIgnoreCase(userId)) {
-        indexToRemove = i;
-        break;
+    persistentDataProcessorForUsers.loadData(data);
+    for (List<String> row : data.getData()) {
+      int userId;
+      try {
+        userId = Integer.parseInt(row.getFirst());
+      } catch (NumberFormatException e) {
+        /* The header row */
+        continue;
+      }
+      if (row.size() < 3) {
+        continue;
+      }
+      if (row.get(2).equals(TOMBSTONE)) {
+        loaded.remove(userId);
+      } else {
+        loaded.put(
+            new UserRow(userId, row.get(1), row.get(2), row.size() > 3 ? row.get(3) : null));
       }
     }
+    compactIfNeeded(loaded);
+    return loaded;
+  }
 
-    if (indexToRemove != -1) {
-      return data.getData().get(indexToRemove).get(1);
+  private boolean append(List<String> row) {
+    if (readAttributes() == null) {
+      /* A new file starts with its header */
+      persistentDataProcessorForUsers.appendData(new Data(List.of(HEADER)));
     }
+    return persistentDataProcessorForUsers.appendData(new Data(List.of(row))).length == 1;
+  }
 
-    return null;
+  /* Remembers the file as changed by this instance, so that it is not read again */
+  private void afterChange(Catalog current) {
+    compactIfNeeded(current);
+    current.fileAttributes = readAttributes();
+  }
+
+  /* Rewrites the file with the live users once most of its rows are dead */
+  private void compactIfNeeded(Catalog current) {
+    if (current.deadRows < COMPACTION_MIN_DEAD_ROWS
+        || current.deadRows <= current.usersById.size()) {
+      return;
+    }
+    List<List<String>> rows = new ArrayList<>();
+    rows.add(HEADER);
+    current.usersById.values().stream()
+        .sorted((first, second) -> Integer.compare(first.userId(), second.userId()))
+        .forEach(user -> rows.add(user.toRow()));
+    /* The highest ID ever given out survives as a tombstone, so it is not given out again */
+    int lastUserId = current.nextUserId - 1;
+    if (lastUserId > 0 && !current.usersById.containsKey(lastUserId)) {
+      rows.add(List.of(String.valueOf(lastUserId), "null", TOMBSTONE, "null"));
+    }
+
+    /* Written next to the file and moved over it, so a crash leaves either file complete */
+    Path file = Path.of(Constants.USERS_FILE_PATH);
+    Path compacted = Path.of(Constants.USERS_FILE_PATH + ".compact");
+    new PersistentDataProcessor(compacted.toString(), dataSerializer).saveData(new Data(rows));
+    try {
+      Files.move(
+          compacted,
+          file,
+          StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      System.out.println("Error saving data to file: " + Constants.USERS_FILE_PATH);
+      e.printStackTrace();
+      return;
+    }
+    current.deadRows = rows.size() - 1 - current.usersById.size();
+    current.fileAttributes = readAttributes();
   }
 }
@@ -0,0 +1,507 @@
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * The {@code VersionManager} class provides snapshot isolation on top of the table files. Every
+ * change is stamped with the log sequence number of the transaction that committed it, and a
+ * {@link Snapshot} sees exactly the changes stamped up to its own number.
+ *
+ * <p>The transactions changing a table are applied in log order, so the rows a transaction
+ * appended are a range of row ids after the rows of all earlier transactions. Instead of a stamp
+ * per row, an append is remembered by its transaction and the id its rows start at, for as long as
+ * a snapshot older than the transaction is in use. A snapshot reads a table up to the first append
+ * it does not see, or up to the current end of the table.
+ *
+ * <p>Updates and deletes change rows where they are. Before a row is changed, its old values are
+ * kept here with the transaction changing it, until every snapshot in use sees the change, and an
+ * older snapshot reads them in place of the row, see {@link TableSnapshot}. So readers never wait
+ * for writers and writers never wait for readers, except for a latch held while single writes
+ * reach the file. A vacuum gives the rows new ids, which old values and appends cannot follow, so
+ * a table is only vacuumed once every snapshot in use sees all changes of it.
+ *
+ * <p>Tables are stamped with the transaction that created them. Whether a transaction conflicts
+ * with the transactions committed after its snapshot was taken is decided by a {@link
+ * ConflictChecker}, which is told the oldest snapshot in use to know which stamps of rows it still
+ * needs.
+ */
+public class VersionManager {
+  /* Guards everything below but the latches; not a monitor, a session waiting for it must not pin
+   * the carrier of its virtual thread while the holder waits for a lock of the lock manager */
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition applied = lock.newCondition();
+
+  /* Snapshots in use, counted by their sequence number */
+  private final TreeMap<Long, Integer> activeSnapshots = new TreeMap<>();
+  private long appliedLsn;
+
+  /* Transactions applied before an earlier one, different tables are changed in parallel */
+  private final TreeSet<Long> appliedAhead = new TreeSet<>();
+
+  /* Appends not seen by every snapshot in use, per table: {lsn, first row id} */
+  private final Map<String, ArrayDeque<long[]>> appends = new HashMap<>();
+
+  /* Transaction that created a table, only kept for tables created while the database runs */
+  private final Map<String, Long> createdBy = new HashMap<>();
+
+  /* Stamps of the logged changes, for the first committer to win */
+  private final ConflictChecker conflictChecker = new ConflictChecker();
+
+  /* Last transaction that changed rows of a table in place, applied or being applied */
+  private final Map<String, Long> rewrittenBy = new HashMap<>();
+
+  /* Old values of rows changed in place, per table and row id, the oldest change first; kept
+   * until every snapshot in use sees the change */
+  private final Map<String, TreeMap<Long, ArrayDeque<RowVersion>>> versions = new HashMap<>();
+
+  /* Rows whose old values were kept, by the transaction that changed them, for pruning */
+  private final TreeMap<Long, List<RowChange>> changes = new TreeMap<>();
+
+  /* Latch of every table, held while its file is written or read */
+  private final Map<String, ReadWriteLock> latches = new ConcurrentHashMap<>();
+
+  /* The values of a row before a transaction changed it */
+  private record RowVersion(long lsn, List<String> values) {}
+
+  /* Rows of a table changed by a transaction */
+  private record RowChange(long lsn, String tableName, long[] rowIds) {}
+
+  /**
+   * @return the lock of this manager, which a transaction holds from checking it for conflicts
+   *     until it is logged and its locks are queued
+   */
+  public ReentrantLock getLock() {
+    return lock;
+  }
+
+  /**
+   * Takes a snapshot of everything applied so far. It has to be released once it is not read any
+   * more.
+   *
+   * @return the snapshot
+   */
+  public Snapshot openSnapshot() {
+    lock.lock();
+    try {
+      activeSnapshots.merge(appliedLsn, 1, Integer::sum);
+      return new Snapshot(appliedLsn);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Returns the current state for a statement that only checks which tables exist before it
+   * commits, such a snapshot does not have to be released.
+   *
+   * @return the snapshot
+   */
+  public Snapshot latestSnapshot() {
+    lock.lock();
+    try {
+      return new Snapshot(appliedLsn);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Keeps a snapshot in use until one more {@link #release(Snapshot)}, for a change that commits
+   * after the read of its rows has released the snapshot. Conflicts of the change are found through
+   * the stamps of rows, which are only kept while a snapshot older than them is in use.
+   *
+   * @param snapshot a snapshot in use
+   * @return the snapshot
+   */
+  public Snapshot keep(Snapshot snapshot) {
+    lock.lock();
+    try {
+      activeSnapshots.merge(snapshot.lsn(), 1, Integer::sum);
+      return snapshot;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @param snapshot a snapshot returned by {@link #openSnapshot()}
+   */
+  public void release(Snapshot snapshot) {
+    lock.lock();
+    try {
+      activeSnapshots.computeIfPresent(
+          snapshot.lsn(), (lsn, count) -> count == 1 ? null : count - 1);
+      prune();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Makes the changes of a transaction visible to the snapshots taken from now on, once every
+   * earlier transaction has been applied as well.
+   *
+   * @param lsn sequence number of the transaction, whose changes are in the table files
+   */
+  public void markApplied(long lsn) {
+    lock.lock();
+    try {
+      if (lsn <= appliedLsn) {
+        return;
+      }
+      appliedAhead.add(lsn);
+      while (!appliedAhead.isEmpty() && appliedAhead.first() == appliedLsn + 1) {
+        appliedLsn = appliedAhead.pollFirst();
+      }
+      prune();
+      applied.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Makes every transaction up to a sequence number visible, after the log has been replayed.
+   *
+   * @param lsn sequence number of the last transaction in the table files
+   */
+  public void advanceTo(long lsn) {
+    lock.lock();
+    try {
+      appliedLsn = Math.max(appliedLsn, lsn);
+      appliedAhead.headSet(appliedLsn, true).clear();
+      prune();
+      applied.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Waits until the changes of a transaction are visible to new snapshots, which they are not
+   * while earlier transactions are still being applied. A session reads its own changes this way.
+   * No lock may be held while waiting, the earlier transactions may wait for it.
+   *
+   * @param lsn sequence number of an applied transaction
+   */
+  public void awaitApplied(long lsn) {
+    lock.lock();
+    try {
+      while (appliedLsn < lsn) {
+        applied.awaitUninterruptibly();
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @param tableName name of an existing table
+   * @param snapshot the snapshot reading the table
+   * @return whether the table was created before the snapshot was taken
+   */
+  public boolean isVisible(String tableName, Snapshot snapshot) {
+    lock.lock();
+    try {
+      Long lsn = createdBy.get(tableName.toLowerCase());
+      return lsn == null || lsn <= snapshot.lsn();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Tells what a snapshot sees of a table. Appends of later transactions either have been
+   * announced already or start after the end row id of the result.
+   *
+   * @param tableName name of the table
+   * @param tableStorage storage of the table
+   * @param snapshot the snapshot reading the table
+   * @return the rows of the table visible to the snapshot
+   * @throws IOException if the end of the table cannot be read
+   */
+  public TableSnapshot tableSnapshot(
+      String tableName, TableStorage tableStorage, Snapshot snapshot) throws IOException {
+    lock.lock();
+    try {
+      String name = tableName.toLowerCase();
+      long endRowId = Long.MAX_VALUE;
+      for (long[] append : appends.getOrDefault(name, new ArrayDeque<>())) {
+        if (append[0] > snapshot.lsn()) {
+          endRowId = append[1];
+          break;
+        }
+      }
+      if (endRowId == Long.MAX_VALUE) {
+        endRowId = tableStorage.endRowId();
+      }
+      return new TableSnapshot(this, name, snapshot.lsn(), endRowId, latch(name).readLock());
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @param tableName name of the table
+   * @return the latch whose write side is held while rows of the table are written in place, or
+   *     pages holding rows are rewritten, and whose read side is held while they are read
+   */
+  public ReadWriteLock latch(String tableName) {
+    return latches.computeIfAbsent(tableName.toLowerCase(), name -> new ReentrantReadWriteLock());
+  }
+
+  /**
+   * @param tableName name of the table
+   * @return every row of the table file as it is, read under the latch of the table, for readers
+   *     that no change of the rows they read can run concurrently with
+   */
+  public TableSnapshot currentRows(String tableName) {
+    return new TableSnapshot(null, null, 0, Long.MAX_VALUE, latch(tableName).readLock());
+  }
+
+  /**
+   * @param tableName lower-case name of the table
+   * @param lsn sequence number of a snapshot
+   * @return whether no transaction after the snapshot has changed rows of the table in place
+   */
+  public boolean isCurrent(String tableName, long lsn) {
+    lock.lock();
+    try {
+      return rewrittenBy.getOrDefault(tableName, 0L) <= lsn;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @param tableName lower-case name of the table
+   * @param lsn sequence number of a snapshot
+   * @param fromRowId first row id of the range
+   * @param toRowId row id after the range
+   * @return the values of the rows of the range changed in place after the snapshot, as the
+   *     snapshot sees them, by row id
+   */
+  public NavigableMap<Long, List<String>> changedRows(
+      String tableName, long lsn, long fromRowId, long toRowId) {
+    lock.lock();
+    try {
+      TreeMap<Long, ArrayDeque<RowVersion>> tableVersions = versions.get(tableName);
+      if (tableVersions == null || fromRowId >= toRowId) {
+        return Collections.emptyNavigableMap();
+      }
+      TreeMap<Long, List<String>> changed = new TreeMap<>();
+      for (Map.Entry<Long, ArrayDeque<RowVersion>> row :
+          tableVersions.subMap(fromRowId, toRowId).entrySet()) {
+        /* The first change the snapshot does not see holds the values it does see */
+        for (RowVersion version : row.getValue()) {
+          if (version.lsn() > lsn) {
+            changed.put(row.getKey(), version.values());
+            break;
+          }
+        }
+      }
+      return changed;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Keeps the old values of rows a transaction being applied is about to change in place, for the
+   * snapshots that do not see the transaction. Has to be called before the rows are written, and
+   * before the entries of the rows are taken out of the indexes.
+   *
+   * @param tableName name of the table
+   * @param lsn sequence number of the transaction
+   * @param rowIds ids of the rows
+   * @param rows the values of the rows before the change
+   */
+  public void rowsChanged(
+      String tableName, long lsn, long[] rowIds, List<List<String>> rows) {
+    lock.lock();
+    try {
+      String name = tableName.toLowerCase();
+      TreeMap<Long, ArrayDeque<RowVersion>> tableVersions =
+          versions.computeIfAbsent(name, table -> new TreeMap<>());
+      for (int i = 0; i < rowIds.length; i++) {
+        tableVersions
+            .computeIfAbsent(rowIds[i], rowId -> new ArrayDeque<>())
+            .add(new RowVersion(lsn, rows.get(i)));
+      }
+      changes
+          .computeIfAbsent(lsn, transaction -> new ArrayList<>())
+          .add(new RowChange(lsn, name, rowIds.clone()));
+      rewrittenBy.merge(name, lsn, Math::max);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Announces rows about to be appended by a transaction being applied. Has to be called before
+   * the rows are written.
+   *
+   * @param tableName name of the table
+   * @param lsn sequence number of the transaction
+   * @param firstRowId the end of the row ids of the table before the append
+   */
+  public void beginAppend(String tableName, long lsn, long firstRowId) {
+    lock.lock();
+    try {
+      appends.computeIfAbsent(tableName.toLowerCase(), table -> new ArrayDeque<>())
+          .add(new long[] {lsn, firstRowId});
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Forgets the appends of a table whose file was replaced by a compacted copy, in which the rows
+   * have different ids. Only a table every snapshot in use sees all changes of is compacted.
+   *
+   * @param tableName name of the table
+   */
+  public void tableCompacted(String tableName) {
+    lock.lock();
+    try {
+      appends.remove(tableName.toLowerCase());
+      versions.remove(tableName.toLowerCase());
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @param tableName name of a table
+   * @return whether every snapshot in use, and every snapshot taken from now on, sees all changes
+   *     logged for the table, so that it can be vacuumed
+   */
+  public boolean isQuiet(String tableName) {
+    lock.lock();
+    try {
+      return conflictChecker.lastWrite(tableName) <= quietLsn();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+
+  /**
+   * @param tableName name of the created table
+   * @param lsn sequence number of the transaction creating it
+   */
+  public void tableCreated(String tableName, long lsn) {
+    lock.lock();
+    try {
+      appends.remove(tableName.toLowerCase());
+      versions.remove(tableName.toLowerCase());
+      rewrittenBy.remove(tableName.toLowerCase());
+      createdBy.put(tableName.toLowerCase(), lsn);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @param tableName name of the dropped table
+   */
+  public void tableDropped(String tableName) {
+    lock.lock();
+    try {
+      appends.remove(tableName.toLowerCase());
+      versions.remove(tableName.toLowerCase());
+      rewrittenBy.remove(tableName.toLowerCase());
+      createdBy.remove(tableName.toLowerCase());
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Checks whether a transaction changes a table that a transaction it does not see has changed.
+   * Has to be called together with {@link #recordWrites(List, long)} while holding {@link
+   * #getLock()}, with the transaction logged in between.
+   *
+   * @param records changes of the transaction
+   * @param snapshot the snapshot the transaction read
+   * @return why the transaction cannot commit, or {@code null} if it can
+   */
+  public String findConflict(List<RedoRecord> records, Snapshot snapshot) {
+    lock.lock();
+    try {
+      return conflictChecker.findConflict(records, snapshot.lsn(), quietLsn());
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @param records changes of a transaction that was just logged
+   * @param lsn sequence number of the transaction
+   */
+  public void recordWrites(List<RedoRecord> records, long lsn) {
+    lock.lock();
+    try {
+      conflictChecker.recordWrites(records, lsn);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /* Sequence number every snapshot in use, and every snapshot taken from now on, sees */
+  private long quietLsn() {
+    long oldest = activeSnapshots.isEmpty() ? appliedLsn : activeSnapshots.firstKey();
+    return Math.min(oldest, appliedLsn);
+  }
+
+  /* Forgets appends and old values of rows that every snapshot in use, and every later one, sees */
+  private void prune() {
+    long oldest = activeSnapshots.isEmpty() ? appliedLsn : activeSnapshots.firstKey();
+    Iterator<ArrayDeque<long[]>> iterator = appends.values().iterator();
+    while (iterator.hasNext()) {
+      ArrayDeque<long[]> tableAppends = iterator.next();
+      while (!tableAppends.isEmpty() && tableAppends.peekFirst()[0] <= oldest) {
+        tableAppends.pollFirst();
+      }
+      if (tableAppends.isEmpty()) {
+        iterator.remove();
+      }
+    }
+    conflictChecker.prune(oldest);
+    while (!changes.isEmpty() && changes.firstKey() <= oldest) {
+      for (RowChange change : changes.pollFirstEntry().getValue()) {
+        TreeMap<Long, ArrayDeque<RowVersion>> tableVersions = versions.get(change.tableName());
+        if (tableVersions == null) {
+          continue;
+        }
+        for (long rowId : change.rowIds()) {
+          ArrayDeque<RowVersion> rowVersions = tableVersions.get(rowId);
+          while (rowVersions != null
+              && !rowVersions.isEmpty()
+              && rowVersions.peekFirst().lsn() <= oldest) {
+            rowVersions.pollFirst();
+          }
+          if (rowVersions != null && rowVersions.isEmpty()) {
+            tableVersions.remove(rowId);
+          }
+        }
+        if (tableVersions.isEmpty()) {
+          versions.remove(change.tableName());
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,117 @@
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The {@code WireProtocol} class defines the framed protocol spoken between {@link DatabaseServer}
+ * and {@link DatabaseClient}. Every frame is a 4 byte big-endian payload length, a type byte and
+ * the payload, UTF-8 text for every type but {@link #ROWS}.
+ *
+ * <p>A session goes as follows: the server sends {@link #CAPTCHA}; the client answers with {@link
+ * #LOGIN} holding the user id, password and captcha on separate lines; the server replies {@link
+ * #DONE} or {@link #ERROR} followed by a new {@link #CAPTCHA}. After logging in, the client sends
+ * {@link #QUERY} frames, and the server answers each with any number of {@link #OUTPUT} frames
+ * holding what the query printed, followed by {@link #DONE}. {@link #QUIT} ends the session.
+ *
+ * <p>A session whose output format is binary gets the rows of its results in {@link #ROWS} frames
+ * instead, in the format of {@link BinaryResultSinkImplementation}, apart from the text of the
+ * {@link #OUTPUT} frames.
+ */
+public final class WireProtocol {
+  public static final byte CAPTCHA = 'C';
+  public static final byte LOGIN = 'L';
+  public static final byte QUERY = 'Q';
+  public static final byte OUTPUT = 'O';
+  public static final byte ROWS = 'R';
+  public static final byte DONE = 'D';
+  public static final byte ERROR = 'E';
+  public static final byte QUIT = 'X';
+
+  /* Length and type in front of every payload */
+  public static final int HEADER_SIZE = 5;
+  public static final int MAX_PAYLOAD_SIZE = 16 * 1024 * 1024;
+
+  /**
+   * A frame read from a connection.
+   *
+   * @param type type of the frame
+   * @param payload the payload
+   */
+  public record Frame(byte type, byte[] payload) {
+    /**
+     * @return the payload as text
+     */
+    public String text() {
+      return new String(payload, StandardCharsets.UTF_8);
+    }
+  }
+
+  private WireProtocol() {
+    throw new AssertionError("WireProtocol class should not be instantiated.");
+  }
+
+  /**
+   * Reads the next frame.
+   *
+   * @param inputStream the connection
+   * @return the frame, or {@code null} if the connection was closed between frames
+   * @throws IOException if the connection fails or the frame is malformed
+   */
+  public static Frame readFrame(InputStream inputStream) throws IOException {
+    byte[] header = new byte[HEADER_SIZE];
+    int read = inputStream.readNBytes(header, 0, HEADER_SIZE);
+    if (read == 0) {
+      return null;
+    }
+    if (read < HEADER_SIZE) {
+      throw new EOFException("Connection closed inside a frame");
+    }
+    int length =
+        (header[0] & 0xFF) << 24 | (header[1] & 0xFF) << 16 | (header[2] & 0xFF) << 8
+            | (header[3] & 0xFF);
+    if (length < 0 || length > MAX_PAYLOAD_SIZE) {
+      throw new IOException("Invalid frame length " + length);
+    }
+    byte[] payload = inputStream.readNBytes(length);
+    if (payload.length < length) {
+      throw new EOFException("Connection closed inside a frame");
+    }
+    return new Frame(header[4], payload);
+  }
+
+  /**
+   * Writes a frame with a text payload.
+   *
+   * @param outputStream the connection
+   * @param type type of the frame
+   * @param text the payload
+   * @throws IOException if the connection fails
+   */
+  public static void writeFrame(OutputStream outputStream, byte type, String text)
+      throws IOException {
+    byte[] payload = text.getBytes(StandardCharsets.UTF_8);
+    byte[] frame = new byte[HEADER_SIZE + payload.length];
+    System.arraycopy(payload, 0, frame, HEADER_SIZE, payload.length);
+    writeHeader(frame, type, payload.length);
+    outputStream.write(frame);
+    outputStream.flush();
+  }
+
+  /**
+   * Fills in the header of a frame whose payload has been placed after {@link #HEADER_SIZE} bytes
+   * of the buffer, so that a frame can be sent with a single write.
+   *
+   * @param buffer the frame
+   * @param type type of the frame
+   * @param length length of the payload
+   */
+  public static void writeHeader(byte[] buffer, byte type, int length) {
+    buffer[0] = (byte) (length >>> 24);
+    buffer[1] = (byte) (length >>> 16);
+    buffer[2] = (byte) (length >>> 8);
+    buffer[3] = (byte) length;
+    buffer[4] = type;
+  }
+}
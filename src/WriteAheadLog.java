@@ -0,0 +1,309 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * The {@code WriteAheadLog} class is an append-only file of committed transactions. A transaction
+ * is committed once its entry has been forced to disk; the table files are updated afterwards and
+ * only forced by checkpoints, so a commit costs one sequential write and one fsync.
+ *
+ * <p>Commits are grouped: entries are appended to a buffer, and the first committer to wait for
+ * its entry writes and forces everything buffered so far, including the entries of the committers
+ * that arrive while it waits for the disk. Every entry is a length, a CRC32 of the body and the
+ * body: the log sequence number, the number of records and the {@link RedoRecord}s. A torn or
+ * corrupted entry at the end of the file is a commit that never completed and is cut off when the
+ * log is opened.
+ */
+public class WriteAheadLog implements Closeable {
+  private static final int ENTRY_HEADER_SIZE = 8;
+
+  private final Path path;
+  private FileChannel channel;
+  private final List<Entry> recoveredEntries;
+
+  /* Entries appended but not written yet, guarded by the lock */
+  private final ReentrantLock lock = new ReentrantLock();
+  private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+  private long lastLsn;
+
+  /* Only one thread writes and forces the file at a time */
+  private final ReentrantLock flushLock = new ReentrantLock();
+  private long durableLsn;
+  private long failedLsn;
+
+  /**
+   * A committed transaction read back from the log.
+   *
+   * @param lsn log sequence number of the transaction
+   * @param records changes of the transaction, in order
+   */
+  public record Entry(long lsn, List<RedoRecord> records) {}
+
+  /**
+   * Opens the log, reading the entries it holds and cutting off an incomplete last entry.
+   *
+   * @param filePath path of the log file
+   * @throws IOException if the log cannot be opened
+   */
+  public WriteAheadLog(String filePath) throws IOException {
+    this.path = Path.of(filePath);
+    this.channel =
+        FileChannel.open(
+            path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    this.recoveredEntries = readEntries();
+    this.lastLsn = recoveredEntries.isEmpty() ? 0 : recoveredEntries.getLast().lsn();
+    this.durableLsn = lastLsn;
+  }
+
+  /**
+   * @return the entries found in the log when it was opened
+   */
+  public List<Entry> getRecoveredEntries() {
+    return recoveredEntries;
+  }
+
+  /**
+   * @return sequence number of the last appended entry
+   */
+  public long getLastLsn() {
+    lock.lock();
+    try {
+      return lastLsn;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Makes sequence numbers continue after a checkpoint when the log itself is empty.
+   *
+   * @param lsn sequence number already used
+   */
+  public void advanceTo(long lsn) {
+    lock.lock();
+    try {
+      if (lsn > lastLsn) {
+        lastLsn = lsn;
+        durableLsn = Math.max(durableLsn, lsn);
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @return size of the log file in bytes, without the entries not written yet
+   */
+  public long size() {
+    try {
+      return channel.size();
+    } catch (IOException e) {
+      return 0;
+    }
+  }
+
+  /**
+   * Appends the entry of a transaction to the buffer. The entry is durable only after {@link
+   * #sync(long)} returned for its sequence number.
+   *
+   * @param records changes of the transaction
+   * @return the sequence number of the entry
+   */
+  public long append(List<RedoRecord> records) {
+    lock.lock();
+    try {
+      long lsn = lastLsn + 1;
+      try {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(body);
+        output.writeLong(lsn);
+        output.writeInt(records.size());
+        for (RedoRecord record : records) {
+          record.write(output);
+        }
+        output.flush();
+        CRC32 crc = new CRC32();
+        crc.update(body.toByteArray());
+        DataOutputStream entry = new DataOutputStream(buffer);
+        entry.writeInt(body.size());
+        entry.writeInt((int) crc.getValue());
+        body.writeTo(entry);
+        /* The entry of a transaction is counted when it is buffered, the batch is shared */
+        QueryStats.recordWrite(8 + body.size(), 0);
+      } catch (IOException e) {
+        /* Writing to memory does not fail */
+        throw new IllegalStateException(e);
+      }
+      lastLsn = lsn;
+      return lsn;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Waits until the entry is on disk. The waiting thread that gets the file first writes and
+   * forces every buffered entry at once, so concurrent commits share one fsync.
+   *
+   * @param lsn sequence number of the entry
+   * @throws IOException if the entry could not be written
+   */
+  public void sync(long lsn) throws IOException {
+    flushLock.lock();
+    try {
+      if (durableLsn >= lsn) {
+        return;
+      }
+      if (failedLsn >= lsn) {
+        throw new IOException("Writing the log failed");
+      }
+      byte[] batch;
+      long upTo;
+      lock.lock();
+      try {
+        batch = buffer.toByteArray();
+        buffer.reset();
+        upTo = lastLsn;
+      } finally {
+        lock.unlock();
+      }
+      long start = channel.size();
+      try {
+        ByteBuffer bytes = ByteBuffer.wrap(batch);
+        long position = start;
+        while (bytes.hasRemaining()) {
+          position += channel.write(bytes, position);
+        }
+        channel.force(false);
+      } catch (IOException e) {
+        failedLsn = upTo;
+        /* Do not leave a partial batch in front of the next one */
+        channel.truncate(start);
+        throw e;
+      }
+      durableLsn = upTo;
+    } finally {
+      flushLock.unlock();
+    }
+  }
+
+  /**
+   * Removes the entries that a checkpoint has made redundant, keeping the later ones.
+   *
+   * @param lsn sequence number up to which the table files are on disk
+   * @throws IOException if the log cannot be rewritten
+   */
+  public void discardUpTo(long lsn) throws IOException {
+    flushLock.lock();
+    try {
+      if (durableLsn <= lsn) {
+        /* Nothing after the checkpoint is on disk, the log can simply be emptied */
+        channel.truncate(0);
+        channel.force(true);
+        return;
+      }
+      /* Copy the entries after the checkpoint to a new file and swap it in */
+      Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+      try (FileChannel copy =
+          FileChannel.open(
+              temporary,
+              StandardOpenOption.CREATE,
+              StandardOpenOption.TRUNCATE_EXISTING,
+              StandardOpenOption.WRITE)) {
+        long position = 0;
+        long size = channel.size();
+        ByteBuffer header = ByteBuffer.allocate(ENTRY_HEADER_SIZE + Long.BYTES);
+        while (position < size) {
+          header.clear();
+          readFully(position, header);
+          int length = header.getInt(0);
+          long entryLsn = header.getLong(ENTRY_HEADER_SIZE);
+          long entrySize = ENTRY_HEADER_SIZE + length;
+          if (entryLsn > lsn) {
+            long copied = 0;
+            while (copied < size - position) {
+              copied += channel.transferTo(position + copied, size - position - copied, copy);
+            }
+            break;
+          }
+          position += entrySize;
+        }
+        copy.force(true);
+      }
+      channel.close();
+      Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE);
+      channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    } finally {
+      flushLock.unlock();
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+  /* Reads the valid entries and truncates the file after the last one */
+  private List<Entry> readEntries() throws IOException {
+    List<Entry> entries = new ArrayList<>();
+    long size = channel.size();
+    long position = 0;
+    ByteBuffer header = ByteBuffer.allocate(ENTRY_HEADER_SIZE);
+    while (position + ENTRY_HEADER_SIZE <= size) {
+      header.clear();
+      readFully(position, header);
+      int length = header.getInt(0);
+      int checksum = header.getInt(4);
+      if (length <= 0 || position + ENTRY_HEADER_SIZE + length > size) {
+        break;
+      }
+      ByteBuffer body = ByteBuffer.allocate(length);
+      readFully(position + ENTRY_HEADER_SIZE, body);
+      CRC32 crc = new CRC32();
+      crc.update(body.array());
+      if ((int) crc.getValue() != checksum) {
+        break;
+      }
+      try {
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(body.array()));
+        long lsn = input.readLong();
+        int recordCount = input.readInt();
+        List<RedoRecord> records = new ArrayList<>(recordCount);
+        for (int i = 0; i < recordCount; i++) {
+          records.add(RedoRecord.read(input));
+        }
+        entries.add(new Entry(lsn, records));
+      } catch (IOException | RuntimeException e) {
+        break;
+      }
+      position += ENTRY_HEADER_SIZE + length;
+    }
+    if (position < size) {
+      System.out.println("Discarded incomplete transaction at the end of " + path);
+      channel.truncate(position);
+      channel.force(true);
+    }
+    return entries;
+  }
+
+  private void readFully(long position, ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, position + buffer.position()) < 0) {
+        throw new IOException("Unexpected end of " + path);
+      }
+    }
+  }
+}
@@ -0,0 +1,53 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/** Tests that every audit record is either written or counted as dropped. */
+class AuditLogTest {
+  private static final int RECORDS = 20_000;
+  private static final Pattern DROPPED = Pattern.compile(" WARNING (\\d+) audit records dropped");
+
+  @TempDir Path directory;
+
+  @Test
+  void dropPolicyReportsHowManyRecordsItDropped() throws IOException {
+    List<String> lines = log(AuditLog.OverflowPolicy.DROP);
+    long written = lines.stream().filter(line -> line.contains(" INFO ")).count();
+    long dropped = 0;
+    for (String line : lines) {
+      Matcher matcher = DROPPED.matcher(line);
+      if (matcher.find()) {
+        dropped += Long.parseLong(matcher.group(1));
+      }
+    }
+    assertTrue(dropped > 0, "nothing dropped from a buffer of 2 records");
+    assertEquals(RECORDS, written + dropped);
+  }
+
+  @Test
+  void blockPolicyKeepsEveryRecord() throws IOException {
+    List<String> lines = log(AuditLog.OverflowPolicy.BLOCK);
+    assertEquals(RECORDS, lines.stream().filter(line -> line.contains(" INFO ")).count());
+    assertTrue(lines.stream().noneMatch(line -> DROPPED.matcher(line).find()));
+  }
+
+  /* Logs the records into a buffer much smaller than them and reads the lines written */
+  private List<String> log(AuditLog.OverflowPolicy overflowPolicy) throws IOException {
+    Path file = directory.resolve(overflowPolicy.name().toLowerCase() + ".log");
+    try (AuditLog auditLog = new AuditLog(file.toString(), 2, overflowPolicy)) {
+      for (int i = 0; i < RECORDS; i++) {
+        auditLog.log(AuditLog.Event.TABLE_DROPPED, "admin", "table" + i);
+      }
+    }
+    return Files.readAllLines(file, StandardCharsets.UTF_8);
+  }
+}
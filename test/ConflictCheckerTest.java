@@ -0,0 +1,90 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/** Tests which changes of transactions committed after a snapshot make a transaction conflict. */
+class ConflictCheckerTest {
+  private static final List<List<String>> ROW = List.of(List.of("1", "a"));
+
+  private final ConflictChecker conflictChecker = new ConflictChecker();
+
+  @Test
+  void updatesOfTheSameRowConflictAndOfOtherRowsDoNot() {
+    conflictChecker.recordWrites(List.of(update("t", 5)), 2);
+
+    assertEquals(
+        "Rows of table t were changed by a concurrent transaction",
+        conflictChecker.findConflict(List.of(update("t", 5)), 1, 1));
+    assertNotNull(conflictChecker.findConflict(List.of(delete("T", 5)), 1, 1));
+    assertNull(conflictChecker.findConflict(List.of(update("t", 6), delete("t", 7)), 1, 1));
+    /* A snapshot that sees the update does not conflict with it */
+    assertNull(conflictChecker.findConflict(List.of(update("t", 5)), 2, 2));
+  }
+
+  @Test
+  void insertsDoNotConflictWithUpdatesOrInserts() {
+    conflictChecker.recordWrites(List.of(update("t", 5), new RedoRecord.Insert("t", ROW)), 2);
+
+    assertNull(conflictChecker.findConflict(List.of(new RedoRecord.Insert("t", ROW)), 1, 1));
+  }
+
+  @Test
+  void droppingConflictsWithEveryChangeAndEveryChangeWithDropping() {
+    conflictChecker.recordWrites(List.of(new RedoRecord.Insert("t", ROW)), 2);
+    assertEquals(
+        "Table t was changed by a concurrent transaction",
+        conflictChecker.findConflict(List.of(new RedoRecord.DropTable("t")), 1, 1));
+
+    conflictChecker.recordWrites(List.of(new RedoRecord.DropTable("t")), 3);
+    assertNotNull(conflictChecker.findConflict(List.of(new RedoRecord.Insert("t", ROW)), 2, 2));
+    assertNull(conflictChecker.findConflict(List.of(new RedoRecord.Insert("t", ROW)), 3, 3));
+  }
+
+  @Test
+  void vacuumConflictsWithRowChangesAndWaitsForOlderSnapshots() {
+    conflictChecker.recordWrites(List.of(new RedoRecord.Vacuum("t")), 2);
+    assertNotNull(conflictChecker.findConflict(List.of(delete("t", 1)), 1, 1));
+    assertNull(conflictChecker.findConflict(List.of(new RedoRecord.Insert("t", ROW)), 1, 1));
+
+    /* A table changed after the oldest snapshot in use cannot be vacuumed */
+    assertEquals(
+        "Table t is read by older transactions",
+        conflictChecker.findConflict(List.of(new RedoRecord.Vacuum("t")), 2, 1));
+    assertNull(conflictChecker.findConflict(List.of(new RedoRecord.Vacuum("t")), 2, 2));
+  }
+
+  @Test
+  void prunedRowStampsFallBackToTheTable() {
+    conflictChecker.recordWrites(List.of(update("t", 5)), 2);
+    conflictChecker.recordWrites(List.of(update("t", 6)), 3);
+    conflictChecker.prune(2);
+
+    /* The stamp of row 5 is forgotten, any row change after the snapshot conflicts */
+    assertEquals(
+        "Table t was changed by a concurrent transaction",
+        conflictChecker.findConflict(List.of(update("t", 7)), 1, 1));
+    /* A snapshot that saw the forgotten stamp still gets the row stamps */
+    assertNull(conflictChecker.findConflict(List.of(update("t", 5)), 2, 2));
+    assertNotNull(conflictChecker.findConflict(List.of(update("t", 6)), 2, 2));
+  }
+
+  @Test
+  void lastWriteIsTheLatestChangeOfTheTable() {
+    assertEquals(0, conflictChecker.lastWrite("t"));
+    conflictChecker.recordWrites(List.of(new RedoRecord.Insert("t", ROW)), 4);
+    conflictChecker.recordWrites(List.of(delete("u", 1)), 5);
+    assertEquals(4, conflictChecker.lastWrite("T"));
+    assertEquals(5, conflictChecker.lastWrite("u"));
+  }
+
+  private static RedoRecord update(String table, long rowId) {
+    return new RedoRecord.Update(table, new long[] {rowId}, ROW);
+  }
+
+  private static RedoRecord delete(String table, long rowId) {
+    return new RedoRecord.Delete(table, new long[] {rowId});
+  }
+}
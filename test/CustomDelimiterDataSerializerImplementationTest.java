@@ -0,0 +1,48 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/** Tests that rows of the text table format read back as they were written. */
+class CustomDelimiterDataSerializerImplementationTest {
+  private final DataSerializer dataSerializer = new CustomDelimiterDataSerializerImplementation();
+
+  @Test
+  void rowsOfAcceptedValuesReadBackUnchanged() {
+    List<List<String>> rows =
+        List.of(
+            List.of("1", "plain", "2.5"),
+            List.of("", "", ""),
+            List.of("-", "_", "-_x"),
+            List.of("_-", "a-_b", "x-"),
+            List.of("--", "__", "_-_x"),
+            List.of("tab\there", "quote\"here", "comma,here"));
+    for (List<String> row : rows) {
+      for (String value : row) {
+        assertTrue(dataSerializer.canSerialize(value), value);
+      }
+      String line = dataSerializer.serializeRow(row);
+      assertTrue(line.endsWith("\n"));
+      assertEquals(row, dataSerializer.deserializeRow(line.substring(0, line.length() - 1)));
+    }
+  }
+
+  @Test
+  void nullIsToldApartFromTheStrings() {
+    List<String> row = Arrays.asList(null, "null", "\\N", "\\\\N", "\\", "N", "a\\N");
+    String line = dataSerializer.serializeRow(row);
+    assertEquals("\\N-_-null-_-\\\\N-_-\\\\\\N-_-\\-_-N-_-a\\N\n", line);
+    assertEquals(row, dataSerializer.deserializeRow(line.substring(0, line.length() - 1)));
+    assertTrue(dataSerializer.canSerialize(null));
+  }
+
+  @Test
+  void valuesThatWouldSplitAreRejected() {
+    for (String value : List.of("a-_-b", "-_-", "line\nbreak", "carriage\rreturn", "ends-_")) {
+      assertFalse(dataSerializer.canSerialize(value), value);
+    }
+  }
+}
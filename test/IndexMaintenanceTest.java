@@ -0,0 +1,94 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+/** Tests that index lookups find every changed row exactly once, after it moved too. */
+class IndexMaintenanceTest {
+  private static final int ROWS = 3_000;
+  private static final String LONG_NAME = "a name that is far too long for the space of the row";
+
+  private final Session session = new Session("admin");
+
+  @ParameterizedTest
+  @EnumSource(StorageFormat.class)
+  void movedRowIsFoundOnceThroughTheIndex(StorageFormat storageFormat)
+      throws IncorrectQueryException {
+    String table = "moved_" + storageFormat.name().toLowerCase();
+    createIndexedTable(table, storageFormat);
+
+    for (int row = 0; row < ROWS; row += 97) {
+      int id = row;
+      String printed =
+          TestDatabase.execute(
+              session,
+              "update " + table + " set name = '" + LONG_NAME + "' where id = " + id + ";");
+      assertTrue(printed.startsWith("1 row(s) updated"), printed);
+      assertEquals(List.of(id + "|" + LONG_NAME + "|" + id % 10 + ".5"), select(table, "id", id));
+      assertEquals(
+          1,
+          select(table, "score", id % 10 + 0.5).stream()
+              .filter(found -> found.startsWith(id + "|"))
+              .count());
+    }
+  }
+
+  @ParameterizedTest
+  @EnumSource(StorageFormat.class)
+  void changedKeyIsFoundUnderItsNewValueOnly(StorageFormat storageFormat)
+      throws IncorrectQueryException {
+    String table = "rekeyed_" + storageFormat.name().toLowerCase();
+    createIndexedTable(table, storageFormat);
+
+    for (int id = 1; id < ROWS; id += 89) {
+      int newId = ROWS + id;
+      TestDatabase.execute(
+          session,
+          "update " + table + " set id = " + newId + ", name = '" + LONG_NAME + "' where id = "
+              + id + ";");
+      assertEquals(List.of(), select(table, "id", id));
+      assertEquals(List.of(newId + "|" + LONG_NAME + "|" + id % 10 + ".5"),
+          select(table, "id", newId));
+    }
+  }
+
+  @ParameterizedTest
+  @EnumSource(StorageFormat.class)
+  void rowMovedTwiceInATransactionIsFoundOnce(StorageFormat storageFormat)
+      throws IncorrectQueryException {
+    String table = "moved_twice_" + storageFormat.name().toLowerCase();
+    createIndexedTable(table, storageFormat);
+
+    TestDatabase.executeAll(
+        session,
+        "begin transaction;",
+        "update " + table + " set name = '" + LONG_NAME + "' where id = 7;",
+        "update " + table + " set name = '" + LONG_NAME + LONG_NAME + "' where id = 7;",
+        "update " + table + " set score = 1.5 where id = 7;",
+        "commit;");
+    assertEquals(List.of("7|" + LONG_NAME + LONG_NAME + "|1.5"), select(table, "id", 7));
+  }
+
+  private void createIndexedTable(String table, StorageFormat storageFormat)
+      throws IncorrectQueryException {
+    TestDatabase.createTable(session, table, storageFormat, "id int, name varchar, score double");
+    StringBuilder insert = new StringBuilder("insert into " + table + " values ");
+    for (int id = 0; id < ROWS; id++) {
+      insert.append(id == 0 ? "" : ", ").append('(').append(id).append(", 'n").append(id)
+          .append("', ").append(id % 10).append(".5)");
+    }
+    TestDatabase.execute(session, insert.append(';').toString());
+    TestDatabase.execute(session, "create index " + table + "_id on " + table + "(id);");
+    TestDatabase.execute(session, "create index " + table + "_score on " + table + "(score);");
+  }
+
+  /* Rows as id|name|score, read through the index on the column */
+  private List<String> select(String table, String column, Object value)
+      throws IncorrectQueryException {
+    return TestDatabase.rows(
+        TestDatabase.execute(
+            session, "select * from " + table + " where " + column + " = " + value + ";"));
+  }
+}
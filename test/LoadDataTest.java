@@ -0,0 +1,61 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+
+/** Tests that LOAD DATA only reads the import directory and rejects malformed values. */
+class LoadDataTest {
+  private final Session session = new Session("admin");
+
+  @Test
+  void filesOutsideTheImportDirectoryAreRefused() throws IncorrectQueryException, IOException {
+    TestDatabase.createTable(session, "load_outside", StorageFormat.TEXT, "id int, name varchar");
+    Path outside = Path.of("outside.csv").toAbsolutePath();
+    Files.writeString(outside, "1,secret\n");
+    for (String path :
+        new String[] {outside.toString(), "../../outside.csv", "a/../../outside.csv"}) {
+      String printed = load("load_outside", path);
+      assertTrue(printed.startsWith("Only files in"), printed);
+    }
+    assertEquals(0, countRows("load_outside"));
+  }
+
+  @Test
+  void textAfterAClosingQuoteStopsTheLoad() throws IncorrectQueryException, IOException {
+    TestDatabase.createTable(session, "load_quotes", StorageFormat.PAGED, "id int, name varchar");
+    String printed = load("load_quotes", write("quotes.csv", "1,\"a\"\n2,\"b\"c\n3,\"d\"\n"));
+    assertTrue(printed.contains("Line 2: text after the closing quote"), printed);
+    assertEquals(1, countRows("load_quotes"));
+  }
+
+  @Test
+  void valuesATextTableCannotStoreStopTheLoad() throws IncorrectQueryException, IOException {
+    TestDatabase.createTable(session, "load_text", StorageFormat.TEXT, "id int, name varchar");
+    String printed = load("load_text", write("delimiter.csv", "1,\"a\"\n2,\"x-_-y\"\n"));
+    assertTrue(printed.contains("Line 2: Value for column name cannot be stored"), printed);
+    printed = load("load_text", write("line_break.csv", "3,\"two\nlines\"\n"));
+    assertTrue(printed.contains("Line 1: a quoted value is not closed"), printed);
+    assertEquals(1, countRows("load_text"));
+  }
+
+  private static String write(String name, String content) throws IOException {
+    Path file = Path.of(Constants.IMPORT_DIRECTORY, name);
+    Files.createDirectories(file.getParent());
+    Files.writeString(file, content);
+    return name;
+  }
+
+  private String load(String table, String path) throws IncorrectQueryException {
+    return TestDatabase.execute(
+        session, "load data infile '" + path + "' into table " + table + ";");
+  }
+
+  private long countRows(String table) throws IncorrectQueryException {
+    return Long.parseLong(
+        TestDatabase.rows(TestDatabase.execute(session, "select count(*) from " + table + ";"))
+            .getFirst());
+  }
+}
@@ -0,0 +1,68 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+/** Tests that a null VARCHAR value stays null and is not taken for the string null. */
+class NullValueTest {
+  private final Session session = new Session("admin");
+
+  @ParameterizedTest
+  @EnumSource(StorageFormat.class)
+  void nullIsNotTheStringNull(StorageFormat storageFormat) throws IncorrectQueryException {
+    String table =
+        TestDatabase.createTable(
+            session,
+            "nulls_" + storageFormat.name().toLowerCase(),
+            storageFormat,
+            "id int, name varchar");
+    TestDatabase.execute(
+        session, "insert into " + table + " values (1, null), (2, 'null'), (3, 'name');");
+
+    assertEquals("2", select("select count(name) from " + table + ";"));
+    assertEquals("1", select("select id from " + table + " where name is null;"));
+    assertEquals("2", select("select id from " + table + " where name = 'null';"));
+
+    TestDatabase.execute(session, "set output format json;");
+    try {
+      String printed = TestDatabase.execute(session, "select * from " + table + " where id < 3;");
+      assertTrue(printed.contains("{\"id\":1,\"name\":null}"), printed);
+      assertTrue(printed.contains("{\"id\":2,\"name\":\"null\"}"), printed);
+    } finally {
+      TestDatabase.execute(session, "set output format table;");
+    }
+
+    TestDatabase.execute(session, "update " + table + " set name = null where id = 3;");
+    assertEquals("1", select("select count(name) from " + table + ";"));
+  }
+
+  @ParameterizedTest
+  @EnumSource(StorageFormat.class)
+  void emptyLoadedFieldIsNull(StorageFormat storageFormat)
+      throws IncorrectQueryException, IOException {
+    String table =
+        TestDatabase.createTable(
+            session,
+            "loaded_nulls_" + storageFormat.name().toLowerCase(),
+            storageFormat,
+            "id int, name varchar");
+    Path file = Path.of(Constants.IMPORT_DIRECTORY, table + ".csv");
+    Files.createDirectories(file.getParent());
+    Files.writeString(file, "1,\n2,\"\"\n3,null\n");
+    TestDatabase.execute(
+        session, "load data infile '" + file.getFileName() + "' into table " + table + ";");
+
+    assertEquals("1", select("select id from " + table + " where name is null;"));
+    assertEquals("2", select("select count(name) from " + table + ";"));
+    assertEquals("3", select("select id from " + table + " where name = 'null';"));
+  }
+
+  /* The single value of a result of one row and one column */
+  private String select(String query) throws IncorrectQueryException {
+    return TestDatabase.rows(TestDatabase.execute(session, query)).getFirst();
+  }
+}
@@ -0,0 +1,55 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/** Tests that rows larger than a page of a paged table are rejected before they are logged. */
+class OversizedRowTest {
+  private static final String BIG = "x".repeat(9_000);
+
+  private final Session session = new Session("admin");
+
+  @BeforeAll
+  static void createTable() throws IncorrectQueryException {
+    TestDatabase.createTable(
+        new Session("admin"), "oversized", StorageFormat.PAGED, "id int, name varchar");
+  }
+
+  @Test
+  void oversizedInsertIsRejected() throws IncorrectQueryException {
+    String printed =
+        TestDatabase.execute(session, "insert into oversized values (1, '" + BIG + "');");
+    assertTrue(printed.contains("larger than a page"), printed);
+    assertEquals(0, countRows("id = 1"));
+  }
+
+  @Test
+  void transactionWithAnOversizedRowAppliesNothing() throws IncorrectQueryException {
+    String printed =
+        TestDatabase.executeAll(
+            session,
+            "begin transaction;",
+            "insert into oversized values (2, 'small');",
+            "insert into oversized values (3, '" + BIG + "');",
+            "commit;");
+    assertTrue(printed.contains("larger than a page"), printed);
+    assertEquals(0, countRows("id = 2 or id = 3"));
+  }
+
+  @Test
+  void oversizedUpdateIsRejected() throws IncorrectQueryException {
+    TestDatabase.execute(session, "insert into oversized values (4, 'small');");
+    String printed =
+        TestDatabase.execute(
+            session, "update oversized set name = '" + BIG + "' where id = 4;");
+    assertTrue(printed.contains("larger than a page"), printed);
+    assertEquals(1, countRows("id = 4 and name = 'small'"));
+  }
+
+  private long countRows(String condition) throws IncorrectQueryException {
+    String printed =
+        TestDatabase.execute(session, "select count(*) from oversized where " + condition + ";");
+    return Long.parseLong(printed.replaceAll("(?s).*\\|\\s*(\\d+)\\s*\\|.*", "$1"));
+  }
+}
@@ -0,0 +1,58 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/** Tests that conditions compare text exactly and are shown with values typed like columns. */
+class PredicateCompilerTest {
+  private static final TableSchema SCHEMA =
+      new TableSchema(
+          List.of("id", "name", "age", "active"),
+          List.of(ColumnType.INT, ColumnType.VARCHAR, ColumnType.INT, ColumnType.BOOLEAN));
+
+  private final ColumnarTable table = new ColumnarTable(SCHEMA);
+
+  PredicateCompilerTest() {
+    table.appendRow(List.of("1", "ann", "26", "true"));
+    table.appendRow(List.of("2", " ann", "26", "false"));
+    table.appendRow(List.of("3", "ann ", "30", "true"));
+  }
+
+  @Test
+  void textIsComparedExactly() throws IncorrectQueryException {
+    assertEquals(List.of(1), matches("name = 'ann'"));
+    assertEquals(List.of(2), matches("name = ' ann'"));
+    assertEquals(List.of(1, 2), matches("name in ('ann', ' ann')"));
+    assertEquals(List.of(3), matches("name like 'ann '"));
+    assertEquals(List.of(1, 2), matches("age = ' 26 '"));
+  }
+
+  @Test
+  void valuesAreShownLikeTheirColumns() throws IncorrectQueryException {
+    assertEquals(
+        "((age = 26 and name = 'ann') and active = true)",
+        Expression.format(condition("age = '26' and name = 'ann' and active = true"), SCHEMA));
+    assertEquals("age in [26, 30]", Expression.format(condition("age in ('26', 30)"), SCHEMA));
+    assertEquals(
+        "age between 20 and 30",
+        Expression.format(condition("age between '20' and 30"), SCHEMA));
+    assertEquals("name = '26'", Expression.format(condition("name = 26"), SCHEMA));
+  }
+
+  private List<Integer> matches(String condition) throws IncorrectQueryException {
+    RowPredicate predicate = PredicateCompiler.compile(condition(condition), SCHEMA);
+    List<Integer> ids = new ArrayList<>();
+    for (int row = 0; row < table.getRowCount(); row++) {
+      if (predicate.test(table, row)) {
+        ids.add(table.getInt(0, row));
+      }
+    }
+    return ids;
+  }
+
+  private static Expression condition(String condition) throws IncorrectQueryException {
+    Statement statement = SqlParser.parse("select * from t where " + condition);
+    return ((Statement.Select) statement).condition();
+  }
+}
@@ -0,0 +1,36 @@
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.junit.jupiter.api.Test;
+
+/** Tests that SHOW STATS reports the hits of the table and statement caches. */
+class QueryMetricsTest {
+  private final Session session = new Session("admin");
+
+  @Test
+  void repeatedSelectsHitTheCaches() throws IncorrectQueryException {
+    TestDatabase.createTable(session, "metrics_cache", StorageFormat.TEXT, "id int, name varchar");
+    TestDatabase.executeAll(
+        session,
+        "insert into metrics_cache values (1, 'a');",
+        "select * from metrics_cache;");
+    String before = TestDatabase.execute(session, "show stats;");
+    TestDatabase.execute(session, "select * from metrics_cache;");
+    String after = TestDatabase.execute(session, "show stats;");
+
+    assertTrue(
+        count(after, "Table cache: (\\d+) hits") > count(before, "Table cache: (\\d+) hits"),
+        after);
+    assertTrue(
+        count(after, "Statement cache: (\\d+) hits")
+            > count(before, "Statement cache: (\\d+) hits"),
+        after);
+  }
+
+  private static long count(String printed, String regex) {
+    Matcher matcher = Pattern.compile(regex).matcher(printed);
+    assertTrue(matcher.find(), printed);
+    return Long.parseLong(matcher.group(1));
+  }
+}
@@ -0,0 +1,52 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+
+/** Tests that passwords are hidden before queries are printed or written to a log. */
+class QueryRedactionTest {
+  @Test
+  void passwordsAreReplaced() {
+    assertEquals(
+        "create user bob identified by '***';",
+        SqlParser.redact("create user bob identified by 'it''s secret';"));
+    assertEquals(
+        "CREATE USER bob IDENTIFIED BY '***' ;",
+        SqlParser.redact("CREATE USER bob IDENTIFIED BY secret ;"));
+    assertEquals(
+        "create user bob identified by '***'",
+        SqlParser.redact("create user bob identified by 'unterminated"));
+    assertEquals("select * from users;", SqlParser.redact("select * from users;"));
+  }
+
+  @Test
+  void slowQueryLogAndErrorsHidePasswords() throws IncorrectQueryException, IOException {
+    Database database = TestDatabase.open();
+    Session session = new Session("admin");
+    long threshold = database.getQueryMetrics().getSlowQueryThreshold();
+    database.getQueryMetrics().setSlowQueryThreshold(0);
+    try {
+      TestDatabase.execute(session, "create user redacted identified by 'Logged-Secret';");
+      IncorrectQueryException exception =
+          assertThrows(
+              IncorrectQueryException.class,
+              () ->
+                  TestDatabase.execute(
+                      session, "create user redacted identified by 'Printed-Secret' now;"));
+      assertTrue(exception.getMessage().contains("'***'"), exception.getMessage());
+      assertFalse(exception.getMessage().contains("Printed-Secret"), exception.getMessage());
+    } finally {
+      database.getQueryMetrics().setSlowQueryThreshold(threshold);
+    }
+    String log =
+        Files.readString(Path.of(Constants.SLOW_QUERY_LOG_PATH), StandardCharsets.UTF_8);
+    assertTrue(log.contains("identified by '***'"), log);
+    assertFalse(log.contains("Secret"), log);
+  }
+}
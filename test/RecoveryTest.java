@@ -0,0 +1,97 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+/**
+ * Tests that the changes committed before a crash are replayed from the log. The database is a
+ * singleton, so it runs in processes of its own, the first of which halts without a checkpoint.
+ */
+class RecoveryTest {
+  private static final String LONG_NAME = "a name that is far too long for the space of the row";
+
+  @TempDir Path directory;
+
+  @ParameterizedTest
+  @EnumSource(StorageFormat.class)
+  void committedChangesSurviveACrash(StorageFormat storageFormat)
+      throws IOException, InterruptedException {
+    String crashed =
+        run(
+            storageFormat,
+            "halt",
+            "create table recovered (id int, name varchar);",
+            "insert into recovered values (1, 'a'), (2, 'b'), (3, 'c'), (4, 'd'), (5, 'e');",
+            "create index recovered_id on recovered(id);",
+            "delete from recovered where id = 3;",
+            "vacuum recovered;",
+            "update recovered set name = '" + LONG_NAME + "' where id = 1;",
+            "update recovered set name = 'x' where id = 2;",
+            "insert into recovered values (6, 'f');");
+    assertTrue(crashed.contains("vacuumed"), crashed);
+
+    String recovered =
+        run(
+            storageFormat,
+            "exit",
+            "select * from recovered order by id;",
+            "select * from recovered where id = 1;");
+    assertTrue(recovered.contains("Recovered"), recovered);
+    List<String> rows = TestDatabase.rows(recovered);
+    assertEquals(
+        List.of("1|" + LONG_NAME, "2|x", "4|d", "5|e", "6|f", "1|" + LONG_NAME), rows);
+  }
+
+  /* Runs statements in a new process on the directory, which then halts or exits */
+  private String run(StorageFormat storageFormat, String end, String... queries)
+      throws IOException, InterruptedException {
+    List<String> command = new ArrayList<>();
+    command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+    command.add("-Ddbms.storageFormat=" + storageFormat.name().toLowerCase());
+    command.add("-Ddbms.checkpointIntervalMillis=3600000");
+    command.add("-cp");
+    command.add(
+        System.getProperty("surefire.test.class.path", System.getProperty("java.class.path")));
+    command.add(Child.class.getName());
+    command.add(end);
+    command.addAll(List.of(queries));
+    Process process =
+        new ProcessBuilder(command)
+            .directory(directory.toFile())
+            .redirectErrorStream(true)
+            .start();
+    String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+    assertTrue(process.waitFor(60, TimeUnit.SECONDS), output);
+    return output;
+  }
+
+  /** Executes the statements given after "halt" or "exit", then ends the process that way. */
+  static final class Child {
+    public static void main(String[] args) throws IncorrectQueryException {
+      new File("files").mkdirs();
+      Database database =
+          Database.getInstance(
+              new UserAuthenticationManager(
+                  new UserServiceImplementation(), new CaptchaServiceImplementation()));
+      Session session = new Session("admin");
+      for (int i = 1; i < args.length; i++) {
+        database.execute(session, args[i]);
+      }
+      System.out.flush();
+      if (args[0].equals("halt")) {
+        /* No shutdown hook runs, the table files are only as far as the last checkpoint says */
+        Runtime.getRuntime().halt(0);
+      }
+      System.exit(0);
+    }
+  }
+}
@@ -0,0 +1,81 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/** Tests that the CSV, TSV and JSON results escape the characters their formats reserve. */
+class ResultSinkTest {
+  /* Values of the name column, by id from 1 */
+  private static final List<String> NAMES =
+      Arrays.asList(
+          "plain", "a,b", "say \"hi\"", "two\nlines", "tab\there", "back\\slash", "", null,
+          "bell\u0007");
+
+  @Test
+  void csvQuotesValuesHoldingCommasQuotesAndLineBreaks() {
+    assertEquals(
+        "id,name\n"
+            + "1,plain\n"
+            + "2,\"a,b\"\n"
+            + "3,\"say \"\"hi\"\"\"\n"
+            + "4,\"two\nlines\"\n"
+            + "5,tab\there\n"
+            + "6,back\\slash\n"
+            + "7,\"\"\n"
+            + "8,\n"
+            + "9,bell\u0007\n",
+        write(ResultFormat.CSV));
+  }
+
+  @Test
+  void tsvEscapesTabsLineBreaksAndBackslashes() {
+    assertEquals(
+        "id\tname\n"
+            + "1\tplain\n"
+            + "2\ta,b\n"
+            + "3\tsay \"hi\"\n"
+            + "4\ttwo\\nlines\n"
+            + "5\ttab\\there\n"
+            + "6\tback\\\\slash\n"
+            + "7\t\n"
+            + "8\t\\N\n"
+            + "9\tbell\u0007\n",
+        write(ResultFormat.TSV));
+  }
+
+  @Test
+  void jsonEscapesQuotesBackslashesAndControlCharacters() {
+    assertEquals(
+        "{\"id\":1,\"name\":\"plain\"}\n"
+            + "{\"id\":2,\"name\":\"a,b\"}\n"
+            + "{\"id\":3,\"name\":\"say \\\"hi\\\"\"}\n"
+            + "{\"id\":4,\"name\":\"two\\nlines\"}\n"
+            + "{\"id\":5,\"name\":\"tab\\there\"}\n"
+            + "{\"id\":6,\"name\":\"back\\\\slash\"}\n"
+            + "{\"id\":7,\"name\":\"\"}\n"
+            + "{\"id\":8,\"name\":null}\n"
+            + "{\"id\":9,\"name\":\"bell\\u0007\"}\n",
+        write(ResultFormat.JSON));
+  }
+
+  private static String write(ResultFormat format) {
+    TableSchema schema =
+        new TableSchema(List.of("id", "name"), List.of(ColumnType.INT, ColumnType.VARCHAR));
+    ColumnarTable table = new ColumnarTable(schema);
+    for (int i = 0; i < NAMES.size(); i++) {
+      table.putInt(0, i + 1);
+      if (NAMES.get(i) == null) {
+        table.putNull(1);
+      } else {
+        table.putString(1, NAMES.get(i));
+      }
+      table.finishRow();
+    }
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    new DataTableProcessAndPrint().printTable(new TableRowCursor(table), null, format, output);
+    return output.toString(StandardCharsets.UTF_8);
+  }
+}
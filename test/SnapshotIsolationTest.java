@@ -0,0 +1,107 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+/** Tests that a transaction reads its snapshot while other sessions change the rows it reads. */
+class SnapshotIsolationTest {
+  private static final int ROWS = 1_000;
+  private static final String LONG_NAME = "a name that is far too long for the space of the row";
+
+  private final Session reader = new Session("admin");
+  private final Session writer = new Session("admin");
+
+  @ParameterizedTest
+  @EnumSource(StorageFormat.class)
+  void transactionReadsOldValuesOfChangedRows(StorageFormat storageFormat)
+      throws IncorrectQueryException {
+    String table = "snapshot_" + storageFormat.name().toLowerCase();
+    createIndexedTable(table, storageFormat);
+
+    TestDatabase.execute(reader, "begin transaction;");
+    TestDatabase.executeAll(
+        writer,
+        "update " + table + " set name = 'changed' where id = 3;",
+        "update " + table + " set name = '" + LONG_NAME + "' where id = 5;",
+        "delete from " + table + " where id = 7;");
+
+    assertEquals(List.of("3|n3"), select(reader, table, "id = 3"));
+    assertEquals(List.of("5|n5"), select(reader, table, "id = 5"));
+    assertEquals(List.of("7|n7"), select(reader, table, "id = 7"));
+    assertEquals(ROWS, select(reader, table, "id >= 0").size());
+    assertEquals(List.of(String.valueOf(ROWS)), count(reader, table));
+
+    TestDatabase.execute(reader, "commit;");
+    assertEquals(List.of("3|changed"), select(reader, table, "id = 3"));
+    assertEquals(List.of("5|" + LONG_NAME), select(reader, table, "id = 5"));
+    assertEquals(List.of(), select(reader, table, "id = 7"));
+    assertEquals(List.of(String.valueOf(ROWS - 1)), count(reader, table));
+  }
+
+  @ParameterizedTest
+  @EnumSource(StorageFormat.class)
+  void transactionChangesTheRowsItInserted(StorageFormat storageFormat)
+      throws IncorrectQueryException {
+    String table = "pending_" + storageFormat.name().toLowerCase();
+    createIndexedTable(table, storageFormat);
+
+    String printed =
+        TestDatabase.executeAll(
+            writer,
+            "begin transaction;",
+            "insert into " + table + " values (" + ROWS + ", 'new'), (" + (ROWS + 1) + ", 'x');",
+            "update " + table + " set name = 'updated' where id >= " + (ROWS - 1) + ";",
+            "delete from " + table + " where id = " + (ROWS + 1) + ";",
+            "commit;");
+    assertTrue(printed.contains("3 row(s) updated"), printed);
+    assertTrue(printed.contains("1 row(s) deleted"), printed);
+    assertEquals(
+        List.of((ROWS - 1) + "|updated", ROWS + "|updated"),
+        select(writer, table, "id >= " + (ROWS - 1)));
+  }
+
+  @Test
+  void vacuumWaitsForOlderTransactions() throws IncorrectQueryException {
+    String table = "vacuum_deferred";
+    createIndexedTable(table, StorageFormat.TEXT);
+
+    TestDatabase.execute(reader, "begin transaction;");
+    TestDatabase.execute(writer, "delete from " + table + " where id < 100;");
+    String printed = TestDatabase.execute(writer, "vacuum " + table + ";");
+    assertTrue(printed.contains("cannot be vacuumed"), printed);
+    assertEquals(List.of(String.valueOf(ROWS)), count(reader, table));
+
+    TestDatabase.execute(reader, "commit;");
+    printed = TestDatabase.execute(writer, "vacuum " + table + ";");
+    assertTrue(printed.contains("vacuumed"), printed);
+    assertEquals(List.of(String.valueOf(ROWS - 100)), count(reader, table));
+    assertEquals(List.of("100|n100"), select(reader, table, "id = 100"));
+  }
+
+  private void createIndexedTable(String table, StorageFormat storageFormat)
+      throws IncorrectQueryException {
+    TestDatabase.createTable(writer, table, storageFormat, "id int, name varchar");
+    StringBuilder insert = new StringBuilder("insert into " + table + " values ");
+    for (int id = 0; id < ROWS; id++) {
+      insert.append(id == 0 ? "" : ", ").append('(').append(id).append(", 'n").append(id)
+          .append("')");
+    }
+    TestDatabase.execute(writer, insert.append(';').toString());
+    TestDatabase.execute(writer, "create index " + table + "_id on " + table + "(id);");
+  }
+
+  private static List<String> select(Session session, String table, String condition)
+      throws IncorrectQueryException {
+    return TestDatabase.rows(
+        TestDatabase.execute(
+            session, "select * from " + table + " where " + condition + " order by id;"));
+  }
+
+  private static List<String> count(Session session, String table)
+      throws IncorrectQueryException {
+    return TestDatabase.rows(TestDatabase.execute(session, "select count(*) from " + table + ";"));
+  }
+}
@@ -0,0 +1,125 @@
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The {@code TestDatabase} class opens the database of the working directory for tests, which
+ * Maven runs in {@code target/test-run}, and executes statements on it. What a statement prints is
+ * returned; every thread prints to a stream of its own, so sessions may run on several threads at
+ * once. The database is a singleton, so the tests of a JVM share it and use tables of their own.
+ */
+final class TestDatabase {
+  private static Database database;
+  private static RoutingPrintStream output;
+
+  private TestDatabase() {
+    throw new AssertionError("TestDatabase class should not be instantiated.");
+  }
+
+  /**
+   * Opens the database, emptying the {@code files/} directory before the first use of the JVM.
+   *
+   * @return the database
+   */
+  static synchronized Database open() {
+    if (database == null) {
+      File directory = new File("files");
+      deleteRecursively(directory);
+      directory.mkdirs();
+      output = new RoutingPrintStream(System.out);
+      System.setOut(output);
+      database =
+          Database.getInstance(
+              new UserAuthenticationManager(
+                  new UserServiceImplementation(), new CaptchaServiceImplementation()));
+    }
+    return database;
+  }
+
+  /**
+   * Executes a statement of a session.
+   *
+   * @param session the session
+   * @param query the statement
+   * @return what the statement printed
+   * @throws IncorrectQueryException if the statement is rejected
+   */
+  static String execute(Session session, String query) throws IncorrectQueryException {
+    Database database = open();
+    ByteArrayOutputStream printed = new ByteArrayOutputStream();
+    output.route(new PrintStream(printed, true, StandardCharsets.UTF_8));
+    try {
+      database.execute(session, query);
+    } finally {
+      output.route(null);
+    }
+    return printed.toString(StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Creates a table whose file is stored in a format.
+   *
+   * @param session the session creating the table
+   * @param table name of the table
+   * @param storageFormat format of the table file
+   * @param columns the columns as in {@code CREATE TABLE}, e.g. {@code id int, name varchar}
+   * @return the name of the table
+   * @throws IncorrectQueryException if the statement is rejected
+   */
+  static String createTable(
+      Session session, String table, StorageFormat storageFormat, String columns)
+      throws IncorrectQueryException {
+    open().setStorageFormat(table, storageFormat);
+    execute(session, "create table " + table + " (" + columns + ");");
+    return table;
+  }
+
+  /**
+   * Executes statements of a session one after the other.
+   *
+   * @param session the session
+   * @param queries the statements
+   * @return what the last statement printed
+   * @throws IncorrectQueryException if a statement is rejected
+   */
+  static String executeAll(Session session, String... queries) throws IncorrectQueryException {
+    String printed = "";
+    for (String query : queries) {
+      printed = execute(session, query);
+    }
+    return printed;
+  }
+
+  /**
+   * Reads the rows of the text tables a statement printed, without the header of every table.
+   *
+   * @param printed what the statement printed
+   * @return the rows, their values joined by {@code |}
+   */
+  static List<String> rows(String printed) {
+    List<String> rows = new ArrayList<>();
+    String[] lines = printed.split("\n");
+    for (int i = 0; i < lines.length; i++) {
+      /* A header is followed by a line of dashes */
+      boolean header = i + 1 < lines.length && lines[i + 1].startsWith("-");
+      if (lines[i].startsWith("| ") && !header) {
+        String line = lines[i];
+        rows.add(String.join("|", line.substring(2, line.length() - 2).split("\t\\| ")));
+      }
+    }
+    return rows;
+  }
+
+  static void deleteRecursively(File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        deleteRecursively(child);
+      }
+    }
+    file.delete();
+  }
+}
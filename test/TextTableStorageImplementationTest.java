@@ -0,0 +1,89 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/** Tests that rows appended to a text table file read back as they were validated. */
+class TextTableStorageImplementationTest {
+  private static final TableSchema SCHEMA =
+      new TableSchema(
+          List.of("id", "name", "score"),
+          List.of(ColumnType.INT, ColumnType.VARCHAR, ColumnType.DOUBLE));
+
+  @TempDir Path directory;
+
+  private TableStorage tableStorage;
+
+  @BeforeEach
+  void createTable() {
+    tableStorage =
+        new TextTableStorageImplementation(
+            directory.resolve("t.csv").toString(),
+            new CustomDelimiterDataSerializerImplementation());
+    tableStorage.create(SCHEMA);
+  }
+
+  @Test
+  void appendedRowsReadBackUnchanged() {
+    List<List<String>> rows =
+        List.of(
+            List.of("1", "alice", "1.5"),
+            List.of("2", "", "2.0"),
+            List.of("3", "a-_b -", "3.25"),
+            List.of("4", "_-x, \"y\"", "-4.0"));
+    for (List<String> row : rows) {
+      assertNull(tableStorage.validateRow(SCHEMA, row));
+    }
+    assertEquals(rows.size(), tableStorage.appendRows(rows).length);
+
+    List<List<String>> read = new ArrayList<>();
+    try (RowCursor cursor = tableStorage.openCursor(null, TableSnapshot.ALL_ROWS)) {
+      while (cursor.next()) {
+        read.add(cursor.getTable().formatRow(cursor.getRow()));
+      }
+    }
+    assertEquals(rows, read);
+  }
+
+  @Test
+  void nullsReadBackAsNullAndNotAsStrings() {
+    List<List<String>> rows =
+        List.of(
+            Arrays.asList("1", null, null),
+            Arrays.asList("2", "null", "2.0"),
+            Arrays.asList(null, "\\N", "3.0"));
+    tableStorage.appendRows(rows);
+
+    List<List<String>> read = new ArrayList<>();
+    try (RowCursor cursor = tableStorage.openCursor(null, TableSnapshot.ALL_ROWS)) {
+      while (cursor.next()) {
+        read.add(cursor.getTable().formatRow(cursor.getRow()));
+      }
+    }
+    assertEquals(rows, read);
+  }
+
+  @Test
+  void valuesSplittingTheRowAreRejected() {
+    for (String name : List.of("a-_-b", "two\nlines", "carriage\rreturn", "ends-_")) {
+      assertNotNull(tableStorage.validateRow(SCHEMA, List.of("1", name, "1.0")), name);
+    }
+  }
+
+  @Test
+  void rowsWithTheWrongNumberOfValuesAreRejected() {
+    assertNotNull(tableStorage.validateRow(SCHEMA, List.of("1", "alice")));
+    assertNotNull(tableStorage.validateRow(SCHEMA, List.of("1", "alice", "1.0", "extra")));
+    ColumnarTable table = new ColumnarTable(SCHEMA);
+    assertThrows(IllegalArgumentException.class, () -> table.appendRow(List.of("1", "alice")));
+    assertEquals(0, table.getRowCount());
+  }
+}
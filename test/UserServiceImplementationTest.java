@@ -0,0 +1,140 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests that the user file is compacted to the live users once most of its rows are dead, and
+ * that logins replace old password hashes.
+ */
+class UserServiceImplementationTest {
+  private static final int USERS = 100;
+
+  @BeforeAll
+  static void openDatabase() {
+    /* Creates the files directory the user file is in */
+    TestDatabase.open();
+  }
+
+  @Test
+  void compactionKeepsLiveUsersAndDropsDeletedOnes() {
+    UserServiceImplementation userService = newUserService();
+    String prefix = "compacted_" + System.nanoTime() + "_";
+    List<String> usernames = new ArrayList<>();
+    for (int i = 0; i < USERS; i++) {
+      usernames.add(String.format("%s%03d", prefix, i));
+      userService.addUser(new User(usernames.get(i), "password" + i, null));
+    }
+    Map<String, String> userIds = userIdsOf(userService, usernames);
+    /* Every tenth user is kept, the last one added is dropped */
+    for (int i = 0; i < USERS; i++) {
+      if (i % 10 != 0) {
+        userService.removeUser(usernames.get(i));
+      }
+    }
+
+    /* Rows of users dropped after the last compaction stay until there are enough of them */
+    List<List<String>> rows = storedRows();
+    long deadRows =
+        rows.stream()
+            .filter(row -> row.get(1).startsWith(prefix))
+            .filter(row -> Integer.parseInt(row.get(1).substring(prefix.length())) % 10 != 0)
+            .count();
+    assertTrue(deadRows < 64, deadRows + " rows of dropped users");
+    assertFalse(rows.stream().anyMatch(row -> row.get(1).equals(usernames.get(1))));
+
+    UserServiceImplementation reloaded = newUserService();
+    for (int i = 0; i < USERS; i++) {
+      String username = usernames.get(i);
+      String userId = userIds.get(username);
+      if (i % 10 == 0) {
+        assertTrue(rows.stream().anyMatch(row -> row.get(1).equals(username)), username);
+        assertEquals(username, reloaded.getUserById(userId));
+        assertTrue(reloaded.authenticateUser(userId, "password" + i), username);
+      } else {
+        assertNull(reloaded.getUserById(userId));
+        assertFalse(reloaded.authenticateUser(userId, "password" + i), username);
+      }
+    }
+
+    /* The id of the last user dropped is not given out again */
+    String next = prefix + "next";
+    reloaded.addUser(new User(next, "password", null));
+    int lastUserId = Integer.parseInt(userIds.get(usernames.getLast()));
+    assertTrue(
+        Integer.parseInt(userIdsOf(reloaded, List.of(next)).get(next)) > lastUserId,
+        "reused id");
+  }
+
+  @Test
+  void loginRehashesMd5AndOldIterationHashes() {
+    String prefix = "rehashed_" + System.nanoTime() + "_";
+    String md5User = prefix + "md5";
+    String oldUser = prefix + "old";
+    new UserServiceImplementation(new Md5PasswordHasherImplementation(), 0)
+        .addUser(new User(md5User, "secret", null));
+    newUserService().addUser(new User(oldUser, "secret", null));
+    assertTrue(new Md5PasswordHasherImplementation().accepts(storedHash(md5User)));
+    assertTrue(storedHash(oldUser).startsWith("pbkdf2-sha512$1$"), storedHash(oldUser));
+
+    UserServiceImplementation userService =
+        new UserServiceImplementation(new Pbkdf2PasswordHasherImplementation(2), 0);
+    Map<String, String> userIds = userIdsOf(userService, List.of(md5User, oldUser));
+    for (String username : List.of(md5User, oldUser)) {
+      String oldHash = storedHash(username);
+      /* A wrong password leaves the hash as it is */
+      assertFalse(userService.authenticateUser(userIds.get(username), "wrong"));
+      assertEquals(oldHash, storedHash(username));
+
+      assertTrue(userService.authenticateUser(userIds.get(username), "secret"));
+      assertTrue(storedHash(username).startsWith("pbkdf2-sha512$2$"), storedHash(username));
+      /* The new hash is stored, a service reading the file again accepts it */
+      assertTrue(
+          new UserServiceImplementation(new Pbkdf2PasswordHasherImplementation(2), 0)
+              .authenticateUser(userIds.get(username), "secret"));
+    }
+  }
+
+  /* Cheap hashes, checked at every login */
+  private static UserServiceImplementation newUserService() {
+    return new UserServiceImplementation(new Pbkdf2PasswordHasherImplementation(1), 0);
+  }
+
+  /* The ids of users, found by trying every id in turn */
+  private static Map<String, String> userIdsOf(
+      UserServiceImplementation userService, List<String> usernames) {
+    Map<String, String> userIds = new HashMap<>();
+    for (int id = 1; userIds.size() < usernames.size(); id++) {
+      String username = userService.getUserById(String.valueOf(id));
+      if (username != null && usernames.contains(username)) {
+        userIds.put(username, String.valueOf(id));
+      }
+    }
+    return userIds;
+  }
+
+  /* The password hash of the last row of a user in the user file */
+  private static String storedHash(String username) {
+    return storedRows().stream()
+        .filter(row -> row.get(1).equals(username))
+        .reduce((first, second) -> second)
+        .orElseThrow()
+        .get(2);
+  }
+
+  /* The rows of the user file */
+  private static List<List<String>> storedRows() {
+    Data data = new Data(new ArrayList<>());
+    new PersistentDataProcessor(
+            Constants.USERS_FILE_PATH, new CustomDelimiterDataSerializerImplementation())
+        .loadData(data);
+    return data.getData();
+  }
+}
@@ -0,0 +1,61 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.util.List;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+/** Tests that a vacuum shrinks the table file and keeps its rows and indexes as they were. */
+class VacuumTest {
+  private static final int ROWS = 2_000;
+  private static final String LONG_NAME = "a name that is far too long for the space of the row";
+
+  private final Session session = new Session("admin");
+
+  @ParameterizedTest
+  @EnumSource(StorageFormat.class)
+  void vacuumKeepsLiveRowsAndIndexes(StorageFormat storageFormat)
+      throws IncorrectQueryException {
+    String table = "vacuumed_" + storageFormat.name().toLowerCase();
+    TestDatabase.createTable(session, table, storageFormat, "id int, name varchar");
+    StringBuilder insert = new StringBuilder("insert into " + table + " values ");
+    for (int id = 0; id < ROWS; id++) {
+      insert.append(id == 0 ? "" : ", ").append('(').append(id).append(", 'n").append(id)
+          .append("')");
+    }
+    TestDatabase.executeAll(
+        session,
+        insert.append(';').toString(),
+        "create index " + table + "_id on " + table + "(id);",
+        "delete from " + table + " where id < " + ROWS / 2 + ";",
+        "update " + table + " set name = '" + LONG_NAME + "' where id = " + (ROWS - 1) + ";");
+    File file = new File("files/" + table + storageFormat.getFileExtension());
+    long length = file.length();
+
+    String printed = TestDatabase.execute(session, "vacuum " + table + ";");
+    assertTrue(printed.contains("vacuumed"), printed);
+    assertTrue(file.length() < length, file.length() + " >= " + length);
+
+    assertEquals(List.of(String.valueOf(ROWS / 2)), rows("select count(*) from " + table + ";"));
+    assertEquals(List.of(), rows("select * from " + table + " where id = 0;"));
+    assertEquals(
+        List.of(ROWS / 2 + "|n" + ROWS / 2),
+        rows("select * from " + table + " where id = " + ROWS / 2 + ";"));
+    assertEquals(
+        List.of((ROWS - 1) + "|" + LONG_NAME),
+        rows("select * from " + table + " where id = " + (ROWS - 1) + ";"));
+
+    /* The rows keep being changed at their new ids */
+    TestDatabase.execute(
+        session, "update " + table + " set name = 'after' where id = " + ROWS / 2 + ";");
+    assertEquals(
+        List.of(ROWS / 2 + "|after"),
+        rows("select * from " + table + " where id = " + ROWS / 2 + ";"));
+  }
+
+  /* Rows printed by a select, their values joined by | */
+  private List<String> rows(String query) throws IncorrectQueryException {
+    return TestDatabase.rows(TestDatabase.execute(session, query));
+  }
+}
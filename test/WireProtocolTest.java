@@ -0,0 +1,59 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+
+/** Tests that frames are read back as they were written, and that broken frames are refused. */
+class WireProtocolTest {
+  @Test
+  void framesRoundTrip() throws IOException {
+    String query = "select * from t where name = '\u00e9';";
+    ByteArrayOutputStream connection = new ByteArrayOutputStream();
+    WireProtocol.writeFrame(connection, WireProtocol.QUERY, query);
+    WireProtocol.writeFrame(connection, WireProtocol.DONE, "");
+    byte[] rows = {WireProtocol.ROWS, 0, -1, 10};
+    byte[] frame = new byte[WireProtocol.HEADER_SIZE + rows.length];
+    System.arraycopy(rows, 0, frame, WireProtocol.HEADER_SIZE, rows.length);
+    WireProtocol.writeHeader(frame, WireProtocol.ROWS, rows.length);
+    connection.write(frame);
+
+    InputStream input = new ByteArrayInputStream(connection.toByteArray());
+    WireProtocol.Frame text = WireProtocol.readFrame(input);
+    assertEquals(WireProtocol.QUERY, text.type());
+    assertEquals(query, text.text());
+    WireProtocol.Frame done = WireProtocol.readFrame(input);
+    assertEquals(WireProtocol.DONE, done.type());
+    assertEquals("", done.text());
+    WireProtocol.Frame binary = WireProtocol.readFrame(input);
+    assertEquals(WireProtocol.ROWS, binary.type());
+    assertArrayEquals(rows, binary.payload());
+    assertNull(WireProtocol.readFrame(input));
+  }
+
+  @Test
+  void truncatedAndOversizedFramesAreRefused() throws IOException {
+    ByteArrayOutputStream connection = new ByteArrayOutputStream();
+    WireProtocol.writeFrame(connection, WireProtocol.OUTPUT, "printed");
+    byte[] bytes = connection.toByteArray();
+    for (int length : new int[] {3, bytes.length - 1}) {
+      InputStream truncated = new ByteArrayInputStream(Arrays.copyOf(bytes, length));
+      assertThrows(EOFException.class, () -> WireProtocol.readFrame(truncated));
+    }
+
+    byte[] header = new byte[WireProtocol.HEADER_SIZE];
+    WireProtocol.writeHeader(header, WireProtocol.OUTPUT, WireProtocol.MAX_PAYLOAD_SIZE + 1);
+    IOException exception =
+        assertThrows(
+            IOException.class, () -> WireProtocol.readFrame(new ByteArrayInputStream(header)));
+    assertEquals(
+        "Invalid frame length " + (WireProtocol.MAX_PAYLOAD_SIZE + 1), exception.getMessage());
+  }
+}
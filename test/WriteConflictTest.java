@@ -0,0 +1,55 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+/** Tests that concurrent transactions conflict on the rows they change, not on their table. */
+class WriteConflictTest {
+  private final Session first = new Session("admin");
+  private final Session second = new Session("admin");
+
+  @ParameterizedTest
+  @EnumSource(StorageFormat.class)
+  void changesOfDifferentRowsBothCommit(StorageFormat storageFormat)
+      throws IncorrectQueryException {
+    String table = "disjoint_" + storageFormat.name().toLowerCase();
+    createTableOfThreeRows(table, storageFormat);
+
+    TestDatabase.executeAll(
+        first, "begin transaction;", "update " + table + " set name = 'first' where id = 1;");
+    TestDatabase.executeAll(
+        second, "begin transaction;", "delete from " + table + " where id = 2;");
+    assertTrue(TestDatabase.execute(first, "commit;").contains("committed successfully"));
+    assertTrue(TestDatabase.execute(second, "commit;").contains("committed successfully"));
+
+    String printed = TestDatabase.execute(first, "select * from " + table + " order by id;");
+    assertTrue(printed.contains("| 1\t| first\t|"), printed);
+    assertEquals(-1, printed.indexOf("| 2\t|"), printed);
+  }
+
+  @ParameterizedTest
+  @EnumSource(StorageFormat.class)
+  void secondChangeOfTheSameRowIsRolledBack(StorageFormat storageFormat)
+      throws IncorrectQueryException {
+    String table = "same_row_" + storageFormat.name().toLowerCase();
+    createTableOfThreeRows(table, storageFormat);
+
+    TestDatabase.executeAll(
+        first, "begin transaction;", "update " + table + " set name = 'first' where id = 1;");
+    TestDatabase.executeAll(
+        second, "begin transaction;", "update " + table + " set name = 'second' where id = 1;");
+    assertTrue(TestDatabase.execute(first, "commit;").contains("committed successfully"));
+    String printed = TestDatabase.execute(second, "commit;");
+    assertTrue(printed.contains("rolled back"), printed);
+
+    printed = TestDatabase.execute(first, "select * from " + table + " where id = 1;");
+    assertTrue(printed.contains("| 1\t| first\t|"), printed);
+  }
+
+  private void createTableOfThreeRows(String table, StorageFormat storageFormat)
+      throws IncorrectQueryException {
+    TestDatabase.createTable(first, table, storageFormat, "id int, name varchar");
+    TestDatabase.execute(first, "insert into " + table + " values (1, 'a'), (2, 'b'), (3, 'c');");
+  }
+}